@@ -0,0 +1,489 @@
+package geometries;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.stream.IntStream;
+
+/**
+ * Builder of the flattened tree of a {@link BoundingVolumeHierarchy} by the
+ * binned surface area heuristic (SAH). The primitives of a node are spread by
+ * their centroids into a few equal bins along each axis, and only the splits
+ * between the bins are evaluated - a single pass over the primitives instead
+ * of sorting them. Small nodes are split by the exact SAH, sweeping all the
+ * sorted orders of their primitives.
+ * <br/>
+ * The subtrees of big nodes are built in parallel by fork-join tasks (each in
+ * its reserved nodes, see {@link HierarchyBuilder}), and the binning and the
+ * partitioning of the biggest nodes (near the root) are split into parallel
+ * chunks too. The bins of a thread are reused for all its nodes.
+ */
+final class BinnedSahBuilder extends HierarchyBuilder {
+	/** Cost of traversing a node relatively to the cost of intersecting a primitive */
+	private static final double TRAVERSAL_COST = 0.125;
+	/** Amount of the bins along each axis */
+	private static final int BIN_COUNT = 16;
+	/** Maximal amount of primitives of a node which is split by the exact SAH */
+	private static final int SWEEP_SIZE = 16;
+	/** Minimal amount of primitives of a node for building its subtrees in parallel */
+	private static final int PARALLEL_SIZE = 4096;
+	/** Minimal amount of primitives of a node for binning and partitioning it in chunks */
+	private static final int CHUNKED_SIZE = 8 * CHUNK_SIZE;
+
+	/**
+	 * The bins of each thread - shared by all the builds, so a finished build
+	 * isn't kept reachable by the threads of the pool
+	 */
+	private static final ThreadLocal<Bins> THREAD_BINS = ThreadLocal.withInitial(Bins::new);
+
+	/**
+	 * Builds the tree over the primitives by their bounding boxes
+	 *
+	 * @param bounds the boxes of the primitives - 6 coordinates per primitive:
+	 *               minimal corner, maximal corner
+	 * @param count  the amount of the primitives
+	 */
+	BinnedSahBuilder(double[] bounds, int count) {
+		super(bounds, count);
+		if (count == 0)
+			return;
+
+		double[] boxes = primitivesBounds();
+		new NodeTask(0, 0, count, 0, Arrays.copyOf(boxes, 6), Arrays.copyOfRange(boxes, 6, 12)).invoke();
+		compact();
+	}
+
+	/**
+	 * Task of building a subtree
+	 */
+	private final class NodeTask extends RecursiveAction {
+		/** Serial version - the tasks are never serialized */
+		private static final long serialVersionUID = 1L;
+		/** The index of the subtree's root node */
+		private final int node;
+		/** The first primitive of the subtree */
+		private final int start;
+		/** The end (excluded) of the subtree's primitives */
+		private final int end;
+		/** The depth of the subtree's root */
+		private final int depth;
+		/** The box of the subtree's primitives */
+		private final double[] box;
+		/** The box of the centroids of the subtree's primitives */
+		private final double[] centroidBox;
+
+		/**
+		 * Constructs a task of building a subtree
+		 *
+		 * @param node        the index of the subtree's root node
+		 * @param start       the first primitive of the subtree
+		 * @param end         the end (excluded) of the subtree's primitives
+		 * @param depth       the depth of the subtree's root
+		 * @param box         the box of the primitives
+		 * @param centroidBox the box of the primitives' centroids
+		 */
+		NodeTask(int node, int start, int end, int depth, double[] box, double[] centroidBox) {
+			this.node = node;
+			this.start = start;
+			this.end = end;
+			this.depth = depth;
+			this.box = box;
+			this.centroidBox = centroidBox;
+		}
+
+		@Override
+		protected void compute() {
+			buildNode(node, start, end, depth, box, centroidBox);
+		}
+	}
+
+	/**
+	 * Builds recursively a node over a range of the primitives by the binned SAH
+	 *
+	 * @param node        the index of the node
+	 * @param start       the first primitive in the range
+	 * @param end         the end (excluded) of the range
+	 * @param depth       the depth of the node in the tree
+	 * @param box         the box of the primitives
+	 * @param centroidBox the box of the primitives' centroids
+	 */
+	private void buildNode(int node, int start, int end, int depth, double[] box, double[] centroidBox) {
+		int count = end - start;
+		if (count <= SWEEP_SIZE) {
+			sweepNode(node, start, end, depth, new double[count]);
+			return;
+		}
+		System.arraycopy(box, 0, nodeBounds, 6 * node, 6);
+		if (depth >= BoundingVolumeHierarchy.MAX_DEPTH) {
+			makeLeaf(node, start, count);
+			return;
+		}
+
+		double[] scale = new double[3];
+		for (int axis = 0; axis < 3; ++axis) {
+			double extent = centroidBox[axis + 3] - centroidBox[axis];
+			scale[axis] = extent > 0 ? BIN_COUNT / extent : 0;
+		}
+		Bins bins;
+		Bins[] chunkBins = null;
+		if (count < CHUNKED_SIZE) {
+			bins = THREAD_BINS.get();
+			bins.clear();
+			addToBins(bins, start, end, centroidBox, scale);
+		} else {
+			int chunks = (count + CHUNK_SIZE - 1) / CHUNK_SIZE;
+			Bins[] parts = chunkBins = new Bins[chunks];
+			IntStream.range(0, chunks).parallel().forEach(chunk -> {
+				parts[chunk] = new Bins();
+				addToBins(parts[chunk], start + chunk * CHUNK_SIZE, Math.min(end, start + (chunk + 1) * CHUNK_SIZE), //
+						centroidBox, scale);
+			});
+			bins = new Bins();
+			for (Bins part : parts)
+				bins.merge(part);
+		}
+
+		// Evaluate the splits between the bins
+		double bestCost = Double.POSITIVE_INFINITY;
+		int bestAxis = -1, bestSplit = 0;
+		double[] rightAreas = new double[BIN_COUNT];
+		for (int axis = 0; axis < 3; ++axis) {
+			if (scale[axis] == 0)
+				continue;
+			double[] accumulated = emptyBounds();
+			for (int bin = BIN_COUNT - 1; bin > 0; --bin) {
+				expand(accumulated, 0, bins.boxes, 6 * (axis * BIN_COUNT + bin));
+				rightAreas[bin] = boxArea(accumulated, 0);
+			}
+			accumulated = emptyBounds();
+			int leftCount = 0;
+			for (int split = 1; split < BIN_COUNT; ++split) {
+				expand(accumulated, 0, bins.boxes, 6 * (axis * BIN_COUNT + split - 1));
+				leftCount += bins.counts[axis * BIN_COUNT + split - 1];
+				int rightCount = count - leftCount;
+				if (leftCount == 0 || rightCount == 0)
+					continue;
+				double cost = boxArea(accumulated, 0) * leftCount + rightAreas[split] * rightCount;
+				if (cost < bestCost) {
+					bestCost = cost;
+					bestAxis = axis;
+					bestSplit = split;
+				}
+			}
+		}
+
+		if (bestAxis < 0) {
+			// All the centroids coincide - split the range in the middle
+			int middle = start + count / 2;
+			buildChildren(node, start, middle, end, depth, 0, rangeBounds(start, middle), centroidBox,
+					rangeBounds(middle, end), centroidBox);
+			return;
+		}
+
+		double[] leftBox = emptyBounds(), rightBox = emptyBounds();
+		for (int bin = 0; bin < BIN_COUNT; ++bin)
+			expand(bin < bestSplit ? leftBox : rightBox, 0, bins.boxes, 6 * (bestAxis * BIN_COUNT + bin));
+		double[] childCentroidBoxes = chunkBins == null //
+				? partition(start, end, bestAxis, bestSplit, centroidBox[bestAxis], scale[bestAxis])
+				: partitionChunks(start, end, bestAxis, bestSplit, centroidBox[bestAxis], scale[bestAxis], chunkBins);
+		int middle = start;
+		for (int bin = 0; bin < bestSplit; ++bin)
+			middle += bins.counts[bestAxis * BIN_COUNT + bin];
+		buildChildren(node, start, middle, end, depth, bestAxis, leftBox, Arrays.copyOf(childCentroidBoxes, 6),
+				rightBox, Arrays.copyOfRange(childCentroidBoxes, 6, 12));
+	}
+
+	/**
+	 * Builds the children of an inner node, in parallel if the node is big
+	 *
+	 * @param node              the index of the node
+	 * @param start             the first primitive of the left child
+	 * @param middle            the first primitive of the right child
+	 * @param end               the end (excluded) of the right child's primitives
+	 * @param depth             the depth of the node
+	 * @param axis              the axis the node is split by
+	 * @param leftBox           the box of the left child
+	 * @param leftCentroidBox   the box of the left child's centroids
+	 * @param rightBox          the box of the right child
+	 * @param rightCentroidBox  the box of the right child's centroids
+	 */
+	private void buildChildren(int node, int start, int middle, int end, int depth, int axis, double[] leftBox,
+			double[] leftCentroidBox, double[] rightBox, double[] rightCentroidBox) {
+		int right = node + 2 * (middle - start);
+		makeInner(node, right, axis);
+		if (end - start >= PARALLEL_SIZE)
+			ForkJoinTask.invokeAll(new NodeTask(node + 1, start, middle, depth + 1, leftBox, leftCentroidBox),
+					new NodeTask(right, middle, end, depth + 1, rightBox, rightCentroidBox));
+		else {
+			buildNode(node + 1, start, middle, depth + 1, leftBox, leftCentroidBox);
+			buildNode(right, middle, end, depth + 1, rightBox, rightCentroidBox);
+		}
+	}
+
+	/**
+	 * Calculates the bin of a primitive along an axis
+	 *
+	 * @param primitive the index of the primitive
+	 * @param axis      the axis
+	 * @param min       the minimal centroid coordinate along the axis
+	 * @param scale     the amount of the bins per a unit of length
+	 * @return the index of the bin
+	 */
+	private int binIndex(int primitive, int axis, double min, double scale) {
+		return Math.min(BIN_COUNT - 1, (int) ((centroids[3 * primitive + axis] - min) * scale));
+	}
+
+	/**
+	 * Adds a range of the primitives into bins
+	 *
+	 * @param bins        the bins
+	 * @param start       the first primitive in the range
+	 * @param end         the end (excluded) of the range
+	 * @param centroidBox the box of the node's centroids
+	 * @param scale       the amount of the bins per a unit of length along each
+	 *                    axis
+	 */
+	private void addToBins(Bins bins, int start, int end, double[] centroidBox, double[] scale) {
+		for (int i = start; i < end; ++i) {
+			int primitive = primitives[i];
+			for (int axis = 0; axis < 3; ++axis) {
+				int bin = axis * BIN_COUNT + binIndex(primitive, axis, centroidBox[axis], scale[axis]);
+				++bins.counts[bin];
+				expand(bins.boxes, 6 * bin, bounds, 6 * primitive);
+			}
+		}
+	}
+
+	/**
+	 * Partitions a range of the primitives in place - the primitives in the bins
+	 * before the split first
+	 *
+	 * @param start the first primitive in the range
+	 * @param end   the end (excluded) of the range
+	 * @param axis  the axis of the bins
+	 * @param split the first bin of the second part
+	 * @param min   the minimal centroid coordinate along the axis
+	 * @param scale the amount of the bins per a unit of length
+	 * @return the boxes of the centroids of the two parts - 12 coordinates
+	 */
+	private double[] partition(int start, int end, int axis, int split, double min, double scale) {
+		double[] left = emptyBounds(), right = emptyBounds();
+		int i = start, j = end - 1;
+		while (i <= j) {
+			int primitive = primitives[i];
+			if (binIndex(primitive, axis, min, scale) < split) {
+				expandPoint(left, centroids, 3 * primitive);
+				++i;
+			} else {
+				expandPoint(right, centroids, 3 * primitive);
+				primitives[i] = primitives[j];
+				primitives[j--] = primitive;
+			}
+		}
+		return concat(left, right);
+	}
+
+	/**
+	 * Partitions a range of the primitives by parallel chunks - the primitives in
+	 * the bins before the split first. The bins of each chunk tell how many of its
+	 * primitives go to each part, so each chunk copies its primitives straight to
+	 * their places in a temporary array.
+	 *
+	 * @param start     the first primitive in the range
+	 * @param end       the end (excluded) of the range
+	 * @param axis      the axis of the bins
+	 * @param split     the first bin of the second part
+	 * @param min       the minimal centroid coordinate along the axis
+	 * @param scale     the amount of the bins per a unit of length
+	 * @param chunkBins the bins of the chunks of the range
+	 * @return the boxes of the centroids of the two parts - 12 coordinates
+	 */
+	private double[] partitionChunks(int start, int end, int axis, int split, double min, double scale,
+			Bins[] chunkBins) {
+		int chunks = chunkBins.length;
+		int[] leftOffsets = new int[chunks], rightOffsets = new int[chunks];
+		int leftCount = 0, rightCount = 0;
+		for (int chunk = 0; chunk < chunks; ++chunk) {
+			int chunkLeft = 0;
+			for (int bin = 0; bin < split; ++bin)
+				chunkLeft += chunkBins[chunk].counts[axis * BIN_COUNT + bin];
+			leftOffsets[chunk] = leftCount;
+			rightOffsets[chunk] = rightCount;
+			leftCount += chunkLeft;
+			rightCount += Math.min(end, start + (chunk + 1) * CHUNK_SIZE) - (start + chunk * CHUNK_SIZE) - chunkLeft;
+		}
+
+		int[] partitioned = new int[end - start];
+		int middle = leftCount;
+		double[][] chunkBoxes = new double[chunks][];
+		IntStream.range(0, chunks).parallel().forEach(chunk -> {
+			double[] left = emptyBounds(), right = emptyBounds();
+			int l = leftOffsets[chunk], r = middle + rightOffsets[chunk];
+			for (int i = start + chunk * CHUNK_SIZE; i < Math.min(end, start + (chunk + 1) * CHUNK_SIZE); ++i) {
+				int primitive = primitives[i];
+				if (binIndex(primitive, axis, min, scale) < split) {
+					expandPoint(left, centroids, 3 * primitive);
+					partitioned[l++] = primitive;
+				} else {
+					expandPoint(right, centroids, 3 * primitive);
+					partitioned[r++] = primitive;
+				}
+			}
+			chunkBoxes[chunk] = concat(left, right);
+		});
+		System.arraycopy(partitioned, 0, primitives, start, partitioned.length);
+
+		double[] left = emptyBounds(), right = emptyBounds();
+		for (double[] chunkBox : chunkBoxes) {
+			expand(left, 0, chunkBox, 0);
+			expand(right, 0, chunkBox, 6);
+		}
+		return concat(left, right);
+	}
+
+	/**
+	 * Builds recursively a node over a small range of the primitives by the exact
+	 * SAH - sweeping all the sorted orders of the primitives
+	 *
+	 * @param node  the index of the node
+	 * @param start the first primitive in the range
+	 * @param end   the end (excluded) of the range
+	 * @param depth the depth of the node in the tree
+	 * @param areas helper array for the sweep of the surface areas
+	 */
+	private void sweepNode(int node, int start, int end, int depth, double[] areas) {
+		double[] box = rangeBounds(start, end);
+		System.arraycopy(box, 0, nodeBounds, 6 * node, 6);
+
+		int count = end - start;
+		if (count == 1 || depth >= BoundingVolumeHierarchy.MAX_DEPTH) {
+			makeLeaf(node, start, count);
+			return;
+		}
+
+		// Sweep all the sorted orders of the primitives looking for the cheapest split
+		double area = boxArea(box, 0);
+		double bestCost = Double.POSITIVE_INFINITY;
+		int bestAxis = -1;
+		int bestSplit = 0;
+		for (int axis = 0; axis < 3; ++axis) {
+			sort(start, end - 1, axis);
+			sweepAreas(areas, start, end);
+			double[] right = emptyBounds();
+			for (int split = end - 1; split > start; --split) {
+				expand(right, 0, bounds, 6 * primitives[split]);
+				double cost = areas[split - 1 - start] * (split - start) + boxArea(right, 0) * (end - split);
+				if (cost < bestCost) {
+					bestCost = cost;
+					bestAxis = axis;
+					bestSplit = split;
+				}
+			}
+		}
+
+		bestCost = TRAVERSAL_COST + (area > 0 ? bestCost / area : count);
+		if (bestAxis < 0 || (count <= MAX_LEAF_SIZE && bestCost >= count)) {
+			makeLeaf(node, start, count);
+			return;
+		}
+
+		if (bestAxis != 2)
+			sort(start, end - 1, bestAxis);
+		int right = node + 2 * (bestSplit - start);
+		sweepNode(node + 1, start, bestSplit, depth + 1, areas);
+		sweepNode(right, bestSplit, end, depth + 1, areas);
+		makeInner(node, right, bestAxis);
+	}
+
+	/**
+	 * Calculates the surface areas of the boxes of all the prefixes of a range of
+	 * the primitives in their current order
+	 *
+	 * @param areas the array to fill, the i-th value is the area of the first
+	 *              (i+1) primitives
+	 * @param start the first primitive in the range
+	 * @param end   the end (excluded) of the range
+	 */
+	private void sweepAreas(double[] areas, int start, int end) {
+		double[] left = emptyBounds();
+		for (int i = start; i < end; ++i) {
+			expand(left, 0, bounds, 6 * primitives[i]);
+			areas[i - start] = boxArea(left, 0);
+		}
+	}
+
+	/**
+	 * Sorts a range of the primitives' indices by their centroids along an axis
+	 * (quick sort)
+	 *
+	 * @param low  the first index in the range
+	 * @param high the last index (included) in the range
+	 * @param axis the axis to sort by
+	 */
+	private void sort(int low, int high, int axis) {
+		while (low < high) {
+			double pivot = centroids[3 * primitives[(low + high) >>> 1] + axis];
+			int i = low, j = high;
+			while (i <= j) {
+				while (centroids[3 * primitives[i] + axis] < pivot)
+					++i;
+				while (centroids[3 * primitives[j] + axis] > pivot)
+					--j;
+				if (i <= j) {
+					int temp = primitives[i];
+					primitives[i++] = primitives[j];
+					primitives[j--] = temp;
+				}
+			}
+			// Recurse into the smaller part and loop over the bigger one
+			if (j - low < high - i) {
+				sort(low, j, axis);
+				low = i;
+			} else {
+				sort(i, high, axis);
+				high = j;
+			}
+		}
+	}
+
+	/**
+	 * The bins of the primitives of a node along the three axes - the amount of
+	 * the primitives and their box in each bin
+	 */
+	private static final class Bins {
+		/** Amounts of the primitives - {@link #BIN_COUNT} per axis */
+		final int[] counts = new int[3 * BIN_COUNT];
+		/** Boxes of the primitives - 6 coordinates per bin, {@link #BIN_COUNT} bins per axis */
+		final double[] boxes = new double[18 * BIN_COUNT];
+
+		/**
+		 * Constructs empty bins
+		 */
+		Bins() {
+			clear();
+		}
+
+		/**
+		 * Empties the bins
+		 */
+		void clear() {
+			Arrays.fill(counts, 0);
+			for (int offset = 0; offset < boxes.length; offset += 6) {
+				Arrays.fill(boxes, offset, offset + 3, Double.POSITIVE_INFINITY);
+				Arrays.fill(boxes, offset + 3, offset + 6, Double.NEGATIVE_INFINITY);
+			}
+		}
+
+		/**
+		 * Adds the primitives of other bins into these bins
+		 *
+		 * @param other the other bins
+		 */
+		void merge(Bins other) {
+			for (int bin = 0; bin < 3 * BIN_COUNT; ++bin) {
+				counts[bin] += other.counts[bin];
+				expand(boxes, 6 * bin, other.boxes, 6 * bin);
+			}
+		}
+	}
+}
@@ -0,0 +1,209 @@
+package geometries;
+
+import primitives.Point;
+import primitives.Ray;
+import primitives.Vector;
+
+/**
+ * Axis aligned bounding box (AABB) of a geometry. The box is described by its
+ * minimal and maximal corners and is used for culling rays that can't hit the
+ * bounded geometry.
+ */
+public class BoundingBox {
+	/** Minimal x coordinate of the box */
+	final double minX;
+	/** Minimal y coordinate of the box */
+	final double minY;
+	/** Minimal z coordinate of the box */
+	final double minZ;
+	/** Maximal x coordinate of the box */
+	final double maxX;
+	/** Maximal y coordinate of the box */
+	final double maxY;
+	/** Maximal z coordinate of the box */
+	final double maxZ;
+
+	/**
+	 * Constructor of a box by its coordinate limits
+	 *
+	 * @param minX minimal x coordinate
+	 * @param minY minimal y coordinate
+	 * @param minZ minimal z coordinate
+	 * @param maxX maximal x coordinate
+	 * @param maxY maximal y coordinate
+	 * @param maxZ maximal z coordinate
+	 */
+	BoundingBox(double minX, double minY, double minZ, double maxX, double maxY, double maxZ) {
+		this.minX = minX;
+		this.minY = minY;
+		this.minZ = minZ;
+		this.maxX = maxX;
+		this.maxY = maxY;
+		this.maxZ = maxZ;
+	}
+
+	/**
+	 * Constructor of a box by its two opposite corners
+	 *
+	 * @param min the corner with the minimal coordinates
+	 * @param max the corner with the maximal coordinates
+	 * @throws IllegalArgumentException if any coordinate of min is bigger than
+	 *                                  the appropriate coordinate of max
+	 */
+	public BoundingBox(Point min, Point max) {
+		this(min.getX(), min.getY(), min.getZ(), max.getX(), max.getY(), max.getZ());
+		if (minX > maxX || minY > maxY || minZ > maxZ)
+			throw new IllegalArgumentException("Minimal corner of a box must not exceed its maximal corner");
+	}
+
+	/**
+	 * Creates the smallest box containing all the given points
+	 *
+	 * @param points the points to bound
+	 * @return the bounding box of the points
+	 */
+	public static BoundingBox of(Point... points) {
+		double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY, minZ = Double.POSITIVE_INFINITY;
+		double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY, maxZ = Double.NEGATIVE_INFINITY;
+		for (Point p : points) {
+			minX = Math.min(minX, p.getX());
+			minY = Math.min(minY, p.getY());
+			minZ = Math.min(minZ, p.getZ());
+			maxX = Math.max(maxX, p.getX());
+			maxY = Math.max(maxY, p.getY());
+			maxZ = Math.max(maxZ, p.getZ());
+		}
+		return new BoundingBox(minX, minY, minZ, maxX, maxY, maxZ);
+	}
+
+	/**
+	 * Getter for the corner with the minimal coordinates
+	 *
+	 * @return the minimal corner
+	 */
+	public Point getMin() {
+		return new Point(minX, minY, minZ);
+	}
+
+	/**
+	 * Getter for the corner with the maximal coordinates
+	 *
+	 * @return the maximal corner
+	 */
+	public Point getMax() {
+		return new Point(maxX, maxY, maxZ);
+	}
+
+	/**
+	 * Creates the smallest box containing both this box and the other one
+	 *
+	 * @param other the other box
+	 * @return the union box
+	 */
+	public BoundingBox union(BoundingBox other) {
+		return new BoundingBox(Math.min(minX, other.minX), Math.min(minY, other.minY), Math.min(minZ, other.minZ),
+				Math.max(maxX, other.maxX), Math.max(maxY, other.maxY), Math.max(maxZ, other.maxZ));
+	}
+
+	/**
+	 * Calculates the surface area of the box, used by the surface area heuristic
+	 *
+	 * @return the surface area
+	 */
+	public double surfaceArea() {
+		return surfaceArea(maxX - minX, maxY - minY, maxZ - minZ);
+	}
+
+	/**
+	 * Calculates the surface area of a box by its extents
+	 *
+	 * @param dx extent along the x axis
+	 * @param dy extent along the y axis
+	 * @param dz extent along the z axis
+	 * @return the surface area
+	 */
+	static double surfaceArea(double dx, double dy, double dz) {
+		return 2 * (dx * dy + dy * dz + dz * dx);
+	}
+
+	/**
+	 * Checks whether the ray hits the box (slab test)
+	 *
+	 * @param ray the ray to check
+	 * @return true if the ray hits the box, false otherwise
+	 */
+	public boolean intersects(Ray ray) {
+		return intersects(ray, Double.POSITIVE_INFINITY);
+	}
+
+	/**
+	 * Checks whether the ray hits the box before a given distance (slab test)
+	 *
+	 * @param ray         the ray to check
+	 * @param maxDistance the maximal distance along the ray
+	 * @return true if the ray hits the box before the maximal distance, false
+	 *         otherwise
+	 */
+	public boolean intersects(Ray ray, double maxDistance) {
+		Point head = ray.getHead();
+		Vector v = ray.getDirection();
+		return intersects(minX, minY, minZ, maxX, maxY, maxZ, head.getX(), head.getY(), head.getZ(), //
+				1 / v.getX(), 1 / v.getY(), 1 / v.getZ(), maxDistance);
+	}
+
+	/**
+	 * Slab test of a ray against a box given by its coordinates. The ray direction
+	 * is given by its inverse so that it is calculated only once per ray. A zero
+	 * direction component produces an infinite inverse, in which case the ray head
+	 * must lay between the two planes of the appropriate slab.
+	 *
+	 * @param minX        minimal x coordinate of the box
+	 * @param minY        minimal y coordinate of the box
+	 * @param minZ        minimal z coordinate of the box
+	 * @param maxX        maximal x coordinate of the box
+	 * @param maxY        maximal y coordinate of the box
+	 * @param maxZ        maximal z coordinate of the box
+	 * @param x           x coordinate of the ray head
+	 * @param y           y coordinate of the ray head
+	 * @param z           z coordinate of the ray head
+	 * @param invX        inverse of the x component of the ray direction
+	 * @param invY        inverse of the y component of the ray direction
+	 * @param invZ        inverse of the z component of the ray direction
+	 * @param maxDistance the maximal distance along the ray
+	 * @return true if the ray hits the box before the maximal distance
+	 */
+	static boolean intersects(double minX, double minY, double minZ, double maxX, double maxY, double maxZ, //
+			double x, double y, double z, double invX, double invY, double invZ, double maxDistance) {
+		double tNear = 0, tFar = maxDistance;
+		if (Double.isInfinite(invX)) {
+			if (x < minX || x > maxX)
+				return false;
+		} else {
+			double t1 = (minX - x) * invX, t2 = (maxX - x) * invX;
+			tNear = Math.max(tNear, Math.min(t1, t2));
+			tFar = Math.min(tFar, Math.max(t1, t2));
+		}
+		if (Double.isInfinite(invY)) {
+			if (y < minY || y > maxY)
+				return false;
+		} else {
+			double t1 = (minY - y) * invY, t2 = (maxY - y) * invY;
+			tNear = Math.max(tNear, Math.min(t1, t2));
+			tFar = Math.min(tFar, Math.max(t1, t2));
+		}
+		if (Double.isInfinite(invZ)) {
+			if (z < minZ || z > maxZ)
+				return false;
+		} else {
+			double t1 = (minZ - z) * invZ, t2 = (maxZ - z) * invZ;
+			tNear = Math.max(tNear, Math.min(t1, t2));
+			tFar = Math.min(tFar, Math.max(t1, t2));
+		}
+		return tNear <= tFar;
+	}
+
+	@Override
+	public String toString() {
+		return "Box{(" + minX + "," + minY + "," + minZ + ")-(" + maxX + "," + maxY + "," + maxZ + ")}";
+	}
+}
@@ -0,0 +1,902 @@
+package geometries;
+
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+
+import primitives.*;
+
+/**
+ * Bounding volume hierarchy (BVH) over a set of indexed primitives. The tree is
+ * built in parallel by one of the {@link BuildMethod}s - by the surface area
+ * heuristic (SAH) or as a linear BVH, and it is stored flattened in arrays in
+ * depth first order, so the left child of an inner node is the node right after
+ * it. The subclasses supply the boxes of their primitives and the intersection
+ * of a single primitive, the hierarchy supplies the traversal.
+ * <br/>
+ * The tree can be updated when a few primitives are moved, inserted or
+ * removed, instead of being built again. The boxes of the nodes on the path of
+ * a changed primitive are refitted bottom up, and the quality of each of these
+ * nodes is watched by its SAH cost - its surface area times its amount of
+ * primitives. A node whose cost has grown beyond {@link #DEGRADATION} times its
+ * cost when it was built is built again with its whole subtree, in place of
+ * the subtree's nodes - or, if the new subtree doesn't fit there, as a part of
+ * the subtree of its parent. The bookkeeping of the updates (the parents of the
+ * nodes etc.) is created by the first update, so static hierarchies don't pay
+ * for it.
+ */
+public abstract class BoundingVolumeHierarchy extends Intersectable {
+	/** Maximal depth of the tree, deeper nodes are always leaves */
+	static final int MAX_DEPTH = 64;
+	/**
+	 * Growth of the SAH cost of an updated node (relatively to its cost when it
+	 * was built) which causes building its subtree again
+	 */
+	private static final double DEGRADATION = 2;
+	/** Minimal amount of the unused primitive slots which causes building the whole tree again */
+	private static final int MIN_GARBAGE = 64;
+	/** Minimal amount of primitives for caching the tree - smaller trees are built faster than loaded */
+	private static final int MIN_CACHED_SIZE = 4096;
+
+	/** Boxes of the nodes - 6 coordinates per node: minimal corner, maximal corner */
+	private double[] nodeBounds;
+	/**
+	 * Data of the nodes - 2 numbers per node. A leaf holds the offset of its first
+	 * primitive in {@link #primitives} and the (positive) amount of its
+	 * primitives. An inner node holds the index of its right child and the negative
+	 * number -(axis + 1) of the axis it was split by.
+	 */
+	private int[] nodeData;
+	/** Indices of the primitives ordered by the leaves of the tree */
+	private int[] primitives;
+	/** Amount of the nodes in the tree */
+	private int nodeCount = 0;
+	/** Size of the stack of the traversal - more than the depth of the tree */
+	private int stackSize = MAX_DEPTH + 2;
+	/** The method of building the tree */
+	private BuildMethod buildMethod;
+	/** The boxes of the primitives - 6 coordinates per primitive */
+	private double[] primitiveBounds;
+	/**
+	 * Amount of the used slots of {@link #primitives} - updated leaves are moved
+	 * after them, and their former slots become unused
+	 */
+	private int primitiveEnd;
+
+	/** Parents of the nodes (-1 for the root), null until the first update */
+	private int[] parents = null;
+	/** Amounts of the primitives of the nodes' subtrees */
+	private int[] sizes;
+	/** SAH costs of the nodes when they were built */
+	private double[] builtCosts;
+	/** Leaves of the primitives (-1 for a removed primitive) */
+	private int[] leaves;
+
+	/**
+	 * Builds the hierarchy over the primitives by their bounding boxes by the
+	 * binned SAH, see {@link BinnedSahBuilder}
+	 *
+	 * @param bounds the boxes of the primitives - 6 coordinates per primitive:
+	 *               minimal corner, maximal corner
+	 * @param count  the amount of the primitives
+	 */
+	protected final void build(double[] bounds, int count) {
+		build(bounds, count, BuildMethod.BINNED_SAH);
+	}
+
+	/**
+	 * Builds the hierarchy over the primitives by their bounding boxes. The boxes
+	 * array is kept by the hierarchy for its updates.
+	 *
+	 * @param bounds the boxes of the primitives - 6 coordinates per primitive:
+	 *               minimal corner, maximal corner
+	 * @param count  the amount of the primitives
+	 * @param method the method of the build
+	 */
+	protected final void build(double[] bounds, int count, BuildMethod method) {
+		build(bounds, count, method, null);
+	}
+
+	/**
+	 * Builds the hierarchy over the primitives by their bounding boxes, or loads
+	 * it from a cache of built hierarchies, see {@link #buildTree}. The boxes
+	 * array is kept by the hierarchy for its updates.
+	 *
+	 * @param bounds the boxes of the primitives - 6 coordinates per primitive:
+	 *               minimal corner, maximal corner
+	 * @param count  the amount of the primitives
+	 * @param method the method of the build
+	 * @param cache  the cache of built hierarchies, may be null
+	 */
+	protected final void build(double[] bounds, int count, BuildMethod method, HierarchyCache cache) {
+		HierarchyCache.Tree tree = buildTree(bounds, count, method, cache);
+		nodeBounds = tree.nodeBounds();
+		nodeData = tree.nodeData();
+		primitives = tree.primitives();
+		nodeCount = nodeData.length / 2;
+		buildMethod = method;
+		primitiveBounds = bounds;
+		primitiveEnd = count;
+		stackSize = MAX_DEPTH + 2;
+		parents = null;
+	}
+
+	/**
+	 * Builds a tree over the primitives by their bounding boxes, or loads it from
+	 * a cache of built hierarchies. A built tree is stored in the cache (unless it
+	 * is small).
+	 *
+	 * @param bounds the boxes of the primitives - 6 coordinates per primitive
+	 * @param count  the amount of the primitives
+	 * @param method the method of the build
+	 * @param cache  the cache of built hierarchies, may be null
+	 * @return the tree - no nodes if there are no primitives
+	 */
+	static HierarchyCache.Tree buildTree(double[] bounds, int count, BuildMethod method, HierarchyCache cache) {
+		if (count == 0)
+			return new HierarchyCache.Tree(new double[0], new int[0], new int[0]);
+		String key = cache == null || count < MIN_CACHED_SIZE ? null : cache.key(bounds, count, method);
+		HierarchyCache.Tree tree = key == null ? null : cache.load(key, count);
+		if (tree == null) {
+			HierarchyBuilder builder = newBuilder(bounds, count, method);
+			tree = new HierarchyCache.Tree(builder.nodeBounds, builder.nodeData, builder.primitives);
+			if (key != null)
+				cache.store(key, tree);
+		}
+		return tree;
+	}
+
+	/**
+	 * Creates a builder of a tree
+	 *
+	 * @param bounds the boxes of the primitives
+	 * @param count  the amount of the primitives
+	 * @param method the method of the build
+	 * @return the builder, after building the tree
+	 */
+	private static HierarchyBuilder newBuilder(double[] bounds, int count, BuildMethod method) {
+		return method == BuildMethod.LINEAR ? new LinearBvhBuilder(bounds, count)
+				: new BinnedSahBuilder(bounds, count);
+	}
+
+	/**
+	 * Updates the tree after a primitive has moved (or changed its box anyhow).
+	 * The boxes on the path of the primitive's leaf are refitted, unless the
+	 * primitive has moved away from its leaf's box - then it is inserted again
+	 * where it fits best. The tree must not be traversed during the update.
+	 *
+	 * @param index the index of the primitive
+	 * @param box   the new box of the primitive - 6 coordinates: minimal corner,
+	 *              maximal corner
+	 */
+	protected final void movePrimitive(int index, double[] box) {
+		prepareUpdates();
+		int leaf = leaves[index];
+		if (leaf >= 0 && !overlaps(leaf, box)) {
+			removePrimitive(index);
+			insertPrimitive(index, box);
+			return;
+		}
+		System.arraycopy(box, 0, primitiveBounds, 6 * index, 6);
+		if (leaf >= 0)
+			refit(leaf, 0);
+	}
+
+	/**
+	 * Inserts a primitive into the tree. It is added to the leaf whose box grows
+	 * the least by it, found from the root by the child whose box grows the
+	 * least. The tree must not be traversed during the update.
+	 *
+	 * @param index the index of the primitive - any index which isn't in the tree
+	 * @param box   the box of the primitive - 6 coordinates: minimal corner,
+	 *              maximal corner
+	 */
+	protected final void insertPrimitive(int index, double[] box) {
+		prepareUpdates();
+		if (6 * index >= primitiveBounds.length) {
+			int capacity = Math.max(index + 1, 2 * leaves.length);
+			primitiveBounds = Arrays.copyOf(primitiveBounds, 6 * capacity);
+			int oldLength = leaves.length;
+			leaves = Arrays.copyOf(leaves, capacity);
+			Arrays.fill(leaves, oldLength, capacity, -1);
+		}
+		System.arraycopy(box, 0, primitiveBounds, 6 * index, 6);
+		if (nodeCount == 0) {
+			leaves[index] = 0;
+			rebuild();
+			return;
+		}
+
+		int node = 0;
+		while (nodeData[2 * node + 1] < 0) {
+			int right = nodeData[2 * node];
+			node = areaGrowth(node + 1, box) <= areaGrowth(right, box) ? node + 1 : right;
+		}
+
+		// The primitives of the leaf are moved to the end of the used slots, unless
+		// they are already there, so there is a free slot after them
+		int first = nodeData[2 * node], count = nodeData[2 * node + 1];
+		if (first + count != primitiveEnd) {
+			reservePrimitives(count + 1);
+			System.arraycopy(primitives, first, primitives, primitiveEnd, count);
+			first = primitiveEnd;
+			primitiveEnd += count;
+			nodeData[2 * node] = first;
+		} else
+			reservePrimitives(1);
+		primitives[primitiveEnd++] = index;
+		nodeData[2 * node + 1] = count + 1;
+		leaves[index] = node;
+		refit(node, 1);
+	}
+
+	/**
+	 * Removes a primitive from the tree. The tree must not be traversed during the
+	 * update.
+	 *
+	 * @param index the index of the primitive
+	 */
+	protected final void removePrimitive(int index) {
+		prepareUpdates();
+		int leaf = leaves[index];
+		if (leaf < 0)
+			return;
+		int first = nodeData[2 * leaf], last = first + nodeData[2 * leaf + 1] - 1;
+		for (int i = first; i <= last; ++i)
+			if (primitives[i] == index) {
+				primitives[i] = primitives[last];
+				break;
+			}
+		--nodeData[2 * leaf + 1];
+		leaves[index] = -1;
+		refit(leaf, -1);
+	}
+
+	/**
+	 * Creates the bookkeeping of the updates, unless it already exists
+	 */
+	private void prepareUpdates() {
+		if (parents != null)
+			return;
+		int capacity = nodeData.length / 2;
+		parents = new int[capacity];
+		sizes = new int[capacity];
+		builtCosts = new double[capacity];
+		leaves = new int[primitiveBounds.length / 6];
+		Arrays.fill(leaves, -1);
+		if (nodeCount > 0)
+			indexSubtree(0, -1);
+	}
+
+	/**
+	 * Fills the bookkeeping of the updates for a subtree which has just been
+	 * built
+	 *
+	 * @param node   the root of the subtree
+	 * @param parent the parent of the subtree's root
+	 * @return the amount of the primitives in the subtree
+	 */
+	private int indexSubtree(int node, int parent) {
+		parents[node] = parent;
+		int count = nodeData[2 * node + 1];
+		int size;
+		if (count < 0)
+			size = indexSubtree(node + 1, node) + indexSubtree(nodeData[2 * node], node);
+		else {
+			size = count;
+			int first = nodeData[2 * node];
+			for (int i = first; i < first + count; ++i)
+				leaves[primitives[i]] = node;
+		}
+		sizes[node] = size;
+		builtCosts[node] = cost(node);
+		return size;
+	}
+
+	/**
+	 * Calculates the SAH cost of a node - its surface area times its amount of
+	 * primitives
+	 *
+	 * @param node the index of the node
+	 * @return the cost
+	 */
+	private double cost(int node) {
+		int offset = 6 * node;
+		return sizes[node] == 0 ? 0
+				: sizes[node] * BoundingBox.surfaceArea(nodeBounds[offset + 3] - nodeBounds[offset],
+						nodeBounds[offset + 4] - nodeBounds[offset + 1], nodeBounds[offset + 5] - nodeBounds[offset + 2]);
+	}
+
+	/**
+	 * Checks whether a node's box overlaps a box
+	 *
+	 * @param node the index of the node
+	 * @param box  the box coordinates
+	 * @return true if the boxes overlap (or touch)
+	 */
+	private boolean overlaps(int node, double[] box) {
+		int offset = 6 * node;
+		for (int axis = 0; axis < 3; ++axis)
+			if (box[axis] > nodeBounds[offset + 3 + axis] || box[axis + 3] < nodeBounds[offset + axis])
+				return false;
+		return true;
+	}
+
+	/**
+	 * Calculates how much the surface area of a node's box grows by adding a box
+	 * to it
+	 *
+	 * @param node the index of the node
+	 * @param box  the added box
+	 * @return the growth of the area
+	 */
+	private double areaGrowth(int node, double[] box) {
+		int offset = 6 * node;
+		double dx = nodeBounds[offset + 3] - nodeBounds[offset], dy = nodeBounds[offset + 4] - nodeBounds[offset + 1],
+				dz = nodeBounds[offset + 5] - nodeBounds[offset + 2];
+		double area = sizes[node] == 0 ? 0 : BoundingBox.surfaceArea(dx, dy, dz);
+		double[] union = Arrays.copyOfRange(nodeBounds, offset, offset + 6);
+		if (sizes[node] == 0)
+			System.arraycopy(box, 0, union, 0, 6);
+		else
+			HierarchyBuilder.expand(union, 0, box, 0);
+		return BoundingBox.surfaceArea(union[3] - union[0], union[4] - union[1], union[5] - union[2]) - area;
+	}
+
+	/**
+	 * Refits the boxes of a leaf and its ancestors bottom up and builds again the
+	 * highest of them whose cost has grown too much
+	 *
+	 * @param leaf       the index of the changed leaf
+	 * @param sizeChange the change of the amount of the leaf's primitives
+	 */
+	private void refit(int leaf, int sizeChange) {
+		int degraded = -1;
+		for (int node = leaf; node >= 0; node = parents[node]) {
+			sizes[node] += sizeChange;
+			double[] box;
+			if (node == leaf)
+				box = leafBounds(node);
+			else {
+				box = Arrays.copyOfRange(nodeBounds, 6 * (node + 1), 6 * (node + 1) + 6);
+				HierarchyBuilder.expand(box, 0, nodeBounds, 6 * nodeData[2 * node]);
+			}
+			System.arraycopy(box, 0, nodeBounds, 6 * node, 6);
+			if (cost(node) > DEGRADATION * builtCosts[node])
+				degraded = node;
+		}
+		resetBoundingBox();
+		if (degraded >= 0)
+			rebuildSubtree(degraded);
+		else if (primitiveEnd > 2 * Math.max(sizes[0], MIN_GARBAGE))
+			rebuild();
+	}
+
+	/**
+	 * Calculates the box of a leaf by its primitives
+	 *
+	 * @param leaf the index of the leaf
+	 * @return the box coordinates (an empty box for a leaf without primitives)
+	 */
+	private double[] leafBounds(int leaf) {
+		double[] box = HierarchyBuilder.emptyBounds();
+		int first = nodeData[2 * leaf];
+		for (int i = first; i < first + nodeData[2 * leaf + 1]; ++i)
+			HierarchyBuilder.expand(box, 0, primitiveBounds, 6 * primitives[i]);
+		return box;
+	}
+
+	/**
+	 * Finds the end of the nodes reserved for a subtree - the nodes which may be
+	 * used by a new subtree in its place. A left child's subtree ends at its
+	 * sibling, a right child's subtree ends where its parent's subtree ends.
+	 *
+	 * @param node the root of the subtree
+	 * @return the end (excluded) of the subtree's nodes
+	 */
+	private int subtreeEnd(int node) {
+		int parent = parents[node];
+		if (parent < 0)
+			return parents.length;
+		return node == parent + 1 ? nodeData[2 * parent] : subtreeEnd(parent);
+	}
+
+	/**
+	 * Builds again a subtree in place of its nodes. If the subtree's nodes can't
+	 * hold a tree over its primitives (e.g. after insertions), the subtree of its
+	 * closest ancestor which can is built instead. If the new tree still needs
+	 * more nodes than there are, its deepest subtrees are collapsed into leaves.
+	 * The primitives of the new subtree are stored after the used slots.
+	 *
+	 * @param node the root of the subtree
+	 */
+	private void rebuildSubtree(int node) {
+		while (node != 0 && subtreeEnd(node) - node < 2 * ((sizes[node] - 1) / HierarchyBuilder.MAX_LEAF_SIZE) + 1)
+			node = parents[node];
+		if (node == 0) {
+			rebuild();
+			return;
+		}
+
+		int count = sizes[node];
+		int[] indices = collectPrimitives(node, count);
+		double[] bounds = new double[6 * count];
+		for (int i = 0; i < count; ++i)
+			System.arraycopy(primitiveBounds, 6 * indices[i], bounds, 6 * i, 6);
+		HierarchyBuilder builder = newBuilder(bounds, count, buildMethod);
+
+		reservePrimitives(count);
+		for (int i = 0; i < count; ++i)
+			primitives[primitiveEnd + i] = indices[builder.primitives[i]];
+		int[] subtreeSizes = new int[builder.nodeCount];
+		for (int i = builder.nodeCount - 1; i >= 0; --i)
+			subtreeSizes[i] = builder.nodeData[2 * i + 1] >= 0 ? 1
+					: 1 + subtreeSizes[i + 1] + subtreeSizes[builder.nodeData[2 * i]];
+		placeSubtree(builder, subtreeSizes, 0, node, subtreeEnd(node));
+		primitiveEnd += count;
+		indexSubtree(node, parents[node]);
+
+		// The new subtree may be deeper than the old one
+		int depth = 0;
+		for (int parent = parents[node]; parent >= 0; parent = parents[parent])
+			++depth;
+		stackSize = Math.max(stackSize, depth + height(node) + 2);
+	}
+
+	/**
+	 * Copies a subtree of a new tree into the nodes of the tree. If there are
+	 * too few nodes, the nodes are shared by the children by their sizes, and a
+	 * subtree which gets less than 3 nodes becomes a single leaf.
+	 *
+	 * @param builder      the builder of the new tree, its primitives are copied
+	 *                     after the used slots
+	 * @param subtreeSizes the amounts of the nodes of the new tree's subtrees
+	 * @param source       the root of the subtree in the new tree
+	 * @param target       the node to copy the subtree's root into
+	 * @param end          the end (excluded) of the nodes for the subtree
+	 */
+	private void placeSubtree(HierarchyBuilder builder, int[] subtreeSizes, int source, int target, int end) {
+		int[] data = builder.nodeData;
+		System.arraycopy(builder.nodeBounds, 6 * source, nodeBounds, 6 * target, 6);
+		if (data[2 * source + 1] >= 0) {
+			nodeData[2 * target] = data[2 * source] + primitiveEnd;
+			nodeData[2 * target + 1] = data[2 * source + 1];
+			return;
+		}
+
+		int available = end - target - 1;
+		if (subtreeSizes[source] - 1 > available && available < 2) {
+			// The leaves of a subtree are consecutive - from its leftmost leaf to its
+			// rightmost leaf
+			int first = source, last = source;
+			while (data[2 * first + 1] < 0)
+				++first;
+			while (data[2 * last + 1] < 0)
+				last = data[2 * last];
+			nodeData[2 * target] = data[2 * first] + primitiveEnd;
+			nodeData[2 * target + 1] = data[2 * last] + data[2 * last + 1] - data[2 * first];
+			return;
+		}
+
+		int left = source + 1, right = data[2 * source];
+		int leftSize = subtreeSizes[left], rightSize = subtreeSizes[right];
+		int leftNodes = leftSize + rightSize <= available ? leftSize
+				: Math.max(1, Math.min(available - 1, (int) ((long) available * leftSize / (leftSize + rightSize))));
+		placeSubtree(builder, subtreeSizes, left, target + 1, target + 1 + leftNodes);
+		placeSubtree(builder, subtreeSizes, right, target + 1 + leftNodes, end);
+		nodeData[2 * target] = target + 1 + leftNodes;
+		nodeData[2 * target + 1] = data[2 * source + 1];
+	}
+
+	/**
+	 * Calculates the height of a subtree
+	 *
+	 * @param node the root of the subtree
+	 * @return the amount of the levels below the root
+	 */
+	private int height(int node) {
+		return nodeData[2 * node + 1] >= 0 ? 0 : 1 + Math.max(height(node + 1), height(nodeData[2 * node]));
+	}
+
+	/**
+	 * Builds again the whole tree over the primitives in it
+	 */
+	private void rebuild() {
+		int count = 0;
+		for (int leaf : leaves)
+			if (leaf >= 0)
+				++count;
+		int[] indices = new int[count];
+		for (int index = 0, i = 0; index < leaves.length; ++index)
+			if (leaves[index] >= 0)
+				indices[i++] = index;
+
+		double[] bounds = new double[6 * count];
+		for (int i = 0; i < count; ++i)
+			System.arraycopy(primitiveBounds, 6 * indices[i], bounds, 6 * i, 6);
+		HierarchyBuilder builder = newBuilder(bounds, count, buildMethod);
+		nodeBounds = builder.nodeBounds;
+		nodeData = builder.nodeData;
+		nodeCount = builder.nodeCount;
+		primitives = new int[count];
+		for (int i = 0; i < count; ++i)
+			primitives[i] = indices[builder.primitives[i]];
+		primitiveEnd = count;
+
+		stackSize = MAX_DEPTH + 2;
+		parents = null;
+		prepareUpdates();
+		resetBoundingBox();
+	}
+
+	/**
+	 * Collects the primitives of a subtree
+	 *
+	 * @param node  the root of the subtree
+	 * @param count the amount of the subtree's primitives
+	 * @return the indices of the primitives
+	 */
+	private int[] collectPrimitives(int node, int count) {
+		int[] result = new int[count];
+		int found = 0;
+		TraversalBuffers buffers = TraversalBuffers.acquire();
+		try {
+			int[] stack = buffers.stack(stackSize);
+			int top = 0;
+			stack[top++] = node;
+			while (top > 0) {
+				node = stack[--top];
+				int nodeSize = nodeData[2 * node + 1];
+				if (nodeSize < 0) {
+					stack[top++] = nodeData[2 * node];
+					stack[top++] = node + 1;
+				} else {
+					System.arraycopy(primitives, nodeData[2 * node], result, found, nodeSize);
+					found += nodeSize;
+				}
+			}
+		} finally {
+			buffers.release();
+		}
+		return result;
+	}
+
+	/**
+	 * Makes sure there are free slots after the used slots of the primitives
+	 *
+	 * @param count the amount of the needed slots
+	 */
+	private void reservePrimitives(int count) {
+		if (primitiveEnd + count > primitives.length)
+			primitives = Arrays.copyOf(primitives, Math.max(primitiveEnd + count, 2 * primitives.length));
+	}
+
+	/**
+	 * Finds the intersections of the ray with a single primitive
+	 *
+	 * @param index the index of the primitive
+	 * @param ray   the ray to intersect with the primitive
+	 * @return a list of GeoPoint or null if there are no intersections
+	 */
+	protected abstract List<GeoPoint> intersectPrimitive(int index, Ray ray);
+
+	/**
+	 * Updates the hit record by the closest intersection of the ray with a single
+	 * primitive, if it is closer to the ray's head than the record's distance
+	 *
+	 * @param index the index of the primitive
+	 * @param ray   the ray to intersect with the primitive
+	 * @param hit   the hit record
+	 * @return true if the record was updated
+	 */
+	protected abstract boolean findClosestPrimitiveHit(int index, Ray ray, GeoPoint hit);
+
+	/**
+	 * Updates the hit records of a packet of rays by the closest intersections of
+	 * the rays with a single primitive. The default implementation intersects the
+	 * rays one by one, see {@link #findClosestPrimitiveHit(int, Ray, GeoPoint)}.
+	 *
+	 * @param index the index of the primitive
+	 * @param rays  the rays of the packet
+	 * @param hits  the hit records of the rays
+	 * @param mask  the mask of the rays to intersect
+	 * @return the mask of the rays whose records were updated
+	 */
+	protected int findClosestPrimitiveHits(int index, Ray[] rays, GeoPoint[] hits, int mask) {
+		int found = 0;
+		for (int m = mask; m != 0; m &= m - 1) {
+			int i = Integer.numberOfTrailingZeros(m);
+			if (findClosestPrimitiveHit(index, rays[i], hits[i]))
+				found |= 1 << i;
+		}
+		return found;
+	}
+
+	/**
+	 * Finds how much light passes through a single primitive along the ray, up to
+	 * the given distance
+	 *
+	 * @param index           the index of the primitive
+	 * @param ray             the ray to check
+	 * @param maxDistance     the distance from the ray's head, intersections at
+	 *                        this distance or farther are ignored
+	 * @param minTransparency the threshold of the transparency, below which the
+	 *                        ray is blocked
+	 * @return the transparency of the primitive along the ray
+	 */
+	protected abstract Double3 findPrimitiveTransparency(int index, Ray ray, double maxDistance,
+			double minTransparency);
+
+	/**
+	 * Checks whether the ray hits the box of a node before a given distance
+	 *
+	 * @param node        the index of the node
+	 * @param x           x coordinate of the ray head
+	 * @param y           y coordinate of the ray head
+	 * @param z           z coordinate of the ray head
+	 * @param invX        inverse of the x component of the ray direction
+	 * @param invY        inverse of the y component of the ray direction
+	 * @param invZ        inverse of the z component of the ray direction
+	 * @param maxDistance the maximal distance along the ray
+	 * @return true if the ray hits the node's box
+	 */
+	private boolean intersectsNode(int node, double x, double y, double z, double invX, double invY, double invZ,
+			double maxDistance) {
+		int offset = 6 * node;
+		return BoundingBox.intersects(nodeBounds[offset], nodeBounds[offset + 1], nodeBounds[offset + 2],
+				nodeBounds[offset + 3], nodeBounds[offset + 4], nodeBounds[offset + 5], //
+				x, y, z, invX, invY, invZ, maxDistance);
+	}
+
+	@Override
+	protected List<GeoPoint> findGeoIntersectionsHelper(Ray ray) {
+		if (nodeCount == 0)
+			return null;
+
+		Point head = ray.getHead();
+		Vector v = ray.getDirection();
+		double x = head.getX(), y = head.getY(), z = head.getZ();
+		double invX = 1 / v.getX(), invY = 1 / v.getY(), invZ = 1 / v.getZ();
+
+		List<GeoPoint> intersections = null;
+		TraversalBuffers buffers = TraversalBuffers.acquire();
+		try {
+			int[] stack = buffers.stack(stackSize);
+			int top = 0;
+			stack[top++] = 0;
+			while (top > 0) {
+				int node = stack[--top];
+				if (!intersectsNode(node, x, y, z, invX, invY, invZ, Double.POSITIVE_INFINITY))
+					continue;
+
+				int count = nodeData[2 * node + 1];
+				if (count < 0) { // inner node
+					stack[top++] = nodeData[2 * node];
+					stack[top++] = node + 1;
+					continue;
+				}
+
+				int first = nodeData[2 * node];
+				for (int i = first; i < first + count; ++i) {
+					var tempIntersections = intersectPrimitive(primitives[i], ray);
+					if (tempIntersections != null) {
+						if (intersections == null)
+							intersections = new LinkedList<>(tempIntersections);
+						else
+							intersections.addAll(tempIntersections);
+					}
+				}
+			}
+		} finally {
+			buffers.release();
+		}
+		return intersections;
+	}
+
+	/**
+	 * Finds the closest intersection of the ray with the primitives. The nodes are
+	 * visited front to back - the child on the ray's side of the split first - and
+	 * the record's distance shrinks with each found intersection, so farther nodes
+	 * are culled by their boxes.
+	 */
+	@Override
+	protected boolean findClosestHitHelper(Ray ray, GeoPoint hit) {
+		if (nodeCount == 0)
+			return false;
+		TraversalBuffers buffers = TraversalBuffers.acquire();
+		try {
+			return findClosestHit(0, ray, hit, buffers.stack(stackSize), 0);
+		} finally {
+			buffers.release();
+		}
+	}
+
+	/**
+	 * Finds the closest intersection of the ray with the primitives of a subtree,
+	 * see {@link #findClosestHitHelper(Ray, GeoPoint)}. The traversal uses the
+	 * part of the given stack above the given bottom, so a traversal of the
+	 * whole tree can search a subtree by a single ray over the rest of its own
+	 * stack.
+	 *
+	 * @param root   the root node of the subtree
+	 * @param ray    the ray
+	 * @param hit    the hit record
+	 * @param stack  the stack of the nodes, of the size of the tree's stack
+	 * @param bottom the bottom of the part of the stack to use
+	 * @return true if the record was updated
+	 */
+	private boolean findClosestHit(int root, Ray ray, GeoPoint hit, int[] stack, int bottom) {
+		Point head = ray.getHead();
+		Vector v = ray.getDirection();
+		double x = head.getX(), y = head.getY(), z = head.getZ();
+		double invX = 1 / v.getX(), invY = 1 / v.getY(), invZ = 1 / v.getZ();
+
+		boolean found = false;
+		int top = bottom;
+		stack[top++] = root;
+		while (top > bottom) {
+			int node = stack[--top];
+			if (!intersectsNode(node, x, y, z, invX, invY, invZ, hit.t))
+				continue;
+
+			int count = nodeData[2 * node + 1];
+			if (count < 0) { // inner node - push the far child first
+				int axis = -count - 1;
+				boolean backwards = (axis == 0 ? invX : axis == 1 ? invY : invZ) < 0;
+				stack[top++] = backwards ? node + 1 : nodeData[2 * node];
+				stack[top++] = backwards ? nodeData[2 * node] : node + 1;
+				continue;
+			}
+
+			int first = nodeData[2 * node];
+			for (int i = first; i < first + count; ++i)
+				if (findClosestPrimitiveHit(primitives[i], ray, hit))
+					found = true;
+		}
+		return found;
+	}
+
+	/**
+	 * Updates the hit records of a packet of rays by the closest intersections
+	 * with the primitives. The packet traverses the tree as a whole - each node is
+	 * fetched once for all its rays, and the rays missing its box (or having a
+	 * closer hit already) are dropped from the packet's mask. The children are
+	 * ordered by the direction of the first ray of the packet. Once the packet has
+	 * diverged to a single ray, the rest of the subtree is traversed by that ray
+	 * alone.
+	 */
+	@Override
+	protected int findClosestHitsHelper(Ray[] rays, GeoPoint[] hits, int mask) {
+		if (nodeCount == 0)
+			return 0;
+
+		TraversalBuffers buffers = TraversalBuffers.acquire();
+		try {
+			return findClosestHits(rays, hits, mask, buffers);
+		} finally {
+			buffers.release();
+		}
+	}
+
+	/**
+	 * Updates the hit records of a packet of rays by the closest intersections
+	 * with the primitives, see {@link #findClosestHitsHelper(Ray[], GeoPoint[], int)}
+	 *
+	 * @param rays    the rays of the packet
+	 * @param hits    the hit records of the rays
+	 * @param mask    the mask of the rays to intersect
+	 * @param buffers the buffers of the traversal
+	 * @return the mask of the rays whose records were updated
+	 */
+	private int findClosestHits(Ray[] rays, GeoPoint[] hits, int mask, TraversalBuffers buffers) {
+		// The head and the inverse direction of each ray
+		double[] origins = buffers.origins(6 * rays.length);
+		for (int m = mask; m != 0; m &= m - 1) {
+			int i = Integer.numberOfTrailingZeros(m);
+			Point head = rays[i].getHead();
+			Vector v = rays[i].getDirection();
+			origins[6 * i] = head.getX();
+			origins[6 * i + 1] = head.getY();
+			origins[6 * i + 2] = head.getZ();
+			origins[6 * i + 3] = 1 / v.getX();
+			origins[6 * i + 4] = 1 / v.getY();
+			origins[6 * i + 5] = 1 / v.getZ();
+		}
+
+		int found = 0;
+		int[] stack = buffers.stack(stackSize);
+		int[] masks = buffers.masks(stackSize);
+		int top = 0;
+		stack[top] = 0;
+		masks[top++] = mask;
+		while (top > 0) {
+			int node = stack[--top];
+			int active = masks[top];
+			for (int m = active; m != 0; m &= m - 1) {
+				int i = Integer.numberOfTrailingZeros(m);
+				if (!intersectsNode(node, origins[6 * i], origins[6 * i + 1], origins[6 * i + 2], origins[6 * i + 3],
+						origins[6 * i + 4], origins[6 * i + 5], hits[i].t))
+					active &= ~(1 << i);
+			}
+			if (active == 0)
+				continue;
+			if (Integer.bitCount(active) == 1) { // diverged
+				int i = Integer.numberOfTrailingZeros(active);
+				if (findClosestHit(node, rays[i], hits[i], stack, top))
+					found |= active;
+				continue;
+			}
+
+			int count = nodeData[2 * node + 1];
+			if (count < 0) { // inner node - push the far child first
+				int axis = -count - 1;
+				boolean backwards = origins[6 * Integer.numberOfTrailingZeros(active) + 3 + axis] < 0;
+				stack[top] = backwards ? node + 1 : nodeData[2 * node];
+				masks[top++] = active;
+				stack[top] = backwards ? nodeData[2 * node] : node + 1;
+				masks[top++] = active;
+				continue;
+			}
+
+			int first = nodeData[2 * node];
+			for (int i = first; i < first + count; ++i)
+				found |= findClosestPrimitiveHits(primitives[i], rays, hits, active);
+		}
+		return found;
+	}
+
+	/**
+	 * Finds how much light passes through the primitives along the ray. The
+	 * traversal stops as soon as the ray is blocked by the primitives.
+	 */
+	@Override
+	protected Double3 findTransparencyHelper(Ray ray, double maxDistance, double minTransparency) {
+		if (nodeCount == 0)
+			return Double3.ONE;
+
+		Point head = ray.getHead();
+		Vector v = ray.getDirection();
+		double x = head.getX(), y = head.getY(), z = head.getZ();
+		double invX = 1 / v.getX(), invY = 1 / v.getY(), invZ = 1 / v.getZ();
+
+		Double3 ktr = Double3.ONE;
+		TraversalBuffers buffers = TraversalBuffers.acquire();
+		try {
+			int[] stack = buffers.stack(stackSize);
+			int top = 0;
+			stack[top++] = 0;
+			while (top > 0) {
+				int node = stack[--top];
+				if (!intersectsNode(node, x, y, z, invX, invY, invZ, maxDistance))
+					continue;
+
+				int count = nodeData[2 * node + 1];
+				if (count < 0) { // inner node
+					stack[top++] = nodeData[2 * node];
+					stack[top++] = node + 1;
+					continue;
+				}
+
+				int first = nodeData[2 * node];
+				for (int i = first; i < first + count; ++i) {
+					Double3 kT = findPrimitiveTransparency(primitives[i], ray, maxDistance, minTransparency);
+					if (kT != Double3.ONE) {
+						ktr = ktr.product(kT);
+						if (isBlocked(ktr, minTransparency))
+							return Double3.ZERO;
+					}
+				}
+			}
+		} finally {
+			buffers.release();
+		}
+		return ktr;
+	}
+
+	@Override
+	protected BoundingBox calcBoundingBox() {
+		return nodeCount == 0 ? null
+				: new BoundingBox(nodeBounds[0], nodeBounds[1], nodeBounds[2], //
+						nodeBounds[3], nodeBounds[4], nodeBounds[5]);
+	}
+}
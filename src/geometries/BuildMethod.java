@@ -0,0 +1,18 @@
+package geometries;
+
+/**
+ * The methods of building a bounding volume hierarchy - a trade off between
+ * the time of the build and the time of the traversal
+ */
+public enum BuildMethod {
+	/**
+	 * Binned surface area heuristic, see {@link BinnedSahBuilder} - the fastest
+	 * traversal, for static scenes
+	 */
+	BINNED_SAH,
+	/**
+	 * Linear BVH by Morton codes, see {@link LinearBvhBuilder} - the fastest
+	 * build, for scenes which change between frames
+	 */
+	LINEAR
+}
@@ -1,8 +1,7 @@
 package geometries;
 
-import java.util.List;
-
 import primitives.*;
+import static primitives.Util.*;
 
 /**
  * The Cylinder class represents a cylinder shape in 3D space. It extends the
@@ -12,7 +11,6 @@ public class Cylinder extends Tube {
 	/**
 	 * height: The height of the cylinder.
 	 */
-	@SuppressWarnings("unused")
 	private final double height;
 
 	/**
@@ -29,17 +27,110 @@ public class Cylinder extends Tube {
 
 	/**
 	 * Calculates the normal vector to the surface of the cylinder at a given point.
+	 * On the bases the normal is the axis direction (outward of the cylinder), on
+	 * the side it is the normal of the tube.
 	 * 
 	 * @param p the point on the surface of the cylinder
 	 * @return the normal vector at the given point
 	 */
 	@Override
 	public Vector getNormal(Point p) {
-		return null;
+		Vector axis = ray.getDirection();
+		double s = VectorMath.dotDifference(axis, p, ray.getHead());
+		if (isZero(s))
+			return axis.scale(-1);
+		if (isZero(s - height))
+			return axis;
+		return super.getNormal(p);
+	}
+
+	@Override
+	protected BoundingBox calcBoundingBox() {
+		// The box of a cap disk is its center extended along each axis by
+		// radius * sin(angle between the axis and the cylinder's direction)
+		Vector v = ray.getDirection();
+		double ex = radius * Math.sqrt(Math.max(0, 1 - v.getX() * v.getX()));
+		double ey = radius * Math.sqrt(Math.max(0, 1 - v.getY() * v.getY()));
+		double ez = radius * Math.sqrt(Math.max(0, 1 - v.getZ() * v.getZ()));
+		Point bottom = ray.getHead();
+		Point top = ray.getPoint(height);
+		return new BoundingBox(Math.min(bottom.getX(), top.getX()) - ex, Math.min(bottom.getY(), top.getY()) - ey,
+				Math.min(bottom.getZ(), top.getZ()) - ez, Math.max(bottom.getX(), top.getX()) + ex,
+				Math.max(bottom.getY(), top.getY()) + ey, Math.max(bottom.getZ(), top.getZ()) + ez);
 	}
 
+	/**
+	 * Calculates the distances from the ray's head to the intersection points of
+	 * the ray with the cylinder - the intersections with the tube between the
+	 * bases (see {@link Tube#findDistances}) and with the base disks. The edges
+	 * of the bases aren't intersected.
+	 *
+	 * @param ray       the ray
+	 * @param distances array to fill by the distances in ascending order - at
+	 *                  least 2 places
+	 * @return the amount of the intersections (0, 1 or 2)
+	 */
 	@Override
-	protected List<GeoPoint> findGeoIntersectionsHelper(Ray ray) {
-		return null;// bonus
+	protected int findDistances(Ray ray, double[] distances) {
+		Quadratic quadratic = quadratic(ray);
+		double vAxis = quadratic.vAxis, wAxis = quadratic.wAxis;
+
+		int count = 0;
+		// The side - the tube's intersections between the bases
+		if (quadratic.hasRoots()) {
+			count = addSideDistance(quadratic.t1, wAxis, vAxis, distances, count);
+			count = addSideDistance(quadratic.t2, wAxis, vAxis, distances, count);
+		}
+		// The bases - the intersections with their planes inside the radius
+		if (!isZero(vAxis)) {
+			count = addBaseDistance(-wAxis / vAxis, quadratic, distances, count);
+			count = addBaseDistance((height - wAxis) / vAxis, quadratic, distances, count);
+		}
+
+		if (count == 2 && distances[0] > distances[1]) {
+			double t = distances[0];
+			distances[0] = distances[1];
+			distances[1] = t;
+		}
+		return count;
+	}
+
+	/**
+	 * Adds a distance of an intersection with the tube if it is in front of the
+	 * ray's head and between the bases
+	 *
+	 * @param t         the distance
+	 * @param wAxis     the axial coordinate of the ray's head
+	 * @param vAxis     the axial component of the ray's direction
+	 * @param distances the distances found so far
+	 * @param count     the amount of the distances found so far
+	 * @return the new amount of the distances
+	 */
+	private int addSideDistance(double t, double wAxis, double vAxis, double[] distances, int count) {
+		if (count == 2 || alignZero(t) <= 0)
+			return count;
+		double s = wAxis + t * vAxis;
+		if (alignZero(s) <= 0 || alignZero(s - height) >= 0)
+			return count;
+		distances[count] = t;
+		return count + 1;
+	}
+
+	/**
+	 * Adds a distance of an intersection with a base plane if it is in front of
+	 * the ray's head and inside the base disk
+	 *
+	 * @param t         the distance
+	 * @param quadratic the coefficients of the squared distance from the axis
+	 * @param distances the distances found so far
+	 * @param count     the amount of the distances found so far
+	 * @return the new amount of the distances
+	 */
+	private static int addBaseDistance(double t, Quadratic quadratic, double[] distances, int count) {
+		if (count == 2 || alignZero(t) <= 0
+				|| alignZero((quadratic.a * t + 2 * quadratic.b) * t + quadratic.c) >= 0)
+			return count;
+		distances[count] = t;
+		return count + 1;
 	}
 }
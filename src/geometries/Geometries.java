@@ -1,13 +1,24 @@
 package geometries;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 
 import primitives.*;
 
 /**
  * A class for a collection of geometric bodies
+ * <br/>
+ * The bounded geometries are arranged in a bounding volume hierarchy. When
+ * geometries are added, removed or moved (see {@link #update}) after the
+ * hierarchy has been built, it is updated incrementally instead of being built
+ * again, so small changes between the frames of an animation or an
+ * interactive preview are cheap. The collection must not be changed while it
+ * is being rendered.
  */
 public class Geometries extends Intersectable {
 	/**
@@ -15,6 +26,31 @@ public class Geometries extends Intersectable {
 	 */
 	private final List<Intersectable> geometries = new LinkedList<>();
 
+	/**
+	 * Minimal amount of bounded geometries for arranging them in a bounding volume
+	 * hierarchy
+	 */
+	private static final int MIN_HIERARCHY_SIZE = 3;
+
+	/**
+	 * The geometries as they are arranged for the intersection queries - a
+	 * bounding volume hierarchy of the bounded geometries followed by the unbounded
+	 * ones. It is built lazily on the first query after the collection has changed.
+	 */
+	private volatile Intersectable[] arranged = null;
+
+	/** The method of building the bounding volume hierarchy */
+	private BuildMethod buildMethod = BuildMethod.BINNED_SAH;
+
+	/** The cache of built hierarchies, see {@link #build(HierarchyCache)} */
+	private HierarchyCache cache = null;
+
+	/**
+	 * Whether the hierarchies nested in the geometries have been built by
+	 * {@link #build(HierarchyCache)} since the geometries were added
+	 */
+	private boolean prepared = false;
+
 	/**
 	 * Default constructor
 	 */
@@ -36,7 +72,225 @@ public class Geometries extends Intersectable {
 	 * @param geometries- the list of geometries
 	 */
 	public void add(Intersectable... geometries) {
-		Collections.addAll(this.geometries, geometries);
+		synchronized (this.geometries) {
+			Collections.addAll(this.geometries, geometries);
+			prepared = false;
+			Intersectable[] current = arranged;
+			if (current != null)
+				arranged = insertArranged(current, geometries);
+			resetBoundingBox();
+		}
+	}
+
+	/**
+	 * Removes geometries from the collection
+	 *
+	 * @param geometries the geometries to remove
+	 */
+	public void remove(Intersectable... geometries) {
+		synchronized (this.geometries) {
+			for (Intersectable geometry : geometries)
+				this.geometries.removeIf(g -> g == geometry);
+			Intersectable[] current = arranged;
+			if (current != null)
+				arranged = removeArranged(current, geometries);
+			resetBoundingBox();
+		}
+	}
+
+	/**
+	 * Updates the collection after geometries in it have moved or changed their
+	 * shape (e.g. an {@link Instance} has got a new transform). The boxes of the
+	 * hierarchy are refitted, and only the parts of the hierarchy which have
+	 * degraded too much are built again. A geometry nested in another collection
+	 * is updated by updating its collection, and then updating the collection
+	 * itself in its containing collection.
+	 *
+	 * @param geometries the changed geometries
+	 */
+	public void update(Intersectable... geometries) {
+		synchronized (this.geometries) {
+			Intersectable[] current = arranged;
+			Hierarchy hierarchy = current == null ? null : hierarchyOf(current);
+			if (hierarchy != null)
+				for (Intersectable geometry : geometries)
+					if (!hierarchy.move(geometry)) {
+						arranged = null; // the geometry has become unbounded
+						break;
+					}
+			resetBoundingBox();
+		}
+	}
+
+	/**
+	 * Finds the hierarchy of the arranged geometries
+	 *
+	 * @param arranged the arranged geometries
+	 * @return the hierarchy, or null if the geometries are too few for it
+	 */
+	private static Hierarchy hierarchyOf(Intersectable[] arranged) {
+		return arranged.length > 0 && arranged[0] instanceof Hierarchy hierarchy ? hierarchy : null;
+	}
+
+	/**
+	 * Adds geometries to the arranged geometries - the bounded ones into the
+	 * hierarchy, and the unbounded ones after it
+	 *
+	 * @param arranged   the arranged geometries
+	 * @param geometries the added geometries
+	 * @return the new arranged geometries, or null if they must be arranged again
+	 */
+	private static Intersectable[] insertArranged(Intersectable[] arranged, Intersectable[] geometries) {
+		Hierarchy hierarchy = hierarchyOf(arranged);
+		List<Intersectable> unbounded = new ArrayList<>();
+		for (Intersectable geometry : geometries)
+			if (geometry.getBoundingBox() == null)
+				unbounded.add(geometry);
+			else if (hierarchy != null)
+				hierarchy.insert(geometry);
+			else
+				return null; // too few bounded geometries had no hierarchy
+		if (unbounded.isEmpty())
+			return arranged;
+		Intersectable[] result = Arrays.copyOf(arranged, arranged.length + unbounded.size());
+		for (int i = 0; i < unbounded.size(); ++i)
+			result[arranged.length + i] = unbounded.get(i);
+		return result;
+	}
+
+	/**
+	 * Removes geometries from the arranged geometries
+	 *
+	 * @param arranged   the arranged geometries
+	 * @param geometries the removed geometries
+	 * @return the new arranged geometries, or null if they must be arranged again
+	 */
+	private static Intersectable[] removeArranged(Intersectable[] arranged, Intersectable[] geometries) {
+		Hierarchy hierarchy = hierarchyOf(arranged);
+		List<Intersectable> result = new ArrayList<>(Arrays.asList(arranged));
+		for (Intersectable geometry : geometries)
+			if (hierarchy == null || !hierarchy.remove(geometry))
+				result.removeIf(g -> g == geometry);
+		if (hierarchy != null && hierarchy.size() < MIN_HIERARCHY_SIZE)
+			return null;
+		return result.size() == arranged.length ? arranged : result.toArray(new Intersectable[result.size()]);
+	}
+
+	/**
+	 * Sets the method of building the hierarchy of the geometries and of the
+	 * nested collections. The hierarchy is rebuilt on the next query if the
+	 * method has changed.
+	 *
+	 * @param method the method of the build
+	 * @return the geometries collection itself
+	 */
+	public Geometries setBuildMethod(BuildMethod method) {
+		synchronized (geometries) {
+			if (buildMethod != method) {
+				buildMethod = method;
+				arranged = null;
+			}
+			for (Intersectable geometry : geometries)
+				if (geometry instanceof Geometries nested)
+					nested.setBuildMethod(method);
+		}
+		return this;
+	}
+
+	/**
+	 * Builds the hierarchy of the geometries (and of the nested collections) now,
+	 * instead of on the first intersection query after the collection has
+	 * changed - e.g. for measuring the build separately from the rendering
+	 *
+	 * @return the geometries collection itself
+	 */
+	public Geometries build() {
+		return build(null);
+	}
+
+	/**
+	 * Builds the hierarchy of the geometries and the hierarchies nested in them
+	 * (of the nested collections, the meshes and the shared geometries of the
+	 * instances) now, see {@link #build()}. The hierarchies are loaded from the
+	 * cache when it holds them, and the built ones are stored in it, so the next
+	 * runs over the same geometries skip their builds. The cache is also used by
+	 * the later builds of the collection's own hierarchy.
+	 *
+	 * @param cache the cache of built hierarchies, may be null
+	 * @return the geometries collection itself
+	 */
+	public Geometries build(HierarchyCache cache) {
+		synchronized (geometries) {
+			if (this.cache != cache) {
+				this.cache = cache;
+				prepared = false;
+			}
+			if (!prepared) {
+				for (Intersectable geometry : geometries)
+					geometry.prepare(cache);
+				prepared = true;
+			}
+			arranged();
+		}
+		return this;
+	}
+
+	@Override
+	void prepare(HierarchyCache cache) {
+		build(cache);
+	}
+
+	/**
+	 * Returns the geometries arranged for the intersection queries, arranging
+	 * them if the collection has changed since the last query
+	 *
+	 * @return the arranged geometries
+	 */
+	private Intersectable[] arranged() {
+		Intersectable[] result = arranged;
+		if (result == null) {
+			synchronized (geometries) {
+				result = arranged;
+				if (result == null)
+					arranged = result = arrange();
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Arranges the bounded geometries in a bounding volume hierarchy and appends
+	 * the unbounded ones (which can't be arranged) after it
+	 *
+	 * @return the arranged geometries
+	 */
+	private Intersectable[] arrange() {
+		List<Intersectable> bounded = new ArrayList<>();
+		List<Intersectable> result = new ArrayList<>();
+		for (Intersectable geometry : geometries) {
+			if (geometry.getBoundingBox() == null)
+				result.add(geometry);
+			else
+				bounded.add(geometry);
+		}
+
+		if (bounded.size() < MIN_HIERARCHY_SIZE)
+			result.addAll(0, bounded);
+		else
+			result.add(0, new Hierarchy(bounded, buildMethod, cache));
+		return result.toArray(new Intersectable[result.size()]);
+	}
+
+	@Override
+	protected BoundingBox calcBoundingBox() {
+		BoundingBox box = null;
+		for (Intersectable geometry : arranged()) {
+			BoundingBox geometryBox = geometry.getBoundingBox();
+			if (geometryBox == null)
+				return null;
+			box = box == null ? geometryBox : box.union(geometryBox);
+		}
+		return box;
 	}
 
 	/**
@@ -50,7 +304,7 @@ public class Geometries extends Intersectable {
 	public List<GeoPoint> findGeoIntersectionsHelper(Ray ray) {
 		List<GeoPoint> intersections = null;
 
-		for (Intersectable geometry : geometries) {
+		for (Intersectable geometry : arranged()) {
 			var tempIntersections = geometry.findGeoIntersections(ray);
 
 			if (tempIntersections != null) {
@@ -64,4 +318,208 @@ public class Geometries extends Intersectable {
 		return intersections;
 	}
 
+	/**
+	 * Finds how much light passes through the geometries in the collection along
+	 * the ray. The search stops as soon as the ray is blocked by the geometries.
+	 *
+	 * @param ray             - the ray to check
+	 * @param maxDistance     - the distance from the ray's head, intersections at
+	 *                        this distance or farther are ignored
+	 * @param minTransparency - the threshold of the transparency, below which the
+	 *                        ray is blocked
+	 * @return the product of the transparency coefficients of the intersections
+	 */
+	@Override
+	protected Double3 findTransparencyHelper(Ray ray, double maxDistance, double minTransparency) {
+		Double3 ktr = Double3.ONE;
+		for (Intersectable geometry : arranged()) {
+			Double3 kT = geometry.findTransparency(ray, maxDistance, minTransparency);
+			if (kT != Double3.ONE) {
+				ktr = ktr.product(kT);
+				if (isBlocked(ktr, minTransparency))
+					return Double3.ZERO;
+			}
+		}
+		return ktr;
+	}
+
+	/**
+	 * Updates the hit record by the closest intersection point of the given ray
+	 * with the geometries in the collection. Each geometry is searched only for
+	 * intersections closer than the closest one found so far.
+	 *
+	 * @param ray - the ray to check for intersections
+	 * @param hit - the hit record
+	 * @return true if the record was updated
+	 */
+	@Override
+	protected boolean findClosestHitHelper(Ray ray, GeoPoint hit) {
+		boolean found = false;
+		for (Intersectable geometry : arranged())
+			if (geometry.updateClosestHit(ray, hit))
+				found = true;
+		return found;
+	}
+
+	/**
+	 * Updates the hit records of a packet of rays by the closest intersections
+	 * with the geometries in the collection. The packet is passed to each
+	 * geometry as a whole.
+	 *
+	 * @param rays - the rays of the packet
+	 * @param hits - the hit records of the rays
+	 * @param mask - the mask of the rays to search
+	 * @return the mask of the rays whose records were updated
+	 */
+	@Override
+	protected int findClosestHitsHelper(Ray[] rays, GeoPoint[] hits, int mask) {
+		int found = 0;
+		for (Intersectable geometry : arranged())
+			found |= geometry.updateClosestHits(rays, hits, mask);
+		return found;
+	}
+
+	/**
+	 * Bounding volume hierarchy over the bounded geometries of the collection.
+	 * The geometries keep their indices in the hierarchy while it is updated, a
+	 * removed geometry leaves its index unused.
+	 */
+	private static class Hierarchy extends BoundingVolumeHierarchy {
+		/** The geometries in the hierarchy by their indices */
+		private Intersectable[] geometries;
+		/** Amount of the used indices */
+		private int indexCount;
+		/**
+		 * The indices of the geometries - all of them for a geometry which has been
+		 * added several times
+		 */
+		private final Map<Intersectable, int[]> indices = new IdentityHashMap<>();
+		/** Amount of the geometries in the hierarchy, repeated ones included */
+		private int size = 0;
+
+		/**
+		 * Builds the hierarchy over the given bounded geometries
+		 *
+		 * @param geometries the geometries, all of them must be bounded
+		 * @param method     the method of the build
+		 * @param cache      the cache of built hierarchies, may be null
+		 */
+		Hierarchy(List<Intersectable> geometries, BuildMethod method, HierarchyCache cache) {
+			this.geometries = geometries.toArray(new Intersectable[geometries.size()]);
+			indexCount = this.geometries.length;
+			double[] bounds = new double[6 * indexCount];
+			for (int i = 0; i < indexCount; ++i) {
+				addIndex(this.geometries[i], i);
+				System.arraycopy(boundsOf(this.geometries[i]), 0, bounds, 6 * i, 6);
+			}
+			build(bounds, indexCount, method, cache);
+		}
+
+		/**
+		 * Adds an index of a geometry
+		 *
+		 * @param geometry the geometry
+		 * @param index    its index in the hierarchy
+		 */
+		private void addIndex(Intersectable geometry, int index) {
+			int[] current = indices.get(geometry);
+			int[] result = current == null ? new int[1] : Arrays.copyOf(current, current.length + 1);
+			result[result.length - 1] = index;
+			indices.put(geometry, result);
+			++size;
+		}
+
+		/**
+		 * Returns the coordinates of the box of a bounded geometry
+		 *
+		 * @param geometry the geometry
+		 * @return the box coordinates: minimal corner, maximal corner
+		 */
+		private static double[] boundsOf(Intersectable geometry) {
+			BoundingBox box = geometry.getBoundingBox();
+			return new double[] { box.minX, box.minY, box.minZ, box.maxX, box.maxY, box.maxZ };
+		}
+
+		/**
+		 * Returns the amount of the geometries in the hierarchy
+		 *
+		 * @return the amount of the geometries
+		 */
+		int size() {
+			return size;
+		}
+
+		/**
+		 * Inserts a bounded geometry into the hierarchy
+		 *
+		 * @param geometry the geometry
+		 */
+		void insert(Intersectable geometry) {
+			if (indexCount == geometries.length)
+				geometries = Arrays.copyOf(geometries, Math.max(1, 2 * indexCount));
+			geometries[indexCount] = geometry;
+			addIndex(geometry, indexCount);
+			insertPrimitive(indexCount++, boundsOf(geometry));
+		}
+
+		/**
+		 * Removes a geometry from the hierarchy, all of its occurrences if it has
+		 * been added several times
+		 *
+		 * @param geometry the geometry
+		 * @return false if the geometry isn't in the hierarchy
+		 */
+		boolean remove(Intersectable geometry) {
+			int[] removed = indices.remove(geometry);
+			if (removed == null)
+				return false;
+			for (int index : removed) {
+				removePrimitive(index);
+				geometries[index] = null;
+			}
+			size -= removed.length;
+			return true;
+		}
+
+		/**
+		 * Updates the hierarchy after a geometry has moved. A geometry which isn't in
+		 * the hierarchy is ignored.
+		 *
+		 * @param geometry the geometry
+		 * @return false if the geometry has become unbounded, so it can't stay in the
+		 *         hierarchy
+		 */
+		boolean move(Intersectable geometry) {
+			int[] moved = indices.get(geometry);
+			if (moved == null)
+				return true;
+			if (geometry.getBoundingBox() == null)
+				return false;
+			double[] bounds = boundsOf(geometry);
+			for (int index : moved)
+				movePrimitive(index, bounds);
+			return true;
+		}
+
+		@Override
+		protected List<GeoPoint> intersectPrimitive(int index, Ray ray) {
+			return geometries[index].findGeoIntersections(ray);
+		}
+
+		@Override
+		protected boolean findClosestPrimitiveHit(int index, Ray ray, GeoPoint hit) {
+			return geometries[index].updateClosestHit(ray, hit);
+		}
+
+		@Override
+		protected int findClosestPrimitiveHits(int index, Ray[] rays, GeoPoint[] hits, int mask) {
+			return geometries[index].updateClosestHits(rays, hits, mask);
+		}
+
+		@Override
+		protected Double3 findPrimitiveTransparency(int index, Ray ray, double maxDistance, double minTransparency) {
+			return geometries[index].findTransparency(ray, maxDistance, minTransparency);
+		}
+	}
+
 }
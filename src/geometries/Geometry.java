@@ -1,5 +1,7 @@
 package geometries;
 
+import java.util.List;
+
 import primitives.*;
 
 /**
@@ -16,6 +18,11 @@ public abstract class Geometry extends Intersectable {
 	 */
 	private Material material = new Material();
 
+	/**
+	 * Hit record of each thread for the shadow tests of the opaque geometries
+	 */
+	private static final ThreadLocal<GeoPoint> SHADOW_HIT = ThreadLocal.withInitial(GeoPoint::new);
+
 	/**
 	 * A function that receives a point on the surface of the geometric body and
 	 * returns the normal vector to the body at this point.
@@ -25,6 +32,18 @@ public abstract class Geometry extends Intersectable {
 	 */
 	public abstract Vector getNormal(Point p);
 
+	/**
+	 * Returns the normal vector to the body at an intersection point. A geometry
+	 * made of several primitives may use the intersected primitive of the hit
+	 * instead of looking for it by the point.
+	 *
+	 * @param hit the intersection point on the surface of the Geometry
+	 * @return the normal vector to the body at this point
+	 */
+	public Vector getNormal(GeoPoint hit) {
+		return getNormal(hit.point);
+	}
+
 	/**
 	 * Gets the material of the geometry.
 	 * 
@@ -64,4 +83,27 @@ public abstract class Geometry extends Intersectable {
 		this.emission = emission;
 		return this;
 	}
+
+	/**
+	 * Finds how much light passes through the geometry along the ray. An opaque
+	 * geometry blocks the ray with any intersection, so it is enough to look for
+	 * the closest one. A transparent geometry attenuates the ray by its
+	 * transparency coefficient for each intersection, until it is blocked.
+	 */
+	@Override
+	protected Double3 findTransparencyHelper(Ray ray, double maxDistance, double minTransparency) {
+		if (material.kT.equals(Double3.ZERO))
+			return findClosestHitHelper(ray, SHADOW_HIT.get().reset(maxDistance)) ? Double3.ZERO : Double3.ONE;
+
+		List<GeoPoint> intersections = findGeoIntersectionsHelper(ray);
+		Double3 ktr = Double3.ONE;
+		if (intersections != null)
+			for (GeoPoint intersection : intersections)
+				if (intersection.point.distance(ray.getHead()) < maxDistance) {
+					ktr = ktr.product(material.kT);
+					if (isBlocked(ktr, minTransparency))
+						return Double3.ZERO;
+				}
+		return ktr;
+	}
 }
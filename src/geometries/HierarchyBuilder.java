@@ -0,0 +1,215 @@
+package geometries;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * Base of the builders of the flattened tree of a
+ * {@link BoundingVolumeHierarchy}. It holds the boxes and the centroids of the
+ * primitives in flat arrays and the resulting tree - the primitives ordered by
+ * the leaves and the boxes and the data of the nodes in depth first order.
+ * <br/>
+ * To let the subtrees be built independently (in parallel), each node
+ * reserves in advance the nodes of its whole subtree - a subtree over n
+ * primitives has at most 2n-1 nodes, so the left child of a node is the node
+ * right after it and the right child is after the left subtree's reserved
+ * nodes. The unused reserved nodes are removed by {@link #compact()} at the
+ * end, which leaves the nodes in depth first order.
+ */
+abstract class HierarchyBuilder {
+	/** Maximal amount of primitives in a leaf (except for leaves at the maximal depth) */
+	static final int MAX_LEAF_SIZE = 4;
+	/** Size of the chunks of the primitives which are processed in parallel */
+	static final int CHUNK_SIZE = 1 << 14;
+
+	/** The boxes of the primitives - 6 coordinates per primitive */
+	final double[] bounds;
+	/** The (doubled) centroids of the primitives' boxes - 3 coordinates per primitive */
+	final double[] centroids;
+
+	/** Indices of the primitives ordered by the leaves of the tree */
+	final int[] primitives;
+	/** Boxes of the nodes, see {@link BoundingVolumeHierarchy} */
+	double[] nodeBounds;
+	/** Data of the nodes, see {@link BoundingVolumeHierarchy} */
+	int[] nodeData;
+	/** Amount of the nodes */
+	int nodeCount;
+
+	/**
+	 * Prepares the building of the tree - calculates the centroids of the
+	 * primitives and reserves the nodes
+	 *
+	 * @param bounds the boxes of the primitives - 6 coordinates per primitive:
+	 *               minimal corner, maximal corner
+	 * @param count  the amount of the primitives
+	 */
+	HierarchyBuilder(double[] bounds, int count) {
+		this.bounds = bounds;
+		primitives = new int[count];
+		centroids = new double[3 * count];
+		int capacity = Math.max(1, 2 * count - 1);
+		nodeBounds = new double[6 * capacity];
+		nodeData = new int[2 * capacity];
+		IntStream.range(0, count).parallel().forEach(i -> {
+			primitives[i] = i;
+			for (int axis = 0; axis < 3; ++axis)
+				centroids[3 * i + axis] = bounds[6 * i + axis] + bounds[6 * i + 3 + axis];
+		});
+	}
+
+	/**
+	 * Calculates the box of all the primitives and the box of their centroids,
+	 * by parallel chunks
+	 *
+	 * @return the coordinates of both boxes - 12 coordinates
+	 */
+	final double[] primitivesBounds() {
+		int count = primitives.length;
+		int chunks = (count + CHUNK_SIZE - 1) / CHUNK_SIZE;
+		double[][] chunkBoxes = new double[chunks][];
+		IntStream.range(0, chunks).parallel().forEach(chunk -> {
+			double[] chunkBox = emptyBounds(), chunkCentroidBox = emptyBounds();
+			for (int i = chunk * CHUNK_SIZE; i < Math.min(count, (chunk + 1) * CHUNK_SIZE); ++i) {
+				expand(chunkBox, 0, bounds, 6 * i);
+				expandPoint(chunkCentroidBox, centroids, 3 * i);
+			}
+			chunkBoxes[chunk] = concat(chunkBox, chunkCentroidBox);
+		});
+		double[] box = emptyBounds(), centroidBox = emptyBounds();
+		for (double[] chunkBox : chunkBoxes) {
+			expand(box, 0, chunkBox, 0);
+			expand(centroidBox, 0, chunkBox, 6);
+		}
+		return concat(box, centroidBox);
+	}
+
+	/**
+	 * Stores the data of a leaf node
+	 *
+	 * @param node  the index of the node
+	 * @param start the offset of the first primitive of the leaf
+	 * @param count the amount of the primitives in the leaf
+	 */
+	final void makeLeaf(int node, int start, int count) {
+		nodeData[2 * node] = start;
+		nodeData[2 * node + 1] = count;
+	}
+
+	/**
+	 * Stores the data of an inner node
+	 *
+	 * @param node  the index of the node
+	 * @param right the index of the right child
+	 * @param axis  the axis the node is split by
+	 */
+	final void makeInner(int node, int right, int axis) {
+		nodeData[2 * node] = right;
+		nodeData[2 * node + 1] = -(axis + 1);
+	}
+
+	/**
+	 * Removes the unused reserved nodes, keeping the used ones in their (depth
+	 * first) order, and renumbers the right children
+	 */
+	final void compact() {
+		int capacity = nodeData.length / 2;
+		int[] index = new int[capacity];
+		nodeCount = 0;
+		for (int node = 0; node < capacity; ++node)
+			if (nodeData[2 * node + 1] != 0) // a leaf has primitives, an inner node has an axis
+				index[node] = nodeCount++;
+
+		double[] compactBounds = new double[6 * nodeCount];
+		int[] compactData = new int[2 * nodeCount];
+		for (int node = 0; node < capacity; ++node) {
+			int count = nodeData[2 * node + 1];
+			if (count == 0)
+				continue;
+			int target = index[node];
+			System.arraycopy(nodeBounds, 6 * node, compactBounds, 6 * target, 6);
+			compactData[2 * target] = count < 0 ? index[nodeData[2 * node]] : nodeData[2 * node];
+			compactData[2 * target + 1] = count;
+		}
+		nodeBounds = compactBounds;
+		nodeData = compactData;
+	}
+
+	/**
+	 * Calculates the box of a range of the primitives
+	 *
+	 * @param start the first primitive in the range
+	 * @param end   the end (excluded) of the range
+	 * @return the box coordinates
+	 */
+	final double[] rangeBounds(int start, int end) {
+		double[] box = emptyBounds();
+		for (int i = start; i < end; ++i)
+			expand(box, 0, bounds, 6 * primitives[i]);
+		return box;
+	}
+
+	/**
+	 * Creates an empty box - the neutral element of the box union
+	 *
+	 * @return the box coordinates
+	 */
+	static double[] emptyBounds() {
+		double inf = Double.POSITIVE_INFINITY;
+		return new double[] { inf, inf, inf, -inf, -inf, -inf };
+	}
+
+	/**
+	 * Concatenates the coordinates of two boxes
+	 *
+	 * @param first  the first box
+	 * @param second the second box
+	 * @return the coordinates of both boxes - 12 coordinates
+	 */
+	static double[] concat(double[] first, double[] second) {
+		double[] result = Arrays.copyOf(first, 12);
+		System.arraycopy(second, 0, result, 6, 6);
+		return result;
+	}
+
+	/**
+	 * Expands a box in an array to contain another box
+	 *
+	 * @param target       array holding the box to expand
+	 * @param targetOffset the offset of the box to expand
+	 * @param source       array holding the other box
+	 * @param sourceOffset the offset of the other box
+	 */
+	static void expand(double[] target, int targetOffset, double[] source, int sourceOffset) {
+		for (int i = 0; i < 3; ++i) {
+			target[targetOffset + i] = Math.min(target[targetOffset + i], source[sourceOffset + i]);
+			target[targetOffset + i + 3] = Math.max(target[targetOffset + i + 3], source[sourceOffset + i + 3]);
+		}
+	}
+
+	/**
+	 * Expands a box to contain a point
+	 *
+	 * @param box    the box to expand
+	 * @param points array holding the point
+	 * @param offset the offset of the point in its array
+	 */
+	static void expandPoint(double[] box, double[] points, int offset) {
+		for (int i = 0; i < 3; ++i) {
+			box[i] = Math.min(box[i], points[offset + i]);
+			box[i + 3] = Math.max(box[i + 3], points[offset + i]);
+		}
+	}
+
+	/**
+	 * Calculates the surface area of a box
+	 *
+	 * @param boxes  array holding the box coordinates
+	 * @param offset the offset of the box in its array
+	 * @return the surface area
+	 */
+	static double boxArea(double[] boxes, int offset) {
+		return BoundingBox.surfaceArea(boxes[offset + 3] - boxes[offset], boxes[offset + 4] - boxes[offset + 1],
+				boxes[offset + 5] - boxes[offset + 2]);
+	}
+}
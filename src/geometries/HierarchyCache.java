@@ -0,0 +1,289 @@
+package geometries;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * Cache of built bounding volume hierarchies on the disk, for static scenes
+ * which are rendered again and again - the hierarchies of the scene's
+ * geometries and meshes are loaded instead of being built (see
+ * {@link Geometries#build(HierarchyCache)}). A tree depends only on the boxes of
+ * its primitives and on the build method, so it is keyed by a SHA-256 hash of
+ * them: any change of the geometries gives a new key, and equal geometries
+ * (e.g. the same mesh in several scenes) share their tree.
+ * <br/>
+ * Each tree is stored in a file of its own, in a compact little endian binary
+ * format: a header of {@link #HEADER_SIZE} bytes (a magic number, the amount
+ * of the primitives and the amount of the nodes), the boxes of the nodes (6
+ * doubles per node), the data of the nodes (2 ints per node) and the order of
+ * the primitives (an int per primitive) - the flattened tree as it is held by
+ * {@link BoundingVolumeHierarchy}. A file is loaded through a memory map, so
+ * its pages are read by the operating system straight from its page cache. A
+ * file is written under a temporary name and then renamed, so concurrent
+ * renders never see a partial file, and a malformed file - of a wrong size, or
+ * whose nodes aren't a valid tree over all the primitives - is ignored (and
+ * replaced by the next build).
+ */
+public final class HierarchyCache {
+	/** The magic number of the files - "BVH1" */
+	private static final int MAGIC = 0x31485642;
+	/** Size of the header of a file in bytes, keeping the arrays after it aligned */
+	private static final int HEADER_SIZE = 32;
+	/** Size of the buffer of writing a file in bytes */
+	private static final int BUFFER_SIZE = 1 << 20;
+	/** Suffix of the names of the files */
+	private static final String SUFFIX = ".bvh";
+
+	/** The directory of the files */
+	private final Path directory;
+
+	/**
+	 * A built tree - the arrays of a {@link BoundingVolumeHierarchy}
+	 *
+	 * @param nodeBounds the boxes of the nodes - 6 coordinates per node
+	 * @param nodeData   the data of the nodes - 2 numbers per node
+	 * @param primitives the indices of the primitives ordered by the leaves
+	 */
+	record Tree(double[] nodeBounds, int[] nodeData, int[] primitives) {
+	}
+
+	/**
+	 * Constructs a cache in a directory, creating the directory if it doesn't
+	 * exist
+	 *
+	 * @param directory the directory of the cache's files
+	 * @throws IllegalStateException on an I/O error
+	 */
+	public HierarchyCache(Path directory) {
+		this.directory = directory;
+		try {
+			Files.createDirectories(directory);
+		} catch (IOException e) {
+			throw new IllegalStateException("I/O error creating hierarchy cache " + directory, e);
+		}
+	}
+
+	/**
+	 * Getter for the directory
+	 *
+	 * @return the directory of the cache's files
+	 */
+	public Path getDirectory() {
+		return directory;
+	}
+
+	/**
+	 * Calculates the key of the tree over the given primitives - a hash of their
+	 * boxes and of the build method
+	 *
+	 * @param bounds the boxes of the primitives - 6 coordinates per primitive
+	 * @param count  the amount of the primitives
+	 * @param method the method of the build
+	 * @return the key
+	 */
+	String key(double[] bounds, int count, BuildMethod method) {
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e); // every Java platform supports SHA-256
+		}
+		ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+		buffer.putInt(MAGIC).putInt(method.ordinal()).putInt(count);
+		digest.update(buffer.array(), 0, buffer.position());
+		int chunk = BUFFER_SIZE / Double.BYTES;
+		for (int i = 0; i < 6 * count; i += chunk) {
+			int length = Math.min(chunk, 6 * count - i);
+			buffer.clear();
+			buffer.asDoubleBuffer().put(bounds, i, length);
+			digest.update(buffer.array(), 0, length * Double.BYTES);
+		}
+		return HexFormat.of().formatHex(digest.digest(), 0, 16);
+	}
+
+	/**
+	 * Calculates the size of a file
+	 *
+	 * @param nodeCount the amount of the nodes
+	 * @param count     the amount of the primitives
+	 * @return the size in bytes
+	 */
+	private static long fileSize(int nodeCount, int count) {
+		return HEADER_SIZE + (long) nodeCount * (6 * Double.BYTES + 2 * Integer.BYTES) + (long) count * Integer.BYTES;
+	}
+
+	/**
+	 * Loads a tree from the cache
+	 *
+	 * @param key   the key of the tree
+	 * @param count the amount of the primitives
+	 * @return the tree, or null if the cache has no valid tree by the key
+	 * @throws IllegalStateException on an I/O error
+	 */
+	Tree load(String key, int count) {
+		Path file = directory.resolve(key + SUFFIX);
+		if (!Files.isRegularFile(file))
+			return null;
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			long size = channel.size();
+			if (size < HEADER_SIZE || size > Integer.MAX_VALUE)
+				return null;
+			ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size).order(ByteOrder.LITTLE_ENDIAN);
+			int nodeCount = buffer.getInt(8);
+			if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != count || nodeCount <= 0
+					|| size != fileSize(nodeCount, count))
+				return null;
+
+			double[] nodeBounds = new double[6 * nodeCount];
+			int[] nodeData = new int[2 * nodeCount];
+			int[] primitives = new int[count];
+			int offset = HEADER_SIZE;
+			buffer.slice(offset, nodeBounds.length * Double.BYTES).order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer()
+					.get(nodeBounds);
+			offset += nodeBounds.length * Double.BYTES;
+			buffer.slice(offset, nodeData.length * Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN).asIntBuffer()
+					.get(nodeData);
+			offset += nodeData.length * Integer.BYTES;
+			buffer.slice(offset, count * Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN).asIntBuffer().get(primitives);
+			Tree tree = new Tree(nodeBounds, nodeData, primitives);
+			return isValid(tree) ? tree : null;
+		} catch (IOException e) {
+			throw new IllegalStateException("I/O error reading hierarchy cache file " + file, e);
+		}
+	}
+
+	/**
+	 * Checks whether a loaded tree is valid: its nodes are in depth first order,
+	 * each inner node followed by its left child and its right child following
+	 * the left child's subtree, it is no deeper than
+	 * {@link BoundingVolumeHierarchy#MAX_DEPTH}, its leaves hold each slot of the
+	 * primitives' order exactly once, and the order is a permutation of the
+	 * primitives.
+	 *
+	 * @param tree the tree
+	 * @return true if the tree is valid
+	 */
+	private static boolean isValid(Tree tree) {
+		int[] nodeData = tree.nodeData();
+		int[] primitives = tree.primitives();
+		int nodeCount = nodeData.length / 2, count = primitives.length;
+
+		boolean[] used = new boolean[count];
+		for (int primitive : primitives) {
+			if (primitive < 0 || primitive >= count || used[primitive])
+				return false;
+			used[primitive] = true;
+		}
+
+		// Walk the tree in depth first order, expecting the nodes one after the other
+		boolean[] covered = new boolean[count];
+		int covering = 0;
+		int[] stack = new int[BoundingVolumeHierarchy.MAX_DEPTH + 2];
+		int[] depths = new int[stack.length];
+		int top = 0, next = 0;
+		stack[top++] = 0;
+		while (top > 0) {
+			int node = stack[--top];
+			int depth = depths[top];
+			if (node != next++)
+				return false;
+			int first = nodeData[2 * node], size = nodeData[2 * node + 1];
+			if (size < 0) { // inner node
+				if (size < -3 || first <= node + 1 || first >= nodeCount || depth >= BoundingVolumeHierarchy.MAX_DEPTH)
+					return false;
+				stack[top] = first;
+				depths[top++] = depth + 1;
+				stack[top] = node + 1;
+				depths[top++] = depth + 1;
+				continue;
+			}
+			if (first < 0 || first > count - size)
+				return false;
+			for (int i = first; i < first + size; ++i) {
+				if (covered[i])
+					return false;
+				covered[i] = true;
+			}
+			covering += size;
+		}
+		return next == nodeCount && covering == count;
+	}
+
+	/**
+	 * Stores a tree in the cache. A tree too big for a single memory map (2GB) is
+	 * not stored.
+	 *
+	 * @param key  the key of the tree
+	 * @param tree the tree
+	 * @throws IllegalStateException on an I/O error
+	 */
+	void store(String key, Tree tree) {
+		int nodeCount = tree.nodeData().length / 2;
+		int count = tree.primitives().length;
+		if (fileSize(nodeCount, count) > Integer.MAX_VALUE)
+			return;
+		Path file = directory.resolve(key + SUFFIX);
+		try {
+			Path temporary = Files.createTempFile(directory, key, ".tmp");
+			try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+				ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+				buffer.putInt(MAGIC).putInt(count).putInt(nodeCount).position(HEADER_SIZE).flip();
+				write(channel, buffer);
+				int chunk = BUFFER_SIZE / Double.BYTES;
+				for (int i = 0; i < tree.nodeBounds().length; i += chunk) {
+					int length = Math.min(chunk, tree.nodeBounds().length - i);
+					buffer.clear();
+					buffer.asDoubleBuffer().put(tree.nodeBounds(), i, length);
+					write(channel, buffer.limit(length * Double.BYTES));
+				}
+				writeInts(channel, buffer, tree.nodeData());
+				writeInts(channel, buffer, tree.primitives());
+			} catch (IOException e) {
+				Files.deleteIfExists(temporary);
+				throw e;
+			}
+			Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		} catch (IOException e) {
+			throw new IllegalStateException("I/O error writing hierarchy cache file " + file, e);
+		}
+	}
+
+	/**
+	 * Writes an int array to a file by chunks of the buffer
+	 *
+	 * @param channel the channel of the file
+	 * @param buffer  the buffer
+	 * @param values  the array
+	 * @throws IOException on an I/O error
+	 */
+	private static void writeInts(FileChannel channel, ByteBuffer buffer, int[] values) throws IOException {
+		int chunk = BUFFER_SIZE / Integer.BYTES;
+		for (int i = 0; i < values.length; i += chunk) {
+			int length = Math.min(chunk, values.length - i);
+			buffer.clear();
+			buffer.asIntBuffer().put(values, i, length);
+			write(channel, buffer.limit(length * Integer.BYTES));
+		}
+	}
+
+	/**
+	 * Writes the remaining bytes of the buffer to a file
+	 *
+	 * @param channel the channel of the file
+	 * @param buffer  the buffer
+	 * @throws IOException on an I/O error
+	 */
+	private static void write(FileChannel channel, ByteBuffer buffer) throws IOException {
+		while (buffer.hasRemaining())
+			channel.write(buffer);
+	}
+}
@@ -0,0 +1,188 @@
+package geometries;
+
+import java.util.List;
+
+import primitives.*;
+
+/**
+ * Instance of a shared geometry placed in the scene by an affine transform.
+ * The shared geometry (a single geometry, a mesh or a whole collection) is
+ * stored once, with its own bounding volume hierarchy, and any amount of
+ * instances may reference it - an instance holds just the reference and the
+ * transform. The rays are transformed into the space of the shared geometry, so
+ * its hierarchy is used as it is, and the instances themselves are bounded by
+ * their transformed boxes and arranged in the hierarchy of the scene's
+ * geometries - a two level hierarchy.
+ * <br/>
+ * The instances share the materials and the emission of the shared geometry.
+ */
+public class Instance extends Intersectable {
+	/** The shared geometry */
+	private final Intersectable geometry;
+	/** The transform from the space of the shared geometry to the scene */
+	private Transform transform;
+
+	/**
+	 * Constructs an instance of a geometry
+	 *
+	 * @param geometry  the shared geometry
+	 * @param transform the transform from the space of the geometry to the scene
+	 */
+	public Instance(Intersectable geometry, Transform transform) {
+		this.geometry = geometry;
+		this.transform = transform;
+	}
+
+	/**
+	 * Getter for the shared geometry
+	 *
+	 * @return the shared geometry
+	 */
+	public Intersectable getGeometry() {
+		return geometry;
+	}
+
+	/**
+	 * Getter for the transform
+	 *
+	 * @return the transform from the space of the geometry to the scene
+	 */
+	public Transform getTransform() {
+		return transform;
+	}
+
+	/**
+	 * Moves the instance by a new transform. A collection holding the instance
+	 * must be told about the move by {@link Geometries#update}.
+	 *
+	 * @param transform the new transform from the space of the geometry to the
+	 *                  scene
+	 * @return the instance itself
+	 */
+	public Instance setTransform(Transform transform) {
+		this.transform = transform;
+		resetBoundingBox();
+		return this;
+	}
+
+	/**
+	 * Transforms a ray into the space of the shared geometry
+	 *
+	 * @param ray       the ray
+	 * @param direction the direction of the ray in the space of the geometry, as
+	 *                  calculated by {@link Transform#inverseTransformDirection}
+	 * @return the transformed ray
+	 */
+	private Ray toGeometrySpace(Ray ray, Vector direction) {
+		return new Ray(transform.inverseTransform(ray.getHead()), direction);
+	}
+
+	@Override
+	void prepare(HierarchyCache cache) {
+		geometry.prepare(cache);
+	}
+
+	@Override
+	protected BoundingBox calcBoundingBox() {
+		BoundingBox box = geometry.getBoundingBox();
+		if (box == null)
+			return null;
+		Point[] corners = new Point[8];
+		for (int i = 0; i < 8; ++i)
+			corners[i] = transform.transform(new Point((i & 1) == 0 ? box.minX : box.maxX,
+					(i & 2) == 0 ? box.minY : box.maxY, (i & 4) == 0 ? box.minZ : box.maxZ));
+		return BoundingBox.of(corners);
+	}
+
+	@Override
+	protected List<GeoPoint> findGeoIntersectionsHelper(Ray ray) {
+		Vector direction = transform.inverseTransformDirection(ray.getDirection());
+		List<GeoPoint> intersections = geometry.findGeoIntersections(toGeometrySpace(ray, direction));
+		if (intersections == null)
+			return null;
+
+		double scale = direction.length();
+		for (GeoPoint intersection : intersections) {
+			intersection.point = transform.transform(intersection.point);
+			intersection.t /= scale;
+			intersection.transform = intersection.transform == null ? transform
+					: intersection.transform.then(transform);
+		}
+		return intersections;
+	}
+
+	/**
+	 * Updates the hit record by the closest intersection of the ray with the
+	 * shared geometry. The distances along the transformed ray are scaled by the
+	 * length of the transformed direction, so the record's distance is converted
+	 * into the geometry's space for the search and back to the scene's space
+	 * after it.
+	 *
+	 * @param ray - the ray to check for intersections
+	 * @param hit - the hit record
+	 * @return true if the record was updated
+	 */
+	@Override
+	protected boolean findClosestHitHelper(Ray ray, GeoPoint hit) {
+		Vector direction = transform.inverseTransformDirection(ray.getDirection());
+		double scale = direction.length();
+		double t = hit.t;
+		hit.t = t * scale;
+		if (!geometry.updateClosestHit(toGeometrySpace(ray, direction), hit)) {
+			hit.t = t;
+			return false;
+		}
+		hit.t /= scale;
+		hit.transform = hit.transform == null ? transform : hit.transform.then(transform);
+		return true;
+	}
+
+	/**
+	 * Updates the hit records of a packet of rays by the closest intersections
+	 * with the shared geometry. The rays are transformed into the geometry's
+	 * space, and the packet is passed to the geometry as a whole, see
+	 * {@link #findClosestHitHelper(Ray, GeoPoint)}.
+	 *
+	 * @param rays - the rays of the packet
+	 * @param hits - the hit records of the rays
+	 * @param mask - the mask of the rays to search
+	 * @return the mask of the rays whose records were updated
+	 */
+	@Override
+	protected int findClosestHitsHelper(Ray[] rays, GeoPoint[] hits, int mask) {
+		TraversalBuffers buffers = TraversalBuffers.acquire();
+		try {
+			Ray[] transformed = buffers.rays(rays.length);
+			double[] scales = buffers.scales(rays.length);
+			double[] distances = buffers.hitDistances(rays.length);
+			for (int m = mask; m != 0; m &= m - 1) {
+				int i = Integer.numberOfTrailingZeros(m);
+				Vector direction = transform.inverseTransformDirection(rays[i].getDirection());
+				transformed[i] = toGeometrySpace(rays[i], direction);
+				scales[i] = direction.length();
+				distances[i] = hits[i].t;
+				hits[i].t *= scales[i];
+			}
+			int found = geometry.updateClosestHits(transformed, hits, mask);
+			for (int m = mask; m != 0; m &= m - 1) {
+				int i = Integer.numberOfTrailingZeros(m);
+				if ((found & 1 << i) == 0)
+					hits[i].t = distances[i];
+				else {
+					hits[i].t /= scales[i];
+					hits[i].transform = hits[i].transform == null ? transform : hits[i].transform.then(transform);
+				}
+			}
+			return found;
+		} finally {
+			buffers.release();
+		}
+	}
+
+	@Override
+	protected Double3 findTransparencyHelper(Ray ray, double maxDistance, double minTransparency) {
+		Vector direction = transform.inverseTransformDirection(ray.getDirection());
+		return geometry.findTransparency(toGeometrySpace(ray, direction), maxDistance * direction.length(),
+				minTransparency);
+	}
+}
@@ -1,5 +1,6 @@
 package geometries;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import primitives.*;
@@ -9,6 +10,14 @@ import primitives.*;
  * geometries
  */
 public abstract class Intersectable {
+	/**
+	 * Marker of a bounding box which has not been calculated yet (different from
+	 * null which marks an unbounded geometry)
+	 */
+	private static final BoundingBox NOT_CALCULATED = new BoundingBox(0, 0, 0, 0, 0, 0);
+
+	/** The cached bounding box of the geometry, null if it is unbounded */
+	private volatile BoundingBox boundingBox = NOT_CALCULATED;
 
 	/**
 	 * Finds all intersection points between the given ray and the geometry.
@@ -20,7 +29,12 @@ public abstract class Intersectable {
 
 	public final List<Point> findIntersections(Ray ray) {
 		var geoList = findGeoIntersections(ray);
-		return geoList == null ? null : geoList.stream().map(gp -> gp.point).toList();
+		if (geoList == null)
+			return null;
+		List<Point> points = new ArrayList<>(geoList.size());
+		for (GeoPoint gp : geoList)
+			points.add(gp.point);
+		return points;
 	}
 
 	/**
@@ -40,11 +54,327 @@ public abstract class Intersectable {
 	 * @return a list of GeoPoint
 	 */
 	public final List<GeoPoint> findGeoIntersections(Ray ray) {
-		return findGeoIntersectionsHelper(ray);
+		BoundingBox box = getBoundingBox();
+		return box == null || box.intersects(ray) ? findGeoIntersectionsHelper(ray) : null;
+	}
+
+	/**
+	 * Finds the closest intersection point between the given ray and the geometry.
+	 *
+	 * @param ray - the ray to intersect with the geometry
+	 * @return the closest GeoPoint, or null if there are no intersections
+	 */
+	public final GeoPoint findClosestGeoIntersection(Ray ray) {
+		return findClosestGeoIntersection(ray, Double.POSITIVE_INFINITY);
+	}
+
+	/**
+	 * Finds the closest intersection point between the given ray and the geometry,
+	 * which is closer to the ray's head than the given distance.
+	 *
+	 * @param ray         - the ray to intersect with the geometry
+	 * @param maxDistance - the distance from the ray's head, intersections at this
+	 *                    distance or farther are ignored
+	 * @return the closest GeoPoint, or null if there are no intersections before
+	 *         the distance
+	 */
+	public final GeoPoint findClosestGeoIntersection(Ray ray, double maxDistance) {
+		GeoPoint hit = new GeoPoint().reset(maxDistance);
+		return findClosestHit(ray, hit) ? hit : null;
+	}
+
+	/**
+	 * Finds the closest intersection point between the given ray and the geometry
+	 * into a hit record, which is closer to the ray's head than the distance
+	 * (t) already in the record. The record is filled in place, so a record reused
+	 * for the rays of a thread saves the allocations of the intersections.
+	 *
+	 * @param ray - the ray to intersect with the geometry
+	 * @param hit - the hit record, its distance (t) is the maximal distance of the
+	 *            search (see {@link GeoPoint#reset(double)})
+	 * @return true if an intersection was found and the record was filled, false
+	 *         if there are no intersections before the distance (the record is
+	 *         unchanged)
+	 */
+	public final boolean findClosestHit(Ray ray, GeoPoint hit) {
+		if (!updateClosestHit(ray, hit))
+			return false;
+		hit.point = ray.getPoint(hit.t);
+		return true;
+	}
+
+	/**
+	 * Updates a hit record by the closest intersection between the given ray and
+	 * the geometry, if it is closer than the distance (t) already in the record.
+	 * Only the geometry and the distance of the record are updated, the point is
+	 * set once at the end of the search by {@link #findClosestHit(Ray, GeoPoint)}.
+	 *
+	 * @param ray - the ray to intersect with the geometry
+	 * @param hit - the hit record
+	 * @return true if a closer intersection was found
+	 */
+	protected final boolean updateClosestHit(Ray ray, GeoPoint hit) {
+		BoundingBox box = getBoundingBox();
+		if (box != null && !box.intersects(ray, hit.t))
+			return false;
+		// A hit of this geometry isn't transformed, unless it is set by an instance
+		Transform transform = hit.transform;
+		hit.transform = null;
+		if (findClosestHitHelper(ray, hit))
+			return true;
+		hit.transform = transform;
+		return false;
+	}
+
+	/**
+	 * Helper method to update a hit record by the closest intersection between the
+	 * given ray and the geometry, if it is closer than the distance (t) already in
+	 * the record. Only the geometry and the distance of the record are updated. The
+	 * default implementation picks the closest point of all the intersections, the
+	 * geometries override it to avoid building the intersections list.
+	 *
+	 * @param ray - the ray to intersect with the geometry
+	 * @param hit - the hit record
+	 * @return true if a closer intersection was found
+	 */
+	protected boolean findClosestHitHelper(Ray ray, GeoPoint hit) {
+		List<GeoPoint> intersections = findGeoIntersectionsHelper(ray);
+		if (intersections == null)
+			return false;
+
+		boolean found = false;
+		for (GeoPoint intersection : intersections) {
+			double distance = intersection.point.distance(ray.getHead());
+			if (distance < hit.t) {
+				hit.t = distance;
+				hit.geometry = intersection.geometry;
+				hit.transform = intersection.transform;
+				found = true;
+			}
+		}
+		return found;
+	}
+
+	/**
+	 * Finds the closest intersection points between a packet of rays and the
+	 * geometry into their hit records, see {@link #findClosestHit(Ray, GeoPoint)}.
+	 * The rays of a packet are expected to be coherent - e.g. the primary rays of
+	 * neighbouring pixels - so the geometries with a hierarchy traverse it once
+	 * for the whole packet, and the others intersect the rays one by one. Bit i
+	 * of a mask stands for the ray i, so a packet has up to 32 rays.
+	 *
+	 * @param rays - the rays of the packet
+	 * @param hits - the hit records of the rays, their distances are the maximal
+	 *             distances of the search
+	 * @param mask - the mask of the rays to search
+	 * @return the mask of the rays whose records were filled
+	 */
+	public final int findClosestHits(Ray[] rays, GeoPoint[] hits, int mask) {
+		int found = updateClosestHits(rays, hits, mask);
+		for (int m = found; m != 0; m &= m - 1) {
+			int i = Integer.numberOfTrailingZeros(m);
+			hits[i].point = rays[i].getPoint(hits[i].t);
+		}
+		return found;
+	}
+
+	/**
+	 * Updates the hit records of a packet of rays by their closest intersections
+	 * with the geometry, see {@link #updateClosestHit(Ray, GeoPoint)}. The rays
+	 * missing the geometry's box are dropped from the packet at once.
+	 *
+	 * @param rays - the rays of the packet
+	 * @param hits - the hit records of the rays
+	 * @param mask - the mask of the rays to search
+	 * @return the mask of the rays whose records were updated
+	 */
+	protected final int updateClosestHits(Ray[] rays, GeoPoint[] hits, int mask) {
+		BoundingBox box = getBoundingBox();
+		if (box != null)
+			for (int m = mask; m != 0; m &= m - 1) {
+				int i = Integer.numberOfTrailingZeros(m);
+				if (!box.intersects(rays[i], hits[i].t))
+					mask &= ~(1 << i);
+			}
+		if (mask == 0)
+			return 0;
+
+		// A hit of this geometry isn't transformed, unless it is set by an instance
+		int transformed = 0;
+		for (int m = mask; m != 0; m &= m - 1) {
+			int i = Integer.numberOfTrailingZeros(m);
+			if (hits[i].transform != null)
+				transformed |= 1 << i;
+		}
+		if (transformed == 0)
+			return findClosestHitsHelper(rays, hits, mask);
+
+		TraversalBuffers buffers = TraversalBuffers.acquire();
+		try {
+			Transform[] transforms = buffers.transforms(rays.length);
+			for (int m = transformed; m != 0; m &= m - 1) {
+				int i = Integer.numberOfTrailingZeros(m);
+				transforms[i] = hits[i].transform;
+				hits[i].transform = null;
+			}
+			int found = findClosestHitsHelper(rays, hits, mask);
+			for (int m = transformed & ~found; m != 0; m &= m - 1) {
+				int i = Integer.numberOfTrailingZeros(m);
+				hits[i].transform = transforms[i];
+			}
+			return found;
+		} finally {
+			buffers.release();
+		}
+	}
+
+	/**
+	 * Helper method to update the hit records of a packet of rays by their closest
+	 * intersections with the geometry. The default implementation searches the
+	 * rays one by one, the geometries with a hierarchy override it to traverse the
+	 * hierarchy by the whole packet.
+	 *
+	 * @param rays - the rays of the packet
+	 * @param hits - the hit records of the rays
+	 * @param mask - the mask of the rays to search
+	 * @return the mask of the rays whose records were updated
+	 */
+	protected int findClosestHitsHelper(Ray[] rays, GeoPoint[] hits, int mask) {
+		int found = 0;
+		for (int m = mask; m != 0; m &= m - 1) {
+			int i = Integer.numberOfTrailingZeros(m);
+			if (findClosestHitHelper(rays[i], hits[i]))
+				found |= 1 << i;
+		}
+		return found;
+	}
+
+	/**
+	 * Finds how much light passes through the geometry along the ray, up to the
+	 * given distance from the ray's head (e.g. the distance of a light source). The
+	 * search stops as soon as the ray is found to be blocked by an opaque geometry.
+	 *
+	 * @param ray         - the ray to check (e.g. a shadow ray)
+	 * @param maxDistance - the distance from the ray's head, intersections at this
+	 *                    distance or farther are ignored
+	 * @return the product of the transparency coefficients (kT) of all the
+	 *         intersections before the distance - {@link Double3#ONE} if there
+	 *         are no such intersections, {@link Double3#ZERO} if the ray is blocked
+	 */
+	public final Double3 findTransparency(Ray ray, double maxDistance) {
+		return findTransparency(ray, maxDistance, 0);
+	}
+
+	/**
+	 * Finds how much light passes through the geometry along the ray, up to the
+	 * given distance from the ray's head. The search stops as soon as all the
+	 * components of the transparency fall below the given threshold - the ray is
+	 * considered blocked then.
+	 *
+	 * @param ray             - the ray to check (e.g. a shadow ray)
+	 * @param maxDistance     - the distance from the ray's head, intersections at
+	 *                        this distance or farther are ignored
+	 * @param minTransparency - the threshold of the transparency, below which the
+	 *                        ray is blocked (0 - only an opaque geometry blocks it)
+	 * @return the product of the transparency coefficients (kT) of all the
+	 *         intersections before the distance - {@link Double3#ONE} if there
+	 *         are no such intersections, {@link Double3#ZERO} if the ray is blocked
+	 */
+	public final Double3 findTransparency(Ray ray, double maxDistance, double minTransparency) {
+		BoundingBox box = getBoundingBox();
+		return box == null || box.intersects(ray, maxDistance) //
+				? findTransparencyHelper(ray, maxDistance, minTransparency)
+				: Double3.ONE;
+	}
+
+	/**
+	 * Helper method to find how much light passes through the geometry along the
+	 * ray, up to the given distance from the ray's head. The default implementation
+	 * multiplies the transparency coefficients of all the intersections.
+	 *
+	 * @param ray             - the ray to check
+	 * @param maxDistance     - the distance from the ray's head, intersections at
+	 *                        this distance or farther are ignored
+	 * @param minTransparency - the threshold of the transparency, below which the
+	 *                        ray is blocked
+	 * @return the product of the transparency coefficients of the intersections,
+	 *         {@link Double3#ZERO} if the ray is blocked
+	 */
+	protected Double3 findTransparencyHelper(Ray ray, double maxDistance, double minTransparency) {
+		List<GeoPoint> intersections = findGeoIntersectionsHelper(ray);
+		Double3 ktr = Double3.ONE;
+		if (intersections == null)
+			return ktr;
+
+		for (GeoPoint intersection : intersections) {
+			if (intersection.point.distance(ray.getHead()) < maxDistance) {
+				ktr = ktr.product(intersection.geometry.getMaterial().kT);
+				if (isBlocked(ktr, minTransparency))
+					return Double3.ZERO;
+			}
+		}
+		return ktr;
+	}
+
+	/**
+	 * Checks whether the transparency along a ray is low enough to consider the
+	 * ray blocked
+	 *
+	 * @param ktr             - the transparency along the ray
+	 * @param minTransparency - the threshold of the transparency
+	 * @return true if all the components are below the threshold or the ray is
+	 *         fully blocked
+	 */
+	protected static boolean isBlocked(Double3 ktr, double minTransparency) {
+		return ktr.lowerThan(minTransparency) || ktr.equals(Double3.ZERO);
+	}
+
+	/**
+	 * Returns the axis aligned box bounding the geometry. The box is calculated
+	 * once, on the first call, and it is cached for the next calls.
+	 *
+	 * @return the bounding box, or null if the geometry is unbounded (e.g. a plane
+	 *         or a tube)
+	 */
+	public final BoundingBox getBoundingBox() {
+		BoundingBox box = boundingBox;
+		if (box == NOT_CALCULATED)
+			boundingBox = box = calcBoundingBox();
+		return box;
+	}
+
+	/**
+	 * Drops the cached bounding box, so that it will be calculated again on the
+	 * next query. It must be called by a geometry whose shape has changed.
+	 */
+	protected final void resetBoundingBox() {
+		boundingBox = NOT_CALCULATED;
+	}
+
+	/**
+	 * Calculates the axis aligned box bounding the geometry. The default
+	 * implementation is for unbounded geometries.
+	 *
+	 * @return the bounding box, or null if the geometry is unbounded
+	 */
+	protected BoundingBox calcBoundingBox() {
+		return null;
 	}
 
 	/**
-	 * PDS Geometry Point class
+	 * Builds the acceleration structures of the geometry now, instead of on the
+	 * first intersection query (see {@link Geometries#build(HierarchyCache)}). The
+	 * default implementation is for geometries which have none.
+	 *
+	 * @param cache the cache of built hierarchies, may be null
+	 */
+	void prepare(HierarchyCache cache) {
+	}
+
+	/**
+	 * PDS Geometry Point class. It serves also as a mutable hit record of the
+	 * closest intersection queries, which may be reused for many rays (see
+	 * {@link Intersectable#findClosestHit(Ray, GeoPoint)}).
 	 */
 	public static class GeoPoint {
 		/**
@@ -55,6 +385,31 @@ public abstract class Intersectable {
 		 * The point of intersection.
 		 */
 		public Point point;
+		/**
+		 * The distance of the intersection from the ray's head (the ray parameter),
+		 * or the maximal distance of a closest intersection query before a hit is
+		 * found
+		 */
+		public double t = Double.POSITIVE_INFINITY;
+		/**
+		 * The index of the intersected primitive within the geometry (e.g. the
+		 * triangle of a mesh), -1 if the geometry is a single primitive
+		 */
+		public int primitive = -1;
+		/**
+		 * The barycentric coordinates of the intersection on a triangle - the
+		 * weights of the triangle's second (u) and third (v) vertices. They are set
+		 * by the triangles (and the triangle meshes) only.
+		 */
+		public double u, v;
+		/**
+		 * The transform from the space of the geometry to the space of the
+		 * intersection point, when the geometry is intersected through an
+		 * {@link Instance}, or null
+		 */
+		public Transform transform;
+		/** The normal at the point of intersection, calculated on demand */
+		private Vector normal;
 
 		/**
 		 * Constructor for GeoPoint
@@ -67,6 +422,50 @@ public abstract class Intersectable {
 			this.point = point;
 		}
 
+		/**
+		 * Constructor of an empty hit record
+		 */
+		public GeoPoint() {
+		}
+
+		/**
+		 * Empties the hit record for a new closest intersection query
+		 *
+		 * @param maxDistance the maximal distance of the query
+		 * @return the hit record itself
+		 */
+		public GeoPoint reset(double maxDistance) {
+			geometry = null;
+			point = null;
+			normal = null;
+			t = maxDistance;
+			primitive = -1;
+			transform = null;
+			return this;
+		}
+
+		/**
+		 * Returns the normal of the geometry at the point of intersection. It is
+		 * calculated on the first call only. The normal of a transformed geometry is
+		 * calculated by the geometry at the point in its own space, and then it is
+		 * transformed.
+		 *
+		 * @return the normal vector
+		 */
+		public Vector getNormal() {
+			if (normal == null) {
+				if (transform == null)
+					normal = geometry.getNormal(this);
+				else {
+					Point world = point;
+					point = transform.inverseTransform(world);
+					normal = transform.transformNormal(geometry.getNormal(this));
+					point = world;
+				}
+			}
+			return normal;
+		}
+
 		@Override
 		public boolean equals(Object obj) {
 			if (this == obj)
@@ -0,0 +1,224 @@
+package geometries;
+
+import static primitives.Util.alignZero;
+
+import primitives.VectorMath;
+
+/**
+ * Kernels testing a ray against a batch of {@link #WIDTH} boxes or triangles
+ * in one pass. The batch is stored in a struct of arrays layout - each
+ * coordinate of all the members in consecutive lanes - and all the lanes are
+ * processed by the same operations without early exits, the results combined
+ * into a bit mask. An empty lane holds NaN coordinates, which fail all the
+ * comparisons, so it is never hit.
+ * <br/>
+ * There are two implementations of the kernels, chosen once when the class is
+ * loaded. The Vector API kernels (geometries.VectorKernels) process the lanes
+ * as a single vector. They are in the separate source folder "vector", out of
+ * the project's build, because they need the incubating jdk.incubator.vector
+ * module, which isn't resolved by default:
+ * <pre>
+ * javac --add-modules jdk.incubator.vector -cp bin -d vector-bin vector/geometries/VectorKernels.java
+ * java --add-modules jdk.incubator.vector -cp bin:vector-bin ...
+ * </pre>
+ * They are used when their class is on the class path, the module is resolved
+ * at runtime and the platform has vectors of {@link #WIDTH} doubles. Otherwise
+ * the kernels are the scalar lane loops of this class, which the JIT doesn't
+ * vectorize - their gain over the binary hierarchy comes from the 4-wide tree
+ * alone, which visits fewer nodes and makes a single call per node and per
+ * packet of triangles.
+ * <br/>
+ * The results of both implementations are exactly those of
+ * {@link BoundingBox#intersects} and of {@link Triangle#intersect}, the
+ * operations are done in the same order.
+ */
+final class Kernels {
+	/** Amount of the lanes of a batch */
+	static final int WIDTH = 4;
+	/** Name of the module of the Vector API */
+	private static final String VECTOR_MODULE = "jdk.incubator.vector";
+	/** Name of the class of the Vector API kernels */
+	private static final String VECTOR_KERNELS = "geometries.VectorKernels";
+	/** The kernels in use */
+	private static final Batch KERNELS = select();
+
+	/** Don't let anyone instantiate this class. */
+	private Kernels() {
+	}
+
+	/**
+	 * Chooses the kernels - the Vector API ones if their class is present, the
+	 * module of the Vector API is resolved and the kernels can be used on the
+	 * platform, the scalar ones otherwise. The Vector API kernels are loaded by
+	 * their name only, so their class is never linked when the module is missing.
+	 *
+	 * @return the kernels
+	 */
+	private static Batch select() {
+		if (ModuleLayer.boot().findModule(VECTOR_MODULE).isPresent())
+			try {
+				return (Batch) Class.forName(VECTOR_KERNELS).getDeclaredConstructor().newInstance();
+			} catch (ReflectiveOperationException | LinkageError e) {
+				// the Vector API kernels can't be used - fall back to the scalar ones
+			}
+		return new ScalarKernels();
+	}
+
+	/**
+	 * Tests a ray against a batch of boxes, see {@link Batch#intersectBoxes}
+	 *
+	 * @param boxes       array holding the batch
+	 * @param offset      the offset of the batch in its array
+	 * @param x           x coordinate of the ray head
+	 * @param y           y coordinate of the ray head
+	 * @param z           z coordinate of the ray head
+	 * @param invX        inverse of the x component of the ray direction
+	 * @param invY        inverse of the y component of the ray direction
+	 * @param invZ        inverse of the z component of the ray direction
+	 * @param maxDistance the maximal distance along the ray
+	 * @param distances   array to fill by the entry distances of the lanes
+	 * @return the mask of the hit lanes
+	 */
+	static int intersectBoxes(double[] boxes, int offset, double x, double y, double z, double invX, double invY,
+			double invZ, double maxDistance, double[] distances) {
+		return KERNELS.intersectBoxes(boxes, offset, x, y, z, invX, invY, invZ, maxDistance, distances);
+	}
+
+	/**
+	 * Intersects a ray with a batch of triangles, see
+	 * {@link Batch#intersectTriangles}
+	 *
+	 * @param packets     array holding the batch
+	 * @param offset      the offset of the batch in its array
+	 * @param hx          x coordinate of the ray head
+	 * @param hy          y coordinate of the ray head
+	 * @param hz          z coordinate of the ray head
+	 * @param vx          x component of the ray direction
+	 * @param vy          y component of the ray direction
+	 * @param vz          z component of the ray direction
+	 * @param maxDistance the distance from the ray's head, intersections at this
+	 *                    distance or farther are ignored
+	 * @param results     array to fill by the distances and the barycentric
+	 *                    coordinates of the lanes' intersections
+	 * @return the mask of the intersected lanes
+	 */
+	static int intersectTriangles(double[] packets, int offset, double hx, double hy, double hz, double vx,
+			double vy, double vz, double maxDistance, double[] results) {
+		return KERNELS.intersectTriangles(packets, offset, hx, hy, hz, vx, vy, vz, maxDistance, results);
+	}
+
+	/**
+	 * An implementation of the kernels
+	 */
+	interface Batch {
+		/**
+		 * Tests a ray against a batch of boxes. The boxes are given by 6 arrays of
+		 * lanes: minimal x, y, z, maximal x, y, z. The slab test is done without the
+		 * special case of an infinite inverse direction component: a ray parallel to a
+		 * slab is between the planes exactly if the products are infinities of
+		 * opposite signs, and a ray's head lying exactly on a slab's plane gives NaN -
+		 * a miss, where the scalar test gives a touch of the box, which never leads to
+		 * an intersection of the primitives in it.
+		 *
+		 * @param boxes       array holding the batch
+		 * @param offset      the offset of the batch in its array
+		 * @param x           x coordinate of the ray head
+		 * @param y           y coordinate of the ray head
+		 * @param z           z coordinate of the ray head
+		 * @param invX        inverse of the x component of the ray direction
+		 * @param invY        inverse of the y component of the ray direction
+		 * @param invZ        inverse of the z component of the ray direction
+		 * @param maxDistance the maximal distance along the ray
+		 * @param distances   array to fill by the entry distances of the lanes
+		 * @return the mask of the hit lanes - bit i is set if lane i is hit before the
+		 *         maximal distance
+		 */
+		int intersectBoxes(double[] boxes, int offset, double x, double y, double z, double invX, double invY,
+				double invZ, double maxDistance, double[] distances);
+
+		/**
+		 * Intersects a ray with a batch of triangles by the Möller–Trumbore algorithm,
+		 * see {@link Triangle#intersect}. The triangles are given by 9 arrays of
+		 * lanes: the first vertex, the edge to the second vertex and the edge to the
+		 * third vertex. A zero determinant needs no special case either - its
+		 * infinite (or NaN) inverse fails the range checks.
+		 *
+		 * @param packets     array holding the batch
+		 * @param offset      the offset of the batch in its array
+		 * @param hx          x coordinate of the ray head
+		 * @param hy          y coordinate of the ray head
+		 * @param hz          z coordinate of the ray head
+		 * @param vx          x component of the ray direction
+		 * @param vy          y component of the ray direction
+		 * @param vz          z component of the ray direction
+		 * @param maxDistance the distance from the ray's head, intersections at this
+		 *                    distance or farther are ignored
+		 * @param results     array to fill by the distances and the barycentric
+		 *                    coordinates of the lanes' intersections - {@link #WIDTH}
+		 *                    distances, {@link #WIDTH} u's and {@link #WIDTH} v's
+		 * @return the mask of the intersected lanes
+		 */
+		int intersectTriangles(double[] packets, int offset, double hx, double hy, double hz, double vx,
+				double vy, double vz, double maxDistance, double[] results);
+	}
+
+	/**
+	 * The scalar kernels - a loop over the lanes
+	 */
+	private static final class ScalarKernels implements Batch {
+		@Override
+		public int intersectBoxes(double[] boxes, int offset, double x, double y, double z, double invX, double invY,
+				double invZ, double maxDistance, double[] distances) {
+			int mask = 0;
+			for (int lane = 0; lane < WIDTH; ++lane) {
+				int i = offset + lane;
+				double t1 = (boxes[i] - x) * invX, t2 = (boxes[i + 3 * WIDTH] - x) * invX;
+				double near = Math.max(0, Math.min(t1, t2)), far = Math.min(maxDistance, Math.max(t1, t2));
+				t1 = (boxes[i + WIDTH] - y) * invY;
+				t2 = (boxes[i + 4 * WIDTH] - y) * invY;
+				near = Math.max(near, Math.min(t1, t2));
+				far = Math.min(far, Math.max(t1, t2));
+				t1 = (boxes[i + 2 * WIDTH] - z) * invZ;
+				t2 = (boxes[i + 5 * WIDTH] - z) * invZ;
+				near = Math.max(near, Math.min(t1, t2));
+				far = Math.min(far, Math.max(t1, t2));
+				distances[lane] = near;
+				mask |= (near <= far ? 1 : 0) << lane;
+			}
+			return mask;
+		}
+
+		@Override
+		public int intersectTriangles(double[] packets, int offset, double hx, double hy, double hz, double vx,
+				double vy, double vz, double maxDistance, double[] results) {
+			int mask = 0;
+			for (int lane = 0; lane < WIDTH; ++lane) {
+				int i = offset + lane;
+				double e1x = packets[i + 3 * WIDTH], e1y = packets[i + 4 * WIDTH], e1z = packets[i + 5 * WIDTH];
+				double e2x = packets[i + 6 * WIDTH], e2y = packets[i + 7 * WIDTH], e2z = packets[i + 8 * WIDTH];
+
+				// p = v x e2, the determinant is e1 * p
+				double px = VectorMath.crossX(vy, vz, e2y, e2z);
+				double py = VectorMath.crossY(vx, vz, e2x, e2z);
+				double pz = VectorMath.crossZ(vx, vy, e2x, e2y);
+				double inverse = 1 / VectorMath.dot(e1x, e1y, e1z, px, py, pz);
+
+				double sx = hx - packets[i], sy = hy - packets[i + WIDTH], sz = hz - packets[i + 2 * WIDTH];
+				double u = alignZero(VectorMath.dot(sx, sy, sz, px, py, pz) * inverse);
+				// q = s x e1
+				double qx = VectorMath.crossX(sy, sz, e1y, e1z);
+				double qy = VectorMath.crossY(sx, sz, e1x, e1z);
+				double qz = VectorMath.crossZ(sx, sy, e1x, e1y);
+				double w = alignZero(VectorMath.dot(vx, vy, vz, qx, qy, qz) * inverse);
+				double t = alignZero(VectorMath.dot(e2x, e2y, e2z, qx, qy, qz) * inverse);
+
+				results[lane] = t;
+				results[lane + WIDTH] = u;
+				results[lane + 2 * WIDTH] = w;
+				boolean hit = u > 0 & u < 1 & w > 0 & alignZero(1 - u - w) > 0 & t > 0 & t < maxDistance;
+				mask |= (hit ? 1 : 0) << lane;
+			}
+			return mask;
+		}
+	}
+}
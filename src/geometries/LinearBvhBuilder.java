@@ -0,0 +1,300 @@
+package geometries;
+
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.stream.IntStream;
+
+/**
+ * Builder of the flattened tree of a {@link BoundingVolumeHierarchy} as a
+ * linear BVH (LBVH) - much faster than {@link BinnedSahBuilder}, at the cost of
+ * a somewhat slower traversal. The centroids of the primitives are quantized
+ * on a grid over their box, and each primitive gets the Morton code of its
+ * grid cell - the bits of the cell's coordinates interleaved, so the order of
+ * the codes follows a space filling curve. The primitives are sorted by their
+ * codes by a parallel radix sort, and the tree is given by the binary radix
+ * tree of the sorted codes: each node is split where the highest bit which
+ * differs between its codes changes. Codes of 30 bits (10 per axis) are used
+ * for up to 64K primitives and codes of 63 bits (21 per axis) for more, so the
+ * sort takes 4 or 8 passes of 8 bits.
+ * <br/>
+ * The split of each node is found independently of the others by a binary
+ * search over the sorted codes (Karras, 2012), so all the splits are found in
+ * parallel. Then the nodes are emitted top down in their reserved nodes (see
+ * {@link HierarchyBuilder}) by fork-join tasks, and their boxes are calculated
+ * bottom up as the tasks return.
+ */
+final class LinearBvhBuilder extends HierarchyBuilder {
+	/** Maximal amount of primitives for the 30 bits Morton codes */
+	private static final int SHORT_CODES_SIZE = 1 << 16;
+	/** Amount of the bits of a digit of the radix sort */
+	private static final int RADIX_BITS = 8;
+	/** Amount of the values of a digit of the radix sort */
+	private static final int RADIX = 1 << RADIX_BITS;
+	/** Minimal amount of primitives of a node for emitting its subtrees in parallel */
+	private static final int PARALLEL_SIZE = 4096;
+
+	/** The Morton codes of the primitives in their sorted order */
+	private long[] codes;
+	/**
+	 * The splits of the radix tree nodes - the last primitive of the left child.
+	 * The radix tree node i is the inner node whose range of primitives begins or
+	 * ends at i, its children are the nodes of their split and of the next one.
+	 */
+	private int[] splits;
+
+	/**
+	 * Builds the tree over the primitives by their bounding boxes
+	 *
+	 * @param bounds the boxes of the primitives - 6 coordinates per primitive:
+	 *               minimal corner, maximal corner
+	 * @param count  the amount of the primitives
+	 */
+	LinearBvhBuilder(double[] bounds, int count) {
+		super(bounds, count);
+		if (count == 0)
+			return;
+
+		int bits = count <= SHORT_CODES_SIZE ? 10 : 21;
+		double[] boxes = primitivesBounds();
+		double[] scale = new double[3];
+		for (int axis = 0; axis < 3; ++axis) {
+			double extent = boxes[9 + axis] - boxes[6 + axis];
+			scale[axis] = extent > 0 ? (1 << bits) / extent : 0;
+		}
+		int maxCell = (1 << bits) - 1;
+		codes = new long[count];
+		IntStream.range(0, count).parallel().forEach(i -> {
+			long code = 0;
+			for (int axis = 0; axis < 3; ++axis) {
+				int cell = Math.min(maxCell, (int) ((centroids[3 * i + axis] - boxes[6 + axis]) * scale[axis]));
+				code = code << 1 | spreadBits(cell);
+			}
+			codes[i] = code;
+		});
+		sortByCodes(3 * bits);
+
+		splits = new int[count - 1];
+		IntStream.range(0, count - 1).parallel().forEach(this::findSplit);
+		new NodeTask(0, 0, count, 0, 0).invoke();
+		compact();
+	}
+
+	/**
+	 * Spreads the bits of a grid coordinate (up to 21 bits) two bits apart, so
+	 * the coordinates of the three axes can be interleaved
+	 *
+	 * @param value the grid coordinate
+	 * @return the spread bits
+	 */
+	private static long spreadBits(long value) {
+		value &= 0x1fffffL;
+		value = (value | value << 32) & 0x1f00000000ffffL;
+		value = (value | value << 16) & 0x1f0000ff0000ffL;
+		value = (value | value << 8) & 0x100f00f00f00f00fL;
+		value = (value | value << 4) & 0x10c30c30c30c30c3L;
+		return (value | value << 2) & 0x1249249249249249L;
+	}
+
+	/**
+	 * Sorts the primitives by their codes - a least significant digit radix sort.
+	 * Each pass counts the digits of parallel chunks of the primitives, so each
+	 * chunk copies its primitives straight to their places. A pass over a digit
+	 * which is the same for all the primitives is skipped.
+	 *
+	 * @param bits the amount of the bits of the codes
+	 */
+	private void sortByCodes(int bits) {
+		int count = primitives.length;
+		long[] keys = codes, sortedKeys = new long[count];
+		int[] values = primitives, sortedValues = new int[count];
+		for (int shift = 0; shift < bits; shift += RADIX_BITS) {
+			if (!radixPass(keys, values, sortedKeys, sortedValues, shift))
+				continue;
+			long[] tempKeys = keys;
+			keys = sortedKeys;
+			sortedKeys = tempKeys;
+			int[] tempValues = values;
+			values = sortedValues;
+			sortedValues = tempValues;
+		}
+		if (values != primitives) {
+			System.arraycopy(values, 0, primitives, 0, count);
+			System.arraycopy(keys, 0, codes, 0, count);
+		}
+	}
+
+	/**
+	 * Sorts the primitives by a single digit of their codes, keeping the order of
+	 * the primitives with the same digit
+	 *
+	 * @param keys         the codes of the primitives
+	 * @param values       the primitives
+	 * @param sortedKeys   the array to fill by the sorted codes
+	 * @param sortedValues the array to fill by the sorted primitives
+	 * @param shift        the position of the digit's lowest bit
+	 * @return false if the digit is the same for all the primitives, so they
+	 *         weren't copied
+	 */
+	private static boolean radixPass(long[] keys, int[] values, long[] sortedKeys, int[] sortedValues, int shift) {
+		int count = keys.length;
+		int chunks = (count + CHUNK_SIZE - 1) / CHUNK_SIZE;
+		int[][] offsets = new int[chunks][RADIX];
+		IntStream.range(0, chunks).parallel().forEach(chunk -> {
+			int[] histogram = offsets[chunk];
+			for (int i = chunk * CHUNK_SIZE; i < Math.min(count, (chunk + 1) * CHUNK_SIZE); ++i)
+				++histogram[(int) (keys[i] >>> shift) & (RADIX - 1)];
+		});
+
+		// The offset of each digit of each chunk - after all the smaller digits and
+		// after the same digit of the previous chunks
+		int total = 0;
+		for (int digit = 0; digit < RADIX; ++digit) {
+			int digitStart = total;
+			for (int[] chunkOffsets : offsets) {
+				int digitCount = chunkOffsets[digit];
+				chunkOffsets[digit] = total;
+				total += digitCount;
+			}
+			if (digitStart == 0 && total == count)
+				return false;
+		}
+
+		IntStream.range(0, chunks).parallel().forEach(chunk -> {
+			int[] chunkOffsets = offsets[chunk];
+			for (int i = chunk * CHUNK_SIZE; i < Math.min(count, (chunk + 1) * CHUNK_SIZE); ++i) {
+				int target = chunkOffsets[(int) (keys[i] >>> shift) & (RADIX - 1)]++;
+				sortedKeys[target] = keys[i];
+				sortedValues[target] = values[i];
+			}
+		});
+		return true;
+	}
+
+	/**
+	 * Calculates the length of the common prefix of the codes of two sorted
+	 * primitives. Equal codes are told apart by the positions of the primitives,
+	 * so all the prefixes are distinct.
+	 *
+	 * @param i the position of the first primitive
+	 * @param j the position of the second primitive
+	 * @return the amount of the common leading bits, or -1 if the second position
+	 *         is out of the range
+	 */
+	private int commonPrefix(int i, int j) {
+		if (j < 0 || j >= codes.length)
+			return -1;
+		long difference = codes[i] ^ codes[j];
+		return difference != 0 ? Long.numberOfLeadingZeros(difference)
+				: Long.SIZE + Integer.numberOfLeadingZeros(i ^ j);
+	}
+
+	/**
+	 * Finds the range and the split of a radix tree node. The range extends from
+	 * the node's position in the direction of the neighbor with the longer common
+	 * prefix, as far as the prefixes are longer than the prefix with the other
+	 * neighbor, and the split is where the prefix with the node's position
+	 * becomes shorter than the common prefix of the whole range. Both are found
+	 * by binary searches.
+	 *
+	 * @param node the index of the radix tree node
+	 */
+	private void findSplit(int node) {
+		int direction = commonPrefix(node, node + 1) > commonPrefix(node, node - 1) ? 1 : -1;
+		int minPrefix = commonPrefix(node, node - direction);
+		int maxLength = 2;
+		while (commonPrefix(node, node + maxLength * direction) > minPrefix)
+			maxLength <<= 1;
+		int length = 0;
+		for (int step = maxLength >> 1; step > 0; step >>= 1)
+			if (commonPrefix(node, node + (length + step) * direction) > minPrefix)
+				length += step;
+
+		int nodePrefix = commonPrefix(node, node + length * direction);
+		int split = 0;
+		int step = length;
+		do {
+			step = (step + 1) >> 1;
+			if (commonPrefix(node, node + (split + step) * direction) > nodePrefix)
+				split += step;
+		} while (step > 1);
+		splits[node] = node + split * direction + Math.min(direction, 0);
+	}
+
+	/**
+	 * Task of emitting a subtree
+	 */
+	private final class NodeTask extends RecursiveAction {
+		/** Serial version - the tasks are never serialized */
+		private static final long serialVersionUID = 1L;
+		/** The index of the subtree's root node */
+		private final int node;
+		/** The first primitive of the subtree */
+		private final int start;
+		/** The end (excluded) of the subtree's primitives */
+		private final int end;
+		/** The radix tree node of the subtree's root */
+		private final int radixNode;
+		/** The depth of the subtree's root */
+		private final int depth;
+
+		/**
+		 * Constructs a task of emitting a subtree
+		 *
+		 * @param node      the index of the subtree's root node
+		 * @param start     the first primitive of the subtree
+		 * @param end       the end (excluded) of the subtree's primitives
+		 * @param radixNode the radix tree node of the subtree's root
+		 * @param depth     the depth of the subtree's root
+		 */
+		NodeTask(int node, int start, int end, int radixNode, int depth) {
+			this.node = node;
+			this.start = start;
+			this.end = end;
+			this.radixNode = radixNode;
+			this.depth = depth;
+		}
+
+		@Override
+		protected void compute() {
+			emitNode(node, start, end, radixNode, depth);
+		}
+	}
+
+	/**
+	 * Emits recursively a node over a range of the sorted primitives, split as
+	 * the radix tree node, and calculates its box by the boxes of its children
+	 *
+	 * @param node      the index of the node
+	 * @param start     the first primitive in the range
+	 * @param end       the end (excluded) of the range
+	 * @param radixNode the radix tree node of the range
+	 * @param depth     the depth of the node in the tree
+	 */
+	private void emitNode(int node, int start, int end, int radixNode, int depth) {
+		int count = end - start;
+		if (count <= MAX_LEAF_SIZE || depth >= BoundingVolumeHierarchy.MAX_DEPTH) {
+			System.arraycopy(rangeBounds(start, end), 0, nodeBounds, 6 * node, 6);
+			makeLeaf(node, start, count);
+			return;
+		}
+
+		int split = splits[radixNode];
+		int middle = split + 1;
+		int right = node + 2 * (middle - start);
+		if (count >= PARALLEL_SIZE)
+			ForkJoinTask.invokeAll(new NodeTask(node + 1, start, middle, split, depth + 1),
+					new NodeTask(right, middle, end, split + 1, depth + 1));
+		else {
+			emitNode(node + 1, start, middle, split, depth + 1);
+			emitNode(right, middle, end, split + 1, depth + 1);
+		}
+
+		System.arraycopy(nodeBounds, 6 * (node + 1), nodeBounds, 6 * node, 6);
+		expand(nodeBounds, 6 * node, nodeBounds, 6 * right);
+		// The highest differing bit of the range's codes is the bit of the split,
+		// the bits are interleaved x, y, z from the highest
+		long difference = codes[start] ^ codes[end - 1];
+		int bit = Long.SIZE - 1 - Long.numberOfLeadingZeros(difference);
+		makeInner(node, right, difference == 0 ? 0 : 2 - bit % 3);
+	}
+}
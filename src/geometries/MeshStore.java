@@ -0,0 +1,135 @@
+package geometries;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.util.stream.IntStream;
+
+/**
+ * Off-heap store of a triangle mesh and of its bounding volume hierarchy. The
+ * data is held in direct buffers, outside of the Java heap, in a struct of
+ * arrays layout - an array per coordinate of the vertices, per corner of the
+ * triangles and per coordinate of the nodes' boxes - so the heap holds just a
+ * few buffer objects however big the mesh is, and the garbage collector never
+ * scans or copies the data. The nodes are in the depth first order of
+ * {@link BoundingVolumeHierarchy}, and their data has the same meaning.
+ * <br/>
+ * The buffers are released by the garbage collector with the store. Their
+ * total size is limited by the JVM's maximal direct memory (by default as big
+ * as the maximal heap, see -XX:MaxDirectMemorySize), and each array is held in
+ * a single buffer of up to 2 GB, which limits a mesh to about 134 million
+ * triangles and 268 million vertices (see {@link #checkSize(int, int)}).
+ */
+final class MeshStore {
+	/** Maximal size of a direct buffer in bytes */
+	private static final long MAX_BUFFER_SIZE = Integer.MAX_VALUE;
+
+	/** Coordinates of the vertices - an array per axis */
+	final DoubleBuffer[] vertices = new DoubleBuffer[3];
+	/** Indices of the vertices of the triangles - an array per corner */
+	final IntBuffer[] corners = new IntBuffer[3];
+	/**
+	 * Boxes of the nodes - an array per coordinate: minimal x, y, z, maximal x, y,
+	 * z
+	 */
+	final DoubleBuffer[] bounds = new DoubleBuffer[6];
+	/** The first numbers of the nodes' data - first primitive offset or right child */
+	final IntBuffer nodeFirst;
+	/** The second numbers of the nodes' data - amount of primitives or -(axis + 1) */
+	final IntBuffer nodeSize;
+	/** Indices of the triangles ordered by the leaves */
+	final IntBuffer primitives;
+	/** Amount of the nodes */
+	final int nodeCount;
+
+	/**
+	 * Copies a mesh and its tree into a new store
+	 *
+	 * @param vertices the coordinates of the vertices - 3 per vertex
+	 * @param indices  the indices of the vertices of the triangles - 3 per
+	 *                 triangle
+	 * @param tree     the tree of the triangles
+	 */
+	MeshStore(double[] vertices, int[] indices, HierarchyCache.Tree tree) {
+		int vertexCount = vertices.length / 3, triangleCount = indices.length / 3;
+		nodeCount = tree.nodeData().length / 2;
+		for (int axis = 0; axis < 3; ++axis) {
+			this.vertices[axis] = doubles(vertexCount);
+			corners[axis] = ints(triangleCount);
+		}
+		for (int coordinate = 0; coordinate < 6; ++coordinate)
+			bounds[coordinate] = doubles(nodeCount);
+		nodeFirst = ints(nodeCount);
+		nodeSize = ints(nodeCount);
+		primitives = ints(triangleCount).put(tree.primitives()).clear();
+
+		IntStream.range(0, vertexCount).parallel().forEach(i -> {
+			for (int axis = 0; axis < 3; ++axis)
+				this.vertices[axis].put(i, vertices[3 * i + axis]);
+		});
+		IntStream.range(0, triangleCount).parallel().forEach(i -> {
+			for (int corner = 0; corner < 3; ++corner)
+				corners[corner].put(i, indices[3 * i + corner]);
+		});
+		double[] nodeBounds = tree.nodeBounds();
+		int[] nodeData = tree.nodeData();
+		IntStream.range(0, nodeCount).parallel().forEach(node -> {
+			for (int coordinate = 0; coordinate < 6; ++coordinate)
+				bounds[coordinate].put(node, nodeBounds[6 * node + coordinate]);
+			nodeFirst.put(node, nodeData[2 * node]);
+			nodeSize.put(node, nodeData[2 * node + 1]);
+		});
+	}
+
+	/**
+	 * Checks that a mesh fits in a store - each of its arrays in a single direct
+	 * buffer. The largest arrays are those of the vertices' coordinates and of the
+	 * nodes' boxes, of up to 2 * triangles - 1 nodes.
+	 *
+	 * @param vertexCount   the amount of the vertices
+	 * @param triangleCount the amount of the triangles
+	 * @throws IllegalArgumentException if the mesh is too large
+	 */
+	static void checkSize(int vertexCount, int triangleCount) {
+		long nodeCount = Math.max(0, 2L * triangleCount - 1);
+		if (Double.BYTES * (long) vertexCount > MAX_BUFFER_SIZE || Double.BYTES * nodeCount > MAX_BUFFER_SIZE)
+			throw new IllegalArgumentException("The mesh is too large for an off-heap store: " + vertexCount
+					+ " vertices, " + triangleCount + " triangles");
+	}
+
+	/**
+	 * Calculates the size of a direct buffer of an array
+	 *
+	 * @param length the length of the array
+	 * @param bytes  the size of an item in bytes
+	 * @return the size of the buffer in bytes
+	 * @throws IllegalArgumentException if the array doesn't fit in a buffer
+	 */
+	private static int bufferSize(int length, int bytes) {
+		long size = (long) length * bytes;
+		if (size > MAX_BUFFER_SIZE)
+			throw new IllegalArgumentException("Too large off-heap array: " + length);
+		return (int) size;
+	}
+
+	/**
+	 * Allocates an off-heap double array
+	 *
+	 * @param length the length of the array
+	 * @return the array
+	 */
+	private static DoubleBuffer doubles(int length) {
+		return ByteBuffer.allocateDirect(bufferSize(length, Double.BYTES)).order(ByteOrder.nativeOrder()).asDoubleBuffer();
+	}
+
+	/**
+	 * Allocates an off-heap int array
+	 *
+	 * @param length the length of the array
+	 * @return the array
+	 */
+	private static IntBuffer ints(int length) {
+		return ByteBuffer.allocateDirect(bufferSize(length, Integer.BYTES)).order(ByteOrder.nativeOrder()).asIntBuffer();
+	}
+}
@@ -0,0 +1,394 @@
+package geometries;
+
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import primitives.*;
+
+/**
+ * Indexed triangle mesh stored off the Java heap, for scenes too big for the
+ * heap. It is equivalent to {@link TriangleMesh} - the same triangles, the
+ * same hierarchy and the same intersections - but once its hierarchy is built
+ * the vertices, the triangles and the nodes are copied into a
+ * {@link MeshStore} and the mesh drops the given arrays, so the heap holds only
+ * a few objects per mesh and the garbage collector's work doesn't grow with
+ * the scene. The traversal and the intersection read straight from the store,
+ * and the edges and the normals of the triangles are calculated from the
+ * vertices when they are needed instead of being stored.
+ * <br/>
+ * The hierarchy is built on the first intersection query, or by building the
+ * collection holding the mesh (see {@link Geometries#build(HierarchyCache)}),
+ * which may load it from a cache.
+ */
+public class OffHeapMesh extends Geometry {
+	/** Size of the stack of the traversal - more than the depth of the tree */
+	private static final int STACK_SIZE = BoundingVolumeHierarchy.MAX_DEPTH + 2;
+
+	/** Amount of the triangles */
+	private final int triangleCount;
+	/** Amount of the vertices */
+	private final int vertexCount;
+	/** The method of building the hierarchy */
+	private final BuildMethod method;
+	/** The box of the triangles, null if there are none */
+	private final BoundingBox box;
+	/** The given coordinates of the vertices, null after the store is created */
+	private double[] vertices;
+	/** The given indices of the triangles, null after the store is created */
+	private int[] indices;
+	/** The store of the mesh, null until the hierarchy is built */
+	private volatile MeshStore store = null;
+
+	/**
+	 * Constructs a mesh of the given vertices and triangles, arranged by the
+	 * binned SAH. The arrays are copied off the heap when the hierarchy is built,
+	 * they must not be changed until then.
+	 *
+	 * @param vertices the coordinates of the vertices - 3 per vertex
+	 * @param indices  the indices of the vertices of the triangles - 3 per
+	 *                 triangle, each triangle ordered by its edge path
+	 * @throws IllegalArgumentException if an array's length isn't a multiple of 3,
+	 *                                  an index is out of the vertices' range or
+	 *                                  the mesh is too large for the off-heap
+	 *                                  buffers (see {@link MeshStore})
+	 */
+	public OffHeapMesh(double[] vertices, int[] indices) {
+		this(vertices, indices, BuildMethod.BINNED_SAH);
+	}
+
+	/**
+	 * Constructs a mesh of the given vertices and triangles, see
+	 * {@link #OffHeapMesh(double[], int[])}
+	 *
+	 * @param vertices the coordinates of the vertices - 3 per vertex
+	 * @param indices  the indices of the vertices of the triangles - 3 per
+	 *                 triangle, each triangle ordered by its edge path
+	 * @param method   the method of building the hierarchy of the triangles
+	 * @throws IllegalArgumentException if an array's length isn't a multiple of 3,
+	 *                                  an index is out of the vertices' range or
+	 *                                  the mesh is too large for the off-heap
+	 *                                  buffers (see {@link MeshStore})
+	 */
+	public OffHeapMesh(double[] vertices, int[] indices, BuildMethod method) {
+		TriangleMesh.checkMesh(vertices, indices);
+		vertexCount = vertices.length / 3;
+		MeshStore.checkSize(vertexCount, indices.length / 3);
+		this.vertices = vertices;
+		this.indices = indices;
+		this.method = method;
+		triangleCount = indices.length / 3;
+		if (triangleCount == 0) {
+			box = null;
+			return;
+		}
+		double[] bounds = HierarchyBuilder.emptyBounds();
+		for (int index : indices)
+			HierarchyBuilder.expandPoint(bounds, vertices, 3 * index);
+		box = new BoundingBox(bounds[0], bounds[1], bounds[2], bounds[3], bounds[4], bounds[5]);
+	}
+
+	/**
+	 * Returns the amount of the triangles in the mesh
+	 *
+	 * @return the amount of the triangles
+	 */
+	public int getTriangleCount() {
+		return triangleCount;
+	}
+
+	/**
+	 * Returns the amount of the vertices in the mesh
+	 *
+	 * @return the amount of the vertices
+	 */
+	public int getVertexCount() {
+		return vertexCount;
+	}
+
+	/**
+	 * Returns the store of the mesh, building the hierarchy and creating the
+	 * store if it hasn't been created
+	 *
+	 * @param cache the cache of built hierarchies, may be null
+	 * @return the store
+	 */
+	private MeshStore store(HierarchyCache cache) {
+		MeshStore result = store;
+		if (result == null) {
+			synchronized (this) {
+				result = store;
+				if (result == null) {
+					double[] bounds = new double[6 * triangleCount];
+					IntStream.range(0, triangleCount).parallel().forEach(i -> {
+						int a = 3 * indices[3 * i], b = 3 * indices[3 * i + 1], c = 3 * indices[3 * i + 2];
+						for (int axis = 0; axis < 3; ++axis) {
+							bounds[6 * i + axis] = Math.min(vertices[a + axis],
+									Math.min(vertices[b + axis], vertices[c + axis]));
+							bounds[6 * i + 3 + axis] = Math.max(vertices[a + axis],
+									Math.max(vertices[b + axis], vertices[c + axis]));
+						}
+					});
+					HierarchyCache.Tree tree = BoundingVolumeHierarchy.buildTree(bounds, triangleCount, method,
+							cache);
+					store = result = new MeshStore(vertices, indices, tree);
+					vertices = null;
+					indices = null;
+				}
+			}
+		}
+		return result;
+	}
+
+	@Override
+	void prepare(HierarchyCache cache) {
+		store(cache);
+	}
+
+	/**
+	 * Returns the normal of a triangle of the mesh
+	 *
+	 * @param triangle the index of the triangle
+	 * @return the unit normal of the triangle
+	 */
+	public Vector getNormal(int triangle) {
+		double[] edges = edges(store(null), triangle);
+		return VectorMath.normalized(VectorMath.crossX(edges[1], edges[2], edges[4], edges[5]),
+				VectorMath.crossY(edges[0], edges[2], edges[3], edges[5]),
+				VectorMath.crossZ(edges[0], edges[1], edges[3], edges[4]));
+	}
+
+	/**
+	 * Returns the normal of the mesh at a point. The triangle of the point is
+	 * searched over all the triangles, so the normal of an intersection should be
+	 * taken by {@link #getNormal(Intersectable.GeoPoint)}, which uses the
+	 * intersected triangle.
+	 *
+	 * @param point the point on the mesh
+	 * @return the normal of the triangle containing the point
+	 * @throws IllegalArgumentException if the point isn't on the mesh
+	 */
+	@Override
+	public Vector getNormal(Point point) {
+		MeshStore current = store(null);
+		for (int i = 0; i < triangleCount; ++i)
+			if (contains(current, i, point))
+				return getNormal(i);
+		throw new IllegalArgumentException("The point is not on the mesh");
+	}
+
+	@Override
+	public Vector getNormal(GeoPoint hit) {
+		return hit.primitive < 0 ? getNormal(hit.point) : getNormal(hit.primitive);
+	}
+
+	/**
+	 * Calculates the first vertex and the edges of a triangle
+	 *
+	 * @param store    the store of the mesh
+	 * @param triangle the index of the triangle
+	 * @return the coordinates of the edge to the second vertex, of the edge to
+	 *         the third vertex and of the first vertex - 9 coordinates
+	 */
+	private static double[] edges(MeshStore store, int triangle) {
+		int a = store.corners[0].get(triangle), b = store.corners[1].get(triangle), c = store.corners[2].get(triangle);
+		double[] result = new double[9];
+		for (int axis = 0; axis < 3; ++axis) {
+			DoubleBuffer coordinates = store.vertices[axis];
+			double first = coordinates.get(a);
+			result[axis] = coordinates.get(b) - first;
+			result[3 + axis] = coordinates.get(c) - first;
+			result[6 + axis] = first;
+		}
+		return result;
+	}
+
+	/**
+	 * Checks whether a point is on a triangle of the mesh (its edges included)
+	 *
+	 * @param store    the store of the mesh
+	 * @param triangle the index of the triangle
+	 * @param point    the point
+	 * @return true if the point is on the triangle
+	 */
+	private static boolean contains(MeshStore store, int triangle, Point point) {
+		double[] e = edges(store, triangle);
+		double nx = VectorMath.crossX(e[1], e[2], e[4], e[5]);
+		double ny = VectorMath.crossY(e[0], e[2], e[3], e[5]);
+		double nz = VectorMath.crossZ(e[0], e[1], e[3], e[4]);
+		double length = VectorMath.length(nx, ny, nz);
+		if (length == 0)
+			return false; // degenerate triangle
+		return TriangleMesh.contains(point.getX() - e[6], point.getY() - e[7], point.getZ() - e[8], //
+				e[0], e[1], e[2], e[3], e[4], e[5], nx / length, ny / length, nz / length);
+	}
+
+	/**
+	 * Calculates the intersection of the ray with a triangle of the mesh, see
+	 * {@link Triangle#intersect}. The vertices are read from the store, and the
+	 * edges are calculated from them exactly as {@link TriangleMesh} calculates
+	 * its stored edges.
+	 *
+	 * @param store       the store of the mesh
+	 * @param triangle    the index of the triangle
+	 * @param ray         the ray
+	 * @param maxDistance the distance from the ray's head, an intersection at this
+	 *                    distance or farther is ignored
+	 * @param hit         hit record to update by the intersection, may be null
+	 * @return the distance of the intersection from the ray's head, or 0 if there
+	 *         is no such intersection
+	 */
+	private static double intersectTriangle(MeshStore store, int triangle, Ray ray, double maxDistance,
+			GeoPoint hit) {
+		int a = store.corners[0].get(triangle), b = store.corners[1].get(triangle), c = store.corners[2].get(triangle);
+		DoubleBuffer x = store.vertices[0], y = store.vertices[1], z = store.vertices[2];
+		double ax = x.get(a), ay = y.get(a), az = z.get(a);
+		return Triangle.intersect(ray, ax, ay, az, x.get(b) - ax, y.get(b) - ay, z.get(b) - az, //
+				x.get(c) - ax, y.get(c) - ay, z.get(c) - az, maxDistance, hit);
+	}
+
+	/**
+	 * Checks whether the ray hits the box of a node before a given distance
+	 *
+	 * @param store       the store of the mesh
+	 * @param node        the index of the node
+	 * @param x           x coordinate of the ray head
+	 * @param y           y coordinate of the ray head
+	 * @param z           z coordinate of the ray head
+	 * @param invX        inverse of the x component of the ray direction
+	 * @param invY        inverse of the y component of the ray direction
+	 * @param invZ        inverse of the z component of the ray direction
+	 * @param maxDistance the maximal distance along the ray
+	 * @return true if the ray hits the node's box
+	 */
+	private static boolean intersectsNode(MeshStore store, int node, double x, double y, double z, double invX,
+			double invY, double invZ, double maxDistance) {
+		DoubleBuffer[] bounds = store.bounds;
+		return BoundingBox.intersects(bounds[0].get(node), bounds[1].get(node), bounds[2].get(node),
+				bounds[3].get(node), bounds[4].get(node), bounds[5].get(node), //
+				x, y, z, invX, invY, invZ, maxDistance);
+	}
+
+	@Override
+	protected BoundingBox calcBoundingBox() {
+		return box;
+	}
+
+	/**
+	 * Visits the intersections of the ray with the triangles, walking the
+	 * hierarchy in the store
+	 *
+	 * @param store   the store of the mesh
+	 * @param ray     the ray
+	 * @param hit     hit record to fill by each intersection before it is
+	 *                visited, its distance bounds the traversal
+	 * @param closest true for visiting the nodes front to back and bounding the
+	 *                rest of the traversal by the distance of each intersection,
+	 *                false for keeping the initial distance of the hit record
+	 * @param visitor the visitor of the intersected triangles, it may stop the
+	 *                traversal by returning false
+	 */
+	private static void forEachHit(MeshStore store, Ray ray, GeoPoint hit, boolean closest,
+			WideTree.HitVisitor visitor) {
+		Point head = ray.getHead();
+		Vector v = ray.getDirection();
+		double x = head.getX(), y = head.getY(), z = head.getZ();
+		double invX = 1 / v.getX(), invY = 1 / v.getY(), invZ = 1 / v.getZ();
+		IntBuffer nodeFirst = store.nodeFirst, nodeSize = store.nodeSize, primitives = store.primitives;
+		double maxDistance = hit.t;
+
+		TraversalBuffers buffers = TraversalBuffers.acquire();
+		try {
+			int[] stack = buffers.stack(STACK_SIZE);
+			int top = 0;
+			stack[top++] = 0;
+			while (top > 0) {
+				int node = stack[--top];
+				if (closest)
+					maxDistance = hit.t;
+				if (!intersectsNode(store, node, x, y, z, invX, invY, invZ, maxDistance))
+					continue;
+
+				int count = nodeSize.get(node);
+				if (count < 0) { // inner node - push the far child first
+					int axis = -count - 1;
+					boolean backwards = closest && (axis == 0 ? invX : axis == 1 ? invY : invZ) < 0;
+					stack[top++] = backwards ? node + 1 : nodeFirst.get(node);
+					stack[top++] = backwards ? nodeFirst.get(node) : node + 1;
+					continue;
+				}
+
+				int first = nodeFirst.get(node);
+				for (int i = first; i < first + count; ++i) {
+					int triangle = primitives.get(i);
+					if (intersectTriangle(store, triangle, ray, closest ? hit.t : maxDistance, hit) != 0
+							&& !visitor.visit(triangle))
+						return;
+				}
+			}
+		} finally {
+			buffers.release();
+		}
+	}
+
+	@Override
+	protected List<GeoPoint> findGeoIntersectionsHelper(Ray ray) {
+		MeshStore current = store(null);
+		if (current.nodeCount == 0)
+			return null;
+		List<GeoPoint> intersections = new LinkedList<>();
+		GeoPoint hit = new GeoPoint();
+		forEachHit(current, ray, hit, false, triangle -> {
+			GeoPoint intersection = new GeoPoint();
+			intersection.geometry = this;
+			intersection.t = hit.t;
+			intersection.u = hit.u;
+			intersection.v = hit.v;
+			intersection.point = ray.getPoint(intersection.t);
+			intersection.primitive = triangle;
+			intersections.add(intersection);
+			return true;
+		});
+		return intersections.isEmpty() ? null : intersections;
+	}
+
+	/**
+	 * Finds the closest intersection of the ray with the triangles, visiting the
+	 * nodes front to back, see {@link BoundingVolumeHierarchy}
+	 */
+	@Override
+	protected boolean findClosestHitHelper(Ray ray, GeoPoint hit) {
+		MeshStore current = store(null);
+		if (current.nodeCount == 0)
+			return false;
+		double maxDistance = hit.t;
+		forEachHit(current, ray, hit, true, triangle -> {
+			hit.primitive = triangle;
+			return true;
+		});
+		if (hit.t >= maxDistance)
+			return false;
+		hit.geometry = this;
+		return true;
+	}
+
+	/**
+	 * Finds how much light passes through the triangles along the ray. The
+	 * traversal stops as soon as the ray is blocked by the triangles.
+	 */
+	@Override
+	protected Double3 findTransparencyHelper(Ray ray, double maxDistance, double minTransparency) {
+		MeshStore current = store(null);
+		if (current.nodeCount == 0)
+			return Double3.ONE;
+		Double3 kT = getMaterial().kT;
+		Double3[] ktr = { Double3.ONE };
+		forEachHit(current, ray, new GeoPoint().reset(maxDistance), false, triangle -> {
+			ktr[0] = ktr[0].product(kT);
+			return !isBlocked(ktr[0], minTransparency);
+		});
+		return isBlocked(ktr[0], minTransparency) ? Double3.ZERO : ktr[0];
+	}
+}
@@ -5,11 +5,13 @@ import java.util.List;
 import primitives.Point;
 import primitives.Ray;
 import primitives.Vector;
+import primitives.VectorMath;
 import static primitives.Util.*;
 
 /**
  * The {@code Plane} class represents a plane in 3D space, defined by a point on the plane and a normal vector perpendicular to the plane.
  * It provides methods for calculating the normal vector at a point on the plane and for finding intersections between the plane and rays.
+ * A plane is infinite, so it is unbounded and has no bounding box.
  */
 public class Plane extends Geometry {
 	/**
@@ -116,32 +118,55 @@ public class Plane extends Geometry {
 	 */
 	@Override
 	protected List<GeoPoint> findGeoIntersectionsHelper(Ray ray) {
+		double t = findIntersectionDistance(ray);
+
+		// Return a list containing the intersection point as a GeoPoint
+		return t <= 0 ? null : List.of(new GeoPoint(this, ray.getPoint(t)));
+	}
+
+	/**
+	 * Updates the hit record by the intersection point of a given ray with the plane, if it is closer to the ray's head than the record's distance.
+	 * 
+	 * @param ray the ray to check for intersections
+	 * @param hit the hit record
+	 * @return {@code true} if the record was updated
+	 */
+	@Override
+	protected boolean findClosestHitHelper(Ray ray, GeoPoint hit) {
+		double t = findIntersectionDistance(ray);
+		if (t <= 0 || t >= hit.t)
+			return false;
+		hit.t = t;
+		hit.geometry = this;
+		return true;
+	}
+
+	/**
+	 * Calculates the distance from the ray's head to the intersection point of the ray with the plane.
+	 * 
+	 * @param ray the ray to check for intersection
+	 * @return the distance to the intersection point, or 0 if there is no intersection
+	 */
+	double findIntersectionDistance(Ray ray) {
 		Point p0 = ray.getHead();
 		Vector v = ray.getDirection();
 
-		// If the ray's origin is on the plane, return null
+		// If the ray's origin is on the plane, there is no intersection
 		if (p0.equals(p))
-			return null;
+			return 0;
 
 		// Calculate the numerator and denominator for the intersection equation
-		double numerator = normalVector.dotProduct(p.subtract(p0));
+		double numerator = VectorMath.dotDifference(normalVector, p, p0);
 		double denominator = normalVector.dotProduct(v);
 
 		// If the denominator is zero, the ray is parallel to the plane
 		if (isZero(denominator))
-			return null;
+			return 0;
 
 		// Calculate the intersection distance t
 		double t = alignZero(numerator / denominator);
 
 		// If t <= 0, the intersection point is behind the ray's origin or at the origin
-		if (t <= 0)
-			return null;
-
-		// Calculate the intersection point
-		Point intersectionPoint = ray.getPoint(t);
-
-		// Return a list containing the intersection point as a GeoPoint
-		return List.of(new GeoPoint(this, intersectionPoint));
+		return t <= 0 ? 0 : t;
 	}
 }
@@ -2,11 +2,12 @@ package geometries;
 
 import java.util.List;
 
-import static primitives.Util.isZero;
+import static primitives.Util.*;
 
 import primitives.Point;
 import primitives.Ray;
 import primitives.Vector;
+import primitives.VectorMath;
 
 /**
  * Polygon class represents two-dimensional polygon in 3D Cartesian coordinate
@@ -87,9 +88,63 @@ public class Polygon extends Geometry {
 		return plane.getNormal();
 	}
 
+	@Override
+	protected BoundingBox calcBoundingBox() {
+		return BoundingBox.of(vertices.toArray(new Point[size]));
+	}
+
 	@Override
 	protected List<GeoPoint> findGeoIntersectionsHelper(Ray ray) {
-		return null;// bonus
+		double t = findIntersectionDistance(ray);
+		return t == 0 ? null : List.of(new GeoPoint(this, ray.getPoint(t)));
+	}
+
+	@Override
+	protected boolean findClosestHitHelper(Ray ray, GeoPoint hit) {
+		double t = findIntersectionDistance(ray);
+		if (t == 0 || t >= hit.t)
+			return false;
+		hit.t = t;
+		hit.geometry = this;
+		return true;
+	}
+
+	/**
+	 * Calculates the distance from the ray's head to the intersection point of the
+	 * ray with the polygon. The point is found on the polygon's plane, and it is
+	 * inside the polygon if it is on the same side of all the edges - the cross
+	 * products of the edges with the vectors from their start to the point have
+	 * the same direction along the normal. The vectors aren't normalized, only the
+	 * signs of the products are used. The edges and the vertices of the polygon
+	 * aren't intersected.
+	 *
+	 * @param ray the ray
+	 * @return the distance to the intersection point, or 0 if there is no
+	 *         intersection
+	 */
+	private double findIntersectionDistance(Ray ray) {
+		double t = plane.findIntersectionDistance(ray);
+		if (t == 0)
+			return 0;
+
+		Point p0 = ray.getHead();
+		Vector v = ray.getDirection();
+		Vector n = plane.getNormal();
+		double px = p0.getX() + t * v.getX(), py = p0.getY() + t * v.getY(), pz = p0.getZ() + t * v.getZ();
+		Point a = vertices.get(size - 1);
+		double sign = 0;
+		for (Point b : vertices) {
+			double ex = b.getX() - a.getX(), ey = b.getY() - a.getY(), ez = b.getZ() - a.getZ();
+			double wx = px - a.getX(), wy = py - a.getY(), wz = pz - a.getZ();
+			double side = alignZero(VectorMath.dot(n, VectorMath.crossX(ey, ez, wy, wz),
+					VectorMath.crossY(ex, ez, wx, wz), VectorMath.crossZ(ex, ey, wx, wy)));
+			// on an edge (or its continuation), or on the other side than the previous edges
+			if (side == 0 || side * sign < 0)
+				return 0;
+			sign = side;
+			a = b;
+		}
+		return t;
 	}
 
 }
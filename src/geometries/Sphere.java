@@ -5,6 +5,7 @@ import java.util.List;
 import primitives.Point;
 import primitives.Ray;
 import primitives.Vector;
+import primitives.VectorMath;
 import static primitives.Util.*;
 
 /**
@@ -36,7 +37,14 @@ public class Sphere extends RadialGeometry {
 	 * @return the normal vector
 	 */
 	public Vector getNormal(Point point) {
-		return point.subtract(center).normalize();
+		return VectorMath.normalized(point.getX() - center.getX(), point.getY() - center.getY(),
+				point.getZ() - center.getZ());
+	}
+
+	@Override
+	protected BoundingBox calcBoundingBox() {
+		return new BoundingBox(center.getX() - radius, center.getY() - radius, center.getZ() - radius, //
+				center.getX() + radius, center.getY() + radius, center.getZ() + radius);
 	}
 
 	/**
@@ -57,14 +65,14 @@ public class Sphere extends RadialGeometry {
 			return List.of(new GeoPoint(this, ray.getPoint(radius)));
 
 		// Vector from the ray's origin to the sphere's center
-		Vector u = center.subtract(p0);
+		double ux = center.getX() - p0.getX(), uy = center.getY() - p0.getY(), uz = center.getZ() - p0.getZ();
 
 		// Calculate tm (distance from the ray's origin to the sphere's center along the
 		// ray's direction)
-		double tm = v.dotProduct(u);
+		double tm = VectorMath.dot(v, ux, uy, uz);
 
 		// Calculate dSquared (squared distance from the sphere's center to the ray)
-		double dSquared = u.lengthSquared() - tm * tm;
+		double dSquared = VectorMath.lengthSquared(ux, uy, uz) - tm * tm;
 		double thSquared = radiusSquared - dSquared;
 		// If d^2 > r^2, the ray misses the sphere
 		if (alignZero(thSquared) <= 0)
@@ -86,4 +94,48 @@ public class Sphere extends RadialGeometry {
 				: List.of(new GeoPoint(this, ray.getPoint(t1)), new GeoPoint(this, ray.getPoint(t2)));
 	}
 
-}
\ No newline at end of file
+	/**
+	 * Update the hit record by the closest intersection point of the given ray
+	 * with the sphere, if it is closer to the ray's head than the record's
+	 * distance.
+	 * 
+	 * @param ray- the ray to check for intersections
+	 * @param hit- the hit record
+	 * @return true if the record was updated
+	 */
+	@Override
+	protected boolean findClosestHitHelper(Ray ray, GeoPoint hit) {
+		Point p0 = ray.getHead();
+		if (p0.equals(center))
+			return updateHit(hit, radius);
+
+		double ux = center.getX() - p0.getX(), uy = center.getY() - p0.getY(), uz = center.getZ() - p0.getZ();
+		double tm = VectorMath.dot(ray.getDirection(), ux, uy, uz);
+		double thSquared = radiusSquared - (VectorMath.lengthSquared(ux, uy, uz) - tm * tm);
+		if (alignZero(thSquared) <= 0)
+			return false;
+
+		double th = Math.sqrt(thSquared);
+		// The first intersection (t1) is the closest unless it's behind the ray's head
+		double t1 = tm - th;
+		double t = alignZero(t1) > 0 ? t1 : tm + th;
+		return alignZero(t) > 0 && updateHit(hit, t);
+	}
+
+	/**
+	 * Update the hit record by an intersection at the given distance, if it is
+	 * closer than the record's distance
+	 *
+	 * @param hit the hit record
+	 * @param t   the distance of the intersection from the ray's head
+	 * @return true if the record was updated
+	 */
+	private boolean updateHit(GeoPoint hit, double t) {
+		if (t >= hit.t)
+			return false;
+		hit.t = t;
+		hit.geometry = this;
+		return true;
+	}
+
+}
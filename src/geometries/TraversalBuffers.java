@@ -0,0 +1,180 @@
+package geometries;
+
+import primitives.Ray;
+import primitives.Transform;
+
+/**
+ * Scratch buffers of the traversals of the hierarchies, reused by all the
+ * traversals of a thread instead of being allocated by each of them. The
+ * primitives of a hierarchy may be geometries with hierarchies of their own
+ * (e.g. the instances of a mesh in a scene), which are traversed by the same
+ * thread in the middle of the traversal of the containing hierarchy - so each
+ * nesting level of the traversals takes buffers of its own. A traversal takes
+ * the buffers by {@link #acquire()} and must give them back by
+ * {@link #release()} when it's done.
+ * <br/>
+ * The buffers grow to the largest size asked for, their content is left by the
+ * previous traversal.
+ */
+final class TraversalBuffers {
+	/** The outermost buffers of each thread */
+	private static final ThreadLocal<TraversalBuffers> BUFFERS = ThreadLocal.withInitial(TraversalBuffers::new);
+
+	/** The buffers of the next nesting level, null until they are needed */
+	private TraversalBuffers next = null;
+	/** Whether the buffers are taken by a traversal */
+	private boolean taken = false;
+	/** The stack of the nodes */
+	private int[] stack = new int[0];
+	/** The masks of the rays of the stacked nodes */
+	private int[] masks = new int[0];
+	/** The heads and the (inverse) directions of the rays of a packet */
+	private double[] origins = new double[0];
+	/** The entry distances of the stacked nodes */
+	private double[] stackDistances = new double[0];
+	/** The rays of a packet transformed into the space of an instance's geometry */
+	private Ray[] rays = new Ray[0];
+	/** The scales of the distances along the transformed rays of a packet */
+	private double[] scales = new double[0];
+	/** The distances of the hit records of a packet before a search */
+	private double[] hitDistances = new double[0];
+	/** The transforms of the hit records of a packet before a search */
+	private Transform[] transforms = new Transform[0];
+	/** The entry distances of the boxes of a node's children, see {@link Kernels} */
+	final double[] distances = new double[Kernels.WIDTH];
+	/** The nearest entry distances of the rays of a packet into a node's children */
+	final double[] nearest = new double[Kernels.WIDTH];
+	/** The masks of the rays of a packet hitting each of a node's children */
+	final int[] laneMasks = new int[Kernels.WIDTH];
+	/** The intersections with a packet of triangles, see {@link Kernels} */
+	final double[] results = new double[3 * Kernels.WIDTH];
+
+	/** Buffers are created by {@link #acquire()} only */
+	private TraversalBuffers() {
+	}
+
+	/**
+	 * Takes the free buffers of the current thread - of the innermost traversal
+	 * in progress
+	 *
+	 * @return the buffers
+	 */
+	static TraversalBuffers acquire() {
+		TraversalBuffers buffers = BUFFERS.get();
+		while (buffers.taken) {
+			if (buffers.next == null)
+				buffers.next = new TraversalBuffers();
+			buffers = buffers.next;
+		}
+		buffers.taken = true;
+		return buffers;
+	}
+
+	/**
+	 * Gives the buffers back, once the traversal which has taken them is done
+	 */
+	void release() {
+		taken = false;
+	}
+
+	/**
+	 * Returns the stack of the nodes
+	 *
+	 * @param size the needed size
+	 * @return the stack, at least of the needed size
+	 */
+	int[] stack(int size) {
+		if (stack.length < size)
+			stack = new int[size];
+		return stack;
+	}
+
+	/**
+	 * Returns the stack of the masks of the rays of the stacked nodes
+	 *
+	 * @param size the needed size
+	 * @return the stack, at least of the needed size
+	 */
+	int[] masks(int size) {
+		if (masks.length < size)
+			masks = new int[size];
+		return masks;
+	}
+
+	/**
+	 * Returns the buffer of the heads and the (inverse) directions of the rays of
+	 * a packet
+	 *
+	 * @param size the needed size
+	 * @return the buffer, at least of the needed size
+	 */
+	double[] origins(int size) {
+		if (origins.length < size)
+			origins = new double[size];
+		return origins;
+	}
+
+	/**
+	 * Returns the stack of the entry distances of the stacked nodes
+	 *
+	 * @param size the needed size
+	 * @return the stack, at least of the needed size
+	 */
+	double[] stackDistances(int size) {
+		if (stackDistances.length < size)
+			stackDistances = new double[size];
+		return stackDistances;
+	}
+
+	/**
+	 * Returns the buffer of the rays of a packet transformed into the space of an
+	 * instance's geometry
+	 *
+	 * @param size the needed size
+	 * @return the buffer, at least of the needed size
+	 */
+	Ray[] rays(int size) {
+		if (rays.length < size)
+			rays = new Ray[size];
+		return rays;
+	}
+
+	/**
+	 * Returns the buffer of the scales of the distances along the transformed rays
+	 * of a packet
+	 *
+	 * @param size the needed size
+	 * @return the buffer, at least of the needed size
+	 */
+	double[] scales(int size) {
+		if (scales.length < size)
+			scales = new double[size];
+		return scales;
+	}
+
+	/**
+	 * Returns the buffer of the distances of the hit records of a packet before a
+	 * search
+	 *
+	 * @param size the needed size
+	 * @return the buffer, at least of the needed size
+	 */
+	double[] hitDistances(int size) {
+		if (hitDistances.length < size)
+			hitDistances = new double[size];
+		return hitDistances;
+	}
+
+	/**
+	 * Returns the buffer of the transforms of the hit records of a packet before a
+	 * search
+	 *
+	 * @param size the needed size
+	 * @return the buffer, at least of the needed size
+	 */
+	Transform[] transforms(int size) {
+		if (transforms.length < size)
+			transforms = new Transform[size];
+		return transforms;
+	}
+}
@@ -8,66 +8,149 @@ import static primitives.Util.*;
 /**
  * The Triangle class represents a triangle shape in a 3D space. It extends the
  * Polygon class, which is a more general representation of a polygon.
+ * <br/>
+ * The intersections are calculated by the Möller–Trumbore algorithm over the
+ * edges of the triangle, which are calculated once at construction.
  */
 public class Triangle extends Polygon {
+	/**
+	 * The first vertex and the edges from it to the second and the third vertices
+	 * - 9 coordinates
+	 */
+	private final double[] edges;
 
 	/**
 	 * Constructs a Triangle with three points.
-	 * 
+	 *
 	 * @param p1- the first point of the triangle
 	 * @param p2- the second point of the triangle
 	 * @param p3- the third point of the triangle
 	 */
 	public Triangle(Point p1, Point p2, Point p3) {
 		super(p1, p2, p3);
+		edges = new double[] { p1.getX(), p1.getY(), p1.getZ(), //
+				p2.getX() - p1.getX(), p2.getY() - p1.getY(), p2.getZ() - p1.getZ(), //
+				p3.getX() - p1.getX(), p3.getY() - p1.getY(), p3.getZ() - p1.getZ() };
 	}
 
 	/**
 	 * Find the intersection points of the given ray with the triangle.
-	 * 
+	 *
 	 * @param ray - the ray to check for intersections
 	 * @return list of intersection points or null if there are no intersections
 	 */
 	@Override
 	public List<GeoPoint> findGeoIntersectionsHelper(Ray ray) {
-		// Step 1: Find intersection with the plane
-		// Find intersections of the ray with the plane
-		List<Point> planeIntersections = plane.findIntersections(ray);
-		// If there are no intersections with the plane, return null
-		if (planeIntersections == null)
-			return null;
+		double t = intersect(ray, edges, 0, edges, 3, Double.POSITIVE_INFINITY, null);
+		return t == 0 ? null : List.of(new GeoPoint(this, ray.getPoint(t)));
+	}
+
+	/**
+	 * Update the hit record by the intersection point of the given ray with the
+	 * triangle, if it is closer to the ray's head than the record's distance. The
+	 * barycentric coordinates of the record are updated too.
+	 *
+	 * @param ray - the ray to check for intersections
+	 * @param hit - the hit record
+	 * @return true if the record was updated
+	 */
+	@Override
+	protected boolean findClosestHitHelper(Ray ray, GeoPoint hit) {
+		if (intersect(ray, edges, 0, edges, 3, hit.t, hit) == 0)
+			return false;
+		hit.geometry = this;
+		return true;
+	}
+
+	/**
+	 * Calculates the intersection of a ray with a triangle by the Möller–Trumbore
+	 * algorithm - solving directly for the distance along the ray and the
+	 * barycentric coordinates of the intersection, without any normalization or
+	 * allocation. The edges and the vertices of the triangle aren't intersected.
+	 *
+	 * @param ray          the ray
+	 * @param vertex       array holding the coordinates of the triangle's first
+	 *                     vertex
+	 * @param vertexOffset the offset of the first vertex in its array
+	 * @param edges        array holding the edges from the first vertex to the
+	 *                     second and the third vertices (6 coordinates)
+	 * @param edgesOffset  the offset of the edges in their array
+	 * @param maxDistance  the distance from the ray's head, an intersection at this
+	 *                     distance or farther is ignored
+	 * @param hit          hit record to update by the distance and the barycentric
+	 *                     coordinates of the intersection, may be null
+	 * @return the distance of the intersection from the ray's head, or 0 if there
+	 *         is no such intersection
+	 */
+	static double intersect(Ray ray, double[] vertex, int vertexOffset, double[] edges, int edgesOffset,
+			double maxDistance, GeoPoint hit) {
+		return intersect(ray, vertex[vertexOffset], vertex[vertexOffset + 1], vertex[vertexOffset + 2], //
+				edges[edgesOffset], edges[edgesOffset + 1], edges[edgesOffset + 2], //
+				edges[edgesOffset + 3], edges[edgesOffset + 4], edges[edgesOffset + 5], maxDistance, hit);
+	}
+
+	/**
+	 * Calculates the intersection of a ray with a triangle given by the
+	 * coordinates of its first vertex and of its edges, see
+	 * {@link #intersect(Ray, double[], int, double[], int, double, GeoPoint)}
+	 *
+	 * @param ray         the ray
+	 * @param ax          x coordinate of the first vertex
+	 * @param ay          y coordinate of the first vertex
+	 * @param az          z coordinate of the first vertex
+	 * @param e1x         x component of the edge to the second vertex
+	 * @param e1y         y component of the edge to the second vertex
+	 * @param e1z         z component of the edge to the second vertex
+	 * @param e2x         x component of the edge to the third vertex
+	 * @param e2y         y component of the edge to the third vertex
+	 * @param e2z         z component of the edge to the third vertex
+	 * @param maxDistance the distance from the ray's head, an intersection at this
+	 *                    distance or farther is ignored
+	 * @param hit         hit record to update by the distance and the barycentric
+	 *                    coordinates of the intersection, may be null
+	 * @return the distance of the intersection from the ray's head, or 0 if there
+	 *         is no such intersection
+	 */
+	static double intersect(Ray ray, double ax, double ay, double az, double e1x, double e1y, double e1z, double e2x,
+			double e2y, double e2z, double maxDistance, GeoPoint hit) {
+		Vector v = ray.getDirection();
+		double vx = v.getX(), vy = v.getY(), vz = v.getZ();
 
-		// Get the first intersection point with the plane
-		Point p = planeIntersections.getFirst();
-		Vector pVector = p.subtract(ray.getHead());
+		// p = v x e2, the determinant is e1 * p
+		double px = VectorMath.crossX(vy, vz, e2y, e2z);
+		double py = VectorMath.crossY(vx, vz, e2x, e2z);
+		double pz = VectorMath.crossZ(vx, vy, e2x, e2y);
+		double determinant = VectorMath.dot(e1x, e1y, e1z, px, py, pz);
+		if (determinant == 0)
+			return 0; // the ray is parallel to the triangle (or the triangle is degenerate)
 
-		// Step 2: Check if the intersection point is inside the triangle
-		// Calculate vectors from the ray's origin to each vertex of the triangle
-		Vector v1 = vertices.get(0).subtract(ray.getHead());
-		Vector v2 = vertices.get(1).subtract(ray.getHead());
-		// Calculate normal vectors of each edge of the triangle using cross product and
-		// normalize them
-		Vector n1 = v1.crossProduct(v2).normalize();
-		// Calculate the dot product of each normal vector with the vector from the
-		// ray's origin to the intersection point
-		double s1 = alignZero(pVector.dotProduct(n1));
-		if (s1 == 0)
-			return null;
+		double inverse = 1 / determinant;
+		Point head = ray.getHead();
+		double sx = head.getX() - ax;
+		double sy = head.getY() - ay;
+		double sz = head.getZ() - az;
+		double u = alignZero(VectorMath.dot(sx, sy, sz, px, py, pz) * inverse);
+		if (u <= 0 || u >= 1)
+			return 0;
 
-		Vector v3 = vertices.get(2).subtract(ray.getHead());
-		Vector n2 = v2.crossProduct(v3).normalize();
-		double s2 = alignZero(pVector.dotProduct(n2));
-		if (s1 * s2 <= 0)
-			return null;
+		// q = s x e1
+		double qx = VectorMath.crossX(sy, sz, e1y, e1z);
+		double qy = VectorMath.crossY(sx, sz, e1x, e1z);
+		double qz = VectorMath.crossZ(sx, sy, e1x, e1y);
+		double w = alignZero(VectorMath.dot(vx, vy, vz, qx, qy, qz) * inverse);
+		if (w <= 0 || alignZero(1 - u - w) <= 0)
+			return 0;
 
-		Vector n3 = v3.crossProduct(v1).normalize();
-		double s3 = alignZero(pVector.dotProduct(n3));
-		if (s1 * s3 <= 0)
-			return null;
+		double t = alignZero(VectorMath.dot(e2x, e2y, e2z, qx, qy, qz) * inverse);
+		if (t <= 0 || t >= maxDistance)
+			return 0;
 
-		// If all dot products have the same sign, the intersection point is inside the
-		// triangle
-		return List.of(new GeoPoint(this, p));
+		if (hit != null) {
+			hit.t = t;
+			hit.u = u;
+			hit.v = w;
+		}
+		return t;
 	}
 
 }
@@ -0,0 +1,333 @@
+package geometries;
+
+import java.util.LinkedList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import primitives.*;
+import static primitives.Util.*;
+
+/**
+ * Indexed triangle mesh. The vertices are shared by the triangles and stored in
+ * a flat coordinates array, and each triangle is given by the indices of its
+ * three vertices. The edges and the normal of each triangle are calculated once
+ * at construction into flat arrays too, so a mesh of millions of triangles
+ * takes a few arrays instead of millions of {@link Triangle} objects. The
+ * triangles are arranged in the mesh's own bounding volume hierarchy, which is
+ * collapsed into a {@link WideTree} traversed by the batch {@link Kernels}, and
+ * they are intersected by the same algorithm as a {@link Triangle}. The
+ * hierarchy is built on the first intersection query, or by building the
+ * collection holding the mesh (see {@link Geometries#build(HierarchyCache)}),
+ * which may load it from a cache.
+ * <br/>
+ * The whole mesh is a single geometry - it has a single material and emission.
+ */
+public class TriangleMesh extends Geometry {
+	/** Coordinates of the vertices - 3 per vertex */
+	private final double[] vertices;
+	/** Indices of the vertices of the triangles - 3 per triangle */
+	private final int[] indices;
+	/**
+	 * Edges of the triangles from their first vertex - 6 coordinates per triangle:
+	 * the edge to the second vertex, the edge to the third vertex
+	 */
+	private final double[] edges;
+	/** Unit normals of the triangles - 3 coordinates per triangle */
+	private final double[] normals;
+	/** Amount of the triangles */
+	private final int triangleCount;
+	/** The boxes of the triangles - 6 coordinates per triangle */
+	private final double[] bounds;
+	/** The method of building the hierarchy */
+	private final BuildMethod method;
+	/** The hierarchy of the triangles, null until it is built */
+	private volatile WideTree hierarchy = null;
+
+	/**
+	 * Constructs a mesh of the given vertices and triangles, arranged by the
+	 * binned SAH. The arrays are used by the mesh as they are (not copied), so
+	 * they must not be changed later. Degenerate triangles (e.g. with two
+	 * identical vertices) are allowed, they are never intersected.
+	 *
+	 * @param vertices the coordinates of the vertices - 3 per vertex
+	 * @param indices  the indices of the vertices of the triangles - 3 per
+	 *                 triangle, each triangle ordered by its edge path
+	 * @throws IllegalArgumentException if an array's length isn't a multiple of 3
+	 *                                  or an index is out of the vertices' range
+	 */
+	public TriangleMesh(double[] vertices, int[] indices) {
+		this(vertices, indices, BuildMethod.BINNED_SAH);
+	}
+
+	/**
+	 * Constructs a mesh of the given vertices and triangles, see
+	 * {@link #TriangleMesh(double[], int[])}
+	 *
+	 * @param vertices the coordinates of the vertices - 3 per vertex
+	 * @param indices  the indices of the vertices of the triangles - 3 per
+	 *                 triangle, each triangle ordered by its edge path
+	 * @param method   the method of building the hierarchy of the triangles
+	 * @throws IllegalArgumentException if an array's length isn't a multiple of 3
+	 *                                  or an index is out of the vertices' range
+	 */
+	public TriangleMesh(double[] vertices, int[] indices, BuildMethod method) {
+		checkMesh(vertices, indices);
+		this.vertices = vertices;
+		this.indices = indices;
+		triangleCount = indices.length / 3;
+		edges = new double[6 * triangleCount];
+		normals = new double[3 * triangleCount];
+		bounds = new double[6 * triangleCount];
+		this.method = method;
+		IntStream.range(0, triangleCount).parallel().forEach(this::prepareTriangle);
+	}
+
+	/**
+	 * Checks the arrays of a mesh's vertices and triangles
+	 *
+	 * @param vertices the coordinates of the vertices - 3 per vertex
+	 * @param indices  the indices of the vertices of the triangles - 3 per
+	 *                 triangle
+	 * @throws IllegalArgumentException if an array's length isn't a multiple of 3
+	 *                                  or an index is out of the vertices' range
+	 */
+	static void checkMesh(double[] vertices, int[] indices) {
+		if (vertices.length % 3 != 0)
+			throw new IllegalArgumentException("Vertices must be given by 3 coordinates each");
+		if (indices.length % 3 != 0)
+			throw new IllegalArgumentException("Triangles must be given by 3 vertex indices each");
+		int vertexCount = vertices.length / 3;
+		for (int index : indices)
+			if (index < 0 || index >= vertexCount)
+				throw new IllegalArgumentException("Vertex index is out of range: " + index);
+	}
+
+	/**
+	 * Calculates the edges, the normal and the bounding box of a triangle
+	 *
+	 * @param triangle the index of the triangle
+	 */
+	private void prepareTriangle(int triangle) {
+		int a = 3 * indices[3 * triangle], b = 3 * indices[3 * triangle + 1], c = 3 * indices[3 * triangle + 2];
+		int offset = 6 * triangle;
+		for (int axis = 0; axis < 3; ++axis) {
+			edges[offset + axis] = vertices[b + axis] - vertices[a + axis];
+			edges[offset + 3 + axis] = vertices[c + axis] - vertices[a + axis];
+			bounds[offset + axis] = Math.min(vertices[a + axis], Math.min(vertices[b + axis], vertices[c + axis]));
+			bounds[offset + 3 + axis] = Math.max(vertices[a + axis], Math.max(vertices[b + axis], vertices[c + axis]));
+		}
+
+		double nx = VectorMath.crossX(edges[offset + 1], edges[offset + 2], edges[offset + 4], edges[offset + 5]);
+		double ny = VectorMath.crossY(edges[offset], edges[offset + 2], edges[offset + 3], edges[offset + 5]);
+		double nz = VectorMath.crossZ(edges[offset], edges[offset + 1], edges[offset + 3], edges[offset + 4]);
+		double length = VectorMath.length(nx, ny, nz);
+		if (length == 0)
+			return; // degenerate triangle - no normal
+		normals[3 * triangle] = nx / length;
+		normals[3 * triangle + 1] = ny / length;
+		normals[3 * triangle + 2] = nz / length;
+	}
+
+	/**
+	 * Returns the amount of the triangles in the mesh
+	 *
+	 * @return the amount of the triangles
+	 */
+	public int getTriangleCount() {
+		return triangleCount;
+	}
+
+	/**
+	 * Returns the amount of the vertices in the mesh
+	 *
+	 * @return the amount of the vertices
+	 */
+	public int getVertexCount() {
+		return vertices.length / 3;
+	}
+
+	/**
+	 * Returns the normal of a triangle of the mesh
+	 *
+	 * @param triangle the index of the triangle
+	 * @return the unit normal of the triangle
+	 */
+	public Vector getNormal(int triangle) {
+		return new Vector(normals[3 * triangle], normals[3 * triangle + 1], normals[3 * triangle + 2]);
+	}
+
+	/**
+	 * Returns the normal of the mesh at a point. The triangle of the point is
+	 * searched over all the triangles, so the normal of an intersection should be
+	 * taken by {@link #getNormal(Intersectable.GeoPoint)}, which uses the
+	 * intersected triangle.
+	 *
+	 * @param point the point on the mesh
+	 * @return the normal of the triangle containing the point
+	 * @throws IllegalArgumentException if the point isn't on the mesh
+	 */
+	@Override
+	public Vector getNormal(Point point) {
+		for (int i = 0; i < triangleCount; ++i)
+			if (contains(i, point))
+				return getNormal(i);
+		throw new IllegalArgumentException("The point is not on the mesh");
+	}
+
+	@Override
+	public Vector getNormal(GeoPoint hit) {
+		return hit.primitive < 0 ? getNormal(hit.point) : getNormal(hit.primitive);
+	}
+
+	/**
+	 * Checks whether a point is on a triangle of the mesh (its edges included)
+	 *
+	 * @param triangle the index of the triangle
+	 * @param point    the point
+	 * @return true if the point is on the triangle
+	 */
+	private boolean contains(int triangle, Point point) {
+		int a = 3 * indices[3 * triangle];
+		int e = 6 * triangle, n = 3 * triangle;
+		return contains(point.getX() - vertices[a], point.getY() - vertices[a + 1], point.getZ() - vertices[a + 2],
+				edges[e], edges[e + 1], edges[e + 2], edges[e + 3], edges[e + 4], edges[e + 5], //
+				normals[n], normals[n + 1], normals[n + 2]);
+	}
+
+	/**
+	 * Checks whether a point is on a triangle (its edges included) by the
+	 * barycentric coordinates of the point
+	 *
+	 * @param px  x component of the vector from the first vertex to the point
+	 * @param py  y component of the vector from the first vertex to the point
+	 * @param pz  z component of the vector from the first vertex to the point
+	 * @param e1x x component of the edge to the second vertex
+	 * @param e1y y component of the edge to the second vertex
+	 * @param e1z z component of the edge to the second vertex
+	 * @param e2x x component of the edge to the third vertex
+	 * @param e2y y component of the edge to the third vertex
+	 * @param e2z z component of the edge to the third vertex
+	 * @param nx  x component of the unit normal of the triangle
+	 * @param ny  y component of the unit normal of the triangle
+	 * @param nz  z component of the unit normal of the triangle
+	 * @return true if the point is on the triangle, false for a degenerate
+	 *         triangle
+	 */
+	static boolean contains(double px, double py, double pz, double e1x, double e1y, double e1z, double e2x,
+			double e2y, double e2z, double nx, double ny, double nz) {
+		if (!isZero(VectorMath.dot(px, py, pz, nx, ny, nz)))
+			return false;
+
+		double d00 = VectorMath.dot(e1x, e1y, e1z, e1x, e1y, e1z);
+		double d01 = VectorMath.dot(e1x, e1y, e1z, e2x, e2y, e2z);
+		double d11 = VectorMath.dot(e2x, e2y, e2z, e2x, e2y, e2z);
+		double d20 = VectorMath.dot(px, py, pz, e1x, e1y, e1z);
+		double d21 = VectorMath.dot(px, py, pz, e2x, e2y, e2z);
+		double denominator = d00 * d11 - d01 * d01;
+		if (isZero(denominator))
+			return false;
+		double u = alignZero((d11 * d20 - d01 * d21) / denominator);
+		double v = alignZero((d00 * d21 - d01 * d20) / denominator);
+		return u >= 0 && v >= 0 && alignZero(1 - u - v) >= 0;
+	}
+
+	/**
+	 * Returns the hierarchy of the triangles, building it if it hasn't been built
+	 *
+	 * @param cache the cache of built hierarchies, may be null
+	 * @return the hierarchy
+	 */
+	private WideTree hierarchy(HierarchyCache cache) {
+		WideTree result = hierarchy;
+		if (result == null) {
+			synchronized (bounds) {
+				result = hierarchy;
+				if (result == null)
+					hierarchy = result = new WideTree(
+							BoundingVolumeHierarchy.buildTree(bounds, triangleCount, method, cache), vertices, indices,
+							edges);
+			}
+		}
+		return result;
+	}
+
+	@Override
+	void prepare(HierarchyCache cache) {
+		if (triangleCount > 0)
+			hierarchy(cache);
+	}
+
+	@Override
+	protected BoundingBox calcBoundingBox() {
+		if (triangleCount == 0)
+			return null;
+		double[] box = HierarchyBuilder.emptyBounds();
+		for (int i = 0; i < triangleCount; ++i)
+			HierarchyBuilder.expand(box, 0, bounds, 6 * i);
+		return new BoundingBox(box[0], box[1], box[2], box[3], box[4], box[5]);
+	}
+
+	@Override
+	protected List<GeoPoint> findGeoIntersectionsHelper(Ray ray) {
+		if (triangleCount == 0)
+			return null;
+		List<GeoPoint> intersections = new LinkedList<>();
+		double[] results = new double[3];
+		hierarchy(null).forEachHit(ray, Double.POSITIVE_INFINITY, results, triangle -> {
+			GeoPoint intersection = new GeoPoint();
+			intersection.geometry = this;
+			intersection.t = results[0];
+			intersection.u = results[1];
+			intersection.v = results[2];
+			intersection.point = ray.getPoint(intersection.t);
+			intersection.primitive = triangle;
+			intersections.add(intersection);
+			return true;
+		});
+		return intersections.isEmpty() ? null : intersections;
+	}
+
+	@Override
+	protected boolean findClosestHitHelper(Ray ray, GeoPoint hit) {
+		if (triangleCount == 0)
+			return false;
+		int triangle = hierarchy(null).findClosestHit(ray, hit);
+		if (triangle < 0)
+			return false;
+		hit.geometry = this;
+		hit.primitive = triangle;
+		return true;
+	}
+
+	/**
+	 * Updates the hit records of a packet of rays by the closest intersections
+	 * with the triangles, the packet traverses the hierarchy as a whole (see
+	 * {@link WideTree#findClosestHits(Ray[], GeoPoint[], int)})
+	 */
+	@Override
+	protected int findClosestHitsHelper(Ray[] rays, GeoPoint[] hits, int mask) {
+		if (triangleCount == 0)
+			return 0;
+		int found = hierarchy(null).findClosestHits(rays, hits, mask);
+		for (int m = found; m != 0; m &= m - 1)
+			hits[Integer.numberOfTrailingZeros(m)].geometry = this;
+		return found;
+	}
+
+	/**
+	 * Finds how much light passes through the triangles along the ray. The
+	 * traversal stops as soon as the ray is blocked by the triangles.
+	 */
+	@Override
+	protected Double3 findTransparencyHelper(Ray ray, double maxDistance, double minTransparency) {
+		if (triangleCount == 0)
+			return Double3.ONE;
+		Double3 kT = getMaterial().kT;
+		Double3[] ktr = { Double3.ONE };
+		hierarchy(null).forEachHit(ray, maxDistance, new double[3], triangle -> {
+			ktr[0] = ktr[0].product(kT);
+			return !isBlocked(ktr[0], minTransparency);
+		});
+		return isBlocked(ktr[0], minTransparency) ? Double3.ZERO : ktr[0];
+	}
+}
@@ -3,9 +3,11 @@ package geometries;
 import java.util.List;
 
 import primitives.*;
+import static primitives.Util.*;
 
 /**
- * A Tube class that includes a radius and a beam
+ * A Tube class that includes a radius and a beam. A tube is infinite, so it is
+ * unbounded and has no bounding box.
  */
 public class Tube extends RadialGeometry {
 	/**
@@ -44,11 +46,159 @@ public class Tube extends RadialGeometry {
 		return point.subtract(projection).normalize();
 	}
 
-	// bonus
+	/**
+	 * Find the intersection points of the given ray with the tube.
+	 *
+	 * @param ray - the ray to check for intersections
+	 * @return list of intersection points or null if there are no intersections
+	 */
 	@Override
 	protected List<GeoPoint> findGeoIntersectionsHelper(Ray ray) {
-		// calculate points for intersections according to appropriate algorithmreturn
-		// null or List.of(new GeoPoint(this,…),…) for the lists
-		return null;
+		double[] distances = new double[2];
+		return switch (findDistances(ray, distances)) {
+		case 0 -> null;
+		case 1 -> List.of(new GeoPoint(this, ray.getPoint(distances[0])));
+		default -> List.of(new GeoPoint(this, ray.getPoint(distances[0])),
+				new GeoPoint(this, ray.getPoint(distances[1])));
+		};
+	}
+
+	/**
+	 * Update the hit record by the closest intersection point of the given ray
+	 * with the tube, if it is closer to the ray's head than the record's distance.
+	 *
+	 * @param ray - the ray to check for intersections
+	 * @param hit - the hit record
+	 * @return true if the record was updated
+	 */
+	@Override
+	protected boolean findClosestHitHelper(Ray ray, GeoPoint hit) {
+		double t = findClosestDistance(ray);
+		if (t >= hit.t)
+			return false;
+		hit.t = t;
+		hit.geometry = this;
+		return true;
+	}
+
+	/**
+	 * Calculates the coefficients of the squared distance from the axis along a
+	 * ray. Only the components of the ray which are orthogonal to the axis are
+	 * taken into account - the squared distance of the ray's point at t from the
+	 * axis, minus the squared radius, is |w + t*v|^2 - r^2 = a*t^2 + 2b*t + c,
+	 * where w and v are the orthogonal components of the vector from the axis
+	 * head to the ray's head and of the ray's direction. The components are never
+	 * built, their dot products are calculated from the dot products of the whole
+	 * vectors with the axis direction.
+	 *
+	 * @param ray the ray
+	 * @return the coefficients
+	 */
+	protected Quadratic quadratic(Ray ray) {
+		Point p0 = ray.getHead();
+		Vector v = ray.getDirection();
+		Vector axis = this.ray.getDirection();
+		Point head = this.ray.getHead();
+		double wx = p0.getX() - head.getX(), wy = p0.getY() - head.getY(), wz = p0.getZ() - head.getZ();
+		double vAxis = v.dotProduct(axis);
+		double wAxis = VectorMath.dot(axis, wx, wy, wz);
+		return new Quadratic(vAxis, wAxis, 1 - vAxis * vAxis, VectorMath.dot(v, wx, wy, wz) - vAxis * wAxis,
+				VectorMath.lengthSquared(wx, wy, wz) - wAxis * wAxis - radiusSquared);
+	}
+
+	/**
+	 * Calculates the distances from the ray's head to the intersection points of
+	 * the ray with the tube - the roots of the squared distance from the axis
+	 * minus the squared radius (see {@link #quadratic(Ray)}) in front of the
+	 * ray's head.
+	 *
+	 * @param ray       the ray
+	 * @param distances array to fill by the distances in ascending order - at
+	 *                  least 2 places
+	 * @return the amount of the intersections (0, 1 or 2)
+	 */
+	protected int findDistances(Ray ray, double[] distances) {
+		Quadratic quadratic = quadratic(ray);
+		if (!quadratic.hasRoots())
+			return 0;
+		int count = 0;
+		double t1 = alignZero(quadratic.t1);
+		if (t1 > 0)
+			distances[count++] = t1;
+		double t2 = alignZero(quadratic.t2);
+		if (t2 > 0)
+			distances[count++] = t2;
+		return count;
+	}
+
+	/**
+	 * Calculates the distance from the ray's head to the closest intersection
+	 * point of the ray with the tube - the first of the distances of
+	 * {@link #findDistances(Ray, double[])}.
+	 *
+	 * @param ray the ray
+	 * @return the distance, or positive infinity if there is no intersection
+	 */
+	protected final double findClosestDistance(Ray ray) {
+		double[] distances = new double[2];
+		return findDistances(ray, distances) == 0 ? Double.POSITIVE_INFINITY : distances[0];
+	}
+
+	/**
+	 * Coefficients of the squared distance from the axis along a ray, minus the
+	 * squared radius: a*t^2 + 2b*t + c, and their roots, see
+	 * {@link Tube#quadratic(Ray)}
+	 */
+	protected static final class Quadratic {
+		/** The axial component of the ray's direction */
+		public final double vAxis;
+		/** The axial coordinate of the ray's head */
+		public final double wAxis;
+		/** The quadratic coefficient */
+		public final double a;
+		/** Half of the linear coefficient */
+		public final double b;
+		/** The constant coefficient */
+		public final double c;
+		/** The smaller root, NaN if there are no two distinct roots */
+		public final double t1;
+		/** The larger root, NaN if there are no two distinct roots */
+		public final double t2;
+
+		/**
+		 * Initializes the coefficients and finds their roots. A ray parallel to the
+		 * axis never crosses the tube's surface, and a tangent ray touches it only,
+		 * so they have no roots.
+		 *
+		 * @param vAxis the axial component of the ray's direction
+		 * @param wAxis the axial coordinate of the ray's head
+		 * @param a     the quadratic coefficient
+		 * @param b     half of the linear coefficient
+		 * @param c     the constant coefficient
+		 */
+		Quadratic(double vAxis, double wAxis, double a, double b, double c) {
+			this.vAxis = vAxis;
+			this.wAxis = wAxis;
+			this.a = a;
+			this.b = b;
+			this.c = c;
+			double discriminant = isZero(a) ? 0 : alignZero(b * b - a * c);
+			if (discriminant <= 0) {
+				t1 = t2 = Double.NaN;
+				return;
+			}
+			double th = Math.sqrt(discriminant);
+			t1 = (-b - th) / a;
+			t2 = (-b + th) / a;
+		}
+
+		/**
+		 * Checks whether there are two distinct roots
+		 *
+		 * @return true if there are roots
+		 */
+		public boolean hasRoots() {
+			return !Double.isNaN(t1);
+		}
 	}
 }
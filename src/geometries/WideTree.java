@@ -0,0 +1,466 @@
+package geometries;
+
+import java.util.Arrays;
+
+import primitives.*;
+
+/**
+ * Four-wide bounding volume hierarchy over the triangles of a mesh, collapsed
+ * from the binary tree of a {@link BoundingVolumeHierarchy}, for the batch
+ * {@link Kernels}. Each node holds the boxes of its up to {@link Kernels#WIDTH}
+ * children in a struct of arrays layout, so a ray is tested against all of them
+ * in one pass, and each leaf holds its triangles in packets of
+ * {@link Kernels#WIDTH} lanes - the first vertex and the two edges of each
+ * triangle - so a ray is intersected with a whole packet in one pass. A node
+ * takes the children of its binary node, and then replaces the inner child
+ * with the biggest surface area by its two children, as long as it has room,
+ * so the tree is about half as deep as the binary tree.
+ */
+final class WideTree {
+	/** Amount of the coordinates of the child boxes of a node */
+	private static final int NODE_SIZE = 6 * Kernels.WIDTH;
+	/** Amount of the coordinates of a packet of triangles */
+	private static final int PACKET_SIZE = 9 * Kernels.WIDTH;
+	/** Size of the stack of the traversal */
+	private static final int STACK_SIZE = (Kernels.WIDTH - 1) * BoundingVolumeHierarchy.MAX_DEPTH + 2;
+
+	/** Boxes of the children of the nodes - {@link #NODE_SIZE} coordinates per node */
+	private double[] boxes;
+	/**
+	 * Children of the nodes - {@link Kernels#WIDTH} per node: the index of an
+	 * inner child node, -(p + 1) for a leaf child whose packets begin at packet p,
+	 * or 0 for an empty lane
+	 */
+	private int[] children;
+	/** Amounts of the packets of the leaf children - {@link Kernels#WIDTH} per node */
+	private int[] packetCounts;
+	/** Packets of the triangles - {@link #PACKET_SIZE} coordinates per packet */
+	private double[] packets;
+	/** Indices of the triangles in the lanes of the packets - -1 for an empty lane */
+	private int[] triangles;
+	/** Amount of the nodes */
+	private int nodeCount = 0;
+	/** Amount of the packets */
+	private int packetCount = 0;
+
+	/** The collapsed binary tree, during the construction */
+	private HierarchyCache.Tree tree;
+	/** The coordinates of the mesh's vertices, during the construction */
+	private double[] vertices;
+	/** The indices of the triangles' vertices, during the construction */
+	private int[] indices;
+	/** The edges of the triangles from their first vertex, during the construction */
+	private double[] edges;
+
+	/**
+	 * Collapses the binary tree over the triangles of a mesh
+	 *
+	 * @param tree     the binary tree, with at least one node
+	 * @param vertices the coordinates of the mesh's vertices
+	 * @param indices  the indices of the triangles' vertices
+	 * @param edges    the edges of the triangles from their first vertex
+	 */
+	WideTree(HierarchyCache.Tree tree, double[] vertices, int[] indices, double[] edges) {
+		this.tree = tree;
+		this.vertices = vertices;
+		this.indices = indices;
+		this.edges = edges;
+		int[] nodeData = tree.nodeData();
+		int binaryCount = nodeData.length / 2;
+		boxes = new double[NODE_SIZE * binaryCount];
+		children = new int[Kernels.WIDTH * binaryCount];
+		packetCounts = new int[Kernels.WIDTH * binaryCount];
+		packets = new double[PACKET_SIZE * binaryCount];
+		triangles = new int[Kernels.WIDTH * binaryCount];
+
+		int[] root = nodeData[1] >= 0 ? new int[] { 0 } : new int[] { 1, nodeData[0] };
+		collapse(root);
+		this.tree = null;
+		this.vertices = null;
+		this.indices = null;
+		this.edges = null;
+
+		boxes = Arrays.copyOf(boxes, NODE_SIZE * nodeCount);
+		children = Arrays.copyOf(children, Kernels.WIDTH * nodeCount);
+		packetCounts = Arrays.copyOf(packetCounts, Kernels.WIDTH * nodeCount);
+		packets = Arrays.copyOf(packets, PACKET_SIZE * packetCount);
+		triangles = Arrays.copyOf(triangles, Kernels.WIDTH * packetCount);
+	}
+
+	/**
+	 * Creates recursively a node over binary nodes - they and their descendants
+	 * up to the width of the node
+	 *
+	 * @param binary the binary nodes
+	 * @return the index of the node
+	 */
+	private int collapse(int[] binary) {
+		double[] nodeBounds = tree.nodeBounds();
+		int[] nodeData = tree.nodeData();
+		int[] lanes = Arrays.copyOf(binary, Kernels.WIDTH);
+		int laneCount = binary.length;
+		while (laneCount < Kernels.WIDTH) {
+			int biggest = -1;
+			double biggestArea = -1;
+			for (int lane = 0; lane < laneCount; ++lane) {
+				double area = HierarchyBuilder.boxArea(nodeBounds, 6 * lanes[lane]);
+				if (nodeData[2 * lanes[lane] + 1] < 0 && area > biggestArea) {
+					biggest = lane;
+					biggestArea = area;
+				}
+			}
+			if (biggest < 0)
+				break;
+			int node = lanes[biggest];
+			lanes[biggest] = node + 1;
+			lanes[laneCount++] = nodeData[2 * node];
+		}
+
+		int node = nodeCount++;
+		int offset = NODE_SIZE * node;
+		Arrays.fill(boxes, offset, offset + NODE_SIZE, Double.NaN);
+		for (int lane = 0; lane < laneCount; ++lane) {
+			int child = lanes[lane];
+			for (int coordinate = 0; coordinate < 6; ++coordinate)
+				boxes[offset + coordinate * Kernels.WIDTH + lane] = nodeBounds[6 * child + coordinate];
+			int size = nodeData[2 * child + 1];
+			if (size < 0)
+				children[Kernels.WIDTH * node + lane] = collapse(new int[] { child + 1, nodeData[2 * child] });
+			else {
+				children[Kernels.WIDTH * node + lane] = -(packetCount + 1);
+				packetCounts[Kernels.WIDTH * node + lane] = (size + Kernels.WIDTH - 1) / Kernels.WIDTH;
+				addPackets(nodeData[2 * child], size);
+			}
+		}
+		return node;
+	}
+
+	/**
+	 * Adds the packets of the triangles of a leaf
+	 *
+	 * @param first the offset of the leaf's first triangle in the binary tree's
+	 *              order
+	 * @param size  the amount of the leaf's triangles
+	 */
+	private void addPackets(int first, int size) {
+		for (int start = 0; start < size; start += Kernels.WIDTH) {
+			int packet = packetCount++;
+			if (packet * PACKET_SIZE >= packets.length) {
+				packets = Arrays.copyOf(packets, 2 * packets.length);
+				triangles = Arrays.copyOf(triangles, 2 * triangles.length);
+			}
+			int offset = PACKET_SIZE * packet;
+			Arrays.fill(packets, offset, offset + PACKET_SIZE, Double.NaN);
+			Arrays.fill(triangles, Kernels.WIDTH * packet, Kernels.WIDTH * (packet + 1), -1);
+			for (int lane = 0; lane < Math.min(Kernels.WIDTH, size - start); ++lane) {
+				int triangle = tree.primitives()[first + start + lane];
+				triangles[Kernels.WIDTH * packet + lane] = triangle;
+				int a = 3 * indices[3 * triangle];
+				for (int coordinate = 0; coordinate < 3; ++coordinate)
+					packets[offset + coordinate * Kernels.WIDTH + lane] = vertices[a + coordinate];
+				for (int coordinate = 0; coordinate < 6; ++coordinate)
+					packets[offset + (3 + coordinate) * Kernels.WIDTH + lane] = edges[6 * triangle + coordinate];
+			}
+		}
+	}
+
+	/**
+	 * Finds the closest intersection of the ray with the triangles. The children
+	 * of a node which the ray hits are visited nearest first, and the record's
+	 * distance shrinks with each found intersection, so farther nodes are culled
+	 * by their boxes.
+	 *
+	 * @param ray the ray
+	 * @param hit the hit record - its distance, and its barycentric coordinates if
+	 *            an intersection is found
+	 * @return the index of the intersected triangle, or -1 if there is no
+	 *         intersection closer than the record's distance
+	 */
+	int findClosestHit(Ray ray, Intersectable.GeoPoint hit) {
+		TraversalBuffers buffers = TraversalBuffers.acquire();
+		try {
+			return findClosestHit(0, ray, hit, buffers, 0);
+		} finally {
+			buffers.release();
+		}
+	}
+
+	/**
+	 * Finds the closest intersection of the ray with the triangles of a subtree,
+	 * see {@link #findClosestHit(Ray, Intersectable.GeoPoint)}. The traversal uses
+	 * the part of the buffers' stacks above the given bottom, so the traversal of
+	 * a packet can search a subtree by a single ray over the rest of its own
+	 * stacks.
+	 *
+	 * @param root    the root node of the subtree
+	 * @param ray     the ray
+	 * @param hit     the hit record
+	 * @param buffers the buffers of the traversal
+	 * @param bottom  the bottom of the part of the stacks to use
+	 * @return the index of the intersected triangle, or -1 if there is no
+	 *         intersection closer than the record's distance
+	 */
+	private int findClosestHit(int root, Ray ray, Intersectable.GeoPoint hit, TraversalBuffers buffers,
+			int bottom) {
+		Point head = ray.getHead();
+		Vector v = ray.getDirection();
+		double x = head.getX(), y = head.getY(), z = head.getZ();
+		double vx = v.getX(), vy = v.getY(), vz = v.getZ();
+		double invX = 1 / vx, invY = 1 / vy, invZ = 1 / vz;
+		double[] distances = buffers.distances;
+		double[] results = buffers.results;
+
+		int found = -1;
+		int[] stack = buffers.stack(STACK_SIZE);
+		double[] stackDistances = buffers.stackDistances(STACK_SIZE);
+		int top = bottom;
+		stack[top++] = root;
+		stackDistances[bottom] = 0;
+		while (top > bottom) {
+			--top;
+			if (stackDistances[top] >= hit.t)
+				continue; // culled by a closer intersection found since it was pushed
+			int node = stack[top];
+			int mask = Kernels.intersectBoxes(boxes, NODE_SIZE * node, x, y, z, invX, invY, invZ, hit.t, distances);
+			// Push the hit children farthest first, so the nearest is visited first
+			int pushed = top;
+			for (; mask != 0; mask &= mask - 1) {
+				int lane = Integer.numberOfTrailingZeros(mask);
+				int child = children[Kernels.WIDTH * node + lane];
+				double distance = distances[lane];
+				if (child < 0) { // leaf - intersected right away
+					int first = -child - 1;
+					for (int packet = first; packet < first + packetCounts[Kernels.WIDTH * node + lane]; ++packet) {
+						int lanes = Kernels.intersectTriangles(packets, PACKET_SIZE * packet, x, y, z, vx, vy, vz,
+								hit.t, results);
+						for (; lanes != 0; lanes &= lanes - 1) {
+							int i = Integer.numberOfTrailingZeros(lanes);
+							if (results[i] < hit.t) {
+								hit.t = results[i];
+								hit.u = results[i + Kernels.WIDTH];
+								hit.v = results[i + 2 * Kernels.WIDTH];
+								found = triangles[Kernels.WIDTH * packet + i];
+							}
+						}
+					}
+					continue;
+				}
+				int i = top++;
+				while (i > pushed && stackDistances[i - 1] < distance) {
+					stack[i] = stack[i - 1];
+					stackDistances[i] = stackDistances[i - 1];
+					--i;
+				}
+				stack[i] = child;
+				stackDistances[i] = distance;
+			}
+		}
+		return found;
+	}
+
+	/**
+	 * Finds the closest intersections of a packet of rays with the triangles. The
+	 * packet traverses the tree as a whole: each node's boxes are tested against
+	 * each ray of the packet, and every child is visited by the mask of the rays
+	 * hitting it, the nearest child (by its nearest ray) first. Once the packet has
+	 * diverged to a single ray, the rest of the subtree is traversed by that ray
+	 * alone.
+	 *
+	 * @param rays the rays of the packet
+	 * @param hits the hit records of the rays - their distances, their barycentric
+	 *             coordinates and their primitives (the intersected triangles) if
+	 *             intersections are found
+	 * @param mask the mask of the rays to search
+	 * @return the mask of the rays whose records were updated
+	 */
+	int findClosestHits(Ray[] rays, Intersectable.GeoPoint[] hits, int mask) {
+		TraversalBuffers buffers = TraversalBuffers.acquire();
+		try {
+			return findClosestHits(rays, hits, mask, buffers);
+		} finally {
+			buffers.release();
+		}
+	}
+
+	/**
+	 * Finds the closest intersections of a packet of rays with the triangles, see
+	 * {@link #findClosestHits(Ray[], Intersectable.GeoPoint[], int)}
+	 *
+	 * @param rays    the rays of the packet
+	 * @param hits    the hit records of the rays
+	 * @param mask    the mask of the rays to search
+	 * @param buffers the buffers of the traversal
+	 * @return the mask of the rays whose records were updated
+	 */
+	private int findClosestHits(Ray[] rays, Intersectable.GeoPoint[] hits, int mask, TraversalBuffers buffers) {
+		// The head, the direction and the inverse direction of each ray
+		double[] origins = buffers.origins(9 * rays.length);
+		for (int m = mask; m != 0; m &= m - 1) {
+			int i = Integer.numberOfTrailingZeros(m);
+			Point head = rays[i].getHead();
+			Vector v = rays[i].getDirection();
+			origins[9 * i] = head.getX();
+			origins[9 * i + 1] = head.getY();
+			origins[9 * i + 2] = head.getZ();
+			origins[9 * i + 3] = v.getX();
+			origins[9 * i + 4] = v.getY();
+			origins[9 * i + 5] = v.getZ();
+			origins[9 * i + 6] = 1 / v.getX();
+			origins[9 * i + 7] = 1 / v.getY();
+			origins[9 * i + 8] = 1 / v.getZ();
+		}
+		double[] distances = buffers.distances;
+		double[] nearest = buffers.nearest;
+		int[] laneMasks = buffers.laneMasks;
+		double[] results = buffers.results;
+
+		int found = 0;
+		int[] stack = buffers.stack(STACK_SIZE);
+		int[] masks = buffers.masks(STACK_SIZE);
+		double[] stackDistances = buffers.stackDistances(STACK_SIZE);
+		int top = 0;
+		stack[top] = 0;
+		masks[top++] = mask;
+		while (top > 0) {
+			int node = stack[--top];
+			int active = masks[top];
+			if (Integer.bitCount(active) == 1) { // diverged
+				int i = Integer.numberOfTrailingZeros(active);
+				int triangle = findClosestHit(node, rays[i], hits[i], buffers, top);
+				if (triangle >= 0) {
+					hits[i].primitive = triangle;
+					found |= active;
+				}
+				continue;
+			}
+
+			// The masks of the rays hitting each child, and their nearest entry
+			Arrays.fill(laneMasks, 0);
+			Arrays.fill(nearest, Double.POSITIVE_INFINITY);
+			for (int m = active; m != 0; m &= m - 1) {
+				int i = Integer.numberOfTrailingZeros(m);
+				int o = 9 * i;
+				int lanes = Kernels.intersectBoxes(boxes, NODE_SIZE * node, origins[o], origins[o + 1], origins[o + 2],
+						origins[o + 6], origins[o + 7], origins[o + 8], hits[i].t, distances);
+				for (; lanes != 0; lanes &= lanes - 1) {
+					int lane = Integer.numberOfTrailingZeros(lanes);
+					laneMasks[lane] |= 1 << i;
+					nearest[lane] = Math.min(nearest[lane], distances[lane]);
+				}
+			}
+
+			int pushed = top;
+			for (int lane = 0; lane < Kernels.WIDTH; ++lane) {
+				int lanesActive = laneMasks[lane];
+				if (lanesActive == 0)
+					continue;
+				int child = children[Kernels.WIDTH * node + lane];
+				if (child < 0) { // leaf - intersected right away
+					int first = -child - 1;
+					for (int packet = first; packet < first + packetCounts[Kernels.WIDTH * node + lane]; ++packet)
+						for (int m = lanesActive; m != 0; m &= m - 1) {
+							int i = Integer.numberOfTrailingZeros(m);
+							int o = 9 * i;
+							int lanes = Kernels.intersectTriangles(packets, PACKET_SIZE * packet, origins[o],
+									origins[o + 1], origins[o + 2], origins[o + 3], origins[o + 4], origins[o + 5],
+									hits[i].t, results);
+							for (; lanes != 0; lanes &= lanes - 1) {
+								int l = Integer.numberOfTrailingZeros(lanes);
+								if (results[l] < hits[i].t) {
+									hits[i].t = results[l];
+									hits[i].u = results[l + Kernels.WIDTH];
+									hits[i].v = results[l + 2 * Kernels.WIDTH];
+									hits[i].primitive = triangles[Kernels.WIDTH * packet + l];
+									found |= 1 << i;
+								}
+							}
+						}
+					continue;
+				}
+				// Push the hit children farthest first, so the nearest is visited first
+				int i = top++;
+				while (i > pushed && stackDistances[i - 1] < nearest[lane]) {
+					stack[i] = stack[i - 1];
+					masks[i] = masks[i - 1];
+					stackDistances[i] = stackDistances[i - 1];
+					--i;
+				}
+				stack[i] = child;
+				masks[i] = lanesActive;
+				stackDistances[i] = nearest[lane];
+			}
+		}
+		return found;
+	}
+
+	/**
+	 * Visits the intersections of the ray with the triangles, up to a distance
+	 *
+	 * @param ray         the ray
+	 * @param maxDistance the distance from the ray's head, intersections at this
+	 *                    distance or farther are ignored
+	 * @param results     array to fill by the distance and the barycentric
+	 *                    coordinates of each intersection before it is visited -
+	 *                    at the offsets 0, 1, 2
+	 * @param visitor     the visitor of the intersected triangles, it may stop the
+	 *                    traversal by returning false
+	 */
+	void forEachHit(Ray ray, double maxDistance, double[] results, HitVisitor visitor) {
+		Point head = ray.getHead();
+		Vector v = ray.getDirection();
+		double x = head.getX(), y = head.getY(), z = head.getZ();
+		double vx = v.getX(), vy = v.getY(), vz = v.getZ();
+		double invX = 1 / vx, invY = 1 / vy, invZ = 1 / vz;
+		TraversalBuffers buffers = TraversalBuffers.acquire();
+		try {
+			double[] distances = buffers.distances;
+			double[] lanesResults = buffers.results;
+
+			int[] stack = buffers.stack(STACK_SIZE);
+			int top = 0;
+			stack[top++] = 0;
+			while (top > 0) {
+				int node = stack[--top];
+				int mask = Kernels.intersectBoxes(boxes, NODE_SIZE * node, x, y, z, invX, invY, invZ, maxDistance,
+						distances);
+				for (; mask != 0; mask &= mask - 1) {
+					int lane = Integer.numberOfTrailingZeros(mask);
+					int child = children[Kernels.WIDTH * node + lane];
+					if (child > 0) {
+						stack[top++] = child;
+						continue;
+					}
+					int first = -child - 1;
+					for (int packet = first; packet < first + packetCounts[Kernels.WIDTH * node + lane]; ++packet) {
+						int lanes = Kernels.intersectTriangles(packets, PACKET_SIZE * packet, x, y, z, vx, vy, vz,
+								maxDistance, lanesResults);
+						for (; lanes != 0; lanes &= lanes - 1) {
+							int i = Integer.numberOfTrailingZeros(lanes);
+							results[0] = lanesResults[i];
+							results[1] = lanesResults[i + Kernels.WIDTH];
+							results[2] = lanesResults[i + 2 * Kernels.WIDTH];
+							if (!visitor.visit(triangles[Kernels.WIDTH * packet + i]))
+								return;
+						}
+					}
+				}
+			}
+		} finally {
+			buffers.release();
+		}
+	}
+
+	/**
+	 * Visitor of the intersected triangles
+	 */
+	@FunctionalInterface
+	interface HitVisitor {
+		/**
+		 * Visits an intersected triangle
+		 *
+		 * @param triangle the index of the triangle
+		 * @return false to stop the traversal
+		 */
+		boolean visit(int triangle);
+	}
+}
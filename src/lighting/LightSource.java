@@ -45,6 +45,30 @@ public interface LightSource {
      */
     public List<Vector> getLBeam(Point p);
 
+    /**
+     * Gets a given amount of vectors from the given point to the light source.
+     * The default implementation is for lights without an area - a single
+     * vector.
+     *
+     * @param p    the point
+     * @param rays the amount of vectors
+     * @return all vectors who created
+     */
+    default List<Vector> getLBeam(Point p, int rays) {
+        return getLBeam(p);
+    }
+
+    /**
+     * Gets the maximal amount of soft shadow rays of the light source - the
+     * amount of vectors created by {@link #getLBeam(Point)}. The default
+     * implementation is for lights without an area.
+     *
+     * @return the amount of soft shadow rays
+     */
+    default int getSoftShadowsRays() {
+        return 1;
+    }
+
 
 	
 }
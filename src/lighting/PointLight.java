@@ -1,12 +1,8 @@
 package lighting;
 
-import java.util.LinkedList;
+import java.util.ArrayList;
 import java.util.List;
 
-
-import geometries.Plane;
-import static primitives.Util.*;
-
 import primitives.*;
 
 
@@ -47,7 +43,12 @@ public class PointLight extends Light implements LightSource {
     /**
      * The amount of rays of the soft shadow.
      */
-    public static int softShadowsRays = 36;
+    private int softShadowsRays = 36;
+
+    /**
+     * The sampler of the points on the square around the light
+     */
+    private Sampler sampler = Sampler.JITTERED;
 
     /**
      * Setter of the square edge size parameter
@@ -66,7 +67,7 @@ public class PointLight extends Light implements LightSource {
      * Set the number of `soft shadows` rays
      *
      * @param numOfRays the number of `soft shadows` rays
-     * @return the updated camera object
+     * @return the updated point light
      */
     public PointLight setSoftShadowsRays(int numOfRays) {
         if (numOfRays < 0)
@@ -75,6 +76,24 @@ public class PointLight extends Light implements LightSource {
         return this;
     }
 
+    @Override
+    public int getSoftShadowsRays() {
+        return lengthOfTheSide == 0 ? 1 : softShadowsRays;
+    }
+
+    /**
+     * Setter of the sampler of the points on the square around the light
+     *
+     * @param sampler the sampler, e.g. {@link Sampler#JITTERED}
+     * @return the updated point light
+     */
+    public PointLight setSampler(Sampler sampler) {
+        if (sampler == null)
+            throw new IllegalArgumentException("Sampler must not be null");
+        this.sampler = sampler;
+        return this;
+    }
+
 
 	/**
 	 * Constructs a PointLight object with the given intensity, position, and
@@ -171,34 +190,43 @@ public class PointLight extends Light implements LightSource {
 	
     @Override
     public List<Vector> getLBeam(Point p) {
-        if (lengthOfTheSide == 0) return List.of(getL(p));
-
-        List<Vector> vectors = new LinkedList<>();
-        // help vectors
-        Vector v0, v1;
-
-        // A variable that tells how many divide each side
-        double divided = Math.sqrt(softShadowsRays);
-
-        // plane of the light
-        Plane plane = new Plane(position, getL(p));
-
-        // vectors of the plane
-        List<Vector> vectorsOfThePlane = plane.findVectorsOfPlane();
-
-        // Starting point of the square around the lighting
-        Point startPoint = position.add(vectorsOfThePlane.get(0).normalize().scale(-lengthOfTheSide / 2.0))
-                .add(vectorsOfThePlane.get(1).normalize().scale(-lengthOfTheSide / 2.0));
-
-        // A loop that runs as the number of vectors and in each of its runs it brings a vector around the lamp
-        for (double i = 0; i < lengthOfTheSide; i += lengthOfTheSide / divided) {
-            for (double j = 0; j < lengthOfTheSide; j += lengthOfTheSide / divided) {
-                v0 = vectorsOfThePlane.get(0).normalize()
-                        .scale(random(i, i + lengthOfTheSide / divided));
-                v1 = vectorsOfThePlane.get(1).normalize()
-                        .scale(random(j, j + lengthOfTheSide / divided));
-                vectors.add(p.subtract(startPoint.add(v0).add(v1)).normalize());
-            }
+        return getLBeam(p, softShadowsRays);
+    }
+
+    /**
+     * Gets vectors from the light to the given point through sample points on a
+     * square around the light, perpendicular to the direction to the point. The
+     * sample points are spread over the square by the light's sampler.
+     *
+     * @param p    the point
+     * @param rays the amount of vectors
+     * @return all vectors who created
+     */
+    @Override
+    public List<Vector> getLBeam(Point p, int rays) {
+        Vector l = getL(p);
+        if (lengthOfTheSide == 0 || rays <= 1) return List.of(l);
+
+        // Orthonormal axes of the square - perpendicular to l, the first one is built
+        // on the coordinate axis farthest from l
+        double x = Math.abs(l.getX()), y = Math.abs(l.getY()), z = Math.abs(l.getZ());
+        Vector axis = x <= y && x <= z ? new Vector(1, 0, 0) : y <= z ? new Vector(0, 1, 0) : new Vector(0, 0, 1);
+        Vector u = l.crossProduct(axis).normalize();
+        Vector v = l.crossProduct(u);
+
+        // Starting (corner) point of the square around the lighting
+        double half = lengthOfTheSide / 2.0;
+        Point startPoint = position.add(u.scale(-half)).add(v.scale(-half));
+
+        double[] samples = sampler.generate(rays);
+        List<Vector> vectors = new ArrayList<>(rays);
+        for (int i = 0; i < rays; ++i) {
+            // the offsets may be 0, so the point is built by its coordinates (no zero vectors)
+            double a = samples[2 * i] * lengthOfTheSide, b = samples[2 * i + 1] * lengthOfTheSide;
+            Point samplePoint = new Point(startPoint.getX() + a * u.getX() + b * v.getX(),
+                    startPoint.getY() + a * u.getY() + b * v.getY(),
+                    startPoint.getZ() + a * u.getZ() + b * v.getZ());
+            vectors.add(p.subtract(samplePoint).normalize());
         }
         return vectors;
     }
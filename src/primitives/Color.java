@@ -123,6 +123,15 @@ public class Color {
 			throw new IllegalArgumentException("Can't scale a color by a by a number lower than 1");
 		return new Color(rgb.reduce(k));
 	}
+	/**
+	 * Calculates the brightness of the color - the sum of its components
+	 * 
+	 * @return the brightness
+	 */
+	public double brightness() {
+		return rgb.d1 + rgb.d2 + rgb.d3;
+	}
+
     /**
      * This function compares colors and returns a boolean variable whether they are equal or not
      * @param color the color to compare
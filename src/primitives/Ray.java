@@ -35,6 +35,20 @@ public class Ray {
 		this.direction = direction.normalize();
 	}
 
+	/**
+	 * A constructor with a point and the coordinates of a direction vector, which
+	 * is normalized without the intermediate objects of {@link Vector#normalize()}
+	 *
+	 * @param head the head point of the ray
+	 * @param x    x coordinate of the direction vector
+	 * @param y    y coordinate of the direction vector
+	 * @param z    z coordinate of the direction vector
+	 */
+	public Ray(Point head, double x, double y, double z) {
+		this.head = head;
+		this.direction = VectorMath.normalized(x, y, z);
+	}
+
 	/**
 	 * Constructor to initialize ray
 	 *
@@ -44,7 +58,7 @@ public class Ray {
 	 */
 	public Ray(Point head, Vector direction, Vector n) {
 		double delta = direction.dotProduct(n) >= 0 ? DELTA : -DELTA;
-		this.head = head.add(n.scale(delta));
+		this.head = VectorMath.pointAlong(head, n, delta);
 		this.direction = direction;
 	}
 
@@ -87,7 +101,7 @@ public class Ray {
 	 * @return the point on the ray at the given distance
 	 */
 	public Point getPoint(double t) {
-		return isZero(t) ? head : head.add(direction.scale(t));
+		return isZero(t) ? head : VectorMath.pointAlong(head, direction, t);
 	}
 
 	/**
@@ -0,0 +1,156 @@
+package primitives;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Sampler generates sets of sample points in the unit square [0,1)x[0,1), to
+ * be mapped onto an area (e.g. the area of a light source or of a pixel). The
+ * randomness is drawn from the generator of the calling thread, so the render
+ * threads don't contend on a shared generator.
+ * <br/>
+ * The common samplers are supplied as constants, any other distribution may be
+ * plugged in by implementing the interface.
+ */
+@FunctionalInterface
+public interface Sampler {
+	/**
+	 * Stratified sampler - a perfect square amount of points is spread over a
+	 * grid of cells with a random point in each cell. Any other amount is spread
+	 * over the rows and the columns of an amount x amount grid (N-rooks), so the
+	 * points are stratified along each axis.
+	 */
+	Sampler JITTERED = Sampler::jittered;
+
+	/**
+	 * Low-discrepancy sampler by the 2D Halton sequence (bases 2 and 3), shifted
+	 * randomly on each use to decorrelate the sets of neighbouring samplings
+	 */
+	Sampler HALTON = Sampler::halton;
+
+	/**
+	 * Low-discrepancy sampler by the first two dimensions of the Sobol sequence,
+	 * scrambled randomly on each use by a digital shift. The points are well
+	 * stratified for power of 2 amounts.
+	 */
+	Sampler SOBOL = Sampler::sobol;
+
+	/**
+	 * Generates sample points in the unit square
+	 *
+	 * @param count  the amount of points
+	 * @param points the array to fill with the points - 2 coordinates per point,
+	 *               its length must be at least 2 * count
+	 */
+	void generate(int count, double[] points);
+
+	/**
+	 * Generates sample points in the unit square into a new array
+	 *
+	 * @param count the amount of points
+	 * @return the points - 2 coordinates per point
+	 */
+	default double[] generate(int count) {
+		double[] points = new double[2 * count];
+		generate(count, points);
+		return points;
+	}
+
+	/**
+	 * Jittered (stratified) sampling, see {@link #JITTERED}
+	 *
+	 * @param count  the amount of points
+	 * @param points the array to fill with the points
+	 */
+	private static void jittered(int count, double[] points) {
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		int side = (int) Math.sqrt(count);
+		if (side * side == count) {
+			for (int i = 0; i < count; ++i) {
+				points[2 * i] = (i % side + random.nextDouble()) / side;
+				points[2 * i + 1] = (i / side + random.nextDouble()) / side;
+			}
+			return;
+		}
+
+		// N-rooks: a point in each column, the rows are shuffled
+		for (int i = 0; i < count; ++i)
+			points[2 * i + 1] = i;
+		for (int i = count - 1; i > 0; --i) {
+			int j = random.nextInt(i + 1);
+			double temp = points[2 * i + 1];
+			points[2 * i + 1] = points[2 * j + 1];
+			points[2 * j + 1] = temp;
+		}
+		for (int i = 0; i < count; ++i) {
+			points[2 * i] = (i + random.nextDouble()) / count;
+			points[2 * i + 1] = (points[2 * i + 1] + random.nextDouble()) / count;
+		}
+	}
+
+	/**
+	 * Halton sequence sampling, see {@link #HALTON}
+	 *
+	 * @param count  the amount of points
+	 * @param points the array to fill with the points
+	 */
+	private static void halton(int count, double[] points) {
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		double shiftX = random.nextDouble(), shiftY = random.nextDouble();
+		for (int i = 0; i < count; ++i) {
+			points[2 * i] = wrap(radicalInverse(i, 2) + shiftX);
+			points[2 * i + 1] = wrap(radicalInverse(i, 3) + shiftY);
+		}
+	}
+
+	/**
+	 * Sobol sequence sampling, see {@link #SOBOL}. The points are generated in
+	 * Gray code order, each one differing from the previous one by a single
+	 * direction number per dimension.
+	 *
+	 * @param count  the amount of points
+	 * @param points the array to fill with the points
+	 */
+	private static void sobol(int count, double[] points) {
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		int x = random.nextInt(), y = random.nextInt();
+		for (int i = 0; i < count; ++i) {
+			if (i > 0) {
+				int bit = Integer.numberOfTrailingZeros(i);
+				// 1st dimension - van der Corput, 2nd dimension - primitive polynomial x+1
+				x ^= 0x80000000 >>> bit;
+				int direction = 0x80000000;
+				for (int k = 0; k < bit; ++k)
+					direction ^= direction >>> 1;
+				y ^= direction;
+			}
+			points[2 * i] = Integer.toUnsignedLong(x) * 0x1p-32;
+			points[2 * i + 1] = Integer.toUnsignedLong(y) * 0x1p-32;
+		}
+	}
+
+	/**
+	 * Calculates the radical inverse of a number - its digits in the given base
+	 * mirrored around the radix point
+	 *
+	 * @param index the number
+	 * @param base  the base
+	 * @return the radical inverse in [0,1)
+	 */
+	private static double radicalInverse(int index, int base) {
+		double inverse = 0;
+		double factor = 1d / base;
+		for (; index > 0; index /= base, factor /= base)
+			inverse += (index % base) * factor;
+		return inverse;
+	}
+
+	/**
+	 * Wraps a coordinate shifted out of [0,1) back into it
+	 *
+	 * @param value the coordinate in [0,2)
+	 * @return the coordinate modulo 1
+	 */
+	private static double wrap(double value) {
+		return value >= 1 ? value - 1 : value;
+	}
+}
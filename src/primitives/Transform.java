@@ -0,0 +1,205 @@
+package primitives;
+
+import static primitives.Util.isZero;
+
+import java.util.Arrays;
+
+/**
+ * Affine transform of the space - a linear transform (rotation, scaling,
+ * shearing) followed by a translation. The transform is immutable, it is given
+ * by a 3x4 matrix (the linear part and the translation column) and its inverse
+ * is calculated once at construction, so points and rays are transformed both
+ * ways without inverting the matrix again.
+ * <br/>
+ * Transforms are created by the factory methods and combined by
+ * {@link #then(Transform)}, e.g. {@code Transform.scaling(2).then(Transform.translation(v))}
+ * scales and then moves.
+ */
+public final class Transform {
+	/** The identity transform */
+	public static final Transform IDENTITY = new Transform(new double[] { 1, 0, 0, 0, 0, 1, 0, 0, 0, 0, 1, 0 });
+
+	/** The matrix of the transform - 3 rows of 4 (the linear part and the translation) */
+	private final double[] matrix;
+	/** The matrix of the inverse transform - 3 rows of 4 */
+	private final double[] inverse;
+
+	/**
+	 * Constructs a transform by its matrix and calculates the inverse matrix
+	 *
+	 * @param matrix the matrix - 3 rows of 4
+	 * @throws IllegalArgumentException if the transform is singular (has no
+	 *                                  inverse)
+	 */
+	private Transform(double[] matrix) {
+		this.matrix = matrix;
+		double m00 = matrix[0], m01 = matrix[1], m02 = matrix[2];
+		double m10 = matrix[4], m11 = matrix[5], m12 = matrix[6];
+		double m20 = matrix[8], m21 = matrix[9], m22 = matrix[10];
+		// The cofactors of the first row
+		double c00 = m11 * m22 - m12 * m21, c10 = m12 * m20 - m10 * m22, c20 = m10 * m21 - m11 * m20;
+		double determinant = m00 * c00 + m01 * c10 + m02 * c20;
+		if (isZero(determinant))
+			throw new IllegalArgumentException("The transform is singular");
+
+		double d = 1 / determinant;
+		inverse = new double[12];
+		inverse[0] = c00 * d;
+		inverse[1] = (m02 * m21 - m01 * m22) * d;
+		inverse[2] = (m01 * m12 - m02 * m11) * d;
+		inverse[4] = c10 * d;
+		inverse[5] = (m00 * m22 - m02 * m20) * d;
+		inverse[6] = (m02 * m10 - m00 * m12) * d;
+		inverse[8] = c20 * d;
+		inverse[9] = (m01 * m20 - m00 * m21) * d;
+		inverse[10] = (m00 * m11 - m01 * m10) * d;
+		// The inverse translation is the inverse linear part applied to the negated
+		// translation
+		for (int row = 0; row < 12; row += 4)
+			inverse[row + 3] = -(inverse[row] * matrix[3] + inverse[row + 1] * matrix[7]
+					+ inverse[row + 2] * matrix[11]);
+	}
+
+	/**
+	 * Creates a translation
+	 *
+	 * @param offset the translation vector
+	 * @return the transform
+	 */
+	public static Transform translation(Vector offset) {
+		return new Transform(
+				new double[] { 1, 0, 0, offset.getX(), 0, 1, 0, offset.getY(), 0, 0, 1, offset.getZ() });
+	}
+
+	/**
+	 * Creates a uniform scaling around the origin
+	 *
+	 * @param factor the scaling factor
+	 * @return the transform
+	 * @throws IllegalArgumentException if the factor is zero
+	 */
+	public static Transform scaling(double factor) {
+		return scaling(factor, factor, factor);
+	}
+
+	/**
+	 * Creates a scaling around the origin along the axes
+	 *
+	 * @param x the scaling factor along the x axis
+	 * @param y the scaling factor along the y axis
+	 * @param z the scaling factor along the z axis
+	 * @return the transform
+	 * @throws IllegalArgumentException if any factor is zero
+	 */
+	public static Transform scaling(double x, double y, double z) {
+		return new Transform(new double[] { x, 0, 0, 0, 0, y, 0, 0, 0, 0, z, 0 });
+	}
+
+	/**
+	 * Creates a rotation around an axis through the origin (Rodrigues' rotation
+	 * formula). A positive angle rotates counterclockwise when looking from the
+	 * axis' head towards the origin.
+	 *
+	 * @param axis  the direction of the rotation axis
+	 * @param angle the rotation angle in degrees
+	 * @return the transform
+	 */
+	public static Transform rotation(Vector axis, double angle) {
+		Vector k = axis.normalize();
+		double x = k.getX(), y = k.getY(), z = k.getZ();
+		double radians = Math.toRadians(angle);
+		double cos = Math.cos(radians), sin = Math.sin(radians), c = 1 - cos;
+		return new Transform(new double[] { //
+				cos + x * x * c, x * y * c - z * sin, x * z * c + y * sin, 0, //
+				y * x * c + z * sin, cos + y * y * c, y * z * c - x * sin, 0, //
+				z * x * c - y * sin, z * y * c + x * sin, cos + z * z * c, 0 });
+	}
+
+	/**
+	 * Creates the transform which applies this transform and then the given one
+	 *
+	 * @param next the transform to apply after this one
+	 * @return the combined transform
+	 */
+	public Transform then(Transform next) {
+		double[] a = next.matrix, b = matrix;
+		double[] result = new double[12];
+		for (int row = 0; row < 12; row += 4) {
+			for (int column = 0; column < 4; ++column)
+				result[row + column] = a[row] * b[column] + a[row + 1] * b[column + 4] + a[row + 2] * b[column + 8];
+			result[row + 3] += a[row + 3];
+		}
+		return new Transform(result);
+	}
+
+	/**
+	 * Applies the transform to a point
+	 *
+	 * @param point the point
+	 * @return the transformed point
+	 */
+	public Point transform(Point point) {
+		return applyToPoint(matrix, point);
+	}
+
+	/**
+	 * Applies the inverse transform to a point
+	 *
+	 * @param point the point
+	 * @return the point which this transform maps to the given one
+	 */
+	public Point inverseTransform(Point point) {
+		return applyToPoint(inverse, point);
+	}
+
+	/**
+	 * Applies the inverse transform to a direction (the translation doesn't
+	 * affect directions). The result isn't normalized - the ratio of its length to
+	 * the length of the given direction is the ratio of the distances along the
+	 * direction before and after the inverse transform.
+	 *
+	 * @param direction the direction
+	 * @return the direction which this transform maps to the given one
+	 */
+	public Vector inverseTransformDirection(Vector direction) {
+		double x = direction.xyz.d1, y = direction.xyz.d2, z = direction.xyz.d3;
+		return new Vector(inverse[0] * x + inverse[1] * y + inverse[2] * z, //
+				inverse[4] * x + inverse[5] * y + inverse[6] * z, //
+				inverse[8] * x + inverse[9] * y + inverse[10] * z);
+	}
+
+	/**
+	 * Applies the transform to a normal of a surface. A normal isn't transformed
+	 * as a direction (unless the transform is rigid) - it is multiplied by the
+	 * transposed inverse of the linear part, which keeps it orthogonal to the
+	 * transformed surface.
+	 *
+	 * @param normal the normal
+	 * @return the unit normal of the transformed surface
+	 */
+	public Vector transformNormal(Vector normal) {
+		double x = normal.xyz.d1, y = normal.xyz.d2, z = normal.xyz.d3;
+		return VectorMath.normalized(inverse[0] * x + inverse[4] * y + inverse[8] * z, //
+				inverse[1] * x + inverse[5] * y + inverse[9] * z, //
+				inverse[2] * x + inverse[6] * y + inverse[10] * z);
+	}
+
+	/**
+	 * Applies a matrix to a point
+	 *
+	 * @param m     the matrix - 3 rows of 4
+	 * @param point the point
+	 * @return the transformed point
+	 */
+	private static Point applyToPoint(double[] m, Point point) {
+		double x = point.xyz.d1, y = point.xyz.d2, z = point.xyz.d3;
+		return new Point(m[0] * x + m[1] * y + m[2] * z + m[3], //
+				m[4] * x + m[5] * y + m[6] * z + m[7], //
+				m[8] * x + m[9] * y + m[10] * z + m[11]);
+	}
+
+	@Override
+	public String toString() {
+		return "Transform" + Arrays.toString(matrix);
+	}
+}
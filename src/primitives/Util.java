@@ -1,5 +1,7 @@
 package primitives;
 
+import java.util.concurrent.ThreadLocalRandom;
+
 /**
  * Util class is used for some internal utilities, e.g. controlling accuracy
  * 
@@ -63,14 +65,15 @@ public final class Util {
 	}
 
 	/**
-	 * Provide a real random number in range between min and max
+	 * Provide a real random number in range between min and max. The number is
+	 * drawn from the generator of the calling thread.
 	 * 
 	 * @param min value (included)
 	 * @param max value (excluded)
 	 * @return the random value
 	 */
 	public static double random(double min, double max) {
-		return Math.random() * (max - min) + min;
+		return ThreadLocalRandom.current().nextDouble() * (max - min) + min;
 	}
 
 }
@@ -25,7 +25,7 @@ public class Vector extends Point {
 	 * @param xyz- an object of type Double3
 	 */
 	public Vector(Double3 xyz) {
-		this(xyz.d1, xyz.d2, xyz.d3);
+		super(xyz);
 		if (xyz.equals(Double3.ZERO))
 			throw new IllegalArgumentException("This is the zero vector");
 	}
@@ -0,0 +1,154 @@
+package primitives;
+
+/**
+ * VectorMath is a kernel of vector operations over raw coordinates, for the
+ * hot paths of the ray tracing (intersections, shading). Unlike the immutable
+ * {@link Point} and {@link Vector} operations, it allocates no objects - a
+ * vector is passed as its three coordinates, and a vector result is calculated
+ * one coordinate per call (e.g. {@link #crossX}, {@link #crossY},
+ * {@link #crossZ}).
+ * <br/>
+ * The operations are calculated in the same order as the appropriate
+ * {@link Vector} operations, so their results are identical.
+ */
+public final class VectorMath {
+	/** Don't let anyone instantiate this class. */
+	private VectorMath() {
+	}
+
+	/**
+	 * Calculates the dot product of two vectors
+	 *
+	 * @param ax x coordinate of the first vector
+	 * @param ay y coordinate of the first vector
+	 * @param az z coordinate of the first vector
+	 * @param bx x coordinate of the second vector
+	 * @param by y coordinate of the second vector
+	 * @param bz z coordinate of the second vector
+	 * @return the dot product
+	 */
+	public static double dot(double ax, double ay, double az, double bx, double by, double bz) {
+		return ax * bx + ay * by + az * bz;
+	}
+
+	/**
+	 * Calculates the dot product of a vector and a raw vector
+	 *
+	 * @param a the first vector
+	 * @param x x coordinate of the second vector
+	 * @param y y coordinate of the second vector
+	 * @param z z coordinate of the second vector
+	 * @return the dot product
+	 */
+	public static double dot(Vector a, double x, double y, double z) {
+		return a.xyz.d1 * x + a.xyz.d2 * y + a.xyz.d3 * z;
+	}
+
+	/**
+	 * Calculates the dot product of a vector and the difference of two points
+	 * (the vector from the second point to the first one) - e.g. the distance of a
+	 * point from a plane along the plane's normal
+	 *
+	 * @param a    the vector
+	 * @param to   the end point of the difference
+	 * @param from the start point of the difference
+	 * @return the dot product
+	 */
+	public static double dotDifference(Vector a, Point to, Point from) {
+		return dot(a, to.xyz.d1 - from.xyz.d1, to.xyz.d2 - from.xyz.d2, to.xyz.d3 - from.xyz.d3);
+	}
+
+	/**
+	 * Calculates the squared length of a vector
+	 *
+	 * @param x x coordinate of the vector
+	 * @param y y coordinate of the vector
+	 * @param z z coordinate of the vector
+	 * @return the squared length
+	 */
+	public static double lengthSquared(double x, double y, double z) {
+		return x * x + y * y + z * z;
+	}
+
+	/**
+	 * Calculates the length of a vector
+	 *
+	 * @param x x coordinate of the vector
+	 * @param y y coordinate of the vector
+	 * @param z z coordinate of the vector
+	 * @return the length
+	 */
+	public static double length(double x, double y, double z) {
+		return Math.sqrt(lengthSquared(x, y, z));
+	}
+
+	/**
+	 * Calculates the x coordinate of the cross product of two vectors
+	 *
+	 * @param ay y coordinate of the first vector
+	 * @param az z coordinate of the first vector
+	 * @param by y coordinate of the second vector
+	 * @param bz z coordinate of the second vector
+	 * @return x coordinate of the cross product
+	 */
+	public static double crossX(double ay, double az, double by, double bz) {
+		return ay * bz - az * by;
+	}
+
+	/**
+	 * Calculates the y coordinate of the cross product of two vectors
+	 *
+	 * @param ax x coordinate of the first vector
+	 * @param az z coordinate of the first vector
+	 * @param bx x coordinate of the second vector
+	 * @param bz z coordinate of the second vector
+	 * @return y coordinate of the cross product
+	 */
+	public static double crossY(double ax, double az, double bx, double bz) {
+		return az * bx - ax * bz;
+	}
+
+	/**
+	 * Calculates the z coordinate of the cross product of two vectors
+	 *
+	 * @param ax x coordinate of the first vector
+	 * @param ay y coordinate of the first vector
+	 * @param bx x coordinate of the second vector
+	 * @param by y coordinate of the second vector
+	 * @return z coordinate of the cross product
+	 */
+	public static double crossZ(double ax, double ay, double bx, double by) {
+		return ax * by - ay * bx;
+	}
+
+	/**
+	 * Creates a unit vector in the direction of a raw vector, without the
+	 * intermediate objects of {@link Vector#normalize()}
+	 *
+	 * @param x x coordinate of the vector
+	 * @param y y coordinate of the vector
+	 * @param z z coordinate of the vector
+	 * @return the unit vector
+	 * @throws IllegalArgumentException if the vector is the zero vector
+	 */
+	public static Vector normalized(double x, double y, double z) {
+		double length = length(x, y, z);
+		if (length == 0)
+			throw new IllegalArgumentException("This is the zero vector");
+		return new Vector(x / length, y / length, z / length);
+	}
+
+	/**
+	 * Creates the point at a distance along a direction from a starting point,
+	 * without the intermediate objects of {@link Vector#scale(double)} and
+	 * {@link Point#add(Vector)}
+	 *
+	 * @param p the starting point
+	 * @param v the direction
+	 * @param t the distance (scale of the direction)
+	 * @return the point p + v * t
+	 */
+	public static Point pointAlong(Point p, Vector v, double t) {
+		return new Point(p.xyz.d1 + v.xyz.d1 * t, p.xyz.d2 + v.xyz.d2 * t, p.xyz.d3 + v.xyz.d3 * t);
+	}
+}
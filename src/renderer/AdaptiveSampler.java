@@ -0,0 +1,208 @@
+package renderer;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import primitives.Color;
+
+/**
+ * AdaptiveSampler is a helper class for rendering an image by adaptive
+ * super-sampling. Each pixel is covered by a grid of 2^depth x 2^depth sub-pixel
+ * squares. A square is sampled at its four corners, and it is divided into
+ * quadrants only if its corner colors differ, until the maximal depth is
+ * reached. The color of a square is the average of its corners (or of its
+ * quadrants).
+ * <br/>
+ * The corner samples are cached, so a sample shared by neighbouring squares or
+ * pixels is traced only once: the samples of a tile are kept in a per-tile
+ * array, and the samples on the borders between the tiles are kept in shared
+ * arrays.
+ */
+class AdaptiveSampler implements TileScheduler.TileRenderer {
+	/**
+	 * Tracer of a single sample - returns the color seen through a point of the
+	 * view plane
+	 */
+	@FunctionalInterface
+	interface SampleTracer {
+		/**
+		 * Traces a sample
+		 *
+		 * @param x the column coordinate of the sample, in pixels (the pixel j spans
+		 *          from j - 0.5 to j + 0.5)
+		 * @param y the row coordinate of the sample, in pixels
+		 * @return the color of the sample
+		 */
+		Color trace(double x, double y);
+	}
+
+	/** Marker of a border sample which is being traced by some thread */
+	private static final Color PENDING = new Color(0, 0, 0);
+
+	/** Amount of pixel columns in the image */
+	private final int nX;
+	/** Amount of pixel rows in the image */
+	private final int nY;
+	/** Amount of sub-pixel squares along a pixel's edge */
+	private final int cells;
+	/** Amount of sub-pixel squares along a tile's edge */
+	private final int tileCells;
+	/** The tracer of the samples */
+	private final SampleTracer tracer;
+	/** The writer of the pixels' colors */
+	private final ImageWriter imageWriter;
+	/**
+	 * Samples on the vertical borders between the tiles - a column of sample
+	 * points per border
+	 */
+	private final AtomicReferenceArray<Color> columnBorders;
+	/**
+	 * Samples on the horizontal borders between the tiles - a row of sample
+	 * points per border
+	 */
+	private final AtomicReferenceArray<Color> rowBorders;
+
+	/**
+	 * Initialize the sampler of an image
+	 *
+	 * @param nX          the amount of pixel columns
+	 * @param nY          the amount of pixel rows
+	 * @param tileSize    the size of a tile's edge in pixels
+	 * @param depth       the maximal depth of the subdivision of a pixel
+	 * @param tracer      the tracer of the samples
+	 * @param imageWriter the writer of the pixels' colors
+	 */
+	AdaptiveSampler(int nX, int nY, int tileSize, int depth, SampleTracer tracer, ImageWriter imageWriter) {
+		this.nX = nX;
+		this.nY = nY;
+		this.cells = 1 << depth;
+		this.tileCells = tileSize * cells;
+		this.tracer = tracer;
+		this.imageWriter = imageWriter;
+		int tilesX = (nX + tileSize - 1) / tileSize;
+		int tilesY = (nY + tileSize - 1) / tileSize;
+		columnBorders = new AtomicReferenceArray<>((tilesX - 1) * (nY * cells + 1));
+		rowBorders = new AtomicReferenceArray<>((tilesY - 1) * (nX * cells + 1));
+	}
+
+	@Override
+	public TileScheduler.PixelRenderer startTile(int startCol, int startRow, int width, int height) {
+		return new Tile(startCol, startRow, width, height);
+	}
+
+	/**
+	 * Traces a sample point of the image's grid. The samples on the borders
+	 * between the tiles are shared by two tiles (or four, at the tiles' corners),
+	 * so they are looked up in the border arrays first. A thread tracing a border
+	 * sample claims it by {@link #PENDING}, and the other threads needing it wait
+	 * for the color instead of tracing it again.
+	 *
+	 * @param gx the column of the sample point in the grid of the image
+	 * @param gy the row of the sample point in the grid of the image
+	 * @return the color of the sample
+	 */
+	private Color traceSample(int gx, int gy) {
+		AtomicReferenceArray<Color> border;
+		int index;
+		if (gx % tileCells == 0 && gx > 0 && gx < nX * cells) {
+			border = columnBorders;
+			index = (gx / tileCells - 1) * (nY * cells + 1) + gy;
+		} else if (gy % tileCells == 0 && gy > 0 && gy < nY * cells) {
+			border = rowBorders;
+			index = (gy / tileCells - 1) * (nX * cells + 1) + gx;
+		} else
+			return tracer.trace((double) gx / cells - 0.5, (double) gy / cells - 0.5);
+
+		while (true) {
+			Color color = border.get(index);
+			if (color == null) {
+				if (!border.compareAndSet(index, null, PENDING))
+					continue;
+				try {
+					color = tracer.trace((double) gx / cells - 0.5, (double) gy / cells - 0.5);
+				} finally {
+					// on failure the sample is released (null) for another try
+					border.set(index, color);
+				}
+				return color;
+			}
+			if (color != PENDING)
+				return color;
+			Thread.onSpinWait();
+		}
+	}
+
+	/**
+	 * Renderer of the pixels of a single tile, holding the cache of the tile's
+	 * samples. It is used by a single thread.
+	 */
+	private class Tile implements TileScheduler.PixelRenderer {
+		/** The first pixel column of the tile */
+		private final int startCol;
+		/** The first pixel row of the tile */
+		private final int startRow;
+		/** Amount of sample points in a row of the tile's grid */
+		private final int rowLength;
+		/** The cached samples of the tile's grid, null for samples not traced yet */
+		private final Color[] samples;
+
+		/**
+		 * Initialize the renderer of a tile
+		 *
+		 * @param startCol the first pixel column of the tile
+		 * @param startRow the first pixel row of the tile
+		 * @param width    the amount of pixel columns in the tile
+		 * @param height   the amount of pixel rows in the tile
+		 */
+		Tile(int startCol, int startRow, int width, int height) {
+			this.startCol = startCol;
+			this.startRow = startRow;
+			rowLength = width * cells + 1;
+			samples = new Color[rowLength * (height * cells + 1)];
+		}
+
+		@Override
+		public void render(int col, int row) {
+			Color color = sampleSquare((col - startCol) * cells, (row - startRow) * cells, cells);
+			imageWriter.writePixel(col, row, color);
+		}
+
+		/**
+		 * Calculates the color of a square of the grid by its corners, dividing it
+		 * recursively into quadrants while the corners' colors differ
+		 *
+		 * @param x    the column of the square's top left corner in the tile's grid
+		 * @param y    the row of the square's top left corner in the tile's grid
+		 * @param size the size of the square's edge in grid squares
+		 * @return the color of the square
+		 */
+		private Color sampleSquare(int x, int y, int size) {
+			Color c1 = sample(x, y);
+			Color c2 = sample(x + size, y);
+			Color c3 = sample(x, y + size);
+			Color c4 = sample(x + size, y + size);
+			if (size == 1 || (c1.isColorsEqual(c2) && c1.isColorsEqual(c3) && c1.isColorsEqual(c4) //
+					&& c2.isColorsEqual(c3) && c2.isColorsEqual(c4) && c3.isColorsEqual(c4)))
+				return c1.add(c2, c3, c4).reduce(4);
+
+			int half = size / 2;
+			return sampleSquare(x, y, half).add(sampleSquare(x + half, y, half), //
+					sampleSquare(x, y + half, half), sampleSquare(x + half, y + half, half)).reduce(4);
+		}
+
+		/**
+		 * Returns the color of a sample point of the tile's grid, tracing it on the
+		 * first request only
+		 *
+		 * @param x the column of the point in the tile's grid
+		 * @param y the row of the point in the tile's grid
+		 * @return the color of the sample
+		 */
+		private Color sample(int x, int y) {
+			int index = y * rowLength + x;
+			Color color = samples[index];
+			if (color == null)
+				samples[index] = color = traceSample(startCol * cells + x, startRow * cells + y);
+			return color;
+		}
+	}
+}
@@ -1,11 +1,9 @@
 package renderer;
 
-import java.util.LinkedList;
-import java.util.List;
 import java.util.MissingResourceException;
+import java.util.concurrent.ForkJoinPool;
 
 import primitives.*;
-import renderer.PixelManager.Pixel;
 
 import static primitives.Util.*;
 
@@ -29,7 +27,7 @@ import static primitives.Util.*;
  * Camera camera = Camera.getBuilder().setLocation(new Point(0, 0, 0))
  * 		.setDirection(new Vector(0, 0, -1), new Vector(0, 1, 0)).setVpSize(200, 200).setVpDistance(1000)
  * 		.setImageWriter(new ImageWriter("image", 1000, 1000)).setRayTracer(new RayTracerBasic(scene))
- * 		.setSuperSampling(500).setAdaptive(true).build();
+ * 		.setSuperSampling(16).setSampler(Sampler.HALTON).build();
  * camera.renderImage();
  * camera.writeToImage();
  * }</pre>
@@ -101,11 +99,50 @@ public class Camera implements Cloneable {
 	 * Number of spare threads to leave unused when using all available cores.
 	 */
 	private final int SPARE_THREADS = 2;
+	/**
+	 * Size of the edge (in pixels) of the square tiles the image is rendered by.
+	 */
+	private int tileSize = 16;
+
+	/**
+	 * Amount of rays per pixel (super-sampling), 1 for a single ray through the
+	 * pixel's center.
+	 */
+	private int superSampling = 1;
+	/**
+	 * Sampler of the rays' points in a pixel for super-sampling.
+	 */
+	private Sampler sampler = Sampler.JITTERED;
+
+	/**
+	 * Size of the edge (in pixels) of the square packets of primary rays traced
+	 * together, 1 for tracing each ray on its own.
+	 */
+	private int packetSize = 1;
 
 	/**
 	 * Flag for enabling or disabling adaptive super-sampling.
 	 */
 	private boolean adaptive;
+	/**
+	 * Maximal depth of the adaptive subdivision - a pixel is divided into up to
+	 * 2^depth x 2^depth sub-pixel squares.
+	 */
+	private int adaptiveDepth = 2;
+	/**
+	 * Maximal allowed depth of the adaptive subdivision.
+	 */
+	private static final int MAX_ADAPTIVE_DEPTH = 6;
+
+	/**
+	 * Time of building the scene's acceleration structures by the last rendering,
+	 * in milliseconds.
+	 */
+	private double buildTime = 0;
+	/**
+	 * Time of tracing the rays by the last rendering, in milliseconds.
+	 */
+	private double renderTime = 0;
 
 	/**
 	 * Private constructor to prevent direct instantiation.
@@ -176,7 +213,26 @@ public class Camera implements Cloneable {
 		return distance;
 	}
 
-	
+	/**
+	 * Gets the time of building the scene's acceleration structures by the last
+	 * rendering - the phase before the first pixel is traced.
+	 * 
+	 * @return the build time in milliseconds.
+	 */
+	public double getBuildTime() {
+		return buildTime;
+	}
+
+	/**
+	 * Gets the time of tracing the pixels by the last rendering, without the build
+	 * time.
+	 * 
+	 * @return the render time in milliseconds.
+	 */
+	public double getRenderTime() {
+		return renderTime;
+	}
+
 	/**
 	 * Returns a new {@link Camera.Builder} instance for constructing a
 	 * {@code Camera}.
@@ -331,6 +387,57 @@ public class Camera implements Cloneable {
 			return this;
 		}
 
+		/**
+		 * Sets the amount of rays per pixel for super-sampling (anti-aliasing). The
+		 * rays pass through points of the pixel spread by the camera's sampler. It
+		 * is not used by adaptive super-sampling, which has its own sampling grid.
+		 *
+		 * @param rays the amount of rays per pixel, 1 for a single ray through the
+		 *             pixel's center.
+		 * @return this Builder instance.
+		 * @throws IllegalArgumentException if the amount is not positive.
+		 */
+		public Builder setSuperSampling(int rays) {
+			if (rays <= 0)
+				throw new IllegalArgumentException("Super-sampling rays amount must be positive");
+			camera.superSampling = rays;
+			return this;
+		}
+
+		/**
+		 * Sets the sampler of the rays' points in a pixel for super-sampling.
+		 *
+		 * @param sampler the sampler, e.g. {@link Sampler#JITTERED}.
+		 * @return this Builder instance.
+		 * @throws IllegalArgumentException if the sampler is null.
+		 */
+		public Builder setSampler(Sampler sampler) {
+			if (sampler == null)
+				throw new IllegalArgumentException("Sampler cannot be null");
+			camera.sampler = sampler;
+			return this;
+		}
+
+		/**
+		 * Sets the size of the packets of primary rays. The rays of the pixels of
+		 * each square of size x size pixels (or the super-sampling rays of a pixel,
+		 * up to size x size at a time) are traced together as a packet, which
+		 * traverses the scene's hierarchies once for all its rays (see
+		 * {@link RayTracerBase#traceRays(Ray[], Color[])}). It is not used by
+		 * adaptive super-sampling, which traces its samples one by one.
+		 *
+		 * @param size the size of a packet's edge: 1 for single rays, 2 for packets
+		 *             of 2x2 rays or 4 for packets of 4x4 rays.
+		 * @return this Builder instance.
+		 * @throws IllegalArgumentException if the size is not 1, 2 or 4.
+		 */
+		public Builder setPacketSize(int size) {
+			if (size != 1 && size != 2 && size != 4)
+				throw new IllegalArgumentException("Packet size must be 1, 2 or 4");
+			camera.packetSize = size;
+			return this;
+		}
+
 		/**
 		 * Sets the adaptive super-sampling flag for the camera.
 		 *
@@ -342,6 +449,23 @@ public class Camera implements Cloneable {
 			return this;
 		}
 
+		/**
+		 * Sets the maximal depth of the adaptive super-sampling. A pixel is sampled
+		 * at its corners and it is divided into quadrants recursively while the
+		 * corners' colors differ, up to 2^depth x 2^depth sub-pixel squares. Depth 0
+		 * samples the pixels' corners only.
+		 *
+		 * @param depth the maximal depth of the subdivision.
+		 * @return this Builder instance.
+		 * @throws IllegalArgumentException if the depth is negative or too big.
+		 */
+		public Builder setAdaptiveDepth(int depth) {
+			if (depth < 0 || depth > MAX_ADAPTIVE_DEPTH)
+				throw new IllegalArgumentException("Adaptive depth must be between 0 and " + MAX_ADAPTIVE_DEPTH);
+			camera.adaptiveDepth = depth;
+			return this;
+		}
+
 		/**
 		 * Builds and returns the {@code Camera} instance.
 		 *
@@ -391,8 +515,9 @@ public class Camera implements Cloneable {
 	 * Sets the number of threads to use for multi-threaded rendering.
 	 * <p>
 	 * If the value is -2, the camera will use all available cores minus a few spare
-	 * threads. If the value is -1 or greater, the camera will use the specified
-	 * number of threads.
+	 * threads. If the value is -1, the camera will use the common fork-join pool of
+	 * the JVM. If the value is 0, the camera will render in the calling thread,
+	 * otherwise it will use the specified number of threads.
 	 * </p>
 	 * 
 	 * @param threads the number of threads to use.
@@ -411,6 +536,22 @@ public class Camera implements Cloneable {
 		return this;
 	}
 
+	/**
+	 * Sets the size of the square tiles the image is split into for rendering.
+	 * Each tile is rendered by a single thread, small tiles balance the threads'
+	 * load better while big tiles keep the rays of a thread more coherent.
+	 * 
+	 * @param tileSize the size of a tile's edge in pixels.
+	 * @return this Camera instance.
+	 * @throws IllegalArgumentException if the tile size is not positive.
+	 */
+	public Camera setTileSize(int tileSize) {
+		if (tileSize <= 0)
+			throw new IllegalArgumentException("Tile size must be positive");
+		this.tileSize = tileSize;
+		return this;
+	}
+
 	/**
 	 * Sets the interval for printing debug progress updates during rendering.
 	 * 
@@ -423,17 +564,74 @@ public class Camera implements Cloneable {
 	}
 
 	/**
-	 * Casts a ray through the center of a given pixel, computes the color by
-	 * tracing the ray, and colors the pixel.
+	 * Casts a ray through the center of a given pixel (or super-sampling rays
+	 * through the pixel's area), computes the color by tracing the ray, and colors
+	 * the pixel.
+	 *
+	 * @param generator the generator of the rendering's rays.
+	 * @param col       pixel's column number.
+	 * @param row       pixel's row number.
+	 */
+	private void castRay(RayGenerator generator, int col, int row) {
+		if (superSampling == 1) {
+			imageWriter.writePixel(col, row, rayTracer.traceRay(generator.pixelRay(col, row)));
+			return;
+		}
+
+		Ray[] rays = new Ray[superSampling];
+		generator.subPixelRays(col, row, sampler.generate(superSampling), 0, rays);
+		Color color = Color.BLACK;
+		for (Ray ray : rays)
+			color = color.add(rayTracer.traceRay(ray));
+		imageWriter.writePixel(col, row, color.reduce(superSampling));
+	}
+
+	/**
+	 * Casts the packet of the primary rays of a block of pixels (or packets of the
+	 * super-sampling rays of each of the block's pixels), computes their colors
+	 * by tracing the packets, and colors the pixels.
 	 *
-	 * @param nX  number of pixels in the x direction.
-	 * @param nY  number of pixels in the y direction.
-	 * @param col pixel's column number.
-	 * @param row pixel's row number.
-	 */
-	private void castRay(int nX, int nY, int col, int row) {
-		imageWriter.writePixel(col, row, rayTracer.traceRay(constructRay(nX, nY, col, row)));
-		pixelManager.pixelDone();
+	 * @param generator the generator of the rendering's rays.
+	 * @param col       the first pixel column of the block.
+	 * @param row       the first pixel row of the block.
+	 * @param cols      the amount of pixel columns in the block.
+	 * @param rows      the amount of pixel rows in the block.
+	 */
+	private void castPacket(RayGenerator generator, int col, int row, int cols, int rows) {
+		if (superSampling == 1) {
+			Ray[] rays = new Ray[cols * rows];
+			Color[] colors = new Color[rays.length];
+			generator.pixelRays(col, row, cols, rows, rays);
+			rayTracer.traceRays(rays, colors);
+			for (int i = 0; i < rows; ++i)
+				for (int j = 0; j < cols; ++j)
+					imageWriter.writePixel(col + j, row + i, colors[i * cols + j]);
+			return;
+		}
+
+		// The packets of a pixel's rays are full, but the last one may be smaller
+		int maxRays = packetSize * packetSize;
+		Ray[] fullRays = new Ray[Math.min(superSampling, maxRays)];
+		Color[] fullColors = new Color[fullRays.length];
+		int tail = superSampling > maxRays ? superSampling % maxRays : 0;
+		Ray[] tailRays = new Ray[tail];
+		Color[] tailColors = new Color[tail];
+		for (int i = row; i < row + rows; ++i)
+			for (int j = col; j < col + cols; ++j) {
+				double[] samples = sampler.generate(superSampling);
+				Color color = Color.BLACK;
+				for (int start = 0; start < superSampling; start += maxRays) {
+					int count = Math.min(maxRays, superSampling - start);
+					boolean full = count == fullRays.length;
+					Ray[] rays = full ? fullRays : tailRays;
+					Color[] colors = full ? fullColors : tailColors;
+					generator.subPixelRays(j, i, samples, start, rays);
+					rayTracer.traceRays(rays, colors);
+					for (int k = 0; k < count; ++k)
+						color = color.add(colors[k]);
+				}
+				imageWriter.writePixel(j, i, color.reduce(superSampling));
+			}
 	}
 
 	/**
@@ -479,7 +677,16 @@ public class Camera implements Cloneable {
 	 * <p>
 	 * If multi-threading is enabled, the rendering will be performed using multiple
 	 * threads. If adaptive super-sampling is enabled, the camera will use adaptive
-	 * techniques to optimize rendering quality and performance.
+	 * techniques to optimize rendering quality and performance. Both modes may be
+	 * combined - the pixels are spread over the threads by tiles either way.
+	 * </p>
+	 * <p>
+	 * The acceleration structures of the scene are built before the first pixel
+	 * is traced, and the build time is measured separately from the render time
+	 * (see {@link #getBuildTime()}, {@link #getRenderTime()}). Both are printed
+	 * after the progress when the debug print is on. The view plane is set up
+	 * once for the rendering too, so the primary rays are generated by stepping
+	 * over the pixels (see {@link RayGenerator}).
 	 * </p>
 	 * 
 	 * @return this Camera instance.
@@ -498,47 +705,45 @@ public class Camera implements Cloneable {
 		int nX = imageWriter.getNx();
 		int nY = imageWriter.getNy();
 
-		pixelManager = new PixelManager(nY, nX, printInterval);
+		long start = System.nanoTime();
+		rayTracer.prepare();
+		long built = System.nanoTime();
+		buildTime = (built - start) / 1e6;
 
-		// Multi-threaded rendering
-		if (threadsCount != 0) {
-			var threads = new LinkedList<Thread>(); // List of threads
-			while (threadsCount-- > 0) { // Add appropriate number of threads
-				threads.add(new Thread(() -> {
-					Pixel pixel;
-					while ((pixel = pixelManager.nextPixel()) != null)
-						// Cast ray through pixel and color it
-						castRay(nX, nY, pixel.col(), pixel.row());
-				}));
-			}
-			// Start all threads
-			for (var thread : threads)
-				thread.start();
-			// Wait until all threads have finished
-			try {
-				for (var thread : threads)
-					thread.join();
-			} catch (InterruptedException ignore) {
-			}
-		} else if (!adaptive) {
-			// Non-adaptive rendering
-			for (int i = 0; i < nX; i++) {
-				for (int j = 0; j < nY; j++) {
-					castRay(nX, nY, j, i);
-				}
-			}
-		} else {
-			// Adaptive super-sampling rendering
-			for (int i = 0; i < nX; i++) {
-				for (int j = 0; j < nY; j++) {
-					List<Ray> rays;
-					Ray centerRay = constructRay(nX, nY, j, i);
-					rays = List.of(centerRay);
-					Color color = rayTracer.adaptiveTraceRays(rays);
-					imageWriter.writePixel(j, i, color);
+		RayGenerator generator = new RayGenerator(p0, vTo, vUp, vRight, width, height, distance, nX, nY);
+		pixelManager = new PixelManager(nY, nX, printInterval);
+		try {
+			TileScheduler scheduler = adaptive //
+					? new TileScheduler(nX, nY, tileSize, new AdaptiveSampler(nX, nY, tileSize, adaptiveDepth, //
+							(x, y) -> rayTracer.traceRay(generator.subPixelRay(x, y)), imageWriter), pixelManager)
+					: packetSize == 1 //
+							? new TileScheduler(nX, nY, tileSize, (col, row) -> castRay(generator, col, row), pixelManager)
+							: new TileScheduler(nX, nY, tileSize, (startCol, startRow, width, height) -> //
+							// A packet is cast for each block of a tile, by its first pixel
+							(col, row) -> {
+								if ((col - startCol) % packetSize == 0 && (row - startRow) % packetSize == 0)
+									castPacket(generator, col, row, Math.min(packetSize, startCol + width - col),
+											Math.min(packetSize, startRow + height - row));
+							}, pixelManager);
+			if (threadsCount == 0)
+				scheduler.render();
+			else if (threadsCount < 0)
+				scheduler.render(ForkJoinPool.commonPool());
+			else {
+				// Multi-threaded rendering - the tiles are spread over the pool's threads
+				ForkJoinPool pool = new ForkJoinPool(threadsCount);
+				try {
+					scheduler.render(pool);
+				} finally {
+					pool.shutdown();
 				}
 			}
+		} finally {
+			pixelManager.finish();
 		}
+		renderTime = (System.nanoTime() - built) / 1e6;
+		if (printInterval > 0)
+			System.out.printf("%nBuild: %.1f ms, render: %.1f ms%n", buildTime, renderTime);
 
 		return this;
 	}
@@ -1,96 +1,92 @@
 package renderer;
 
-/** PixelManager is a helper class. It is used for multi-threading in the
- * renderer and
- * for follow up its progress.<br/>
- * A Camera uses one pixel manager object and several Pixel objects - one in
- * each thread.
+import java.util.concurrent.atomic.LongAdder;
+
+/** PixelManager is a helper class. It is used for following up the progress of
+ * the rendering.<br/>
+ * A Camera uses one pixel manager object, shared by all the rendering threads
+ * (the pixels are allocated to the threads by the {@link TileScheduler}). The
+ * threads report their done pixels in batches (e.g. once per tile) into a
+ * striped counter, without any locking. The progress percentage is printed by
+ * a separate low priority reporter thread, which wakes up once per the
+ * printing interval.
  * @author Dan Zilberstein */
 class PixelManager {
-   /** Immutable class for object containing allocated pixel (with its row and
-    * column numbers)
-    * @param col the column index of the pixel
-    * @param row the row index of the pixel */
-   record Pixel(int col, int row) {
-   }
-
-   /** Maximum rows of pixels */
-   private int                 maxRows       = 0;
-   /** Maximum columns of pixels */
-   private int                 maxCols       = 0;
    /** Total amount of pixels in the generated image */
-   private long                totalPixels   = 0l;
+   private final long          totalPixels;
 
-   /** Currently processed row of pixels */
-   private volatile int        cRow          = 0;
-   /** Currently processed column of pixels */
-   private volatile int        cCol          = -1;
-   /** Amount of pixels that have been processed */
-   private volatile long       pixels        = 0l;
-   /** Last printed progress update percentage */
-   private volatile int        lastPrinted   = 0;
+   /** Amount of pixels that have been processed - striped between the threads */
+   private final LongAdder     pixels        = new LongAdder();
 
-   /** Flag of debug printing of progress percentage */
-   private boolean             print         = false;
-   /** Progress percentage printing interval */
-   private long                printInterval = 100l;
+   /** Progress percentage printing interval in milliseconds */
+   private final long          printInterval;
    /** Printing format */
    private static final String PRINT_FORMAT  = "%5.1f%%\r";
-   /** Mutual exclusion object for synchronizing next pixel allocation between
-    * threads */
-   private Object              mutexNext     = new Object();
-   /** Mutual exclusion object for printing progress percentage in console window
-    * by different threads */
-   private Object              mutexPixels   = new Object();
+   /** The thread printing the progress percentage, null if printing is not
+    * required */
+   private final Thread        reporter;
 
-   /** Initialize pixel manager data for multi-threading
+   /** Initialize pixel manager data for multi-threading and start the progress
+    * reporter if it is required
     * @param maxRows  the amount of pixel rows
     * @param maxCols  the amount of pixel columns
     * @param interval print time interval in seconds, 0 if printing is not
     *                 required */
    PixelManager(int maxRows, int maxCols, double interval) {
-      this.maxRows  = maxRows;
-      this.maxCols  = maxCols;
       totalPixels   = (long) maxRows * maxCols;
-      printInterval = (int) (interval * 10);
-      if (print = printInterval != 0) System.out.printf(PRINT_FORMAT, 0d);
-   }
+      printInterval = (long) (interval * 1000);
+      if (printInterval <= 0) {
+         reporter = null;
+         return;
+      }
 
-   /** Function for thread-safe manipulating of main follow up Pixel object - this
-    * function is critical section for all the threads, and the pixel manager data
-    * is the shared data of this critical section.<br/>
-    * The function provides next available pixel number each call.
-    * @return true if next pixel is allocated, false if there are no more pixels */
-   Pixel nextPixel() {
-      synchronized (mutexNext) {
-         if (cRow == maxRows) return null;
+      System.out.printf(PRINT_FORMAT, 0d);
+      reporter = new Thread(this::report, "render-progress");
+      reporter.setDaemon(true);
+      reporter.setPriority(Thread.MIN_PRIORITY);
+      reporter.start();
+   }
 
-         ++cCol;
-         if (cCol < maxCols)
-            return new Pixel(cRow, cCol);
+   /** Finish processing of a batch of pixels by updating the progress
+    * @param count the amount of the processed pixels */
+   void pixelsDone(int count) {
+      pixels.add(count);
+   }
 
-         cCol = 0;
-         ++cRow;
-         if (cRow < maxRows)
-            return new Pixel(cRow, cCol);
+   /** Finish the rendering - stop the progress reporter and print the final
+    * progress percentage */
+   void finish() {
+      if (reporter == null) return;
+      reporter.interrupt();
+      try {
+         reporter.join();
+      } catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
       }
-      return null;
+      System.out.printf(PRINT_FORMAT, percentage());
+   }
+
+   /** Calculate the current progress percentage
+    * @return the percentage of the processed pixels */
+   private double percentage() {
+      return totalPixels == 0 ? 100d : (int) (1000l * pixels.sum() / totalPixels) / 10d;
    }
 
-   /** Finish pixel processing by updating and printing of progress percentage */
-   void pixelDone() {
-      boolean flag       = false;
-      int     percentage = 0;
-      synchronized (mutexPixels) {
-         ++pixels;
-         if (print) {
-            percentage = (int) (1000l * pixels / totalPixels);
-            if (percentage - lastPrinted >= printInterval) {
+   /** The loop of the progress reporter thread - prints the progress percentage
+    * once per interval until it is interrupted */
+   private void report() {
+      double lastPrinted = 0d;
+      try {
+         while (true) {
+            Thread.sleep(printInterval);
+            double percentage = percentage();
+            if (percentage != lastPrinted) {
                lastPrinted = percentage;
-               flag        = true;
+               System.out.printf(PRINT_FORMAT, percentage);
             }
          }
-         if (flag) System.out.printf(PRINT_FORMAT, percentage / 10d);
+      } catch (InterruptedException e) {
+         // the rendering is finished
       }
    }
-}
\ No newline at end of file
+}
@@ -0,0 +1,132 @@
+package renderer;
+
+import primitives.*;
+
+/**
+ * RayGenerator is a helper class for generating the primary rays of a
+ * rendering. The view plane is set up once per rendering: the direction from
+ * the camera's location to the center of the first pixel (the top left one),
+ * and the steps of the directions from a pixel to the next pixel in its row
+ * and to the next pixel in its column. The direction through any point of the
+ * view plane is the first pixel's direction plus the steps scaled by the
+ * point's pixel coordinates, and the directions of a block of pixels or of the
+ * samples of a pixel are stepped from the block's (or the pixel's) first
+ * direction by additions, so each ray takes just its direction vector and the
+ * ray itself.
+ * <br/>
+ * The generator is immutable, so it is shared by all the rendering threads.
+ */
+final class RayGenerator {
+	/** The head of the rays - the camera's location */
+	private final Point p0;
+	/** The direction from the camera's location to the first pixel's center */
+	private final double originX, originY, originZ;
+	/** The step of the direction from a pixel to the next pixel in its row */
+	private final double rightX, rightY, rightZ;
+	/** The step of the direction from a pixel to the next pixel in its column */
+	private final double downX, downY, downZ;
+
+	/**
+	 * Sets up the view plane of a camera for an image
+	 *
+	 * @param p0       the camera's location
+	 * @param vTo      the camera's forward vector
+	 * @param vUp      the camera's upward vector
+	 * @param vRight   the camera's rightward vector
+	 * @param width    the width of the view plane
+	 * @param height   the height of the view plane
+	 * @param distance the distance from the camera to the view plane
+	 * @param nX       the amount of pixel columns
+	 * @param nY       the amount of pixel rows
+	 */
+	RayGenerator(Point p0, Vector vTo, Vector vUp, Vector vRight, double width, double height, double distance,
+			int nX, int nY) {
+		this.p0 = p0;
+		double rX = width / nX, rY = height / nY;
+		rightX = vRight.getX() * rX;
+		rightY = vRight.getY() * rX;
+		rightZ = vRight.getZ() * rX;
+		downX = -vUp.getX() * rY;
+		downY = -vUp.getY() * rY;
+		downZ = -vUp.getZ() * rY;
+		// The view plane's center, moved to the first pixel's center
+		double columns = -(nX - 1) / 2.0, rows = -(nY - 1) / 2.0;
+		originX = vTo.getX() * distance + rightX * columns + downX * rows;
+		originY = vTo.getY() * distance + rightY * columns + downY * rows;
+		originZ = vTo.getZ() * distance + rightZ * columns + downZ * rows;
+	}
+
+	/**
+	 * Generates the ray through the center of a pixel
+	 *
+	 * @param col the pixel's column
+	 * @param row the pixel's row
+	 * @return the ray
+	 */
+	Ray pixelRay(int col, int row) {
+		return subPixelRay(col, row);
+	}
+
+	/**
+	 * Generates the ray through a point of the view plane given in pixel
+	 * coordinates, which may be fractional (e.g. for sub-pixel samples)
+	 *
+	 * @param col the column coordinate, the pixel j spans from j - 0.5 to j + 0.5
+	 * @param row the row coordinate, the pixel i spans from i - 0.5 to i + 0.5
+	 * @return the ray
+	 */
+	Ray subPixelRay(double col, double row) {
+		return new Ray(p0, originX + rightX * col + downX * row, originY + rightY * col + downY * row,
+				originZ + rightZ * col + downZ * row);
+	}
+
+	/**
+	 * Generates the rays through the centers of a block of pixels
+	 *
+	 * @param col  the first pixel column of the block
+	 * @param row  the first pixel row of the block
+	 * @param cols the amount of pixel columns in the block
+	 * @param rows the amount of pixel rows in the block
+	 * @param rays array to fill by the rays, row by row
+	 */
+	void pixelRays(int col, int row, int cols, int rows, Ray[] rays) {
+		double rowX = originX + rightX * col + downX * row;
+		double rowY = originY + rightY * col + downY * row;
+		double rowZ = originZ + rightZ * col + downZ * row;
+		for (int i = 0, k = 0; i < rows; ++i) {
+			double x = rowX, y = rowY, z = rowZ;
+			for (int j = 0; j < cols; ++j) {
+				rays[k++] = new Ray(p0, x, y, z);
+				x += rightX;
+				y += rightY;
+				z += rightZ;
+			}
+			rowX += downX;
+			rowY += downY;
+			rowZ += downZ;
+		}
+	}
+
+	/**
+	 * Generates the rays through sample points of a pixel
+	 *
+	 * @param col     the pixel's column
+	 * @param row     the pixel's row
+	 * @param samples the sample points in the pixel - pairs of coordinates in
+	 *                [0,1), the column's and the row's, from the pixel's top left
+	 *                corner (see {@link Sampler#generate(int)})
+	 * @param first   the index of the first sample to generate a ray through
+	 * @param rays    array to fill by the rays, through the samples from the first
+	 *                one on
+	 */
+	void subPixelRays(int col, int row, double[] samples, int first, Ray[] rays) {
+		// The direction to the pixel's top left corner
+		double x = originX + rightX * (col - 0.5) + downX * (row - 0.5);
+		double y = originY + rightY * (col - 0.5) + downY * (row - 0.5);
+		double z = originZ + rightZ * (col - 0.5) + downZ * (row - 0.5);
+		for (int k = 0; k < rays.length; ++k) {
+			double u = samples[2 * (first + k)], v = samples[2 * (first + k) + 1];
+			rays[k] = new Ray(p0, x + rightX * u + downX * v, y + rightY * u + downY * v, z + rightZ * u + downZ * v);
+		}
+	}
+}
@@ -4,8 +4,6 @@ package renderer;
 
 
 
-import java.util.List;
-
 import primitives.*;
 import scene.Scene;
 
@@ -25,6 +23,15 @@ public abstract class RayTracerBase {
 		this.scene = scene;
 	}
 
+	/**
+	 * Prepares the scene for tracing - builds the acceleration structures of its
+	 * geometries by the scene's build method (or loads them from the scene's
+	 * cache), otherwise they are built by the first traced ray.
+	 */
+	public void prepare() {
+		scene.geometries.setBuildMethod(scene.buildMethod).build(scene.hierarchyCache);
+	}
+
 	/**
 	 * Abstract method to trace a ray and calculate the color.
 	 * 
@@ -33,11 +40,16 @@ public abstract class RayTracerBase {
 	 */
 	public abstract Color traceRay(Ray ray);
 
-    /**
-     * Declaration of abstract function
-     * @param rays rays to check the color
-     * @return Average color of some rays at the pixel, using adaptive super-sampling
-     */
-    public abstract Color adaptiveTraceRays(List<Ray> rays);
-   
+	/**
+	 * Traces a packet of coherent rays (e.g. the primary rays of neighbouring
+	 * pixels) and calculates their colors. The default implementation traces the
+	 * rays one by one.
+	 * 
+	 * @param rays   The rays to be traced - up to 32 rays.
+	 * @param colors Array to fill by the colors of the rays, in their order.
+	 */
+	public void traceRays(Ray[] rays, Color[] colors) {
+		for (int i = 0; i < rays.length; ++i)
+			colors[i] = traceRay(rays[i]);
+	}
 }
\ No newline at end of file
@@ -5,10 +5,6 @@ import scene.Scene;
 import static geometries.Intersectable.GeoPoint;
 import lighting.LightSource;
 import static primitives.Util.*;
-import static java.lang.Math.*;
-
-
-import java.util.List;
 
 /**
  * The {@code SimpleRayTracer} class extends the abstract {@link RayTracerBase} class and provides basic ray tracing functionality.
@@ -31,11 +27,40 @@ public class SimpleRayTracer extends RayTracerBase {
      */
     private static final Double3 INITIAL_K = Double3.ONE;
 
+    /**
+     * The hit records of each thread - a record per recursion level, reused for all
+     * the rays traced by the thread, so the intersection searches allocate no hit
+     * points.
+     */
+    private static final ThreadLocal<GeoPoint[]> HITS = ThreadLocal.withInitial(() -> {
+        GeoPoint[] hits = new GeoPoint[MAX_CALC_COLOR_LEVEL + 1];
+        for (int i = 0; i < hits.length; ++i)
+            hits[i] = new GeoPoint();
+        return hits;
+    });
+
+    /**
+     * The hit records of the packets traced by each thread (see
+     * {@link #traceRays(Ray[], Color[])}) - a record per ray of a packet.
+     */
+    private static final ThreadLocal<GeoPoint[]> PACKET_HITS = ThreadLocal.withInitial(() -> {
+        GeoPoint[] hits = new GeoPoint[Integer.SIZE];
+        for (int i = 0; i < hits.length; ++i)
+            hits[i] = new GeoPoint();
+        return hits;
+    });
+
     /**
      * Flag to indicate whether soft shadows should be used in the ray tracing process.
      */
     private boolean useSoftShadow = false;
 
+    /**
+     * Budget of soft shadow rays per shaded point, shared by all the lights by
+     * their contribution. 0 means no budget - each light casts its own amount.
+     */
+    private int softShadowBudget = 0;
+
     /**
      * Sets the soft shadow flag for this {@code SimpleRayTracer}.
      *
@@ -47,6 +72,24 @@ public class SimpleRayTracer extends RayTracerBase {
         return this;
     }
 
+    /**
+     * Sets the budget of soft shadow rays per shaded point. The rays are allocated
+     * to the lights by their contribution at the point (intensity and angle), so
+     * dim or distant lights cast few rays - at least one, and no more than the
+     * light's own amount of soft shadow rays.
+     *
+     * @param softShadowBudget the amount of rays per point, 0 for no budget (each
+     *                         light casts its own amount of rays).
+     * @return This {@code SimpleRayTracer} instance, for method chaining.
+     * @throws IllegalArgumentException if the budget is negative.
+     */
+    public SimpleRayTracer setSoftShadowBudget(int softShadowBudget) {
+        if (softShadowBudget < 0)
+            throw new IllegalArgumentException("Soft shadow budget must not be negative");
+        this.softShadowBudget = softShadowBudget;
+        return this;
+    }
+
     /**
      * Constructs a {@code SimpleRayTracer} object with the given scene.
      *
@@ -64,10 +107,31 @@ public class SimpleRayTracer extends RayTracerBase {
      */
     @Override
     public Color traceRay(Ray ray) {
-        GeoPoint closestPoint = findClosestIntersection(ray); // Finds the closest GeoPoint that the ray hits
+        GeoPoint closestPoint = findClosestIntersection(ray, MAX_CALC_COLOR_LEVEL); // Finds the closest GeoPoint that the ray hits
         return closestPoint == null ? scene.background : calcColor(closestPoint, ray);
     }
 
+    /**
+     * Traces a packet of rays - their closest intersections are found by a single
+     * traversal of the scene's hierarchies for the whole packet (see
+     * {@link geometries.Intersectable#findClosestHits}), and then each ray is
+     * shaded on its own.
+     *
+     * @param rays   The rays to trace - up to 32 rays.
+     * @param colors Array to fill by the colors of the rays.
+     */
+    @Override
+    public void traceRays(Ray[] rays, Color[] colors) {
+        if (rays.length == 0)
+            return;
+        GeoPoint[] hits = PACKET_HITS.get();
+        for (int i = 0; i < rays.length; ++i)
+            hits[i].reset(Double.POSITIVE_INFINITY);
+        int found = scene.geometries.findClosestHits(rays, hits, -1 >>> (Integer.SIZE - rays.length));
+        for (int i = 0; i < rays.length; ++i)
+            colors[i] = (found & 1 << i) == 0 ? scene.background : calcColor(hits[i], rays[i]);
+    }
+
     /**
      * Calculates the color at a given geometric point, including ambient light.
      *
@@ -121,7 +185,7 @@ public class SimpleRayTracer extends RayTracerBase {
         Double3 kkx = k.product(kx);
         if (kkx.lowerThan(MIN_CALC_COLOR_K))
             return Color.BLACK;
-        GeoPoint gp = findClosestIntersection(ray);
+        GeoPoint gp = findClosestIntersection(ray, level - 1);
         return (gp == null ? scene.background : calcColor(gp, ray, level - 1, kkx)).scale(kx);
     }
 
@@ -133,7 +197,7 @@ public class SimpleRayTracer extends RayTracerBase {
      * @return The constructed refracted ray.
      */
     private Ray constructRefractedRay(GeoPoint gp, Ray ray) {
-        return new Ray(gp.point, ray.getDirection(), gp.geometry.getNormal(gp.point));
+        return new Ray(gp.point, ray.getDirection(), gp.getNormal());
     }
 
     /**
@@ -145,22 +209,28 @@ public class SimpleRayTracer extends RayTracerBase {
      */
     private Ray constructReflectedRay(GeoPoint gp, Ray ray) {
         Vector v = ray.getDirection();
-        Vector n = gp.geometry.getNormal(gp.point);
+        Vector n = gp.getNormal();
         double nv = alignZero(v.dotProduct(n));
-        Vector r = v.subtract(n.scale(2d * nv)).normalize();
+        // r = v - 2(v*n)n, normalized
+        double scale = 2d * nv;
+        Vector r = VectorMath.normalized(v.getX() - n.getX() * scale, v.getY() - n.getY() * scale,
+                v.getZ() - n.getZ() * scale);
 
         return new Ray(gp.point, r, n);
     }
 
     /**
      * Finds the closest intersection point between a given ray and the geometries in the scene.
+     * The point is filled into the current thread's hit record of the recursion level, so it
+     * is valid until the next search at the same level.
      *
-     * @param ray The ray for which to find the closest intersection.
+     * @param ray   The ray for which to find the closest intersection.
+     * @param level The recursion level of the ray.
      * @return The closest intersection point as a {@link GeoPoint}, or {@code null} if no intersections are found.
      */
-    private GeoPoint findClosestIntersection(Ray ray) {
-        List<GeoPoint> intersections = scene.geometries.findGeoIntersections(ray);
-        return intersections == null ? null : ray.findClosestGeoPoint(intersections);
+    private GeoPoint findClosestIntersection(Ray ray, int level) {
+        GeoPoint hit = HITS.get()[level].reset(Double.POSITIVE_INFINITY);
+        return scene.geometries.findClosestHit(ray, hit) ? hit : null;
     }
 
     /**
@@ -174,20 +244,60 @@ public class SimpleRayTracer extends RayTracerBase {
     private Color calcLocalEffects(GeoPoint gp, Ray ray, Double3 k) {
         Color color = gp.geometry.getEmission();
         Vector v = ray.getDirection();
-        Vector n = gp.geometry.getNormal(gp.point);
+        Vector n = gp.getNormal();
         double nv = alignZero(n.dotProduct(v));
         if (nv == 0)
             return color; // Direction is perpendicular to the surface
 
         Material mat = gp.geometry.getMaterial();
-        
+        int[] rays = useSoftShadow ? allocateShadowRays(gp.point, n, nv) : null;
+
+        int i = 0;
         for (var lightSource : scene.lights) {
-            color = color.add(calcLightContribution(gp, lightSource, n, v, nv, mat, k));
+            color = color.add(calcLightContribution(gp, lightSource, n, v, nv, mat, k, rays == null ? 1 : rays[i]));
+            ++i;
         }
         
         return color;
     }
 
+    /**
+     * Allocates the soft shadow rays of a shaded point to the lights. Without a
+     * budget each light gets its own amount of rays, otherwise the budget is
+     * divided by the lights' contributions - the brightness of the light at the
+     * point scaled by the cosine of the light's angle with the normal. A light on
+     * the other side of the surface than the viewer contributes nothing, so it
+     * takes no share of the budget.
+     *
+     * @param point The shaded point.
+     * @param n     The normal vector at the point.
+     * @param nv    The dot product of the normal and the viewing direction.
+     * @return The amount of rays per light, in the order of the scene's lights.
+     */
+    private int[] allocateShadowRays(Point point, Vector n, double nv) {
+        int[] rays = new int[scene.lights.size()];
+        int i = 0;
+        if (softShadowBudget == 0) {
+            for (var lightSource : scene.lights)
+                rays[i++] = lightSource.getSoftShadowsRays();
+            return rays;
+        }
+
+        double[] weights = new double[rays.length];
+        double total = 0;
+        for (var lightSource : scene.lights) {
+            double nl = alignZero(n.dotProduct(lightSource.getL(point)));
+            weights[i] = nl * nv > 0 ? lightSource.getIntensity(point).brightness() * Math.abs(nl) : 0;
+            total += weights[i++];
+        }
+        i = 0;
+        for (var lightSource : scene.lights) {
+            long share = total == 0 ? 1 : Math.round(softShadowBudget * weights[i] / total);
+            rays[i++] = (int) Math.max(1, Math.min(lightSource.getSoftShadowsRays(), share));
+        }
+        return rays;
+    }
+
     /**
      * Calculates the contribution of a light source to the color at a given geometric point.
      *
@@ -198,12 +308,13 @@ public class SimpleRayTracer extends RayTracerBase {
      * @param nv         The dot product of the normal and direction vectors.
      * @param mat        The material of the geometry.
      * @param k          The attenuation coefficient for the ray.
+     * @param rays       The amount of soft shadow rays to the light source.
      * @return The color resulting from the light contribution.
      */
-    private Color calcLightContribution(GeoPoint gp, LightSource lightSource, Vector n, Vector v, double nv, Material mat, Double3 k) {
-        if (useSoftShadow) {
+    private Color calcLightContribution(GeoPoint gp, LightSource lightSource, Vector n, Vector v, double nv, Material mat, Double3 k, int rays) {
+        if (rays > 1) {
             Color colorBeam = Color.BLACK;
-            var vectors = lightSource.getLBeam(gp.point);
+            var vectors = lightSource.getLBeam(gp.point, rays);
             for (var l : vectors) {
                 colorBeam = colorBeam.add(calcSingleLightContribution(gp, lightSource, l, n, v, nv, mat, k));
             }
@@ -251,23 +362,10 @@ public class SimpleRayTracer extends RayTracerBase {
      * @return The transparency factor for the light.
      */
     protected Double3 transparency(GeoPoint gp, LightSource light, Vector l, Vector n, double nv) {
-        Vector lightDirection = l.scale(-1);
+        Vector lightDirection = new Vector(-l.getX(), -l.getY(), -l.getZ());
         Ray shadowRay = new Ray(gp.point, lightDirection, n);
-        List<GeoPoint> intersections = scene.geometries.findGeoIntersections(shadowRay);
-        Double3 ktr = Double3.ONE; // Start with full transparency
-        if (intersections == null)
-            return ktr; // No intersections, fully transparent
-
-        double lightDistance = light.getDistance(gp.point);
-        for (GeoPoint intersection : intersections) {
-            double intersectionDistance = intersection.point.distance(gp.point);
-            if (intersectionDistance < lightDistance) {
-                ktr = ktr.product(intersection.geometry.getMaterial().kT); // Multiply by the transparency coefficient
-                if (ktr.lowerThan(MIN_CALC_COLOR_K))
-                    return Double3.ZERO;
-            }
-        }
-        return ktr;
+        // Only the blockers between the point and the light source count
+        return scene.geometries.findTransparency(shadowRay, light.getDistance(gp.point), MIN_CALC_COLOR_K);
     }
 
     /**
@@ -292,90 +390,10 @@ public class SimpleRayTracer extends RayTracerBase {
      * @return The specular reflection component.
      */
     public Double3 calcSpecular(Material mat, Vector n, Vector l, double nl, Vector v) {
-        Vector r = l.subtract(n.scale(2 * nl));
-        double minusVR = -alignZero(v.dotProduct(r));
+        // r = l - 2(l*n)n
+        double scale = 2 * nl;
+        double minusVR = -alignZero(VectorMath.dot(v, l.getX() - n.getX() * scale, l.getY() - n.getY() * scale,
+                l.getZ() - n.getZ() * scale));
         return minusVR <= 0 ? Double3.ZERO : mat.kS.scale(Math.pow(minusVR, mat.nShininess));
     }
-
-    /**
-     * Returns the color of the point the ray hits using adaptive super sampling.
-     *
-     * @param rays Rays to check the color.
-     * @return The color of the point.
-     */
-    public Color adaptiveTraceRays(List<Ray> rays) {
-        int numOfSampleRays = (int) sqrt(rays.size());
-        int ray1Index = (numOfSampleRays - 1) * numOfSampleRays + (numOfSampleRays - 1); // the index of the top right ray
-        int ray2Index = (numOfSampleRays - 1) * numOfSampleRays;  // the index of the top left ray
-        int ray3Index = 0;  // the index of the bottom left ray
-        int ray4Index = (numOfSampleRays - 1);  // the index of the bottom right ray
-
-        Color color = adaptiveSuperSampling(rays, numOfSampleRays / 2, ray1Index, ray2Index, ray3Index, ray4Index, numOfSampleRays); // calculate the color for the pixel
-        return color;
-    }
-
-    /**
-     * Helper method for adaptive super sampling.
-     * Recursively checks if the corners around a center point are the same and, if so, doesn't check the rest of the rays, just picking the color of the center.
-     *
-     * @param rays           All the rays that were shot.
-     * @param level_of_adaptive Number of levels of adaptiveness to go.
-     * @param ray1Index      The index of the top right corner ray.
-     * @param ray2Index      The index of the top left corner ray.
-     * @param ray3Index      The index of the bottom left corner ray.
-     * @param ray4Index      The index of the bottom right corner ray.
-     * @param numOfSampleRays Number of rays to sample.
-     * @return The color of the point.
-     */
-    private Color adaptiveSuperSampling(List<Ray> rays, int level_of_adaptive, int ray1Index, int ray2Index, int ray3Index, int ray4Index, int numOfSampleRays) {
-        int numOfAdaptiveRays = 5;
-
-        Ray centerRay = rays.get(rays.size() - 1); // Get the center screen ray
-        Color centerColor = traceRay(centerRay); // Get the color of the center
-        Ray ray1 = rays.get(ray1Index);  // Get the top right screen ray
-        Color color1 = traceRay(ray1); // Get the color of the top right
-        Ray ray2 = rays.get(ray2Index); // Get the top left ray
-        Color color2 = traceRay(ray2); // Get the color of the top left
-        Ray ray3 = rays.get(ray3Index); // Get the bottom left ray
-        Color color3 = traceRay(ray3); // Get the color of the bottom left
-        Ray ray4 = rays.get(ray4Index); // Get the bottom right ray
-        Color color4 = traceRay(ray4); // Get the color of the bottom right
-
-        if (level_of_adaptive == 0) {
-            // Calculate the average color of the corners and the center
-            centerColor = centerColor.add(color1, color2, color3, color4);
-            return centerColor.reduce(numOfAdaptiveRays);
-        }
-
-        // If the corner color is the same as the center color, return the center color
-        if (color1.isColorsEqual(centerColor) && color2.isColorsEqual(centerColor) && color3.isColorsEqual(centerColor) && color4.isColorsEqual(centerColor)) {
-            return centerColor;
-        }
-
-        // Otherwise, for each color that is different from the center, the recursion goes down to the depth of the pixel and sums up the colors until it gets the same color as the center color.
-        else {
-            if (!color1.isColorsEqual(centerColor)) {
-                color1 = color1.add(adaptiveSuperSampling(rays, level_of_adaptive - 1, ray1Index - (numOfSampleRays + 1), ray2Index, ray3Index, ray4Index, numOfSampleRays));
-                color1 = color1.reduce(2);
-            }
-            if (!color2.isColorsEqual(centerColor)) {
-                color2 = color2.add(adaptiveSuperSampling(rays, level_of_adaptive - 1, ray1Index, ray2Index - (numOfSampleRays - 1), ray3Index, ray4Index, numOfSampleRays));
-                color2 = color2.reduce(2);
-            }
-            if (!color3.isColorsEqual(centerColor)) {
-                color3 = color3.add(adaptiveSuperSampling(rays, level_of_adaptive - 1, ray1Index, ray2Index, ray3Index + (numOfSampleRays + 1), ray4Index, numOfSampleRays));
-                color3 = color3.reduce(2);
-            }
-            if (!color4.isColorsEqual(centerColor)) {
-                color4 = color4.add(adaptiveSuperSampling(rays, level_of_adaptive - 1, ray1Index, ray2Index, ray3Index, ray4Index + (numOfSampleRays - 1), numOfSampleRays));
-                color4 = color4.reduce(2);
-            }
-            // Calculate and return the average color
-            centerColor = centerColor.add(color1, color2, color3, color4);
-
-            return centerColor.reduce(numOfAdaptiveRays);
-        }
-    }
-
-
 }
@@ -0,0 +1,210 @@
+package renderer;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * TileScheduler is a helper class for rendering an image in tiles. The image
+ * is split into square tiles, and for multi-threading the tiles are spread over
+ * the threads of a fork-join pool, where idle threads steal tiles from the busy
+ * ones. There is no locking per pixel - each tile is owned by a single thread.
+ * <br/>
+ * The pixels of a tile are rendered in Morton (Z-curve) order, so that pixels
+ * rendered one after the other are close to each other in the image and their
+ * rays hit the same parts of the scene. The progress is reported to the pixel
+ * manager once per tile.
+ */
+class TileScheduler {
+	/**
+	 * Renderer of a single pixel - it is called once for each pixel of the image
+	 */
+	@FunctionalInterface
+	interface PixelRenderer {
+		/**
+		 * Renders a pixel
+		 *
+		 * @param col the column index of the pixel
+		 * @param row the row index of the pixel
+		 */
+		void render(int col, int row);
+	}
+
+	/**
+	 * Renderer of tiles - it is called once for each tile, before the tile's
+	 * pixels, so that the renderer can keep per-tile data (e.g. a cache of
+	 * samples) in the returned pixel renderer. The returned renderer is used by a
+	 * single thread.
+	 */
+	@FunctionalInterface
+	interface TileRenderer {
+		/**
+		 * Starts rendering a tile
+		 *
+		 * @param startCol the first pixel column of the tile
+		 * @param startRow the first pixel row of the tile
+		 * @param width    the amount of pixel columns in the tile
+		 * @param height   the amount of pixel rows in the tile
+		 * @return the renderer of the tile's pixels
+		 */
+		PixelRenderer startTile(int startCol, int startRow, int width, int height);
+	}
+
+	/** Amount of pixel columns in the image */
+	private final int nX;
+	/** Amount of pixel rows in the image */
+	private final int nY;
+	/** Size of a tile's edge in pixels */
+	private final int tileSize;
+	/** Amount of tile columns in the image */
+	private final int tilesX;
+	/** Amount of tile rows in the image */
+	private final int tilesY;
+	/** The renderer of the tiles */
+	private final TileRenderer renderer;
+	/** The follower of the rendering progress */
+	private final PixelManager pixelManager;
+
+	/**
+	 * Initialize the scheduler of an image
+	 *
+	 * @param nX           the amount of pixel columns
+	 * @param nY           the amount of pixel rows
+	 * @param tileSize     the size of a tile's edge in pixels
+	 * @param renderer     the renderer of the pixels
+	 * @param pixelManager the follower of the rendering progress
+	 */
+	TileScheduler(int nX, int nY, int tileSize, PixelRenderer renderer, PixelManager pixelManager) {
+		this(nX, nY, tileSize, (startCol, startRow, width, height) -> renderer, pixelManager);
+	}
+
+	/**
+	 * Initialize the scheduler of an image with per-tile rendering
+	 *
+	 * @param nX           the amount of pixel columns
+	 * @param nY           the amount of pixel rows
+	 * @param tileSize     the size of a tile's edge in pixels
+	 * @param renderer     the renderer of the tiles
+	 * @param pixelManager the follower of the rendering progress
+	 */
+	TileScheduler(int nX, int nY, int tileSize, TileRenderer renderer, PixelManager pixelManager) {
+		this.nX = nX;
+		this.nY = nY;
+		this.tileSize = tileSize;
+		this.renderer = renderer;
+		this.pixelManager = pixelManager;
+		tilesX = (nX + tileSize - 1) / tileSize;
+		tilesY = (nY + tileSize - 1) / tileSize;
+	}
+
+	/**
+	 * Renders all the tiles one after the other in the calling thread
+	 */
+	void render() {
+		for (int tileRow = 0; tileRow < tilesY; ++tileRow)
+			for (int tileCol = 0; tileCol < tilesX; ++tileCol)
+				renderTile(tileCol, tileRow);
+	}
+
+	/**
+	 * Renders all the tiles by the threads of a fork-join pool and waits until
+	 * all of them are done
+	 *
+	 * @param pool the pool to render by
+	 */
+	void render(ForkJoinPool pool) {
+		pool.invoke(new TilesTask(0, 0, tilesX, tilesY));
+	}
+
+	/**
+	 * Renders the pixels of a tile in Morton order. The order is built over the
+	 * smallest power-of-2 square containing the tile, skipping the codes of the
+	 * pixels out of the tile (or out of the image for the border tiles).
+	 *
+	 * @param tileCol the column index of the tile
+	 * @param tileRow the row index of the tile
+	 */
+	private void renderTile(int tileCol, int tileRow) {
+		int startCol = tileCol * tileSize;
+		int startRow = tileRow * tileSize;
+		int width = Math.min(tileSize, nX - startCol);
+		int height = Math.min(tileSize, nY - startRow);
+		int side = Integer.highestOneBit(Math.max(width, height) - 1) << 1;
+		int codes = Math.max(1, side * side);
+		PixelRenderer pixels = renderer.startTile(startCol, startRow, width, height);
+		for (int code = 0; code < codes; ++code) {
+			int col = compactBits(code);
+			int row = compactBits(code >>> 1);
+			if (col < width && row < height)
+				pixels.render(startCol + col, startRow + row);
+		}
+		pixelManager.pixelsDone(width * height);
+	}
+
+	/**
+	 * Extracts the even bits of a Morton code into a number - the inverse of bits
+	 * interleaving
+	 *
+	 * @param code the Morton code (shifted right by 1 for the odd bits)
+	 * @return the number made of the even bits of the code
+	 */
+	private static int compactBits(int code) {
+		code &= 0x55555555;
+		code = (code | (code >>> 1)) & 0x33333333;
+		code = (code | (code >>> 2)) & 0x0F0F0F0F;
+		code = (code | (code >>> 4)) & 0x00FF00FF;
+		code = (code | (code >>> 8)) & 0x0000FFFF;
+		return code;
+	}
+
+	/**
+	 * Fork-join task rendering a rectangle of tiles. The task splits its
+	 * rectangle in halves until a single tile remains, so the idle threads of the
+	 * pool can steal the halves waiting in the queues of the busy ones.
+	 */
+	@SuppressWarnings("serial")
+	private class TilesTask extends RecursiveAction {
+		/** The first tile column of the rectangle */
+		private final int col0;
+		/** The first tile row of the rectangle */
+		private final int row0;
+		/** The end (excluded) tile column of the rectangle */
+		private final int col1;
+		/** The end (excluded) tile row of the rectangle */
+		private final int row1;
+
+		/**
+		 * Initialize a task for a rectangle of tiles
+		 *
+		 * @param col0 the first tile column
+		 * @param row0 the first tile row
+		 * @param col1 the end (excluded) tile column
+		 * @param row1 the end (excluded) tile row
+		 */
+		TilesTask(int col0, int row0, int col1, int row1) {
+			this.col0 = col0;
+			this.row0 = row0;
+			this.col1 = col1;
+			this.row1 = row1;
+		}
+
+		@Override
+		protected void compute() {
+			int cols = col1 - col0;
+			int rows = row1 - row0;
+			if (cols <= 0 || rows <= 0)
+				return;
+			if (cols == 1 && rows == 1) {
+				renderTile(col0, row0);
+				return;
+			}
+			// Split the longer side of the rectangle in halves
+			if (cols >= rows) {
+				int mid = col0 + cols / 2;
+				invokeAll(new TilesTask(col0, row0, mid, row1), new TilesTask(mid, row0, col1, row1));
+			} else {
+				int mid = row0 + rows / 2;
+				invokeAll(new TilesTask(col0, row0, col1, mid), new TilesTask(col0, mid, col1, row1));
+			}
+		}
+	}
+}
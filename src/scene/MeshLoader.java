@@ -0,0 +1,265 @@
+package scene;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+
+import geometries.TriangleMesh;
+
+/**
+ * MeshLoader imports triangle meshes from files into {@link TriangleMesh}
+ * geometries, ready to be added to {@link Scene#geometries}. The supported
+ * formats are Wavefront OBJ and binary PLY (little or big endian).
+ * <br/>
+ * The files are memory mapped and parsed in parallel chunks straight into the
+ * flat vertex and index arrays of the mesh, without any intermediate point or
+ * triangle objects. Polygonal faces are split into triangle fans.
+ */
+public final class MeshLoader {
+	/** Maximal size of a chunk of a file parsed by a single task, in bytes */
+	static final long MAX_CHUNK_SIZE = 1 << 30;
+	/** Minimal size of a chunk of a file parsed by a single task, in bytes */
+	private static final long MIN_CHUNK_SIZE = 1 << 20;
+	/** Amount of chunks per parallel thread, for balancing the threads' load */
+	private static final int CHUNKS_PER_THREAD = 4;
+	/** Maximal length of a Java array */
+	static final int MAX_ARRAY_LENGTH = Integer.MAX_VALUE - 8;
+
+	/** Don't let anyone instantiate this class. */
+	private MeshLoader() {
+	}
+
+	/**
+	 * Loads a mesh from a file by the format of its extension (.obj or .ply)
+	 *
+	 * @param path the path of the file
+	 * @return the mesh
+	 * @throws IllegalArgumentException if the format isn't supported or the file
+	 *                                  is malformed
+	 * @throws IllegalStateException    on an I/O error
+	 */
+	public static TriangleMesh load(Path path) {
+		String name = path.getFileName().toString().toLowerCase(Locale.ROOT);
+		if (name.endsWith(".obj"))
+			return loadObj(path);
+		if (name.endsWith(".ply"))
+			return loadPly(path);
+		throw new IllegalArgumentException("Unsupported mesh file format: " + path);
+	}
+
+	/**
+	 * Loads a mesh from a Wavefront OBJ file. Only the vertices ("v") and the
+	 * faces ("f") are read - texture coordinates, normals, groups and materials
+	 * are ignored.
+	 *
+	 * @param path the path of the file
+	 * @return the mesh
+	 * @throws IllegalArgumentException if the file is malformed
+	 * @throws IllegalStateException    on an I/O error
+	 */
+	public static TriangleMesh loadObj(Path path) {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			return ObjParser.parse(channel);
+		} catch (IOException e) {
+			throw new IllegalStateException("I/O error reading mesh file " + path, e);
+		} catch (UncheckedIOException e) {
+			throw new IllegalStateException("I/O error reading mesh file " + path, e.getCause());
+		}
+	}
+
+	/**
+	 * Loads a mesh from a binary PLY file. The vertex element must have x, y and
+	 * z properties, and the face element must have a vertex_indices (or
+	 * vertex_index) list property. The other elements and properties are skipped.
+	 *
+	 * @param path the path of the file
+	 * @return the mesh
+	 * @throws IllegalArgumentException if the file is malformed or it is an ASCII
+	 *                                  PLY file
+	 * @throws IllegalStateException    on an I/O error
+	 */
+	public static TriangleMesh loadPly(Path path) {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			return PlyParser.parse(channel);
+		} catch (IOException e) {
+			throw new IllegalStateException("I/O error reading mesh file " + path, e);
+		} catch (UncheckedIOException e) {
+			throw new IllegalStateException("I/O error reading mesh file " + path, e.getCause());
+		}
+	}
+
+	/**
+	 * Calculates the size of the chunks for parsing data of the given size in
+	 * parallel - a few chunks per thread of the common pool, within the limits of
+	 * the chunk size
+	 *
+	 * @param size the size of the data in bytes
+	 * @return the size of a chunk in bytes
+	 */
+	static long chunkSize(long size) {
+		long threads = ForkJoinPool.getCommonPoolParallelism();
+		return Math.min(MAX_CHUNK_SIZE, Math.max(MIN_CHUNK_SIZE, size / (CHUNKS_PER_THREAD * threads)));
+	}
+
+	/**
+	 * Maps a region of a file into memory for reading
+	 *
+	 * @param channel  the channel of the file
+	 * @param position the start of the region
+	 * @param length   the length of the region
+	 * @return the buffer of the region
+	 * @throws IllegalArgumentException if the region exceeds the file or it is
+	 *                                  too large to be mapped
+	 * @throws UncheckedIOException     on an I/O error
+	 */
+	static ByteBuffer map(FileChannel channel, long position, long length) {
+		try {
+			if (position + length > channel.size())
+				throw new IllegalArgumentException("Unexpected end of file");
+			if (length > Integer.MAX_VALUE)
+				throw new IllegalArgumentException("Too large region of the file: " + length);
+			return channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Calculates the new length of a growing array
+	 *
+	 * @param length the current length
+	 * @return the new length
+	 * @throws IllegalArgumentException if the array can't grow any more
+	 */
+	private static int grow(int length) {
+		if (length >= MAX_ARRAY_LENGTH)
+			throw new IllegalArgumentException("The mesh is too large");
+		return (int) Math.min(MAX_ARRAY_LENGTH, length + (length >> 1) + 16L);
+	}
+
+	/**
+	 * Growable array of doubles
+	 */
+	static final class DoubleArray {
+		/** The values */
+		private double[] values = new double[1024];
+		/** Amount of the values */
+		private int size = 0;
+
+		/**
+		 * Appends a value
+		 *
+		 * @param value the value
+		 */
+		void add(double value) {
+			if (size == values.length)
+				values = Arrays.copyOf(values, grow(size));
+			values[size++] = value;
+		}
+
+		/**
+		 * Returns the amount of the values
+		 *
+		 * @return the size
+		 */
+		int size() {
+			return size;
+		}
+
+		/**
+		 * Copies the values into an array
+		 *
+		 * @param target the array
+		 * @param offset the offset of the values in the array
+		 */
+		void copyTo(double[] target, int offset) {
+			System.arraycopy(values, 0, target, offset, size);
+		}
+	}
+
+	/**
+	 * Growable array of integers
+	 */
+	static final class IntArray {
+		/** The values */
+		private int[] values = new int[1024];
+		/** Amount of the values */
+		private int size = 0;
+
+		/**
+		 * Appends a value
+		 *
+		 * @param value the value
+		 */
+		void add(int value) {
+			if (size == values.length)
+				values = Arrays.copyOf(values, grow(size));
+			values[size++] = value;
+		}
+
+		/**
+		 * Returns a value
+		 *
+		 * @param index the index of the value
+		 * @return the value
+		 */
+		int get(int index) {
+			return values[index];
+		}
+
+		/**
+		 * Returns the amount of the values
+		 *
+		 * @return the size
+		 */
+		int size() {
+			return size;
+		}
+
+		/**
+		 * Removes all the values
+		 */
+		void clear() {
+			size = 0;
+		}
+
+		/**
+		 * Returns the values as an array of their exact size
+		 *
+		 * @return the values
+		 */
+		int[] toArray() {
+			return values.length == size ? values : Arrays.copyOf(values, size);
+		}
+
+		/**
+		 * Copies the values into an array
+		 *
+		 * @param target the array
+		 * @param offset the offset of the values in the array
+		 */
+		void copyTo(int[] target, int offset) {
+			System.arraycopy(values, 0, target, offset, size);
+		}
+
+		/**
+		 * Appends the triangles of a fan over a polygon - the polygon's first vertex
+		 * with each pair of its consequent vertices
+		 *
+		 * @param polygon the vertices of the polygon
+		 */
+		void addFan(IntArray polygon) {
+			for (int i = 1; i < polygon.size - 1; ++i) {
+				add(polygon.values[0]);
+				add(polygon.values[i]);
+				add(polygon.values[i + 1]);
+			}
+		}
+	}
+}
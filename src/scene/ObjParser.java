@@ -0,0 +1,356 @@
+package scene;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.stream.IntStream;
+
+import geometries.TriangleMesh;
+import scene.MeshLoader.DoubleArray;
+import scene.MeshLoader.IntArray;
+
+/**
+ * Parser of Wavefront OBJ files. The file is split at line boundaries into
+ * chunks, which are parsed in parallel into their own vertex and index arrays
+ * and then concatenated. The vertex indices of the faces are global (1-based)
+ * or relative to the last vertices (negative) - the relative ones are resolved
+ * after the concatenation, when the vertex offset of each chunk is known.
+ */
+final class ObjParser {
+	/** Exact powers of 10 for the fast parsing of the numbers */
+	private static final double[] POWERS_OF_10 = { 1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+			1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22 };
+	/** Maximal mantissa of a number parsed by the fast path */
+	private static final long MAX_EXACT_MANTISSA = 1L << 53;
+	/** Size of the buffer for looking for the line boundaries */
+	private static final int LOOKUP_SIZE = 8192;
+
+	/** The data of the chunk */
+	private final ByteBuffer data;
+	/** The offset of the chunk in the file */
+	private final long offset;
+	/** The current position in the chunk */
+	private int pos = 0;
+	/** The coordinates of the chunk's vertices */
+	private final DoubleArray vertices = new DoubleArray();
+	/** The vertex indices of the chunk's triangles */
+	private final IntArray triangles = new IntArray();
+	/**
+	 * Positions in {@link #triangles} of the indices relative to the chunk's first
+	 * vertex, which are resolved after the chunks are concatenated
+	 */
+	private final IntArray relative = new IntArray();
+	/** The vertex indices of the face being parsed */
+	private final IntArray polygon = new IntArray();
+	/** Flags of the relative indices (1) of the face being parsed */
+	private final IntArray polygonRelative = new IntArray();
+
+	/**
+	 * Initializes a parser of a chunk
+	 *
+	 * @param data   the data of the chunk
+	 * @param offset the offset of the chunk in the file
+	 */
+	private ObjParser(ByteBuffer data, long offset) {
+		this.data = data;
+		this.offset = offset;
+	}
+
+	/**
+	 * Parses an OBJ file into a mesh
+	 *
+	 * @param channel the channel of the file
+	 * @return the mesh
+	 * @throws IOException on an I/O error
+	 */
+	static TriangleMesh parse(FileChannel channel) throws IOException {
+		long size = channel.size();
+		long chunkSize = MeshLoader.chunkSize(size);
+		int count = (int) ((size + chunkSize - 1) / chunkSize);
+		long[] bounds = new long[count + 1];
+		for (int i = 1; i < count; ++i)
+			bounds[i] = Math.max(bounds[i - 1], nextLine(channel, i * chunkSize, size));
+		bounds[count] = size;
+
+		ObjParser[] chunks = new ObjParser[count];
+		IntStream.range(0, count).parallel().forEach(i -> chunks[i] = //
+				new ObjParser(MeshLoader.map(channel, bounds[i], bounds[i + 1] - bounds[i]), bounds[i]).parseChunk());
+		return merge(chunks);
+	}
+
+	/**
+	 * Finds the start of the line after a position in the file
+	 *
+	 * @param channel  the channel of the file
+	 * @param position the position
+	 * @param size     the size of the file
+	 * @return the position after the first line end at the position or after it,
+	 *         or the size of the file if there is no such line end
+	 * @throws IOException on an I/O error
+	 */
+	private static long nextLine(FileChannel channel, long position, long size) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(LOOKUP_SIZE);
+		while (position < size) {
+			buffer.clear();
+			int read = channel.read(buffer, position);
+			if (read <= 0)
+				break;
+			for (int i = 0; i < read; ++i)
+				if (buffer.get(i) == '\n')
+					return position + i + 1;
+			position += read;
+		}
+		return size;
+	}
+
+	/**
+	 * Concatenates the arrays of the parsed chunks into a mesh
+	 *
+	 * @param chunks the parsed chunks
+	 * @return the mesh
+	 */
+	private static TriangleMesh merge(ObjParser[] chunks) {
+		long vertexLength = 0, triangleLength = 0;
+		for (ObjParser chunk : chunks) {
+			vertexLength += chunk.vertices.size();
+			triangleLength += chunk.triangles.size();
+		}
+		if (vertexLength > MeshLoader.MAX_ARRAY_LENGTH || triangleLength > MeshLoader.MAX_ARRAY_LENGTH)
+			throw new IllegalArgumentException("The mesh is too large");
+
+		double[] vertices = new double[(int) vertexLength];
+		int[] indices = new int[(int) triangleLength];
+		int vertexOffset = 0, triangleOffset = 0;
+		for (ObjParser chunk : chunks) {
+			chunk.vertices.copyTo(vertices, vertexOffset);
+			chunk.triangles.copyTo(indices, triangleOffset);
+			for (int i = 0; i < chunk.relative.size(); ++i)
+				indices[triangleOffset + chunk.relative.get(i)] += vertexOffset / 3;
+			vertexOffset += chunk.vertices.size();
+			triangleOffset += chunk.triangles.size();
+		}
+		return new TriangleMesh(vertices, indices);
+	}
+
+	/**
+	 * Parses the lines of the chunk
+	 *
+	 * @return the parser itself
+	 */
+	private ObjParser parseChunk() {
+		int limit = data.limit();
+		while (pos < limit) {
+			skipBlanks();
+			if (pos + 1 < limit && isBlank(data.get(pos + 1))) {
+				byte type = data.get(pos);
+				if (type == 'v') {
+					++pos;
+					vertices.add(parseDouble());
+					vertices.add(parseDouble());
+					vertices.add(parseDouble());
+				} else if (type == 'f') {
+					++pos;
+					parseFace();
+				}
+			}
+			skipLine();
+		}
+		return this;
+	}
+
+	/**
+	 * Parses the vertex references of a face and splits it into triangles
+	 */
+	private void parseFace() {
+		polygon.clear();
+		polygonRelative.clear();
+		while (true) {
+			skipBlanks();
+			if (pos >= data.limit() || isLineEnd(data.get(pos)))
+				break;
+			int index = parseInt();
+			if (index > 0) {
+				polygon.add(index - 1);
+				polygonRelative.add(0);
+			} else if (index < 0) {
+				polygon.add(vertices.size() / 3 + index);
+				polygonRelative.add(1);
+			} else
+				throw error("Vertex index 0");
+			// skip the texture and the normal references (v/vt/vn)
+			while (pos < data.limit() && !isBlank(data.get(pos)) && !isLineEnd(data.get(pos)))
+				++pos;
+		}
+		if (polygon.size() < 3)
+			throw error("A face with less than 3 vertices");
+
+		for (int i = 1; i < polygon.size() - 1; ++i) {
+			addVertex(0);
+			addVertex(i);
+			addVertex(i + 1);
+		}
+	}
+
+	/**
+	 * Appends a vertex of the face being parsed to the triangles
+	 *
+	 * @param index the index of the vertex in the face
+	 */
+	private void addVertex(int index) {
+		if (polygonRelative.get(index) != 0)
+			relative.add(triangles.size());
+		triangles.add(polygon.get(index));
+	}
+
+	/**
+	 * Parses an integer
+	 *
+	 * @return the integer
+	 */
+	private int parseInt() {
+		boolean negative = false;
+		if (pos < data.limit() && (data.get(pos) == '-' || data.get(pos) == '+'))
+			negative = data.get(pos++) == '-';
+		long value = 0;
+		int start = pos;
+		for (; pos < data.limit() && isDigit(data.get(pos)); ++pos) {
+			value = value * 10 + (data.get(pos) - '0');
+			if (value > Integer.MAX_VALUE)
+				throw error("Too large number");
+		}
+		if (pos == start)
+			throw error("Missing number");
+		return (int) (negative ? -value : value);
+	}
+
+	/**
+	 * Parses a floating point number. Numbers of up to 15 significant digits with
+	 * small exponents are calculated exactly from their digits, the others are
+	 * passed to {@link Double#parseDouble(String)}.
+	 *
+	 * @return the number
+	 */
+	private double parseDouble() {
+		skipBlanks();
+		int limit = data.limit();
+		int start = pos;
+		boolean negative = false;
+		if (pos < limit && (data.get(pos) == '-' || data.get(pos) == '+'))
+			negative = data.get(pos++) == '-';
+
+		long mantissa = 0;
+		int exponent = 0, digits = 0;
+		boolean exact = true;
+		for (; pos < limit && isDigit(data.get(pos)); ++pos, ++digits)
+			if (mantissa < MAX_EXACT_MANTISSA / 10)
+				mantissa = mantissa * 10 + (data.get(pos) - '0');
+			else
+				exact = false;
+		if (pos < limit && data.get(pos) == '.')
+			for (++pos; pos < limit && isDigit(data.get(pos)); ++pos, ++digits)
+				if (mantissa < MAX_EXACT_MANTISSA / 10) {
+					mantissa = mantissa * 10 + (data.get(pos) - '0');
+					--exponent;
+				} else
+					exact = false;
+		if (digits == 0)
+			return parseSlow(start);
+		if (pos < limit && (data.get(pos) == 'e' || data.get(pos) == 'E')) {
+			++pos;
+			boolean negativeExponent = false;
+			if (pos < limit && (data.get(pos) == '-' || data.get(pos) == '+'))
+				negativeExponent = data.get(pos++) == '-';
+			int value = 0, exponentStart = pos;
+			for (; pos < limit && isDigit(data.get(pos)); ++pos)
+				value = Math.min(value * 10 + (data.get(pos) - '0'), 100000);
+			if (pos == exponentStart)
+				throw error("Malformed number");
+			exponent += negativeExponent ? -value : value;
+		}
+		if (pos < limit && !isBlank(data.get(pos)) && !isLineEnd(data.get(pos)))
+			return parseSlow(start);
+		if (!exact || exponent < -22 || exponent > 22)
+			return parseSlow(start);
+
+		double value = exponent < 0 ? mantissa / POWERS_OF_10[-exponent] : mantissa * POWERS_OF_10[exponent];
+		return negative ? -value : value;
+	}
+
+	/**
+	 * Parses a floating point number by {@link Double#parseDouble(String)}
+	 *
+	 * @param start the position of the number's first character
+	 * @return the number
+	 */
+	private double parseSlow(int start) {
+		pos = start;
+		while (pos < data.limit() && !isBlank(data.get(pos)) && !isLineEnd(data.get(pos)))
+			++pos;
+		byte[] text = new byte[pos - start];
+		data.get(start, text);
+		try {
+			return Double.parseDouble(new String(text, StandardCharsets.US_ASCII));
+		} catch (NumberFormatException e) {
+			throw error("Malformed number");
+		}
+	}
+
+	/**
+	 * Skips spaces and tabs
+	 */
+	private void skipBlanks() {
+		while (pos < data.limit() && isBlank(data.get(pos)))
+			++pos;
+	}
+
+	/**
+	 * Skips the rest of the current line, including its line end
+	 */
+	private void skipLine() {
+		while (pos < data.limit() && data.get(pos++) != '\n') {
+			// skip
+		}
+	}
+
+	/**
+	 * Creates an exception of a malformed file at the current position
+	 *
+	 * @param message the description of the problem
+	 * @return the exception
+	 */
+	private IllegalArgumentException error(String message) {
+		return new IllegalArgumentException(message + " in OBJ file at byte " + (offset + pos));
+	}
+
+	/**
+	 * Checks whether a character is a space or a tab
+	 *
+	 * @param c the character
+	 * @return true if it is a blank
+	 */
+	private static boolean isBlank(byte c) {
+		return c == ' ' || c == '\t';
+	}
+
+	/**
+	 * Checks whether a character ends the data of a line - a line end or a
+	 * comment
+	 *
+	 * @param c the character
+	 * @return true if it ends the line's data
+	 */
+	private static boolean isLineEnd(byte c) {
+		return c == '\n' || c == '\r' || c == '#';
+	}
+
+	/**
+	 * Checks whether a character is a decimal digit
+	 *
+	 * @param c the character
+	 * @return true if it is a digit
+	 */
+	private static boolean isDigit(byte c) {
+		return c >= '0' && c <= '9';
+	}
+}
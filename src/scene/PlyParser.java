@@ -0,0 +1,571 @@
+package scene;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import geometries.TriangleMesh;
+import scene.MeshLoader.IntArray;
+
+/**
+ * Parser of binary PLY files. The vertices are records of a fixed size, so they
+ * are parsed in parallel chunks straight into the vertex array. The faces are
+ * parsed in parallel chunks too when all of them are triangles (a fixed record
+ * size), otherwise they are read sequentially and split into triangle fans.
+ */
+final class PlyParser {
+	/** Size of the buffer of the sequential reading */
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	/** The channel of the file */
+	private final FileChannel channel;
+	/** The byte order of the file's data */
+	private ByteOrder order;
+	/** The elements declared in the header, in the order of their data */
+	private final List<Element> elements = new ArrayList<>();
+
+	/**
+	 * Initializes a parser of a file
+	 *
+	 * @param channel the channel of the file
+	 */
+	private PlyParser(FileChannel channel) {
+		this.channel = channel;
+	}
+
+	/**
+	 * Parses a binary PLY file into a mesh
+	 *
+	 * @param channel the channel of the file
+	 * @return the mesh
+	 * @throws IOException on an I/O error
+	 */
+	static TriangleMesh parse(FileChannel channel) throws IOException {
+		PlyParser parser = new PlyParser(channel);
+		long position = parser.readHeader();
+		double[] vertices = null;
+		int[] indices = new int[0];
+		for (Element element : parser.elements) {
+			if (element.name.equals("vertex"))
+				vertices = parser.readVertices(element, position);
+			else if (element.name.equals("face")) {
+				if (vertices == null)
+					throw new IllegalArgumentException("PLY faces before the vertices are not supported");
+				indices = parser.readFaces(element, position);
+				break;
+			}
+			position = parser.skip(element, position);
+		}
+		if (vertices == null)
+			throw new IllegalArgumentException("PLY file has no vertex element");
+		return new TriangleMesh(vertices, indices);
+	}
+
+	/**
+	 * Reads the header of the file
+	 *
+	 * @return the position of the data after the header
+	 * @throws IOException on an I/O error
+	 */
+	private long readHeader() throws IOException {
+		Reader reader = new Reader(0);
+		if (!reader.readLine().equals("ply"))
+			throw new IllegalArgumentException("Not a PLY file");
+
+		String line;
+		while (!(line = reader.readLine()).equals("end_header")) {
+			String[] tokens = line.trim().split("\\s+");
+			switch (tokens[0]) {
+			case "format" -> order = switch (token(tokens, 1, line)) {
+			case "binary_little_endian" -> ByteOrder.LITTLE_ENDIAN;
+			case "binary_big_endian" -> ByteOrder.BIG_ENDIAN;
+			default -> throw new IllegalArgumentException("Unsupported PLY format: " + tokens[1]);
+			};
+			case "element" -> {
+				long count;
+				try {
+					count = Long.parseLong(token(tokens, 2, line));
+				} catch (NumberFormatException e) {
+					throw new IllegalArgumentException("Malformed PLY header line: " + line, e);
+				}
+				if (count < 0)
+					throw new IllegalArgumentException("Negative PLY element count: " + line);
+				elements.add(new Element(token(tokens, 1, line), count));
+			}
+			case "property" -> {
+				if (elements.isEmpty())
+					throw new IllegalArgumentException("PLY property out of element: " + line);
+				elements.get(elements.size() - 1).properties.add(token(tokens, 1, line).equals("list") //
+						? new Property(token(tokens, 4, line), Type.of(token(tokens, 3, line)),
+								Type.of(token(tokens, 2, line)))
+						: new Property(token(tokens, 2, line), Type.of(tokens[1]), null));
+			}
+			default -> {
+				// comments and other information
+			}
+			}
+		}
+		if (order == null)
+			throw new IllegalArgumentException("PLY header has no format");
+		return reader.offset();
+	}
+
+	/**
+	 * Returns a token of a header line
+	 *
+	 * @param tokens the tokens of the line
+	 * @param index  the index of the token
+	 * @param line   the line
+	 * @return the token
+	 * @throws IllegalArgumentException if the line has no such token
+	 */
+	private static String token(String[] tokens, int index, String line) {
+		if (index >= tokens.length)
+			throw new IllegalArgumentException("Malformed PLY header line: " + line);
+		return tokens[index];
+	}
+
+	/**
+	 * Reads the vertices in parallel chunks
+	 *
+	 * @param element  the vertex element
+	 * @param position the position of the element's data
+	 * @return the coordinates of the vertices
+	 */
+	private double[] readVertices(Element element, long position) {
+		int stride = element.stride();
+		if (stride < 0)
+			throw new IllegalArgumentException("PLY vertex with a list property is not supported");
+		if (3 * element.count > MeshLoader.MAX_ARRAY_LENGTH)
+			throw new IllegalArgumentException("The mesh is too large");
+		Property x = element.property("x"), y = element.property("y"), z = element.property("z");
+		int xOffset = element.offset(x), yOffset = element.offset(y), zOffset = element.offset(z);
+
+		double[] vertices = new double[(int) (3 * element.count)];
+		int chunk = (int) Math.max(1, MeshLoader.chunkSize(element.count * stride) / stride);
+		int chunks = (int) ((element.count + chunk - 1) / chunk);
+		IntStream.range(0, chunks).parallel().forEach(c -> {
+			int first = c * chunk;
+			int count = (int) Math.min(chunk, element.count - first);
+			ByteBuffer data = MeshLoader.map(channel, position + (long) first * stride, (long) count * stride)
+					.order(order);
+			for (int i = 0, record = 0, vertex = 3 * first; i < count; ++i, record += stride, vertex += 3) {
+				vertices[vertex] = x.type.getDouble(data, record + xOffset);
+				vertices[vertex + 1] = y.type.getDouble(data, record + yOffset);
+				vertices[vertex + 2] = z.type.getDouble(data, record + zOffset);
+			}
+		});
+		return vertices;
+	}
+
+	/**
+	 * Reads the faces - in parallel chunks if all of them are triangles, otherwise
+	 * sequentially
+	 *
+	 * @param element  the face element
+	 * @param position the position of the element's data
+	 * @return the vertex indices of the triangles
+	 * @throws IOException on an I/O error
+	 */
+	private int[] readFaces(Element element, long position) throws IOException {
+		Property indices = element.properties.stream() //
+				.filter(p -> p.name.equals("vertex_indices") || p.name.equals("vertex_index")) //
+				.findFirst() //
+				.orElseThrow(() -> new IllegalArgumentException("PLY face has no vertex_indices property"));
+		if (indices.countType == null)
+			throw new IllegalArgumentException("PLY vertex_indices must be a list");
+
+		if (element.properties.size() == 1 && 3 * element.count <= MeshLoader.MAX_ARRAY_LENGTH) {
+			int[] triangles = readTriangles(indices, element.count, position);
+			if (triangles != null)
+				return triangles;
+		}
+		return readPolygons(element, indices, position);
+	}
+
+	/**
+	 * Reads faces which are all supposed to be triangles in parallel chunks
+	 *
+	 * @param indices  the vertex indices property - the only property of a face
+	 * @param count    the amount of the faces
+	 * @param position the position of the faces' data
+	 * @return the vertex indices of the triangles, or null if some face isn't a
+	 *         triangle
+	 * @throws IOException on an I/O error
+	 */
+	private int[] readTriangles(Property indices, long count, long position) throws IOException {
+		int stride = indices.countType.size + 3 * indices.type.size;
+		if (position + count * stride > channel.size())
+			return null;
+
+		int[] triangles = new int[(int) (3 * count)];
+		int chunk = (int) Math.max(1, MeshLoader.chunkSize(count * stride) / stride);
+		int chunks = (int) ((count + chunk - 1) / chunk);
+		boolean allTriangles = IntStream.range(0, chunks).parallel().allMatch(c -> {
+			int first = c * chunk;
+			int faces = (int) Math.min(chunk, count - first);
+			ByteBuffer data = MeshLoader.map(channel, position + (long) first * stride, (long) faces * stride)
+					.order(order);
+			int size = indices.type.size;
+			for (int i = 0, record = 0, vertex = 3 * first; i < faces; ++i, record += stride, vertex += 3) {
+				if (indices.countType.getLong(data, record) != 3)
+					return false;
+				int index = record + indices.countType.size;
+				triangles[vertex] = toIndex(indices.type.getLong(data, index));
+				triangles[vertex + 1] = toIndex(indices.type.getLong(data, index + size));
+				triangles[vertex + 2] = toIndex(indices.type.getLong(data, index + 2 * size));
+			}
+			return true;
+		});
+		return allTriangles ? triangles : null;
+	}
+
+	/**
+	 * Reads polygonal faces sequentially, splitting them into triangle fans
+	 *
+	 * @param element  the face element
+	 * @param indices  the vertex indices property
+	 * @param position the position of the faces' data
+	 * @return the vertex indices of the triangles
+	 * @throws IOException on an I/O error
+	 */
+	private int[] readPolygons(Element element, Property indices, long position) throws IOException {
+		Reader reader = new Reader(position);
+		IntArray triangles = new IntArray();
+		IntArray polygon = new IntArray();
+		for (long i = 0; i < element.count; ++i)
+			for (Property property : element.properties) {
+				if (property.countType == null) {
+					reader.skip(property.type.size);
+					continue;
+				}
+				long size = reader.readLong(property.countType);
+				if (property != indices) {
+					reader.skip(size * property.type.size);
+					continue;
+				}
+				if (size < 3)
+					throw new IllegalArgumentException("PLY face with less than 3 vertices");
+				polygon.clear();
+				for (long j = 0; j < size; ++j)
+					polygon.add(toIndex(reader.readLong(property.type)));
+				triangles.addFan(polygon);
+			}
+		return triangles.toArray();
+	}
+
+	/**
+	 * Skips the data of an element
+	 *
+	 * @param element  the element
+	 * @param position the position of the element's data
+	 * @return the position after the element's data
+	 * @throws IOException on an I/O error
+	 */
+	private long skip(Element element, long position) throws IOException {
+		int stride = element.stride();
+		if (stride >= 0)
+			return position + element.count * stride;
+
+		Reader reader = new Reader(position);
+		for (long i = 0; i < element.count; ++i)
+			for (Property property : element.properties)
+				reader.skip(property.countType == null ? property.type.size
+						: reader.readLong(property.countType) * property.type.size);
+		return reader.offset();
+	}
+
+	/**
+	 * Converts a vertex index read from the file
+	 *
+	 * @param index the index
+	 * @return the index as an integer
+	 * @throws IllegalArgumentException if the index is out of the integers' range
+	 */
+	private static int toIndex(long index) {
+		if (index < 0 || index > Integer.MAX_VALUE)
+			throw new IllegalArgumentException("PLY vertex index is out of range: " + index);
+		return (int) index;
+	}
+
+	/**
+	 * The scalar types of the PLY properties
+	 */
+	private enum Type {
+		/** Signed byte */
+		CHAR(1),
+		/** Unsigned byte */
+		UCHAR(1),
+		/** Signed short */
+		SHORT(2),
+		/** Unsigned short */
+		USHORT(2),
+		/** Signed int */
+		INT(4),
+		/** Unsigned int */
+		UINT(4),
+		/** Single precision floating point */
+		FLOAT(4),
+		/** Double precision floating point */
+		DOUBLE(8);
+
+		/** Size of a value in bytes */
+		final int size;
+
+		/**
+		 * Initializes a type
+		 *
+		 * @param size the size of a value in bytes
+		 */
+		Type(int size) {
+			this.size = size;
+		}
+
+		/**
+		 * Finds a type by its name in the header
+		 *
+		 * @param name the name
+		 * @return the type
+		 * @throws IllegalArgumentException if there is no such type
+		 */
+		static Type of(String name) {
+			return switch (name) {
+			case "char", "int8" -> CHAR;
+			case "uchar", "uint8" -> UCHAR;
+			case "short", "int16" -> SHORT;
+			case "ushort", "uint16" -> USHORT;
+			case "int", "int32" -> INT;
+			case "uint", "uint32" -> UINT;
+			case "float", "float32" -> FLOAT;
+			case "double", "float64" -> DOUBLE;
+			default -> throw new IllegalArgumentException("Unknown PLY type: " + name);
+			};
+		}
+
+		/**
+		 * Reads a value of the type as a floating point number
+		 *
+		 * @param data  the data
+		 * @param index the position of the value in the data
+		 * @return the value
+		 */
+		double getDouble(ByteBuffer data, int index) {
+			return switch (this) {
+			case FLOAT -> data.getFloat(index);
+			case DOUBLE -> data.getDouble(index);
+			default -> getLong(data, index);
+			};
+		}
+
+		/**
+		 * Reads a value of an integer type
+		 *
+		 * @param data  the data
+		 * @param index the position of the value in the data
+		 * @return the value
+		 * @throws IllegalArgumentException if the type isn't an integer type
+		 */
+		long getLong(ByteBuffer data, int index) {
+			return switch (this) {
+			case CHAR -> data.get(index);
+			case UCHAR -> Byte.toUnsignedInt(data.get(index));
+			case SHORT -> data.getShort(index);
+			case USHORT -> Short.toUnsignedInt(data.getShort(index));
+			case INT -> data.getInt(index);
+			case UINT -> Integer.toUnsignedLong(data.getInt(index));
+			default -> throw new IllegalArgumentException("PLY list sizes and indices must be integers");
+			};
+		}
+	}
+
+	/**
+	 * A property of an element - a scalar or a list of scalars
+	 */
+	private static final class Property {
+		/** The name of the property */
+		final String name;
+		/** The type of the value (of the list's items) */
+		final Type type;
+		/** The type of the list's size, null for a scalar property */
+		final Type countType;
+
+		/**
+		 * Initializes a property
+		 *
+		 * @param name      the name of the property
+		 * @param type      the type of the value (of the list's items)
+		 * @param countType the type of the list's size, null for a scalar property
+		 */
+		Property(String name, Type type, Type countType) {
+			this.name = name;
+			this.type = type;
+			this.countType = countType;
+		}
+	}
+
+	/**
+	 * An element declared in the header - a group of records of the same
+	 * properties
+	 */
+	private static final class Element {
+		/** The name of the element */
+		final String name;
+		/** The amount of the records */
+		final long count;
+		/** The properties of a record */
+		final List<Property> properties = new ArrayList<>();
+
+		/**
+		 * Initializes an element
+		 *
+		 * @param name  the name of the element
+		 * @param count the amount of the records
+		 */
+		Element(String name, long count) {
+			this.name = name;
+			this.count = count;
+		}
+
+		/**
+		 * Calculates the size of a record
+		 *
+		 * @return the size in bytes, or -1 if the records have list properties (of
+		 *         variable sizes)
+		 */
+		int stride() {
+			int stride = 0;
+			for (Property property : properties) {
+				if (property.countType != null)
+					return -1;
+				stride += property.type.size;
+			}
+			return stride;
+		}
+
+		/**
+		 * Finds a property by its name
+		 *
+		 * @param name the name
+		 * @return the property
+		 * @throws IllegalArgumentException if there is no such property
+		 */
+		Property property(String name) {
+			for (Property property : properties)
+				if (property.name.equals(name))
+					return property;
+			throw new IllegalArgumentException("PLY " + this.name + " has no property " + name);
+		}
+
+		/**
+		 * Calculates the offset of a scalar property in a record
+		 *
+		 * @param property the property
+		 * @return the offset in bytes
+		 */
+		int offset(Property property) {
+			int offset = 0;
+			for (Property p : properties) {
+				if (p == property)
+					break;
+				offset += p.type.size;
+			}
+			return offset;
+		}
+	}
+
+	/**
+	 * Sequential reader of the file through a buffer
+	 */
+	private final class Reader {
+		/** The buffer of the data read ahead */
+		private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+		/** The position in the file after the buffer's data */
+		private long position;
+
+		/**
+		 * Initializes a reader
+		 *
+		 * @param position the position to start reading from
+		 */
+		Reader(long position) {
+			this.position = position;
+			buffer.limit(0);
+			if (order != null)
+				buffer.order(order);
+		}
+
+		/**
+		 * Returns the position of the next byte to read
+		 *
+		 * @return the position in the file
+		 */
+		long offset() {
+			return position - buffer.remaining();
+		}
+
+		/**
+		 * Makes sure that the buffer holds enough data
+		 *
+		 * @param size the amount of the required bytes
+		 * @throws IOException on an I/O error
+		 */
+		private void require(int size) throws IOException {
+			if (buffer.remaining() >= size)
+				return;
+			buffer.compact();
+			while (buffer.position() < size) {
+				int read = channel.read(buffer, position);
+				if (read < 0)
+					throw new IllegalArgumentException("Unexpected end of PLY file");
+				position += read;
+			}
+			buffer.flip();
+		}
+
+		/**
+		 * Reads a line of text
+		 *
+		 * @return the line without its line end
+		 * @throws IOException on an I/O error
+		 */
+		String readLine() throws IOException {
+			StringBuilder line = new StringBuilder();
+			while (true) {
+				require(1);
+				byte c = buffer.get();
+				if (c == '\n')
+					return line.toString().strip();
+				line.append((char) (c & 0xFF));
+			}
+		}
+
+		/**
+		 * Reads an integer value
+		 *
+		 * @param type the type of the value
+		 * @return the value
+		 * @throws IOException on an I/O error
+		 */
+		long readLong(Type type) throws IOException {
+			require(type.size);
+			int index = buffer.position();
+			buffer.position(index + type.size);
+			return type.getLong(buffer, index);
+		}
+
+		/**
+		 * Skips data
+		 *
+		 * @param size the amount of bytes to skip
+		 */
+		void skip(long size) {
+			int inBuffer = (int) Math.min(size, buffer.remaining());
+			buffer.position(buffer.position() + inBuffer);
+			position += size - inBuffer;
+		}
+	}
+}
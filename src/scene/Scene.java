@@ -6,7 +6,9 @@ import lighting.*;
 import java.util.LinkedList;
 import java.util.List;
 
+import geometries.BuildMethod;
 import geometries.Geometries;
+import geometries.HierarchyCache;
 
 /**
  * Class representing a 3D scene
@@ -40,6 +42,19 @@ public class Scene {
 	 */
 	public List<LightSource> lights = new LinkedList<>();
 
+	/**
+	 * The method of building the bounding volume hierarchy of the geometries.
+	 * Default value is the binned SAH - the fastest traversal. The linear BVH
+	 * builds much faster, for scenes which are rebuilt for each frame.
+	 */
+	public BuildMethod buildMethod = BuildMethod.BINNED_SAH;
+
+	/**
+	 * The cache of the built bounding volume hierarchies of the geometries.
+	 * Default value is no cache. A static scene which is rendered again and again
+	 * loads its hierarchies from the cache instead of building them.
+	 */
+	public HierarchyCache hierarchyCache = null;
 
 	/**
 	 * Constructor that initializes the scene with a name
@@ -95,4 +110,26 @@ public class Scene {
 		return this;
 	}
 
+	/**
+	 * Sets the method of building the bounding volume hierarchy of the geometries
+	 * 
+	 * @param buildMethod the method of the build
+	 * @return the current Scene object
+	 */
+	public Scene setBuildMethod(BuildMethod buildMethod) {
+		this.buildMethod = buildMethod;
+		return this;
+	}
+
+	/**
+	 * Sets the cache of the built bounding volume hierarchies of the geometries
+	 * 
+	 * @param hierarchyCache the cache, null for no cache
+	 * @return the current Scene object
+	 */
+	public Scene setHierarchyCache(HierarchyCache hierarchyCache) {
+		this.hierarchyCache = hierarchyCache;
+		return this;
+	}
+
 }
@@ -0,0 +1,80 @@
+package unittests.geometries;
+
+import geometries.*;
+import primitives.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for geometries.BoundingBox class and for the bounding boxes of the
+ * geometries
+ */
+class BoundingBoxTests {
+	/**
+	 * Box for testing - the cube between (0,0,0) and (2,2,2)
+	 */
+	private final BoundingBox box = new BoundingBox(Point.ZERO, new Point(2, 2, 2));
+
+	/**
+	 * Test method for {@link geometries.BoundingBox#intersects(primitives.Ray)}.
+	 */
+	@Test
+	void testIntersects() {
+		// ============ Equivalence Partitions Tests ==============
+		// TC01: Ray starts before the box and crosses it
+		assertTrue(box.intersects(new Ray(new Point(-1, 1, 1), new Vector(1, 0.1, 0))), "Ray crosses the box");
+		// TC02: Ray starts inside the box
+		assertTrue(box.intersects(new Ray(new Point(1, 1, 1), new Vector(1, 2, 3))), "Ray starts inside the box");
+		// TC03: Ray misses the box
+		assertFalse(box.intersects(new Ray(new Point(-1, 3, 1), new Vector(1, 0, 0))), "Ray misses the box");
+		// TC04: Ray starts after the box
+		assertFalse(box.intersects(new Ray(new Point(3, 1, 1), new Vector(1, 0, 0))), "Ray starts after the box");
+
+		// =============== Boundary Values Tests ==================
+		// TC10: Ray parallel to an axis, inside the slab of the other axes
+		assertTrue(box.intersects(new Ray(new Point(1, 1, -5), new Vector(0, 0, 1))), "Ray along z crosses the box");
+		// TC11: Ray parallel to an axis, on the face of the box
+		assertTrue(box.intersects(new Ray(new Point(0, 1, -5), new Vector(0, 0, 1))), "Ray along the box face");
+		// TC12: Box is before the maximal distance
+		assertTrue(box.intersects(new Ray(new Point(-1, 1, 1), new Vector(1, 0, 0)), 1.5), "Box before max distance");
+		// TC13: Box is after the maximal distance
+		assertFalse(box.intersects(new Ray(new Point(-1, 1, 1), new Vector(1, 0, 0)), 0.5), "Box after max distance");
+	}
+
+	/**
+	 * Test method for {@link geometries.Intersectable#getBoundingBox()}.
+	 */
+	@Test
+	void testGetBoundingBox() {
+		// ============ Equivalence Partitions Tests ==============
+		// TC01: Sphere
+		BoundingBox sphereBox = new Sphere(new Point(1, 2, 3), 1).getBoundingBox();
+		assertEquals(new Point(0, 1, 2), sphereBox.getMin(), "Bad minimal corner of sphere box");
+		assertEquals(new Point(2, 3, 4), sphereBox.getMax(), "Bad maximal corner of sphere box");
+		// TC02: Triangle
+		BoundingBox triangleBox = new Triangle(new Point(0, 0, 1), new Point(2, 0, 0), new Point(0, 3, 0))
+				.getBoundingBox();
+		assertEquals(Point.ZERO, triangleBox.getMin(), "Bad minimal corner of triangle box");
+		assertEquals(new Point(2, 3, 1), triangleBox.getMax(), "Bad maximal corner of triangle box");
+		// TC03: Cylinder along the z axis
+		BoundingBox cylinderBox = new Cylinder(5, 1, new Ray(Point.ZERO, new Vector(0, 0, 1))).getBoundingBox();
+		assertEquals(new Point(-1, -1, 0), cylinderBox.getMin(), "Bad minimal corner of cylinder box");
+		assertEquals(new Point(1, 1, 5), cylinderBox.getMax(), "Bad maximal corner of cylinder box");
+		// TC04: Collection of geometries
+		BoundingBox geometriesBox = new Geometries(new Sphere(new Point(1, 2, 3), 1),
+				new Sphere(new Point(-1, 0, 0), 1)).getBoundingBox();
+		assertEquals(new Point(-2, -1, -1), geometriesBox.getMin(), "Bad minimal corner of geometries box");
+		assertEquals(new Point(2, 3, 4), geometriesBox.getMax(), "Bad maximal corner of geometries box");
+
+		// =============== Boundary Values Tests ==================
+		// TC10: Plane is unbounded
+		assertNull(new Plane(Point.ZERO, new Vector(0, 0, 1)).getBoundingBox(), "Plane must be unbounded");
+		// TC11: Tube is unbounded
+		assertNull(new Tube(1, new Ray(Point.ZERO, new Vector(0, 0, 1))).getBoundingBox(), "Tube must be unbounded");
+		// TC12: Collection with an unbounded geometry is unbounded
+		assertNull(new Geometries(new Sphere(Point.ZERO, 1), new Plane(Point.ZERO, new Vector(0, 0, 1)))
+				.getBoundingBox(), "Geometries with a plane must be unbounded");
+	}
+}
@@ -0,0 +1,81 @@
+package unittests.geometries;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import primitives.*;
+import geometries.*;
+
+/**
+ * Unit tests for geometries.Cylinder class
+ */
+class CylinderTests {
+	/** A cylinder of radius 1 around the z axis from z=0 to z=2 */
+	private final Cylinder cylinder = new Cylinder(2, 1, new Ray(Point.ZERO, new Vector(0, 0, 1)));
+
+	/**
+	 * Test method for {@link geometries.Cylinder#getNormal(primitives.Point)}.
+	 */
+	@Test
+	void testGetNormal() {
+		// ============ Equivalence Partitions Tests ==============
+		// TC01: Point on the side
+		assertEquals(new Vector(1, 0, 0), cylinder.getNormal(new Point(1, 0, 1)), "Bad normal to the side");
+		// TC02: Point on the bottom base
+		assertEquals(new Vector(0, 0, -1), cylinder.getNormal(new Point(0.5, 0, 0)), "Bad normal to the bottom base");
+		// TC03: Point on the top base
+		assertEquals(new Vector(0, 0, 1), cylinder.getNormal(new Point(0, 0.5, 2)), "Bad normal to the top base");
+
+		// =============== Boundary Values Tests ==================
+		// TC10: Center of the bottom base
+		assertEquals(new Vector(0, 0, -1), cylinder.getNormal(Point.ZERO), "Bad normal at the bottom base center");
+		// TC11: Center of the top base
+		assertEquals(new Vector(0, 0, 1), cylinder.getNormal(new Point(0, 0, 2)), "Bad normal at the top base center");
+	}
+
+	/**
+	 * Test method for {@link geometries.Cylinder#findIntersections(primitives.Ray)}.
+	 */
+	@Test
+	void testFindIntersections() {
+		// ============ Equivalence Partitions Tests ==============
+		// TC01: Ray misses the cylinder (0 points)
+		assertNull(cylinder.findIntersections(new Ray(new Point(2, 2, 1), new Vector(1, 0, 0))),
+				"Ray misses the cylinder");
+		// TC02: Ray crosses the tube beyond the bases (0 points)
+		assertNull(cylinder.findIntersections(new Ray(new Point(-2, 0, 3), new Vector(1, 0, 0))),
+				"Ray crosses the tube above the cylinder");
+		// TC03: Ray crosses the side twice (2 points)
+		assertEquals(List.of(new Point(-1, 0, 1), new Point(1, 0, 1)),
+				cylinder.findIntersections(new Ray(new Point(-2, 0, 1), new Vector(1, 0, 0))),
+				"Ray crosses the side twice");
+		// TC04: Ray crosses a base and the side (2 points)
+		assertEquals(List.of(new Point(0, 0, 2), new Point(1, 0, 1)),
+				cylinder.findIntersections(new Ray(new Point(-1, 0, 3), new Vector(1, 0, -1))),
+				"Ray crosses a base and the side");
+		// TC05: Ray crosses both bases (2 points)
+		assertEquals(List.of(new Point(0.5, 0, 0), new Point(0.5, 0, 2)),
+				cylinder.findIntersections(new Ray(new Point(0.5, 0, -1), new Vector(0, 0, 1))),
+				"Ray crosses both bases");
+		// TC06: Ray starts inside (1 point)
+		assertEquals(List.of(new Point(0, 0, 2)),
+				cylinder.findIntersections(new Ray(new Point(0, 0, 1), new Vector(0, 0, 1))), "Ray starts inside");
+
+		// =============== Boundary Values Tests ==================
+		// TC10: Ray on the side, parallel to the axis (0 points)
+		assertNull(cylinder.findIntersections(new Ray(new Point(1, 0, -1), new Vector(0, 0, 1))),
+				"Ray on the side parallel to the axis");
+		// TC11: Ray in a base's plane (0 points)
+		assertNull(cylinder.findIntersections(new Ray(new Point(-2, 0, 2), new Vector(1, 0, 0))),
+				"Ray in the top base's plane");
+		// TC12: Ray through the edges of both bases (0 points)
+		assertNull(cylinder.findIntersections(new Ray(new Point(2, 0, 3), new Vector(-1, 0, -1))),
+				"Ray through the edges of the bases");
+		// TC13: Ray starts on a base and goes inside (1 point)
+		assertEquals(List.of(new Point(0, 0, 2)),
+				cylinder.findIntersections(new Ray(new Point(0, 0, 0), new Vector(0, 0, 1))),
+				"Ray starts on a base and goes inside");
+	}
+}
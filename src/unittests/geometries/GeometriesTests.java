@@ -57,4 +57,311 @@ class GeometriesTests {
 		ray = new Ray(new Point(0, 0, 0), new Vector(0, 0, 1));
 		assertEquals(3, geometries.findIntersections(ray).size(), "Expected 3 intersections with the sphere and plane");
 	}
-}
\ No newline at end of file
+
+	/**
+	 * Test the findIntersections method for a collection large enough to be
+	 * arranged in a bounding volume hierarchy
+	 */
+	@Test
+	void testFindIntersectionsHierarchy() {
+		Geometries geometries = new Geometries();
+		for (int i = 0; i < 10; ++i)
+			for (int j = 0; j < 10; ++j)
+				geometries.add(new Sphere(new Point(i * 3, j * 3, 10), 1));
+
+		// ============ Equivalence Partitions Tests ==============
+		// TC01: Ray crosses a single sphere of the collection
+		Ray ray = new Ray(new Point(6, 9, 0), new Vector(0, 0, 1));
+		assertEquals(2, geometries.findIntersections(ray).size(), "Expected 2 intersections with one sphere");
+
+		// TC02: Ray crosses a row of spheres
+		ray = new Ray(new Point(-5, 12, 10), new Vector(1, 0, 0));
+		assertEquals(20, geometries.findIntersections(ray).size(), "Expected 2 intersections with each sphere");
+
+		// TC03: Ray misses all the spheres
+		ray = new Ray(new Point(1.5, 1.5, 0), new Vector(0, 0, 1));
+		assertNull(geometries.findIntersections(ray), "Expected no intersections between the spheres");
+
+		// =========== Boundary Values Tests ===========
+		// TC10: Unbounded geometry added after the hierarchy has been built
+		geometries.add(new Plane(new Point(0, 0, 20), new Vector(0, 0, 1)));
+		ray = new Ray(new Point(6, 9, 0), new Vector(0, 0, 1));
+		assertEquals(3, geometries.findIntersections(ray).size(), "Expected 2 intersections with sphere and 1 with plane");
+		// TC11: The hierarchy rebuilt as a linear BVH
+		geometries.setBuildMethod(BuildMethod.LINEAR);
+		assertEquals(3, geometries.findIntersections(ray).size(), "Wrong intersections with the linear BVH");
+		ray = new Ray(new Point(-5, 12, 10), new Vector(1, 0, 0));
+		assertEquals(20, geometries.findIntersections(ray).size(), "Wrong intersections with the linear BVH");
+	}
+
+	/**
+	 * Test method for
+	 * {@link geometries.Intersectable#findClosestGeoIntersection(primitives.Ray, double)}.
+	 */
+	@Test
+	void testFindClosestGeoIntersection() {
+		Sphere sphere = new Sphere(new Point(0, 0, 5), 1);
+		Triangle triangle = new Triangle(new Point(-1, -1, 2), new Point(1, -1, 2), new Point(0, 1, 2));
+		Plane plane = new Plane(new Point(0, 0, 10), new Vector(0, 0, 1));
+		Geometries geometries = new Geometries(sphere, triangle, plane);
+		Ray ray = new Ray(Point.ZERO, new Vector(0, 0, 1));
+
+		// ============ Equivalence Partitions Tests ==============
+		// TC01: All the geometries are crossed, the triangle is the closest
+		var closest = geometries.findClosestGeoIntersection(ray);
+		assertEquals(new Point(0, 0, 2), closest.point, "Wrong closest point");
+		assertSame(triangle, closest.geometry, "Wrong closest geometry");
+		// TC02: The triangle is beyond the maximal distance
+		assertNull(geometries.findClosestGeoIntersection(ray, 1.5), "Expected no intersections before distance");
+		// TC03: Ray starts inside the sphere, the sphere is the closest
+		closest = geometries.findClosestGeoIntersection(new Ray(new Point(0, 0, 4.5), new Vector(0, 0, 1)));
+		assertEquals(new Point(0, 0, 6), closest.point, "Wrong closest point from inside the sphere");
+
+		// =========== Boundary Values Tests ===========
+		// TC10: The closest intersection is exactly at the maximal distance
+		assertNull(geometries.findClosestGeoIntersection(ray, 2), "Intersection at the max distance is ignored");
+		// TC11: No geometry is crossed
+		assertNull(geometries.findClosestGeoIntersection(new Ray(Point.ZERO, new Vector(1, 0, 0))),
+				"Expected no intersections");
+	}
+
+	/**
+	 * Test method for
+	 * {@link geometries.Intersectable#findClosestHit(primitives.Ray, geometries.Intersectable.GeoPoint)}.
+	 */
+	@Test
+	void testFindClosestHit() {
+		Sphere sphere = new Sphere(new Point(0, 0, 5), 1);
+		Triangle triangle = new Triangle(new Point(-1, -1, 2), new Point(1, -1, 2), new Point(0, 1, 2));
+		Geometries geometries = new Geometries(sphere, triangle, new Plane(new Point(0, 0, 10), new Vector(0, 0, 1)));
+		Ray ray = new Ray(Point.ZERO, new Vector(0, 0, 1));
+		Intersectable.GeoPoint hit = new Intersectable.GeoPoint();
+
+		// ============ Equivalence Partitions Tests ==============
+		// TC01: The record is filled by the closest intersection
+		assertTrue(geometries.findClosestHit(ray, hit.reset(Double.POSITIVE_INFINITY)), "Expected a hit");
+		assertSame(triangle, hit.geometry, "Wrong closest geometry");
+		assertEquals(new Point(0, 0, 2), hit.point, "Wrong closest point");
+		assertEquals(2, hit.t, 1e-10, "Wrong closest distance");
+		assertEquals(new Vector(0, 0, 1), hit.getNormal(), "Wrong normal");
+		// TC02: The record is reused for another ray - the normal is recalculated
+		assertTrue(geometries.findClosestHit(new Ray(new Point(0, 0, 4.5), new Vector(0, 0, 1)),
+				hit.reset(Double.POSITIVE_INFINITY)), "Expected a hit");
+		assertSame(sphere, hit.geometry, "Wrong closest geometry of the reused record");
+		assertEquals(new Vector(0, 0, 1), hit.getNormal(), "Wrong normal of the reused record");
+
+		// =========== Boundary Values Tests ===========
+		// TC10: No intersection before the record's distance - the record is unchanged
+		assertFalse(geometries.findClosestHit(ray, hit.reset(2)), "Expected no hit before the distance");
+		assertNull(hit.geometry, "The record must stay empty");
+	}
+
+	/**
+	 * Test method for
+	 * {@link geometries.Intersectable#findClosestHits(primitives.Ray[], geometries.Intersectable.GeoPoint[], int)}.
+	 */
+	@Test
+	void testFindClosestHits() {
+		// A grid of triangles as a mesh and as an instance of the mesh, between rows
+		// of spheres
+		int n = 20;
+		MeshFixtures.Mesh cells = MeshFixtures.grid(n, (i, j) -> 0);
+		TriangleMesh mesh = new TriangleMesh(cells.vertices(), cells.indices());
+		Geometries geometries = new Geometries(mesh, new Instance(mesh, Transform.translation(new Vector(0, 0, -5))));
+		for (int i = 0; i < n; i += 2)
+			geometries.add(new Sphere(new Point(i + 0.5, 5, 3), 0.5));
+
+		Ray[] rays = new Ray[16];
+		Intersectable.GeoPoint[] hits = new Intersectable.GeoPoint[rays.length];
+		Intersectable.GeoPoint hit = new Intersectable.GeoPoint();
+		for (int i = 0; i < hits.length; ++i)
+			hits[i] = new Intersectable.GeoPoint();
+
+		// ============ Equivalence Partitions Tests ==============
+		// TC01: A coherent packet hits the same as its rays one by one
+		Point eye = new Point(12.3, 5.2, 20);
+		for (int i = 0; i < rays.length; ++i) {
+			rays[i] = new Ray(eye, new Vector(-0.5 + 0.02 * (i % 4), 0.01 * (i / 4), -1));
+			hits[i].reset(Double.POSITIVE_INFINITY);
+		}
+		int found = geometries.findClosestHits(rays, hits, 0xFFFF);
+		assertEquals(0xFFFF, found, "Expected hits of all the rays");
+		for (int i = 0; i < rays.length; ++i) {
+			assertTrue(geometries.findClosestHit(rays[i], hit.reset(Double.POSITIVE_INFINITY)), "Expected a hit");
+			assertSame(hit.geometry, hits[i].geometry, "Wrong geometry of a packet's ray");
+			assertEquals(hit.primitive, hits[i].primitive, "Wrong triangle of a packet's ray");
+			assertEquals(hit.point, hits[i].point, "Wrong point of a packet's ray");
+		}
+		// TC02: A diverged packet - some rays miss the geometries, the others hit
+		// the spheres or the mesh
+		for (int i = 0; i < rays.length; ++i) {
+			rays[i] = new Ray(eye, new Vector(-0.5 * (i % 4), 0.25 * (i / 4) - 0.3, -1));
+			hits[i].reset(Double.POSITIVE_INFINITY);
+		}
+		found = geometries.findClosestHits(rays, hits, 0xFFFF);
+		for (int i = 0; i < rays.length; ++i) {
+			boolean single = geometries.findClosestHit(rays[i], hit.reset(Double.POSITIVE_INFINITY));
+			assertEquals(single, (found & 1 << i) != 0, "Wrong mask of a packet's ray");
+			if (single)
+				assertEquals(hit.point, hits[i].point, "Wrong point of a packet's ray");
+		}
+		// TC03: Instances of an instance - the hits of the closer instance keep their
+		// transforms when the packet reaches the farther ones
+		Instance lower = new Instance(mesh, Transform.translation(new Vector(0, 0, -2)));
+		Geometries instances = new Geometries(new Instance(mesh, Transform.translation(new Vector(0, 0, 2))),
+				new Instance(lower, Transform.translation(new Vector(0.5, 0, 0))),
+				new Instance(new Plane(new Point(0, 0, -4), new Vector(0, 0, 1)),
+						Transform.translation(new Vector(0, 0, 2))));
+		for (int i = 0; i < rays.length; ++i) {
+			rays[i] = new Ray(eye, new Vector(-0.5 + 0.02 * (i % 4), 0.013 * (i / 4), -1));
+			hits[i].reset(Double.POSITIVE_INFINITY);
+		}
+		assertEquals(0xFFFF, instances.findClosestHits(rays, hits, 0xFFFF), "Expected hits of all the rays");
+		for (int i = 0; i < rays.length; ++i) {
+			assertTrue(instances.findClosestHit(rays[i], hit.reset(Double.POSITIVE_INFINITY)), "Expected a hit");
+			assertEquals(hit.t, hits[i].t, 1e-10, "Wrong distance of a packet's ray");
+			assertEquals(2, rays[i].getPoint(hits[i].t).getZ(), 1e-10, "Wrong distance of a packet's ray");
+			assertSame(hit.transform, hits[i].transform, "Wrong transform of a packet's ray");
+		}
+
+		// =========== Boundary Values Tests ===========
+		// TC10: The rays out of the mask are not searched
+		for (int i = 0; i < rays.length; ++i)
+			hits[i].reset(Double.POSITIVE_INFINITY);
+		assertEquals(0, geometries.findClosestHits(rays, hits, 0), "Expected no hits of an empty mask");
+		assertNull(hits[0].geometry, "The record out of the mask must stay empty");
+	}
+
+	/**
+	 * Test method for
+	 * {@link geometries.Intersectable#findTransparency(primitives.Ray, double)}.
+	 */
+	@Test
+	void testFindTransparency() {
+		Geometries geometries = new Geometries(
+				new Sphere(new Point(0, 0, 5), 1).setMaterial(new Material().setKt(0.5)),
+				new Triangle(new Point(-1, -1, 2), new Point(1, -1, 2), new Point(0, 1, 2))
+						.setMaterial(new Material().setKt(0.8)),
+				new Plane(new Point(0, 0, 10), new Vector(0, 0, 1)));
+		Ray ray = new Ray(Point.ZERO, new Vector(0, 0, 1));
+
+		// ============ Equivalence Partitions Tests ==============
+		// TC01: Only the transparent triangle is before the distance
+		assertEquals(new Double3(0.8), geometries.findTransparency(ray, 3), "Wrong transparency of triangle");
+		// TC02: The triangle and both intersections with the sphere are before the
+		// distance
+		assertEquals(new Double3(0.2), geometries.findTransparency(ray, 8), "Wrong transparency of sphere");
+		// TC03: The opaque plane blocks the ray
+		assertEquals(Double3.ZERO, geometries.findTransparency(ray, 20), "Opaque plane must block the ray");
+
+		// =========== Boundary Values Tests ===========
+		// TC10: No geometry before the distance
+		assertEquals(Double3.ONE, geometries.findTransparency(ray, 1), "Expected full transparency");
+		// TC11: The transparency falls below the threshold - the ray is blocked
+		assertEquals(Double3.ZERO, geometries.findTransparency(ray, 8, 0.3), "Expected the ray to be blocked");
+		// TC12: The transparency equals the threshold
+		assertEquals(new Double3(0.2), geometries.findTransparency(ray, 8, 0.2), "Wrong transparency at threshold");
+	}
+
+	/**
+	 * Test method for
+	 * {@link geometries.Intersectable#findTransparency(primitives.Ray, double, double)}
+	 * of a built hierarchy of instances.
+	 */
+	@Test
+	void testFindTransparencyThreshold() {
+		Triangle glass = new Triangle(new Point(-1, -1, 0), new Point(1, -1, 0), new Point(0, 1, 0));
+		glass.setMaterial(new Material().setKt(0.5));
+		Geometries geometries = new Geometries();
+		for (int i = 1; i <= 12; ++i)
+			geometries.add(new Instance(glass, Transform.translation(new Vector(0, 0, i))));
+		geometries.build();
+		Ray ray = new Ray(Point.ZERO, new Vector(0, 0, 1));
+
+		// ============ Equivalence Partitions Tests ==============
+		// TC01: Nine layers before the distance keep the transparency above the
+		// threshold
+		assertEquals(new Double3(Math.pow(0.5, 9)), geometries.findTransparency(ray, 9.5, 0.001),
+				"Wrong transparency of nine layers");
+		// TC02: The transparency of all the layers is below the threshold
+		assertEquals(Double3.ZERO, geometries.findTransparency(ray, 20, 0.001), "Expected the ray to be blocked");
+
+		// =============== Boundary Values Tests ==================
+		// TC10: Zero threshold - only an opaque geometry blocks the ray
+		assertEquals(new Double3(Math.pow(0.5, 12)), geometries.findTransparency(ray, 20, 0),
+				"Wrong transparency of all the layers");
+	}
+
+	/**
+	 * Test method for {@link geometries.Geometries#update(Intersectable...)},
+	 * {@link geometries.Geometries#add(Intersectable...)} and
+	 * {@link geometries.Geometries#remove(Intersectable...)} after the hierarchy
+	 * has been built.
+	 */
+	@Test
+	void testUpdate() {
+		Sphere sphere = new Sphere(Point.ZERO, 1);
+		Instance[] instances = new Instance[100];
+		Geometries geometries = new Geometries();
+		for (int i = 0; i < 100; ++i)
+			geometries.add(instances[i] = new Instance(sphere,
+					Transform.translation(new Vector(3 * (i % 10) + 1, 3 * (i / 10), 10))));
+		geometries.build();
+		Ray ray = new Ray(new Point(4, 3, 0), new Vector(0, 0, 1));
+
+		// ============ Equivalence Partitions Tests ==============
+		// TC01: An instance moved a little - its box is refitted
+		instances[11].setTransform(Transform.translation(new Vector(4, 3, 12)));
+		geometries.update(instances[11]);
+		assertEquals(new Point(4, 3, 11), geometries.findClosestGeoIntersection(ray).point,
+				"Wrong intersection with a moved instance");
+		// TC02: An instance moved away - it is inserted again at its new place
+		instances[11].setTransform(Transform.translation(new Vector(50, 3, 10)));
+		geometries.update(instances[11]);
+		assertNull(geometries.findIntersections(ray), "Found the instance at its old place");
+		assertEquals(new Point(50, 3, 9),
+				geometries.findClosestGeoIntersection(new Ray(new Point(50, 3, 0), new Vector(0, 0, 1))).point,
+				"Wrong intersection with an instance moved away");
+		// TC03: Geometries added into the built hierarchy
+		for (int i = 0; i < 20; ++i)
+			geometries.add(new Instance(sphere, Transform.translation(new Vector(4, 3, 20 + 3 * i))));
+		assertEquals(40, geometries.findIntersections(ray).size(), "Wrong intersections with added instances");
+		assertEquals(new Point(4, 3, 19), geometries.findClosestGeoIntersection(ray).point,
+				"Wrong closest intersection with added instances");
+		// TC04: Geometries removed from the built hierarchy
+		geometries.remove(instances[11]);
+		assertNull(geometries.findIntersections(new Ray(new Point(50, 3, 0), new Vector(0, 0, 1))),
+				"Found a removed instance");
+
+		// =========== Boundary Values Tests ===========
+		// TC10: Removing all but two geometries arranges them without a hierarchy
+		geometries = new Geometries(instances[0], instances[1], instances[2]);
+		geometries.build();
+		geometries.remove(instances[0]);
+		assertEquals(2, geometries.findIntersections(new Ray(new Point(4, 0, 0), new Vector(0, 0, 1))).size(),
+				"Wrong intersections after a removal");
+		assertNull(geometries.findIntersections(new Ray(new Point(1, 0, 0), new Vector(0, 0, 1))),
+				"Found a removed instance");
+
+		// TC11: A geometry added twice into the built hierarchy is moved and removed
+		// with both of its occurrences
+		geometries = new Geometries();
+		for (int i = 0; i < 10; ++i)
+			geometries.add(instances[i]);
+		geometries.build();
+		Instance twice = new Instance(sphere, Transform.translation(new Vector(4, 30, 10)));
+		geometries.add(twice, twice);
+		Ray twiceRay = new Ray(new Point(4, 30, 0), new Vector(0, 0, 1));
+		assertEquals(4, geometries.findIntersections(twiceRay).size(), "Wrong intersections with a twice added instance");
+		twice.setTransform(Transform.translation(new Vector(4, 60, 10)));
+		geometries.update(twice);
+		assertNull(geometries.findIntersections(twiceRay), "Found a twice added instance at its old place");
+		Ray movedRay = new Ray(new Point(4, 60, 0), new Vector(0, 0, 1));
+		assertEquals(4, geometries.findIntersections(movedRay).size(),
+				"Wrong intersections with a twice added instance moved away");
+		geometries.remove(twice);
+		assertNull(geometries.findIntersections(movedRay), "Found a removed twice added instance");
+		assertEquals(2, geometries.findIntersections(new Ray(new Point(1, 0, 0), new Vector(0, 0, 1))).size(),
+				"Wrong intersections with the remaining instances");
+	}
+}
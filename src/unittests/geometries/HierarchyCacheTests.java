@@ -0,0 +1,149 @@
+package unittests.geometries;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+
+import geometries.*;
+import primitives.*;
+
+/**
+ * Unit tests for geometries.HierarchyCache class
+ */
+class HierarchyCacheTests {
+	/** Amount of the cells along each side of the grid */
+	private static final int N = 50;
+
+	/**
+	 * Creates a mesh of a grid of N x N square cells in the plane z=0, each made
+	 * of two triangles
+	 *
+	 * @param method the method of building the mesh's hierarchy
+	 * @return the mesh
+	 */
+	private static TriangleMesh grid(BuildMethod method) {
+		MeshFixtures.Mesh cells = MeshFixtures.grid(N, (i, j) -> 0);
+		return new TriangleMesh(cells.vertices(), cells.indices(), method);
+	}
+
+	/**
+	 * Checks that the cells of a grid mesh are hit by their triangles
+	 *
+	 * @param grid the mesh
+	 */
+	private static void assertGridHits(Geometries grid) {
+		Intersectable.GeoPoint hit = new Intersectable.GeoPoint();
+		for (int i = 0; i < N; i += 7)
+			for (int j = 0; j < N; j += 3) {
+				assertTrue(grid.findClosestHit(new Ray(new Point(j + 0.7, i + 0.2, 1), new Vector(0, 0, -1)),
+						hit.reset(Double.POSITIVE_INFINITY)), "Expected a hit of the grid");
+				assertEquals(2 * (i * N + j), hit.primitive, "Wrong triangle of the grid");
+			}
+	}
+
+	/**
+	 * Lists the files of a directory
+	 *
+	 * @param directory the directory
+	 * @return the files
+	 * @throws IOException on an I/O error
+	 */
+	private static List<Path> files(Path directory) throws IOException {
+		try (Stream<Path> files = Files.list(directory)) {
+			return files.toList();
+		}
+	}
+
+	/**
+	 * Corrupts a cached tree by changing a number in it, keeping its size
+	 *
+	 * @param file   the file of the tree
+	 * @param offset the offset of the number, counted in ints from the node data
+	 *               (or from the primitives' order)
+	 * @param order  whether the offset is in the primitives' order
+	 * @param value  the new value of the number, or null to copy the previous
+	 *               number
+	 * @throws IOException on an I/O error
+	 */
+	private static void corrupt(Path file, int offset, boolean order, Integer value) throws IOException {
+		ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file)).order(ByteOrder.LITTLE_ENDIAN);
+		int nodeCount = buffer.getInt(8);
+		int position = 32 + nodeCount * 6 * Double.BYTES + (order ? nodeCount * 2 * Integer.BYTES : 0)
+				+ offset * Integer.BYTES;
+		buffer.putInt(position, value == null ? buffer.getInt(position - Integer.BYTES) : value);
+		Files.write(file, buffer.array());
+	}
+
+	/**
+	 * Test method for {@link geometries.Geometries#build(HierarchyCache)}.
+	 *
+	 * @throws IOException on an I/O error
+	 */
+	@Test
+	void testBuild() throws IOException {
+		Path directory = Files.createTempDirectory("bvh");
+		HierarchyCache cache = new HierarchyCache(directory);
+		try {
+			// ============ Equivalence Partitions Tests ==============
+			// TC01: The first build stores the mesh's tree
+			Geometries geometries = new Geometries(grid(BuildMethod.BINNED_SAH)).build(cache);
+			assertGridHits(geometries);
+			List<Path> stored = files(directory);
+			assertEquals(1, stored.size(), "Wrong amount of cached trees");
+			long modified = Files.getLastModifiedTime(stored.get(0)).toMillis();
+
+			// TC02: An equal mesh loads the tree instead of building it
+			geometries = new Geometries(grid(BuildMethod.BINNED_SAH)).build(cache);
+			assertGridHits(geometries);
+			assertEquals(stored, files(directory), "The loaded tree was stored again");
+			assertEquals(modified, Files.getLastModifiedTime(stored.get(0)).toMillis(),
+					"The loaded tree was stored again");
+
+			// TC03: Another build method has a tree of its own
+			geometries = new Geometries(grid(BuildMethod.LINEAR)).build(cache);
+			assertGridHits(geometries);
+			assertEquals(2, files(directory).size(), "Wrong amount of cached trees");
+
+			// =============== Boundary Values Tests ==================
+			// TC10: A truncated file is ignored and replaced by a built tree
+			Files.write(stored.get(0), new byte[100]);
+			geometries = new Geometries(grid(BuildMethod.BINNED_SAH)).build(cache);
+			assertGridHits(geometries);
+			assertTrue(Files.size(stored.get(0)) > 100, "The truncated tree wasn't replaced");
+			geometries = new Geometries(grid(BuildMethod.BINNED_SAH)).build(cache);
+			assertGridHits(geometries);
+
+			// TC11: A file of the right size whose root points out of the tree is
+			// ignored and replaced
+			byte[] valid = Files.readAllBytes(stored.get(0));
+			corrupt(stored.get(0), 0, false, Integer.MAX_VALUE);
+			geometries = new Geometries(grid(BuildMethod.BINNED_SAH)).build(cache);
+			assertGridHits(geometries);
+			assertArrayEquals(valid, Files.readAllBytes(stored.get(0)), "The corrupted tree wasn't replaced");
+
+			// TC12: A file of the right size with a primitive twice in the order is
+			// ignored and replaced
+			corrupt(stored.get(0), 1, true, null);
+			geometries = new Geometries(grid(BuildMethod.BINNED_SAH)).build(cache);
+			assertGridHits(geometries);
+			assertArrayEquals(valid, Files.readAllBytes(stored.get(0)), "The corrupted tree wasn't replaced");
+
+			// TC13: Small hierarchies aren't cached
+			new Geometries(new Sphere(new Point(0, 0, 0), 1), new Sphere(new Point(3, 0, 0), 1),
+					new Sphere(new Point(6, 0, 0), 1), new Sphere(new Point(9, 0, 0), 1)).build(cache);
+			assertEquals(2, files(directory).size(), "A small hierarchy was cached");
+		} finally {
+			for (Path file : files(directory))
+				Files.delete(file);
+			Files.delete(directory);
+		}
+	}
+}
@@ -0,0 +1,74 @@
+package unittests.geometries;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import geometries.*;
+import geometries.Intersectable.GeoPoint;
+import primitives.*;
+
+/**
+ * Unit tests for geometries.Instance class
+ */
+class InstanceTests {
+	/** A unit sphere at the origin, shared by the instances */
+	private final Sphere sphere = new Sphere(Point.ZERO, 1);
+
+	/**
+	 * Test method for {@link geometries.Instance#findIntersections(primitives.Ray)}.
+	 */
+	@Test
+	void testFindIntersections() {
+		Instance instance = new Instance(sphere,
+				Transform.scaling(2, 1, 1).then(Transform.translation(new Vector(0, 0, 5))));
+
+		// ============ Equivalence Partitions Tests ==============
+		// TC01: Ray crosses the stretched sphere
+		assertEquals(List.of(new Point(-2, 0, 5), new Point(2, 0, 5)),
+				instance.findIntersections(new Ray(new Point(-3, 0, 5), new Vector(1, 0, 0))),
+				"Wrong intersections with the instance");
+		// TC02: Ray misses the instance but would hit the shared sphere
+		assertNull(instance.findIntersections(new Ray(new Point(-3, 0, 0), new Vector(1, 0, 0))),
+				"Ray hits the shared geometry instead of the instance");
+	}
+
+	/**
+	 * Test method for
+	 * {@link geometries.Intersectable#findClosestHit(primitives.Ray, geometries.Intersectable.GeoPoint)}
+	 * of instances.
+	 */
+	@Test
+	void testFindClosestHit() {
+		Geometries shared = new Geometries(sphere);
+		Geometries scene = new Geometries();
+		for (int i = 1; i <= 5; ++i)
+			scene.add(new Instance(shared, Transform.scaling(0.5).then(Transform.translation(new Vector(i * 2, 0, 0)))));
+		scene.add(new Sphere(new Point(4, 0, 3), 1));
+
+		// ============ Equivalence Partitions Tests ==============
+		// TC01: The closest of several instances, with the distance in the scene's
+		// space and the normal transformed back
+		GeoPoint hit = new GeoPoint().reset(Double.POSITIVE_INFINITY);
+		assertTrue(scene.findClosestHit(new Ray(new Point(11, 0, 0), new Vector(-1, 0, 0)), hit), "Missed the instances");
+		assertEquals(0.5, hit.t, 1e-10, "Wrong distance of the hit");
+		assertEquals(new Point(10.5, 0, 0), hit.point, "Wrong point of the hit");
+		assertSame(sphere, hit.geometry, "Wrong geometry of the hit");
+		assertEquals(new Vector(1, 0, 0), hit.getNormal(), "Wrong normal of the hit");
+		// TC02: A closer geometry which isn't instanced drops the transform of the hit
+		hit.reset(Double.POSITIVE_INFINITY);
+		assertTrue(scene.findClosestHit(new Ray(new Point(4, 0, 6), new Vector(0, 0, -1)), hit), "Missed the sphere");
+		assertEquals(new Point(4, 0, 4), hit.point, "Wrong point of the hit");
+		assertNull(hit.transform, "The hit of the sphere is transformed");
+		assertEquals(new Vector(0, 0, 1), hit.getNormal(), "Wrong normal of the hit");
+
+		// =============== Boundary Values Tests ==================
+		// TC10: Hit beyond the maximal distance
+		hit.reset(0.4);
+		assertFalse(scene.findClosestHit(new Ray(new Point(11, 0, 0), new Vector(-1, 0, 0)), hit),
+				"Found a hit beyond the distance");
+		assertEquals(0.4, hit.t, "The distance of the record changed");
+	}
+}
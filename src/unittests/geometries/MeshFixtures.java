@@ -0,0 +1,54 @@
+package unittests.geometries;
+
+import java.util.function.DoubleBinaryOperator;
+
+/**
+ * Meshes shared by the tests of the geometries
+ */
+final class MeshFixtures {
+	/** Don't let anyone instantiate this class. */
+	private MeshFixtures() {
+	}
+
+	/**
+	 * Vertices and triangles of a mesh
+	 *
+	 * @param vertices the coordinates of the vertices - 3 per vertex
+	 * @param indices  the indices of the vertices of the triangles - 3 per
+	 *                 triangle
+	 */
+	record Mesh(double[] vertices, int[] indices) {
+	}
+
+	/**
+	 * Creates a grid of n x n square cells over the plane z=0, each made of two
+	 * triangles. The vertex of row i and column j is at (j, i, z(i, j)), and the
+	 * cell of row i and column j is made of the triangles 2 * (i * n + j) and
+	 * 2 * (i * n + j) + 1.
+	 *
+	 * @param n the amount of the cells along each side of the grid
+	 * @param z the height of the vertex of a row and a column
+	 * @return the mesh of the grid
+	 */
+	static Mesh grid(int n, DoubleBinaryOperator z) {
+		double[] vertices = new double[3 * (n + 1) * (n + 1)];
+		for (int i = 0; i <= n; ++i)
+			for (int j = 0; j <= n; ++j) {
+				vertices[3 * (i * (n + 1) + j)] = j;
+				vertices[3 * (i * (n + 1) + j) + 1] = i;
+				vertices[3 * (i * (n + 1) + j) + 2] = z.applyAsDouble(i, j);
+			}
+		int[] indices = new int[6 * n * n];
+		for (int i = 0, k = 0; i < n; ++i)
+			for (int j = 0; j < n; ++j) {
+				int p = i * (n + 1) + j;
+				indices[k++] = p;
+				indices[k++] = p + 1;
+				indices[k++] = p + n + 2;
+				indices[k++] = p;
+				indices[k++] = p + n + 2;
+				indices[k++] = p + n + 1;
+			}
+		return new Mesh(vertices, indices);
+	}
+}
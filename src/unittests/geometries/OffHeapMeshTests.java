@@ -0,0 +1,229 @@
+package unittests.geometries;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+
+import geometries.*;
+import primitives.*;
+
+/**
+ * Unit tests for geometries.OffHeapMesh class
+ */
+class OffHeapMeshTests {
+	/** Amount of the cells along each side of the grids */
+	private static final int N = 50;
+
+	/**
+	 * Creates the vertices and the triangles of two layers of a grid of N x N
+	 * square cells - in the plane z=0 and in the plane z=1. The triangles of the
+	 * lower layer come first.
+	 *
+	 * @return the mesh of the layers
+	 */
+	private static MeshFixtures.Mesh layers() {
+		MeshFixtures.Mesh lower = MeshFixtures.grid(N, (i, j) -> 0);
+		MeshFixtures.Mesh upper = MeshFixtures.grid(N, (i, j) -> 1);
+		int vertexCount = lower.vertices().length / 3;
+		double[] vertices = Arrays.copyOf(lower.vertices(), 2 * lower.vertices().length);
+		System.arraycopy(upper.vertices(), 0, vertices, lower.vertices().length, upper.vertices().length);
+		int[] indices = Arrays.copyOf(lower.indices(), 2 * lower.indices().length);
+		for (int i = 0; i < upper.indices().length; ++i)
+			indices[lower.indices().length + i] = upper.indices()[i] + vertexCount;
+		return new MeshFixtures.Mesh(vertices, indices);
+	}
+
+	/**
+	 * Checks that the cells of a grid are hit by their triangles
+	 *
+	 * @param grid the grid, in the plane z=0
+	 */
+	private static void assertGridHits(Intersectable grid) {
+		Intersectable.GeoPoint hit = new Intersectable.GeoPoint();
+		for (int i = 0; i < N; i += 7)
+			for (int j = 0; j < N; j += 3) {
+				assertTrue(grid.findClosestHit(new Ray(new Point(j + 0.7, i + 0.2, 0.5), new Vector(0, 0, -1)),
+						hit.reset(Double.POSITIVE_INFINITY)), "Expected a hit of the grid");
+				assertEquals(2 * (i * N + j), hit.primitive, "Wrong triangle of the grid");
+			}
+	}
+
+	/**
+	 * Lists the files of a directory
+	 *
+	 * @param directory the directory
+	 * @return the files
+	 * @throws IOException on an I/O error
+	 */
+	private static List<Path> files(Path directory) throws IOException {
+		try (Stream<Path> files = Files.list(directory)) {
+			return files.toList();
+		}
+	}
+
+	/**
+	 * Test method for {@link geometries.OffHeapMesh#OffHeapMesh(double[], int[])}.
+	 */
+	@Test
+	void testConstructor() {
+		// ============ Equivalence Partitions Tests ==============
+		// TC01: The box is calculated from the given arrays, before the store
+		MeshFixtures.Mesh cells = layers();
+		OffHeapMesh mesh = new OffHeapMesh(cells.vertices(), cells.indices());
+		assertEquals(4 * N * N, mesh.getTriangleCount(), "Wrong amount of triangles");
+		BoundingBox box = mesh.getBoundingBox();
+		assertEquals(new Point(0, 0, 0), box.getMin(), "Wrong box of the mesh");
+		assertEquals(new Point(N, N, 1), box.getMax(), "Wrong box of the mesh");
+
+		// =============== Boundary Values Tests ==================
+		// TC10: Empty mesh has no box and no store to traverse
+		OffHeapMesh empty = new OffHeapMesh(new double[0], new int[0]);
+		assertNull(empty.getBoundingBox(), "An empty mesh has no box");
+		assertNull(empty.findIntersections(new Ray(Point.ZERO, new Vector(0, 0, 1))), "Expected no intersections");
+		assertEquals(Double3.ONE, empty.findTransparency(new Ray(Point.ZERO, new Vector(0, 0, 1)), 10),
+				"Expected full transparency");
+	}
+
+	/**
+	 * Test method for
+	 * {@link geometries.Intersectable#findClosestHit(primitives.Ray, geometries.Intersectable.GeoPoint)}.
+	 */
+	@Test
+	void testFindClosestHit() {
+		Intersectable.GeoPoint hit = new Intersectable.GeoPoint();
+
+		// ============ Equivalence Partitions Tests ==============
+		// TC01: A big grid of triangles hits the same triangles as a heap mesh
+		int n = 100;
+		MeshFixtures.Mesh cells = MeshFixtures.grid(n, (i, j) -> Math.sin(i + j));
+		TriangleMesh heapGrid = new TriangleMesh(cells.vertices(), cells.indices());
+		OffHeapMesh grid = new OffHeapMesh(cells.vertices(), cells.indices());
+		Intersectable.GeoPoint heapHit = new Intersectable.GeoPoint();
+		for (int i = 0; i < n; i += 7)
+			for (int j = 0; j < n; j += 11) {
+				Ray ray = new Ray(new Point(j + 0.3, i + 0.6, 3), new Vector(0.3, -0.2, -1));
+				assertEquals(heapGrid.findClosestHit(ray, heapHit.reset(Double.POSITIVE_INFINITY)),
+						grid.findClosestHit(ray, hit.reset(Double.POSITIVE_INFINITY)), "Wrong hit of the grid");
+				assertEquals(heapHit.primitive, hit.primitive, "Wrong triangle of the grid");
+				assertEquals(heapHit.t, hit.t, "Wrong distance of the grid's hit");
+			}
+
+		// =============== Boundary Values Tests ==================
+		// TC10: The upper layer is closer than the lower one, which comes first in
+		// the mesh
+		MeshFixtures.Mesh twoLayers = layers();
+		OffHeapMesh mesh = new OffHeapMesh(twoLayers.vertices(), twoLayers.indices());
+		assertTrue(mesh.findClosestHit(new Ray(new Point(3.7, 5.2, 2), new Vector(0, 0, -1)),
+				hit.reset(Double.POSITIVE_INFINITY)), "Expected a hit");
+		assertEquals(2 * N * N + 2 * (5 * N + 3), hit.primitive, "Wrong triangle of the hit");
+		assertEquals(1, hit.t, "Wrong distance of the hit");
+		// TC11: A hit record of a closer hit isn't changed
+		assertFalse(mesh.findClosestHit(new Ray(new Point(3.7, 5.2, 2), new Vector(0, 0, -1)), hit.reset(0.5)),
+				"Expected no hit before the distance");
+		assertEquals(-1, hit.primitive, "The hit record was changed");
+	}
+
+	/**
+	 * Test method for
+	 * {@link geometries.Intersectable#findTransparency(primitives.Ray, double)}.
+	 */
+	@Test
+	void testFindTransparency() {
+		MeshFixtures.Mesh cells = layers();
+		OffHeapMesh glass = new OffHeapMesh(cells.vertices(), cells.indices());
+		glass.setMaterial(new Material().setKt(0.5));
+		Ray ray = new Ray(new Point(3.7, 5.2, 2), new Vector(0, 0, -1));
+
+		// ============ Equivalence Partitions Tests ==============
+		// TC01: Ray crosses both layers
+		assertEquals(new Double3(0.25), glass.findTransparency(ray, 10), "Wrong transparency of two layers");
+		// TC02: The lower layer is beyond the distance
+		assertEquals(new Double3(0.5), glass.findTransparency(ray, 1.5), "Wrong transparency of one layer");
+		// TC03: Ray misses the mesh
+		assertEquals(Double3.ONE, glass.findTransparency(new Ray(new Point(-1, 5.2, 2), ray.getDirection()), 10),
+				"Expected full transparency");
+		// TC04: Oblique rays through both layers are as transparent as through a
+		// heap mesh
+		TriangleMesh heapGlass = new TriangleMesh(cells.vertices(), cells.indices());
+		heapGlass.setMaterial(new Material().setKt(0.5));
+		for (int i = 0; i < N - 3; i += 7) {
+			Ray oblique = new Ray(new Point(0.3, i + 0.6, 2), new Vector(1, 0.1, -0.1));
+			assertEquals(new Double3(0.25), heapGlass.findTransparency(oblique, 30), "Wrong heap mesh transparency");
+			assertEquals(heapGlass.findTransparency(oblique, 30), glass.findTransparency(oblique, 30),
+					"Wrong transparency of an oblique ray");
+		}
+
+		// =============== Boundary Values Tests ==================
+		// TC10: An opaque mesh blocks the ray at its first triangle
+		OffHeapMesh opaque = new OffHeapMesh(cells.vertices(), cells.indices());
+		assertEquals(Double3.ZERO, opaque.findTransparency(ray, 10), "Opaque mesh must block the ray");
+		// TC11: The transparency falls below the threshold - the ray is blocked
+		assertEquals(Double3.ZERO, glass.findTransparency(ray, 10, 0.3), "Expected the ray to be blocked");
+		// TC12: The transparency equals the threshold
+		assertEquals(new Double3(0.25), glass.findTransparency(ray, 10, 0.25), "Wrong transparency at threshold");
+	}
+
+	/**
+	 * Test method for {@link geometries.Geometries#build(HierarchyCache)} of
+	 * off-heap meshes.
+	 *
+	 * @throws IOException on an I/O error
+	 */
+	@Test
+	void testBuild() throws IOException {
+		Path directory = Files.createTempDirectory("bvh");
+		HierarchyCache cache = new HierarchyCache(directory);
+		try {
+			// ============ Equivalence Partitions Tests ==============
+			// TC01: The first build stores the tree of the mesh
+			MeshFixtures.Mesh cells = MeshFixtures.grid(N, (i, j) -> 0);
+			assertGridHits(new Geometries(new OffHeapMesh(cells.vertices(), cells.indices())).build(cache));
+			List<Path> stored = files(directory);
+			assertEquals(1, stored.size(), "Wrong amount of cached trees");
+			long modified = Files.getLastModifiedTime(stored.get(0)).toMillis();
+
+			// TC02: An equal mesh creates its store from the cached tree
+			assertGridHits(new Geometries(new OffHeapMesh(cells.vertices(), cells.indices())).build(cache));
+			assertEquals(stored, files(directory), "The loaded tree was stored again");
+			assertEquals(modified, Files.getLastModifiedTime(stored.get(0)).toMillis(),
+					"The loaded tree was stored again");
+		} finally {
+			for (Path file : files(directory))
+				Files.delete(file);
+			Files.delete(directory);
+		}
+	}
+
+	/**
+	 * Test of the queries of an off-heap mesh after the given arrays are dropped
+	 * by the mesh - the arrays are overwritten, and the queries must still read
+	 * the mesh from its store.
+	 */
+	@Test
+	void testQueriesFromStore() {
+		MeshFixtures.Mesh cells = MeshFixtures.grid(N, (i, j) -> 0);
+		OffHeapMesh mesh = new OffHeapMesh(cells.vertices(), cells.indices());
+		new Geometries(mesh).build();
+		Arrays.fill(cells.vertices(), Double.NaN);
+		Arrays.fill(cells.indices(), 0);
+
+		// ============ Equivalence Partitions Tests ==============
+		// TC01: Closest hits
+		assertGridHits(mesh);
+		// TC02: All the intersections
+		var result = mesh.findIntersections(new Ray(new Point(3.7, 5.2, 1), new Vector(0, 0, -1)));
+		assertEquals(List.of(new Point(3.7, 5.2, 0)), result, "Wrong intersections");
+		// TC03: Normal at a point
+		assertEquals(new Vector(0, 0, 1), mesh.getNormal(new Point(3.7, 5.2, 0)), "Wrong normal of the mesh");
+		// TC04: Transparency
+		assertEquals(Double3.ZERO, mesh.findTransparency(new Ray(new Point(3.7, 5.2, 1), new Vector(0, 0, -1)), 2),
+				"Opaque mesh must block the ray");
+	}
+}
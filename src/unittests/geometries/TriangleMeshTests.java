@@ -0,0 +1,145 @@
+package unittests.geometries;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+import geometries.*;
+import primitives.*;
+
+/**
+ * Unit tests for geometries.TriangleMesh class
+ */
+class TriangleMeshTests {
+	/**
+	 * A mesh of a unit square in the plane z=1 made of two triangles sharing the
+	 * diagonal, and a third triangle in the plane x=2
+	 */
+	private final TriangleMesh mesh = new TriangleMesh(new double[] { //
+			0, 0, 1, 1, 0, 1, 1, 1, 1, 0, 1, 1, //
+			2, 0, 0, 2, 1, 0, 2, 0, 1 }, //
+			new int[] { 0, 1, 2, 0, 2, 3, 4, 5, 6 });
+
+	/**
+	 * Test method for {@link geometries.TriangleMesh#TriangleMesh(double[], int[])}.
+	 */
+	@Test
+	void testConstructor() {
+		// ============ Equivalence Partitions Tests ==============
+		// TC01: Correct mesh
+		assertEquals(3, mesh.getTriangleCount(), "Wrong amount of triangles");
+		assertEquals(7, mesh.getVertexCount(), "Wrong amount of vertices");
+
+		// =============== Boundary Values Tests ==================
+		// TC10: Vertex index out of range
+		assertThrows(IllegalArgumentException.class, () -> new TriangleMesh(new double[9], new int[] { 0, 1, 3 }),
+				"Constructed a mesh with a wrong vertex index");
+		// TC11: Incomplete triangle
+		assertThrows(IllegalArgumentException.class, () -> new TriangleMesh(new double[9], new int[] { 0, 1 }),
+				"Constructed a mesh with an incomplete triangle");
+	}
+
+	/**
+	 * Test method for {@link geometries.TriangleMesh#getNormal(primitives.Point)}.
+	 */
+	@Test
+	void testGetNormal() {
+		// ============ Equivalence Partitions Tests ==============
+		// TC01: Point on the first triangle
+		assertEquals(new Vector(0, 0, 1), mesh.getNormal(new Point(0.7, 0.2, 1)), "Wrong normal of the square");
+		// TC02: Point on the third triangle
+		assertEquals(new Vector(1, 0, 0), mesh.getNormal(new Point(2, 0.2, 0.2)), "Wrong normal of the side");
+		// TC03: Point outside the mesh
+		assertThrows(IllegalArgumentException.class, () -> mesh.getNormal(new Point(0.5, 0.5, 3)),
+				"Found a normal of a point outside the mesh");
+	}
+
+	/**
+	 * Test method for
+	 * {@link geometries.Intersectable#findIntersections(primitives.Ray)}.
+	 */
+	@Test
+	void testFindIntersections() {
+		// ============ Equivalence Partitions Tests ==============
+		// TC01: Ray crosses the second triangle
+		var result = mesh.findIntersections(new Ray(Point.ZERO, new Vector(0.2, 0.7, 1)));
+		assertEquals(1, result.size(), "Wrong number of points");
+		assertEquals(new Point(0.2, 0.7, 1), result.get(0), "Wrong intersection point");
+		// TC02: Ray crosses two triangles of the mesh
+		result = mesh.findIntersections(new Ray(new Point(0.5, 0.2, 1.1), new Vector(1, 0, -0.5)));
+		assertEquals(2, result.size(), "Wrong number of points");
+		// TC03: Ray misses the mesh
+		assertNull(mesh.findIntersections(new Ray(Point.ZERO, new Vector(-1, 0, 1))), "Expected no intersections");
+
+		// =============== Boundary Values Tests ==================
+		// TC10: Ray crosses the shared diagonal - the triangles' edges aren't intersected
+		assertNull(mesh.findIntersections(new Ray(Point.ZERO, new Vector(0.5, 0.5, 1))),
+				"Expected no intersections on an edge");
+		// TC11: Ray parallel to the square
+		assertNull(mesh.findIntersections(new Ray(new Point(0, 0, 2), new Vector(1, 1, 0))),
+				"Expected no intersections of a parallel ray");
+	}
+
+	/**
+	 * Test method for
+	 * {@link geometries.Intersectable#findClosestHit(primitives.Ray, geometries.Intersectable.GeoPoint)}.
+	 */
+	@Test
+	void testFindClosestHit() {
+		Intersectable.GeoPoint hit = new Intersectable.GeoPoint();
+
+		// ============ Equivalence Partitions Tests ==============
+		// TC01: The closest of two triangles, its normal is taken from the hit
+		assertTrue(mesh.findClosestHit(new Ray(new Point(0.5, 0.2, 1.1), new Vector(1, 0, -0.5)),
+				hit.reset(Double.POSITIVE_INFINITY)), "Expected a hit");
+		assertEquals(new Point(0.7, 0.2, 1), hit.point, "Wrong point of the hit");
+		assertEquals(new Vector(0, 0, 1), hit.getNormal(), "Wrong normal of the hit");
+		assertEquals(0, hit.primitive, "Wrong triangle of the hit");
+
+		// TC02: A big grid of triangles (its hierarchy is built in parallel by each
+		// method), the hit triangle is found by the cell
+		int n = 260;
+		MeshFixtures.Mesh cells = MeshFixtures.grid(n, (i, j) -> 0);
+		for (BuildMethod method : BuildMethod.values()) {
+			TriangleMesh grid = new TriangleMesh(cells.vertices(), cells.indices(), method);
+			for (int i = 0; i < n; i += 37)
+				for (int j = 0; j < n; j += 41) {
+					assertTrue(grid.findClosestHit(new Ray(new Point(j + 0.7, i + 0.2, 1), new Vector(0, 0, -1)),
+							hit.reset(Double.POSITIVE_INFINITY)), "Expected a hit of the grid");
+					assertEquals(2 * (i * n + j), hit.primitive, "Wrong triangle of the grid");
+					assertEquals(new Point(j + 0.7, i + 0.2, 0), hit.point, "Wrong point of the grid's hit");
+				}
+		}
+	}
+
+	/**
+	 * Test method for
+	 * {@link geometries.Intersectable#findTransparency(primitives.Ray, double)}.
+	 */
+	@Test
+	void testFindTransparency() {
+		TriangleMesh glass = new TriangleMesh(new double[] { //
+				0, 0, 1, 1, 0, 1, 1, 1, 1, 0, 1, 1, //
+				2, 0, 0, 2, 1, 0, 2, 0, 1 }, //
+				new int[] { 0, 1, 2, 0, 2, 3, 4, 5, 6 });
+		glass.setMaterial(new Material().setKt(0.5));
+		Ray ray = new Ray(new Point(0.5, 0.2, 1.1), new Vector(1, 0, -0.5));
+
+		// ============ Equivalence Partitions Tests ==============
+		// TC01: Ray crosses two triangles of the mesh
+		assertEquals(new Double3(0.25), glass.findTransparency(ray, 10), "Wrong transparency of two triangles");
+		// TC02: The second triangle is beyond the distance
+		assertEquals(new Double3(0.5), glass.findTransparency(ray, 1), "Wrong transparency of one triangle");
+		// TC03: Ray misses the mesh
+		assertEquals(Double3.ONE, glass.findTransparency(new Ray(Point.ZERO, new Vector(-1, 0, 1)), 10),
+				"Expected full transparency");
+
+		// =============== Boundary Values Tests ==================
+		// TC10: An opaque mesh blocks the ray
+		assertEquals(Double3.ZERO, mesh.findTransparency(ray, 10), "Opaque mesh must block the ray");
+		// TC11: The transparency falls below the threshold - the ray is blocked
+		assertEquals(Double3.ZERO, glass.findTransparency(ray, 10, 0.3), "Expected the ray to be blocked");
+		// TC12: The transparency equals the threshold
+		assertEquals(new Double3(0.25), glass.findTransparency(ray, 10, 0.25), "Wrong transparency at threshold");
+	}
+}
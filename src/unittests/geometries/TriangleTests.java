@@ -83,4 +83,28 @@ class TriangleTests {
 		assertNull(triangle.findIntersections(ray6),
 				"Intersection on a continuation of one of the sides of the triangle");
 	}
-}
\ No newline at end of file
+
+	/**
+	 * Test method for
+	 * {@link geometries.Intersectable#findClosestHit(primitives.Ray, geometries.Intersectable.GeoPoint)}.
+	 */
+	@Test
+	void testFindClosestHit() {
+		Triangle triangle = new Triangle(new Point(0, 0, 1), new Point(1, 0, 1), new Point(0, 1, 1));
+		Intersectable.GeoPoint hit = new Intersectable.GeoPoint();
+
+		// ============ Equivalence Partitions Tests ==============
+		// TC01: The hit holds the distance and the barycentric coordinates
+		assertTrue(triangle.findClosestHit(new Ray(new Point(0.25, 0.5, 0), new Vector(0, 0, 1)),
+				hit.reset(Double.POSITIVE_INFINITY)), "Expected a hit");
+		assertEquals(new Point(0.25, 0.5, 1), hit.point, "Wrong point of the hit");
+		assertEquals(1, hit.t, 1e-10, "Wrong distance of the hit");
+		assertEquals(0.25, hit.u, 1e-10, "Wrong barycentric coordinate of the second vertex");
+		assertEquals(0.5, hit.v, 1e-10, "Wrong barycentric coordinate of the third vertex");
+
+		// =============== Boundary Values Tests ==================
+		// TC10: The triangle is at the maximal distance
+		assertFalse(triangle.findClosestHit(new Ray(new Point(0.25, 0.5, 0), new Vector(0, 0, 1)), hit.reset(1)),
+				"Expected no hit at the maximal distance");
+	}
+}
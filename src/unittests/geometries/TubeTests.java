@@ -2,6 +2,8 @@ package unittests.geometries;
 
 import static org.junit.jupiter.api.Assertions.*;
 
+import java.util.List;
+
 import org.junit.jupiter.api.Test;
 import primitives.*;
 import geometries.*;
@@ -37,63 +39,50 @@ class TubeTests {
 		assertEquals(expectedNormalNearAxis, tube.getNormal(nearAxisPoint), "Bad normal to tube near the axis");
 
 	}
-//        /**
-//         * Test method for {@link geometries.Tube#findIntersections(primitives.Ray)}.
-//         */
-//        @Test
-//        public void testFindIntersections() {
-//            // Create a tube
-//            Ray axisRay = new Ray(new Point(1, 1, 1), new Vector(0, 0, 1));
-//            Tube tube = new Tube(1.0, axisRay);
-//
-//            // ============ Equivalence Partitions Tests ==============
-//            // TC01: Ray intersects the tube (2 points)
-//            Point p1 = new Point(2, 1, 2);
-//            Point p2 = new Point(0, 1, 2);
-//            List<Point> result1 = tube.findIntersections(new Ray(new Point(1, 1, 2), new Vector(1, 0, 0)));
-//            assertEquals(2, result1.size(), "Wrong number of points");
-//            assertTrue(result1.contains(p1) && result1.contains(p2), "Ray intersects the tube");
-//
-//            // TC02: Ray is parallel to the tube axis and outside the tube (0 points)
-//            assertNull(tube.findIntersections(new Ray(new Point(3, 1, 2), new Vector(0, 0, 1))), 
-//                    "Ray is parallel to the tube axis and outside the tube");
-//
-//            // TC03: Ray is parallel to the tube axis and inside the tube (0 points)
-//            assertNull(tube.findIntersections(new Ray(new Point(1.5, 1, 2), new Vector(0, 0, 1))), 
-//                    "Ray is parallel to the tube axis and inside the tube");
-//
-//            // =============== Boundary Values Tests ==================
-//            // TC11: Ray intersects the tube tangentially (1 point)
-//            Point p3 = new Point(2, 1, 1);
-//            List<Point> result2 = tube.findIntersections(new Ray(new Point(2, 0, 1), new Vector(0, 1, 0)));
-//            assertEquals(1, result2.size(), "Wrong number of points");
-//            assertEquals(List.of(p3), result2, "Ray intersects the tube tangentially");
-//
-//            // TC12: Ray starts inside the tube and goes outside (1 point)
-//            Point p4 = new Point(2, 1, 2);
-//            List<Point> result3 = tube.findIntersections(new Ray(new Point(1.5, 1, 2), new Vector(1, 0, 0)));
-//            assertEquals(1, result3.size(), "Wrong number of points");
-//            assertEquals(List.of(p4), result3, "Ray starts inside the tube and goes outside");
-//
-//            // TC13: Ray starts on the surface of the tube and goes outside (0 points)
-//            assertNull(tube.findIntersections(new Ray(new Point(2, 1, 2), new Vector(1, 0, 0))),
-//                    "Ray starts on the surface of the tube and goes outside");
-//
-//            // TC14: Ray starts on the surface of the tube and goes inside (1 point)
-//            Point p5 = new Point(0, 1, 2);
-//            List<Point> result4 = tube.findIntersections(new Ray(new Point(2, 1, 2), new Vector(-1, 0, 0)));
-//            assertEquals(1, result4.size(), "Wrong number of points");
-//            assertEquals(List.of(p5), result4, "Ray starts on the surface of the tube and goes inside");
-//
-//            // TC15: Ray is orthogonal to the tube axis and intersects the tube at two points (2 points)
-//            Point p6 = new Point(2, 1, 3);
-//            Point p7 = new Point(0, 1, 3);
-//            List<Point> result5 = tube.findIntersections(new Ray(new Point(1, 1, 3), new Vector(1, 0, 0)));
-//            assertEquals(2, result5.size(), "Wrong number of points");
-//            assertTrue(result5.contains(p6) && result5.contains(p7), "Ray is orthogonal to the tube axis and intersects the tube at two points");
-//
-//            // TC16: Ray is orthogonal to the tube axis and misses the tube (0 points)
-//            assertNull(tube.findIntersections(new Ray(new Point(1, 3, 3), new Vector(1, 0, 0))),
-//                    "Ray is orthogonal to the tube axis and misses the tube");
-//        }
+	/**
+	 * Test method for {@link geometries.Tube#findIntersections(primitives.Ray)}.
+	 */
+	@Test
+	void testFindIntersections() {
+		Tube tube = new Tube(1, new Ray(new Point(1, 1, 1), new Vector(0, 0, 1)));
+
+		// ============ Equivalence Partitions Tests ==============
+		// TC01: Ray misses the tube (0 points)
+		assertNull(tube.findIntersections(new Ray(new Point(3, 3, 0), new Vector(1, 0, 1))), "Ray misses the tube");
+		// TC02: Ray crosses the tube (2 points)
+		var result = tube.findIntersections(new Ray(new Point(-1, 1, 2), new Vector(1, 0, 1)));
+		assertEquals(List.of(new Point(0, 1, 3), new Point(2, 1, 5)), result, "Ray crosses the tube");
+		// TC03: Ray starts inside the tube (1 point)
+		result = tube.findIntersections(new Ray(new Point(1, 1, 2), new Vector(1, 0, 1)));
+		assertEquals(List.of(new Point(2, 1, 3)), result, "Ray starts inside the tube");
+		// TC04: Ray starts after the tube (0 points)
+		assertNull(tube.findIntersections(new Ray(new Point(3, 1, 2), new Vector(1, 0, 1))),
+				"Ray starts after the tube");
+
+		// =============== Boundary Values Tests ==================
+		// **** Group: Ray is parallel to the axis
+		// TC10: Ray inside the tube (0 points)
+		assertNull(tube.findIntersections(new Ray(new Point(1.5, 1, 2), new Vector(0, 0, 1))),
+				"Ray parallel to the axis inside the tube");
+		// TC11: Ray on the tube's surface (0 points)
+		assertNull(tube.findIntersections(new Ray(new Point(2, 1, 2), new Vector(0, 0, -1))),
+				"Ray parallel to the axis on the tube's surface");
+		// **** Group: Ray is orthogonal to the axis
+		// TC12: Ray crosses the axis (2 points)
+		result = tube.findIntersections(new Ray(new Point(1, -1, 3), new Vector(0, 1, 0)));
+		assertEquals(List.of(new Point(1, 0, 3), new Point(1, 2, 3)), result, "Ray crosses the axis");
+		// TC13: Ray starts at the axis (1 point)
+		result = tube.findIntersections(new Ray(new Point(1, 1, 3), new Vector(0, 1, 0)));
+		assertEquals(List.of(new Point(1, 2, 3)), result, "Ray starts at the axis");
+		// **** Group: Ray starts on the tube's surface
+		// TC14: Ray goes inside (1 point)
+		result = tube.findIntersections(new Ray(new Point(2, 1, 2), new Vector(-1, 0, 0)));
+		assertEquals(List.of(new Point(0, 1, 2)), result, "Ray starts on the surface and goes inside");
+		// TC15: Ray goes outside (0 points)
+		assertNull(tube.findIntersections(new Ray(new Point(2, 1, 2), new Vector(1, 0, 0))),
+				"Ray starts on the surface and goes outside");
+		// TC16: Ray is tangent to the tube (0 points)
+		assertNull(tube.findIntersections(new Ray(new Point(2, 0, 2), new Vector(0, 1, 0))),
+				"Ray tangent to the tube");
+	}
 }
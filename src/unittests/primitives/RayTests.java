@@ -13,6 +13,22 @@ import primitives.*;
  */
 class RayTests {
 
+	/**
+	 * Test method for
+	 * {@link primitives.Ray#Ray(primitives.Point, double, double, double)}.
+	 */
+	@Test
+	void testConstructorByCoordinates() {
+		// ============ Equivalence Partitions Tests ==============
+		// TC01: The direction is normalized as by a direction vector
+		Point p0 = new Point(1, 2, 3);
+		assertEquals(new Ray(p0, new Vector(3, -4, 12)), new Ray(p0, 3, -4, 12), "Wrong ray by coordinates");
+
+		// =============== Boundary Values Tests ==================
+		// TC10: Zero direction
+		assertThrows(IllegalArgumentException.class, () -> new Ray(p0, 0, 0, 0), "Constructed a zero direction");
+	}
+
 	/**
 	 * Test the getPoint method for various distances: - Positive distance -
 	 * Negative distance - Zero distance (boundary case)
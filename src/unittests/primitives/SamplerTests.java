@@ -0,0 +1,59 @@
+package unittests.primitives;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+import primitives.Sampler;
+
+/**
+ * Unit tests for primitives.Sampler interface
+ */
+class SamplerTests {
+
+	/**
+	 * Counts the points of a set in each cell of a grid over the unit square
+	 *
+	 * @param points the points - 2 coordinates per point
+	 * @param side   the amount of cells along an edge of the square
+	 * @return the amount of points per cell
+	 */
+	private static int[] countCells(double[] points, int side) {
+		int[] cells = new int[side * side];
+		for (int i = 0; i < points.length; i += 2) {
+			assertTrue(points[i] >= 0 && points[i] < 1, "Point x is out of the unit square");
+			assertTrue(points[i + 1] >= 0 && points[i + 1] < 1, "Point y is out of the unit square");
+			++cells[(int) (points[i + 1] * side) * side + (int) (points[i] * side)];
+		}
+		return cells;
+	}
+
+	/**
+	 * Test method for {@link primitives.Sampler#generate(int)}.
+	 */
+	@Test
+	void testGenerate() {
+		// ============ Equivalence Partitions Tests ==============
+		// TC01: Jittered - a point in each cell of the grid
+		for (int count : countCells(Sampler.JITTERED.generate(16), 4))
+			assertEquals(1, count, "Jittered points must be one per cell");
+		// TC02: Sobol - a power of 2 amount of points is one per cell of the grid
+		for (int count : countCells(Sampler.SOBOL.generate(64), 8))
+			assertEquals(1, count, "Sobol points must be one per cell");
+		// TC03: Halton - all the points are in the unit square
+		assertEquals(60, Sampler.HALTON.generate(30).length, "Bad amount of Halton coordinates");
+		countCells(Sampler.HALTON.generate(30), 1);
+
+		// =============== Boundary Values Tests ==================
+		// TC10: Jittered with a non-square amount - a point in each column and each row
+		int count = 7;
+		double[] points = Sampler.JITTERED.generate(count);
+		boolean[] columns = new boolean[count], rows = new boolean[count];
+		for (int i = 0; i < count; ++i) {
+			columns[(int) (points[2 * i] * count)] = true;
+			rows[(int) (points[2 * i + 1] * count)] = true;
+		}
+		for (int i = 0; i < count; ++i)
+			assertTrue(columns[i] && rows[i], "Jittered points must be one per column and per row");
+	}
+}
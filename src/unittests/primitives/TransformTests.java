@@ -0,0 +1,84 @@
+package unittests.primitives;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+import primitives.*;
+
+/**
+ * Unit tests for primitives.Transform class
+ */
+class TransformTests {
+	/** A point for the tests */
+	private final Point point = new Point(1, 2, 3);
+
+	/**
+	 * Asserts that two points are equal up to a small delta
+	 *
+	 * @param expected the expected point
+	 * @param actual   the actual point
+	 * @param message  the failure message
+	 */
+	private static void assertPoint(Point expected, Point actual, String message) {
+		assertEquals(0, expected.distance(actual), 1e-10, message);
+	}
+
+	/**
+	 * Test method for {@link primitives.Transform#transform(primitives.Point)}.
+	 */
+	@Test
+	void testTransform() {
+		// ============ Equivalence Partitions Tests ==============
+		// TC01: Translation
+		assertPoint(new Point(2, 1, 4), Transform.translation(new Vector(1, -1, 1)).transform(point),
+				"Wrong translated point");
+		// TC02: Scaling
+		assertPoint(new Point(2, -2, 9), Transform.scaling(2, -1, 3).transform(point), "Wrong scaled point");
+		// TC03: Rotation by 90 degrees around the z axis
+		assertPoint(new Point(-2, 1, 3), Transform.rotation(new Vector(0, 0, 1), 90).transform(point),
+				"Wrong rotated point");
+		// TC04: Combined transforms are applied in order
+		assertPoint(new Point(4, 3, 7),
+				Transform.scaling(2).then(Transform.translation(new Vector(2, -1, 1))).transform(point),
+				"Wrong combined transform");
+
+		// =============== Boundary Values Tests ==================
+		// TC10: Identity
+		assertPoint(point, Transform.IDENTITY.transform(point), "Identity changed the point");
+		// TC11: Singular scaling
+		assertThrows(IllegalArgumentException.class, () -> Transform.scaling(1, 0, 1), "Created a singular transform");
+	}
+
+	/**
+	 * Test method for
+	 * {@link primitives.Transform#inverseTransform(primitives.Point)}.
+	 */
+	@Test
+	void testInverseTransform() {
+		// ============ Equivalence Partitions Tests ==============
+		// TC01: The inverse of a combined transform returns the point
+		Transform transform = Transform.rotation(new Vector(1, 2, 3), 37).then(Transform.scaling(2, 3, 0.5))
+				.then(Transform.translation(new Vector(-4, 5, 6)));
+		assertPoint(point, transform.inverseTransform(transform.transform(point)), "Wrong inverse transform");
+		// TC02: The inverse direction is scaled by the inverse scaling
+		assertEquals(new Vector(0.5, 0, 0), Transform.scaling(2).inverseTransformDirection(new Vector(1, 0, 0)),
+				"Wrong inverse direction");
+	}
+
+	/**
+	 * Test method for
+	 * {@link primitives.Transform#transformNormal(primitives.Vector)}.
+	 */
+	@Test
+	void testTransformNormal() {
+		// ============ Equivalence Partitions Tests ==============
+		// TC01: A normal of the plane x+y=0 stays orthogonal to it after the plane is
+		// stretched along x
+		Transform transform = Transform.scaling(2, 1, 1);
+		Vector normal = transform.transformNormal(new Vector(1, 1, 0).normalize());
+		Vector inPlane = transform.transform(new Point(1, -1, 0)).subtract(Point.ZERO);
+		assertEquals(0, normal.dotProduct(inPlane), 1e-10, "The normal isn't orthogonal to the surface");
+		assertEquals(1, normal.length(), 1e-10, "The normal isn't a unit vector");
+	}
+}
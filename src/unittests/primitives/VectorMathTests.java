@@ -0,0 +1,30 @@
+package unittests.primitives;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+import primitives.Vector;
+import primitives.VectorMath;
+
+/**
+ * Unit tests for primitives.VectorMath class
+ */
+class VectorMathTests {
+
+	/**
+	 * Test method for {@link primitives.VectorMath#normalized(double, double, double)}.
+	 */
+	@Test
+	void testNormalized() {
+		// ============ Equivalence Partitions Tests ==============
+		// TC01: The unit vector is identical to the normalized vector
+		assertEquals(new Vector(3, -4, 12).normalize(), VectorMath.normalized(3, -4, 12),
+				"ERROR: the raw vector is normalized differently");
+
+		// =============== Boundary Values Tests ==================
+		// TC10: The zero vector can't be normalized
+		assertThrows(IllegalArgumentException.class, () -> VectorMath.normalized(0, 0, 0),
+				"ERROR: does not throw exception for normalizing the zero vector");
+	}
+}
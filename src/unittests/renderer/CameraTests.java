@@ -1,6 +1,9 @@
 package unittests.renderer;
 
-import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
 
 import org.junit.jupiter.api.Test;
 
@@ -14,6 +17,9 @@ import scene.Scene;
  * @author Dan
  */
 class CameraTests {
+	/** The allowed difference between the coordinates of the rays' directions */
+	private static final double DELTA = 1e-12;
+
 	/** Camera builder for the tests */
 	private final Camera.Builder cameraBuilder = Camera.getBuilder()
 			.setRayTracer(new SimpleRayTracer(new Scene("Test"))).setImageWriter(new ImageWriter("Test", 1, 1))
@@ -52,4 +58,89 @@ class CameraTests {
 		assertEquals(new Ray(Point.ZERO, new Vector(2, -2, -10)), camera2.constructRay(3, 3, 0, 0), badRay);
 	}
 
+	/**
+	 * Test method for {@link renderer.Camera#renderImage()} - the rays cast through
+	 * the pixels (by each packet size) are the rays of
+	 * {@link renderer.Camera#constructRay(int, int, int, int)}.
+	 */
+	@Test
+	void testRenderImageRays() {
+		// Samples at the centers of the 3x3 cells of a pixel - the rays through them
+		// are the rays through the pixels of a 3 times finer view plane
+		Sampler thirds = (count, points) -> {
+			for (int k = 0; k < count; ++k) {
+				points[2 * k] = (k % 3 + 0.5) / 3;
+				points[2 * k + 1] = (k / 3 + 0.5) / 3;
+			}
+		};
+		for (int packetSize : new int[] { 1, 2, 4 })
+			// Even and odd amounts of columns and rows
+			for (int[] size : new int[][] { { 4, 7 }, { 5, 6 } }) {
+				int nX = size[0], nY = size[1];
+				// ============ Equivalence Partitions Tests ==============
+				// TC01: A ray through the center of each pixel
+				RecordingRayTracer tracer = new RecordingRayTracer();
+				Camera camera = cameraBuilder.setVpSize(8, 6).setImageWriter(new ImageWriter("Test", nX, nY))
+						.setRayTracer(tracer).setPacketSize(packetSize).setSuperSampling(1).build();
+				camera.renderImage();
+				assertRays(camera, tracer.rays, nX, nY);
+
+				// TC02: Super-sampling rays through the sample points of each pixel
+				tracer = new RecordingRayTracer();
+				camera = cameraBuilder.setRayTracer(tracer).setSuperSampling(9).setSampler(thirds).build();
+				camera.renderImage();
+				assertRays(camera, tracer.rays, 3 * nX, 3 * nY);
+			}
+	}
+
+	/**
+	 * Ray tracer recording the traced rays
+	 */
+	private static class RecordingRayTracer extends RayTracerBase {
+		/** The traced rays */
+		private final List<Ray> rays = new ArrayList<>();
+
+		/**
+		 * Constructs a recording ray tracer of an empty scene
+		 */
+		RecordingRayTracer() {
+			super(new Scene("Test"));
+		}
+
+		@Override
+		public synchronized Color traceRay(Ray ray) {
+			rays.add(ray);
+			return Color.BLACK;
+		}
+	}
+
+	/**
+	 * Checks that the rays cast by rendering an image are the rays constructed
+	 * through the pixels of a view plane, each one once
+	 *
+	 * @param camera the camera, constructing the expected rays
+	 * @param cast   the rays cast by the rendering
+	 * @param nX     number of columns of the expected rays
+	 * @param nY     number of rows of the expected rays
+	 */
+	private static void assertRays(Camera camera, List<Ray> cast, int nX, int nY) {
+		assertEquals(nX * nY, cast.size(), "Wrong amount of rays");
+		List<Ray> remaining = new ArrayList<>(cast);
+		for (int i = 0; i < nY; ++i)
+			for (int j = 0; j < nX; ++j) {
+				Ray expected = camera.constructRay(nX, nY, j, i);
+				Vector v = expected.getDirection();
+				int found = -1;
+				for (int k = 0; k < remaining.size() && found < 0; ++k) {
+					Ray ray = remaining.get(k);
+					Vector u = ray.getDirection();
+					if (ray.getHead().equals(expected.getHead()) && Math.abs(u.getX() - v.getX()) < DELTA
+							&& Math.abs(u.getY() - v.getY()) < DELTA && Math.abs(u.getZ() - v.getZ()) < DELTA)
+						found = k;
+				}
+				assertTrue(found >= 0, "No ray cast through the pixel (" + j + ", " + i + ") of " + nX + "x" + nY);
+				remaining.remove(found);
+			}
+	}
+
 }
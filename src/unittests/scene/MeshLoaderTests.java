@@ -0,0 +1,253 @@
+package unittests.scene;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+import geometries.Intersectable.GeoPoint;
+import geometries.TriangleMesh;
+import primitives.*;
+import scene.MeshLoader;
+
+/**
+ * Unit tests for scene.MeshLoader class
+ */
+class MeshLoaderTests {
+	/**
+	 * Writes data into a temporary file
+	 *
+	 * @param suffix the file name suffix
+	 * @param data   the data
+	 * @return the path of the file
+	 * @throws IOException on an I/O error
+	 */
+	private static Path write(String suffix, byte[] data) throws IOException {
+		Path path = Files.createTempFile("mesh", suffix);
+		path.toFile().deleteOnExit();
+		return Files.write(path, data);
+	}
+
+	/**
+	 * Writes a binary PLY file of a unit square at z=1, given as a single quad or
+	 * as two triangles, with an extra vertex property and an extra element
+	 *
+	 * @param order the byte order of the file
+	 * @param quad  true for a single quad face, false for two triangle faces
+	 * @return the path of the file
+	 * @throws IOException on an I/O error
+	 */
+	private static Path writePly(ByteOrder order, boolean quad) throws IOException {
+		String header = "ply\nformat " + (order == ByteOrder.LITTLE_ENDIAN ? "binary_little_endian" : "binary_big_endian")
+				+ " 1.0\ncomment test\nelement vertex 4\nproperty float x\nproperty float y\nproperty double z\n"
+				+ "property uchar red\nelement face " + (quad ? 1 : 2) + "\nproperty list uchar int vertex_indices\n"
+				+ "element edge 1\nproperty int vertex1\nproperty int vertex2\nend_header\n";
+		byte[] text = header.getBytes(StandardCharsets.US_ASCII);
+		ByteBuffer data = ByteBuffer.allocate(text.length + 4 * 17 + 2 * 13 + 8).order(order);
+		data.put(text);
+		float[] xy = { 0, 0, 1, 0, 1, 1, 0, 1 };
+		for (int i = 0; i < 4; ++i)
+			data.putFloat(xy[2 * i]).putFloat(xy[2 * i + 1]).putDouble(1).put((byte) 255);
+		if (quad)
+			data.put((byte) 4).putInt(0).putInt(1).putInt(2).putInt(3);
+		else
+			data.put((byte) 3).putInt(0).putInt(1).putInt(2).put((byte) 3).putInt(0).putInt(2).putInt(3);
+		data.putInt(0).putInt(1);
+		return write(".ply", Arrays.copyOf(data.array(), data.position()));
+	}
+
+	/**
+	 * Checks that a mesh is the unit square at z=1
+	 *
+	 * @param mesh the mesh
+	 */
+	private static void assertSquare(TriangleMesh mesh) {
+		assertEquals(4, mesh.getVertexCount(), "Wrong amount of vertices");
+		assertEquals(2, mesh.getTriangleCount(), "Wrong amount of triangles");
+		var result = mesh.findIntersections(new Ray(Point.ZERO, new Vector(0.2, 0.7, 1)));
+		assertEquals(new Point(0.2, 0.7, 1), result.get(0), "Wrong intersection with the square");
+		result = mesh.findIntersections(new Ray(Point.ZERO, new Vector(0.7, 0.2, 1)));
+		assertEquals(new Point(0.7, 0.2, 1), result.get(0), "Wrong intersection with the square");
+	}
+
+	/**
+	 * Size of the generated large files, large enough for the loader to split
+	 * them into several chunks (of at least 1 MB each)
+	 */
+	private static final long LARGE_FILE_SIZE = 4 << 20;
+	/** Amount of the cells along each side of the grid in the large files */
+	private static final int GRID = 400;
+
+	/**
+	 * Writes a Wavefront OBJ file of a grid of {@link #GRID} x {@link #GRID}
+	 * square cells at z=1, each cell given as a quad face. The vertex of row i and
+	 * column j is at (j, i, 1). The faces of each row of cells follow the vertices
+	 * of the row above it, so they always refer back to the vertices of the
+	 * previous two rows - wherever the file is split into chunks, the faces at the
+	 * start of a chunk refer to vertices of the previous chunk. The faces of the
+	 * even columns use relative (negative) indices, the others use absolute ones.
+	 *
+	 * @return the path of the file
+	 * @throws IOException on an I/O error
+	 */
+	private static Path writeGridObj() throws IOException {
+		int n = GRID, row = n + 1;
+		StringBuilder obj = new StringBuilder("# grid\n");
+		for (int i = 0; i <= n; ++i) {
+			for (int j = 0; j <= n; ++j)
+				obj.append("v ").append(j).append(".0 ").append(i).append(".0 1.0\n");
+			if (i == 0)
+				continue;
+			int count = (i + 1) * row;
+			for (int j = 0; j < n; ++j) {
+				int p = (i - 1) * row + j;
+				int[] face = { p, p + 1, p + row + 1, p + row };
+				obj.append('f');
+				for (int vertex : face)
+					obj.append(' ').append(j % 2 == 0 ? vertex - count : vertex + 1).append("/1");
+				obj.append('\n');
+			}
+		}
+		return write(".obj", obj.toString().getBytes(StandardCharsets.US_ASCII));
+	}
+
+	/**
+	 * Writes a binary PLY file of a grid of {@link #GRID} x {@link #GRID} square
+	 * cells at z=1, each cell given as two triangle faces. The vertex of row i and
+	 * column j is at (j, i, 1).
+	 *
+	 * @param quad true for giving the last cell as a single quad face
+	 * @return the path of the file
+	 * @throws IOException on an I/O error
+	 */
+	private static Path writeGridPly(boolean quad) throws IOException {
+		int n = GRID, row = n + 1, faces = 2 * n * n - (quad ? 1 : 0);
+		byte[] header = ("ply\nformat binary_little_endian 1.0\nelement vertex " + row * row
+				+ "\nproperty float x\nproperty float y\nproperty float z\nelement face " + faces
+				+ "\nproperty list uchar int vertex_indices\nend_header\n").getBytes(StandardCharsets.US_ASCII);
+		ByteBuffer data = ByteBuffer.allocate(header.length + 12 * row * row + 13 * faces + (quad ? 4 : 0))
+				.order(ByteOrder.LITTLE_ENDIAN);
+		data.put(header);
+		for (int i = 0; i <= n; ++i)
+			for (int j = 0; j <= n; ++j)
+				data.putFloat(j).putFloat(i).putFloat(1);
+		for (int i = 0; i < n; ++i)
+			for (int j = 0; j < n; ++j) {
+				int p = i * row + j;
+				if (quad && i == n - 1 && j == n - 1)
+					data.put((byte) 4).putInt(p).putInt(p + 1).putInt(p + row + 1).putInt(p + row);
+				else
+					data.put((byte) 3).putInt(p).putInt(p + 1).putInt(p + row + 1) //
+							.put((byte) 3).putInt(p).putInt(p + row + 1).putInt(p + row);
+			}
+		return write(".ply", data.array());
+	}
+
+	/**
+	 * Checks that a mesh is the grid of the large files, with the triangles in
+	 * the order of the cells - the cell of row i and column j is made of the
+	 * triangles 2 * (i * n + j) and 2 * (i * n + j) + 1
+	 *
+	 * @param mesh the mesh
+	 */
+	private static void assertGrid(TriangleMesh mesh) {
+		int n = GRID;
+		assertEquals((n + 1) * (n + 1), mesh.getVertexCount(), "Wrong amount of vertices");
+		assertEquals(2 * n * n, mesh.getTriangleCount(), "Wrong amount of triangles");
+		GeoPoint hit = new GeoPoint();
+		for (int i = 0; i < n; ++i)
+			for (int j = 0; j < n; ++j) {
+				assertTrue(mesh.findClosestHit(new Ray(new Point(j + 0.7, i + 0.2, 2), new Vector(0, 0, -1)),
+						hit.reset(Double.POSITIVE_INFINITY)), "Expected a hit of the grid");
+				assertEquals(2 * (i * n + j), hit.primitive, "Wrong triangle of the grid");
+				assertTrue(mesh.findClosestHit(new Ray(new Point(j + 0.2, i + 0.7, 2), new Vector(0, 0, -1)),
+						hit.reset(Double.POSITIVE_INFINITY)), "Expected a hit of the grid");
+				assertEquals(2 * (i * n + j) + 1, hit.primitive, "Wrong triangle of the grid");
+			}
+	}
+
+	/**
+	 * Test method for {@link scene.MeshLoader#loadObj(java.nio.file.Path)}.
+	 *
+	 * @throws IOException on an I/O error
+	 */
+	@Test
+	void testLoadObj() throws IOException {
+		// ============ Equivalence Partitions Tests ==============
+		// TC01: A quad face with texture and normal references
+		String obj = "# square\no square\nv 0 0 1\nv 1.0 0 1e0\nv 1 1 1\nv 0 1 1.0 1.0\nvn 0 0 1\n"
+				+ "f 1//1 2//1 3//1 4//1\n";
+		assertSquare(MeshLoader.loadObj(write(".obj", obj.getBytes(StandardCharsets.US_ASCII))));
+		// TC02: Triangle faces with relative (negative) indices and Windows line ends
+		obj = "v 0 0 1\r\nv 1 0 1\r\nv 1 1 1\r\nf -3 -2 -1\r\nv 0 1 1\r\nf 1/1 3/3 -1/4\r\n";
+		assertSquare(MeshLoader.load(write(".obj", obj.getBytes(StandardCharsets.US_ASCII))));
+
+		// =============== Boundary Values Tests ==================
+		// TC10: Malformed number
+		Path malformed = write(".obj", "v 0 0 1\nv 1 x 1\n".getBytes(StandardCharsets.US_ASCII));
+		assertThrows(IllegalArgumentException.class, () -> MeshLoader.loadObj(malformed), "Loaded a malformed file");
+		// TC11: Face with less than 3 vertices
+		Path line = write(".obj", "v 0 0 1\nv 1 0 1\nf 1 2\n".getBytes(StandardCharsets.US_ASCII));
+		assertThrows(IllegalArgumentException.class, () -> MeshLoader.loadObj(line), "Loaded a degenerate face");
+	}
+
+	/**
+	 * Test method for {@link scene.MeshLoader#loadPly(java.nio.file.Path)}.
+	 *
+	 * @throws IOException on an I/O error
+	 */
+	@Test
+	void testLoadPly() throws IOException {
+		// ============ Equivalence Partitions Tests ==============
+		// TC01: Little endian triangles
+		assertSquare(MeshLoader.loadPly(writePly(ByteOrder.LITTLE_ENDIAN, false)));
+		// TC02: Big endian quad
+		assertSquare(MeshLoader.load(writePly(ByteOrder.BIG_ENDIAN, true)));
+
+		// =============== Boundary Values Tests ==================
+		// TC10: ASCII PLY isn't supported
+		Path ascii = write(".ply", "ply\nformat ascii 1.0\nend_header\n".getBytes(StandardCharsets.US_ASCII));
+		assertThrows(IllegalArgumentException.class, () -> MeshLoader.loadPly(ascii), "Loaded an ASCII PLY file");
+		// TC11: Negative amount of vertices
+		Path negative = write(".ply", ("ply\nformat binary_little_endian 1.0\nelement vertex -5\nproperty float x\n"
+				+ "property float y\nproperty float z\nend_header\n").getBytes(StandardCharsets.US_ASCII));
+		assertThrows(IllegalArgumentException.class, () -> MeshLoader.loadPly(negative),
+				"Loaded a negative amount of vertices");
+		// TC12: Negative amount of faces
+		Path faces = write(".ply", ("ply\nformat binary_little_endian 1.0\nelement vertex 0\nproperty float x\n"
+				+ "property float y\nproperty float z\nelement face -1\nproperty list uchar int vertex_indices\n"
+				+ "end_header\n").getBytes(StandardCharsets.US_ASCII));
+		assertThrows(IllegalArgumentException.class, () -> MeshLoader.loadPly(faces),
+				"Loaded a negative amount of faces");
+	}
+
+	/**
+	 * Test method for {@link scene.MeshLoader#load(java.nio.file.Path)} of files
+	 * parsed in several chunks.
+	 *
+	 * @throws IOException on an I/O error
+	 */
+	@Test
+	void testLoadLargeFiles() throws IOException {
+		// ============ Equivalence Partitions Tests ==============
+		// TC01: OBJ faces with relative indices to the vertices of previous chunks
+		Path obj = writeGridObj();
+		assertTrue(Files.size(obj) > LARGE_FILE_SIZE, "The OBJ file must be split into chunks");
+		assertGrid(MeshLoader.load(obj));
+		// TC02: PLY triangles read in parallel chunks
+		Path triangles = writeGridPly(false);
+		assertTrue(Files.size(triangles) > LARGE_FILE_SIZE, "The PLY file must be split into chunks");
+		assertGrid(MeshLoader.load(triangles));
+
+		// =============== Boundary Values Tests ==================
+		// TC10: A quad in the last chunk of PLY triangles
+		assertGrid(MeshLoader.load(writeGridPly(true)));
+	}
+}
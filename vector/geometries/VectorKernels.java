@@ -0,0 +1,106 @@
+package geometries;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * The kernels of {@link Kernels} by the incubating Vector API - the
+ * {@link Kernels#WIDTH} lanes of a batch are processed as a single vector of
+ * doubles. The operations are those of the scalar kernels, lane by lane, so the
+ * results are the same bit for bit.
+ * <br/>
+ * The class is loaded by {@link Kernels} only when the jdk.incubator.vector
+ * module is resolved. It is kept out of the project's source folder, so the
+ * project builds without the module, and it is compiled separately against the
+ * project's classes with that module added (see {@link Kernels}).
+ */
+final class VectorKernels implements Kernels.Batch {
+	/** The vectors of the lanes */
+	private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_256;
+	/** Magnitude below which a number is aligned to zero, see primitives.Util */
+	private static final double ZERO_BOUND = 0x1p-40;
+
+	/**
+	 * Constructs the kernels
+	 *
+	 * @throws UnsupportedOperationException if the platform has no vectors of
+	 *                                       {@link Kernels#WIDTH} doubles, which
+	 *                                       would leave the Vector API to its slow
+	 *                                       emulation
+	 */
+	VectorKernels() {
+		if (SPECIES.length() != Kernels.WIDTH || DoubleVector.SPECIES_PREFERRED.length() < Kernels.WIDTH)
+			throw new UnsupportedOperationException("No vectors of " + Kernels.WIDTH + " doubles");
+	}
+
+	/**
+	 * Aligns the lanes which are almost zero to zero, see
+	 * {@link primitives.Util#alignZero(double)}
+	 *
+	 * @param v the lanes
+	 * @return the aligned lanes
+	 */
+	private static DoubleVector alignZero(DoubleVector v) {
+		return v.blend(0.0, v.abs().lt(ZERO_BOUND));
+	}
+
+	@Override
+	public int intersectBoxes(double[] boxes, int offset, double x, double y, double z, double invX, double invY,
+			double invZ, double maxDistance, double[] distances) {
+		DoubleVector t1 = DoubleVector.fromArray(SPECIES, boxes, offset).sub(x).mul(invX);
+		DoubleVector t2 = DoubleVector.fromArray(SPECIES, boxes, offset + 3 * Kernels.WIDTH).sub(x).mul(invX);
+		DoubleVector near = t1.min(t2).max(0.0), far = t1.max(t2).min(maxDistance);
+		t1 = DoubleVector.fromArray(SPECIES, boxes, offset + Kernels.WIDTH).sub(y).mul(invY);
+		t2 = DoubleVector.fromArray(SPECIES, boxes, offset + 4 * Kernels.WIDTH).sub(y).mul(invY);
+		near = near.max(t1.min(t2));
+		far = far.min(t1.max(t2));
+		t1 = DoubleVector.fromArray(SPECIES, boxes, offset + 2 * Kernels.WIDTH).sub(z).mul(invZ);
+		t2 = DoubleVector.fromArray(SPECIES, boxes, offset + 5 * Kernels.WIDTH).sub(z).mul(invZ);
+		near = near.max(t1.min(t2));
+		far = far.min(t1.max(t2));
+		near.intoArray(distances, 0);
+		return (int) near.compare(VectorOperators.LE, far).toLong();
+	}
+
+	@Override
+	public int intersectTriangles(double[] packets, int offset, double hx, double hy, double hz, double vx,
+			double vy, double vz, double maxDistance, double[] results) {
+		DoubleVector e1x = DoubleVector.fromArray(SPECIES, packets, offset + 3 * Kernels.WIDTH);
+		DoubleVector e1y = DoubleVector.fromArray(SPECIES, packets, offset + 4 * Kernels.WIDTH);
+		DoubleVector e1z = DoubleVector.fromArray(SPECIES, packets, offset + 5 * Kernels.WIDTH);
+		DoubleVector e2x = DoubleVector.fromArray(SPECIES, packets, offset + 6 * Kernels.WIDTH);
+		DoubleVector e2y = DoubleVector.fromArray(SPECIES, packets, offset + 7 * Kernels.WIDTH);
+		DoubleVector e2z = DoubleVector.fromArray(SPECIES, packets, offset + 8 * Kernels.WIDTH);
+
+		// p = v x e2, the determinant is e1 * p
+		DoubleVector px = e2z.mul(vy).sub(e2y.mul(vz));
+		DoubleVector py = e2x.mul(vz).sub(e2z.mul(vx));
+		DoubleVector pz = e2y.mul(vx).sub(e2x.mul(vy));
+		DoubleVector inverse = DoubleVector.broadcast(SPECIES, 1)
+				.div(e1x.mul(px).add(e1y.mul(py)).add(e1z.mul(pz)));
+
+		DoubleVector sx = DoubleVector.broadcast(SPECIES, hx).sub(DoubleVector.fromArray(SPECIES, packets, offset));
+		DoubleVector sy = DoubleVector.broadcast(SPECIES, hy)
+				.sub(DoubleVector.fromArray(SPECIES, packets, offset + Kernels.WIDTH));
+		DoubleVector sz = DoubleVector.broadcast(SPECIES, hz)
+				.sub(DoubleVector.fromArray(SPECIES, packets, offset + 2 * Kernels.WIDTH));
+		DoubleVector u = alignZero(sx.mul(px).add(sy.mul(py)).add(sz.mul(pz)).mul(inverse));
+		// q = s x e1
+		DoubleVector qx = sy.mul(e1z).sub(sz.mul(e1y));
+		DoubleVector qy = sz.mul(e1x).sub(sx.mul(e1z));
+		DoubleVector qz = sx.mul(e1y).sub(sy.mul(e1x));
+		DoubleVector w = alignZero(qx.mul(vx).add(qy.mul(vy)).add(qz.mul(vz)).mul(inverse));
+		DoubleVector t = alignZero(e2x.mul(qx).add(e2y.mul(qy)).add(e2z.mul(qz)).mul(inverse));
+
+		t.intoArray(results, 0);
+		u.intoArray(results, Kernels.WIDTH);
+		w.intoArray(results, 2 * Kernels.WIDTH);
+		VectorMask<Double> hit = u.compare(VectorOperators.GT, 0).and(u.compare(VectorOperators.LT, 1)) //
+				.and(w.compare(VectorOperators.GT, 0)) //
+				.and(alignZero(DoubleVector.broadcast(SPECIES, 1).sub(u).sub(w)).compare(VectorOperators.GT, 0)) //
+				.and(t.compare(VectorOperators.GT, 0)).and(t.compare(VectorOperators.LT, maxDistance));
+		return (int) hit.toLong();
+	}
+}